@@ -9,14 +9,31 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+  AllocationTest.class,
   ChangeMachineTest.class,
   ChangeTest.class,
+  CommandServerTest.class,
+  DrinkCatalogTest.class,
+  EdtWatchdogTest.class,
+  FloatOptimizerTest.class,
+  FleetTableModelTest.class,
+  FlightDataRecorderTest.class,
   HeatingSystemTest.class,
+  LatencyHistogramTest.class,
+  StatusFeedTest.class,
   StockWithContextTest.class,
   UtilsTest.class,
+  VirtualClockTest.class,
+  WorkloadGeneratorTest.class,
+  ChangePolicyTest.class,
+  CoinSetTest.class,
   ButtonsTest.class,
   ContextTest.class,
-  ContextTimerTest.class
+  ContextTimerTest.class,
+  FlightRecorderTest.class,
+  MachineMonitorTest.class,
+  MoneyFormatTest.class,
+  RenderingBenchmarkTest.class
 })
 
 public class AllTests {}
\ No newline at end of file
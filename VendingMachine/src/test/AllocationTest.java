@@ -0,0 +1,125 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import vendingmachine.Coin;
+import vendingmachine.CoinSet;
+import vendingmachine.components.ChangePolicy;
+import vendingmachine.components.Context;
+import vendingmachine.components.MinCoinsChangePolicy;
+import vendingmachine.components.PreserveSmallCoinsChangePolicy;
+import vendingmachine.components.Stock;
+import vendingmachine.components.VirtualClock;
+import vendingmachine.simulation.MachineLogs;
+
+/**
+ * Checks that a whole order (coin, drink, sugar, preparation, cup and change) does not
+ * allocate anything once the machine is warmed up, on a headless UI and without logs,
+ * and neither does the change computed by the other policies.
+ */
+public class AllocationTest {
+
+  private static final int WARMUP_CYCLES = 20000;
+  private static final int CYCLES = 5000;
+  private static final int STOCK = 10000000;
+
+  private final com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private VirtualClock clock;
+  private Context machine;
+
+  @Before
+  public void setUp() {
+    MachineLogs.quiet();
+
+    clock = new VirtualClock();
+    machine = TestMachines.createMachine(TestMachines.createChangeMachine(STOCK),
+        new Stock(STOCK, STOCK, STOCK, TestMachines.createDrinks(STOCK, STOCK)), 1, clock);
+  }
+
+  @After
+  public void tearDown() {
+    MachineLogs.restore();
+  }
+
+  /**
+   * A client orders a sugared coffee with change, another one a soup.
+   */
+  private void cycle() {
+    machine.coinInserted(Coin.COIN50);
+    machine.drinkButton(machine.getDrinks().get(0));
+    machine.more();
+    machine.more();
+    machine.less();
+    machine.confirm();
+    clock.advance(30000);
+    machine.takeCup();
+    machine.takeChange();
+
+    machine.coinInserted(Coin.COIN50);
+    machine.coinInserted(Coin.COIN20);
+    machine.drinkButton(machine.getDrinks().get(1));
+    clock.advance(30000);
+    machine.takeCup();
+    machine.takeChange();
+  }
+
+  /**
+   * @return the bytes allocated by {@code CYCLES} cycles
+   */
+  private long measure() {
+    final long id = Thread.currentThread().getId();
+    final long before = threads.getThreadAllocatedBytes(id);
+    for (int i = 0; i < CYCLES; i++) {
+      cycle();
+    }
+    return threads.getThreadAllocatedBytes(id) - before;
+  }
+
+  @Test
+  public void testOrderDoesNotAllocate() {
+    if (!threads.isThreadAllocatedMemorySupported()) {
+      return;
+    }
+    threads.setThreadAllocatedMemoryEnabled(true);
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      cycle();
+    }
+    final long allocated = measure();
+    // Less than a byte per cycle: a single object per order would be caught
+    assertTrue(allocated + " bytes allocated by " + CYCLES + " cycles", allocated < CYCLES);
+    assertEquals(2L * (WARMUP_CYCLES + CYCLES), machine.getServedDrinksNbr());
+  }
+
+  @Test
+  public void testChangePoliciesDoNotAllocate() {
+    if (!threads.isThreadAllocatedMemorySupported()) {
+      return;
+    }
+    threads.setThreadAllocatedMemoryEnabled(true);
+    final ChangePolicy[] policies = {
+        MinCoinsChangePolicy.getInstance(), PreserveSmallCoinsChangePolicy.getInstance() };
+    final int[] available = { 1, 1, 0, 3, 0, 0, 4, 1 };
+    final int[] given = new int[available.length];
+    for (ChangePolicy policy: policies) {
+      policy.computeChange(260, CoinSet.EURO, available, given);
+    }
+    final long id = Thread.currentThread().getId();
+    final long before = threads.getThreadAllocatedBytes(id);
+    for (int i = 0; i < CYCLES; i++) {
+      for (ChangePolicy policy: policies) {
+        policy.computeChange(60 + i % 200, CoinSet.EURO, available, given);
+      }
+    }
+    final long allocated = threads.getThreadAllocatedBytes(id) - before;
+    assertTrue(allocated + " bytes allocated by " + CYCLES + " changes", allocated < CYCLES);
+  }
+
+}
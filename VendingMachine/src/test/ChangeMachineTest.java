@@ -2,16 +2,24 @@ package test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import vendingmachine.Coin;
+import vendingmachine.CoinSet;
+import vendingmachine.Drink;
+import vendingmachine.DrinkCatalog;
 import vendingmachine.components.Change;
 import vendingmachine.components.ChangeMachine;
+import vendingmachine.components.ChangePolicy;
+import vendingmachine.components.GreedyChangePolicy;
 
 public class ChangeMachineTest {
 
@@ -53,4 +61,50 @@ public class ChangeMachineTest {
     new ChangeMachine(change, acceptedCoins);
   }
 
+  @Test
+  public void testAdaptiveAcceptance() {
+    ChangeMachine changeMachine = new ChangeMachine(change, acceptedCoins);
+    changeMachine.setDrinkPrices(new DrinkCatalog(Arrays.asList(new Drink("a", true, 40))));
+    assertFalse("No Coin is refused for change", changeMachine.setAdaptiveAcceptance(true));
+    assertTrue("0.60 can be given back", changeMachine.isCoinAccepted(Coin.COIN100));
+
+    changeMachine.setCoinStock(Coin.COIN20, 0);
+    assertTrue(changeMachine.updateAcceptedCoins());
+    assertFalse("0.60 can't be given back anymore", changeMachine.isCoinAccepted(Coin.COIN100));
+    assertTrue(changeMachine.isCoinRefusedForChange(Coin.COIN100));
+    assertTrue("No change is needed", changeMachine.isCoinAccepted(Coin.COIN20));
+    assertFalse(changeMachine.isCoinAccepted(Coin.COIN200)); // refused by the configuration
+    assertFalse(changeMachine.isCoinRefusedForChange(Coin.COIN200));
+
+    assertTrue(changeMachine.setAdaptiveAcceptance(false));
+    assertTrue(changeMachine.isCoinAccepted(Coin.COIN100));
+    assertFalse(changeMachine.isCoinRefusedForChange(Coin.COIN100));
+  }
+
+  @Test
+  public void testAcceptanceComputedOnlyWhenChangeStockMatters() {
+    final AtomicInteger computations = new AtomicInteger();
+    change.setPolicy(new ChangePolicy() {
+      @Override
+      public int[] computeChange(int amount, CoinSet coins, int[] available) {
+        computations.incrementAndGet();
+        return GreedyChangePolicy.getInstance().computeChange(amount, coins, available);
+      }
+    });
+    ChangeMachine changeMachine = new ChangeMachine(change, acceptedCoins);
+    changeMachine.setDrinkPrices(new DrinkCatalog(Arrays.asList(new Drink("a", true, 40))));
+    changeMachine.setAdaptiveAcceptance(true);
+    assertTrue(changeMachine.isCoinAccepted(Coin.COIN100));
+
+    computations.set(0);
+    changeMachine.insertCoin(Coin.COIN100); // never part of the change on a coin
+    assertFalse(changeMachine.updateAcceptedCoins());
+    assertEquals(0, computations.get());
+
+    changeMachine.setCoinStock(Coin.COIN20, 0);
+    assertTrue(changeMachine.updateAcceptedCoins());
+    assertTrue(computations.get() > 0);
+    assertFalse(changeMachine.isCoinAccepted(Coin.COIN100));
+  }
+
 }
\ No newline at end of file
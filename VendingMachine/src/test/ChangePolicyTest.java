@@ -0,0 +1,127 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.junit.Test;
+
+import vendingmachine.Coin;
+import vendingmachine.CoinSet;
+import vendingmachine.components.BalancedFloatChangePolicy;
+import vendingmachine.components.Change;
+import vendingmachine.components.ChangePolicy;
+import vendingmachine.components.GreedyChangePolicy;
+import vendingmachine.components.MinCoinsChangePolicy;
+import vendingmachine.components.PreserveSmallCoinsChangePolicy;
+
+public class ChangePolicyTest {
+
+  /*
+   * A recorded workload of 30 clients: the coins inserted by each client (in cents)
+   * and the price of his drink.
+   */
+  private static final int[][] INSERTED = {
+    { 100 }, { 50, 5, 5, 50 }, { 200 }, { 100 }, { 200 }, { 50 }, { 20, 20, 20 }, { 10, 50 },
+    { 50 }, { 50 }, { 100 }, { 100 }, { 20, 20, 20 }, { 20, 10, 5, 50 }, { 10, 10, 10, 50, 5 },
+    { 50 }, { 100 }, { 10, 10, 50 }, { 200 }, { 100, 100 }, { 20, 5, 10, 20, 20 },
+    { 20, 10, 50, 50 }, { 200 }, { 50, 50 }, { 5, 20, 10, 50 }, { 200 }, { 100 }, { 50, 20 },
+    { 100 }, { 200 } };
+  private static final int[] PRICES = { 85, 65, 120, 40, 70, 35, 45, 45, 45, 45, 85, 35, 45,
+    60, 85, 40, 35, 45, 40, 120, 65, 120, 40, 70, 40, 40, 40, 60, 70, 65 };
+
+  private static final int[] INITIAL_STOCK = { 0, 3, 5, 10, 10, 5, 5, 5 };
+
+  private static Coin coinOf(int value) {
+    for (Coin coin: Coin.COINS) {
+      if (coin.VALUE == value) {
+        return coin;
+      }
+    }
+    throw new IllegalArgumentException();
+  }
+
+  /**
+   * Replays the recorded workload and returns the number of orders refused
+   * because the change could not be given (the client then takes his coins back).
+   */
+  private static int replay(ChangePolicy policy) {
+    Map<Coin, Integer> coinsStock = new Hashtable<Coin, Integer>();
+    for (int i = 0; i < 8; i++) {
+      coinsStock.put(Coin.COINS.get(i), INITIAL_STOCK[i]);
+    }
+    Change change = new Change(coinsStock, policy);
+    int refused = 0;
+    for (int i = 0; i < INSERTED.length; i++) {
+      int amount = 0;
+      for (int value: INSERTED[i]) {
+        change.insertCoin(coinOf(value));
+        amount += value;
+      }
+      if (change.isChangePossible(amount - PRICES[i])) {
+        change.giveChange(amount - PRICES[i]);
+      } else {
+        for (int value: INSERTED[i]) {
+          Coin coin = coinOf(value);
+          change.setCoinStock(coin, change.getCoinStock(coin) - 1);
+        }
+        refused++;
+      }
+    }
+    return refused;
+  }
+
+  @Test
+  public void testGreedyMissesPossibleChange() {
+    int[] available = { 0, 0, 1, 3, 0, 0, 0, 0 };
+    assertNull(GreedyChangePolicy.getInstance().computeChange(60, CoinSet.EURO, available));
+    assertArrayEquals(new int[] { 0, 0, 0, 3, 0, 0, 0, 0 },
+        MinCoinsChangePolicy.getInstance().computeChange(60, CoinSet.EURO, available));
+  }
+
+  @Test
+  public void testMinCoins() {
+    int[] available = { 0, 1, 1, 5, 5, 0, 4, 0 };
+    assertArrayEquals(new int[] { 0, 1, 1, 1, 1, 0, 2, 0 },
+        MinCoinsChangePolicy.getInstance().computeChange(184, CoinSet.EURO, available));
+    assertNull(MinCoinsChangePolicy.getInstance().computeChange(3, CoinSet.EURO, available));
+  }
+
+  @Test
+  public void testPreserveSmallCoins() {
+    int[] available = { 0, 0, 1, 3, 0, 2, 0, 0 };
+    // 3 * 0.20 is preferred to 0.50 + 2 * 0.05
+    assertArrayEquals(new int[] { 0, 0, 0, 3, 0, 0, 0, 0 },
+        PreserveSmallCoinsChangePolicy.getInstance().computeChange(60, CoinSet.EURO, available));
+  }
+
+  @Test
+  public void testBalancedFloat() {
+    int[] available = { 0, 0, 2, 5, 0, 0, 0, 0 };
+    ChangePolicy policy = new BalancedFloatChangePolicy(new int[] { 0, 0, 0, 5, 0, 0, 0, 0 });
+    // the machine should not keep 0.50 coins
+    assertArrayEquals(new int[] { 0, 0, 2, 0, 0, 0, 0, 0 },
+        policy.computeChange(100, CoinSet.EURO, available));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBalancedFloatNegativeTarget() {
+    new BalancedFloatChangePolicy(new int[] { 0, -1, 0, 0, 0, 0, 0, 0 });
+  }
+
+  @Test
+  public void testReplayRefusesLessThanGreedy() {
+    int greedy = replay(GreedyChangePolicy.getInstance());
+    int minCoins = replay(MinCoinsChangePolicy.getInstance());
+    int preserveSmall = replay(PreserveSmallCoinsChangePolicy.getInstance());
+    int balanced = replay(new BalancedFloatChangePolicy(INITIAL_STOCK));
+    assertEquals(6, greedy);
+    assertEquals(4, minCoins);
+    assertEquals(4, preserveSmall);
+    assertEquals(3, balanced);
+  }
+
+}
@@ -2,6 +2,7 @@ package test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Hashtable;
@@ -13,6 +14,7 @@ import org.junit.Test;
 import vendingmachine.Coin;
 import vendingmachine.components.Change;
 import vendingmachine.components.ChangeMachine;
+import vendingmachine.components.ChangeReservation;
 
 public class ChangeTest {
 
@@ -86,4 +88,33 @@ public class ChangeTest {
     changeMachine.isChangePossible(-1);
   }
 
+  @Test
+  public void testReserveChange() {
+    ChangeReservation reservation = changeMachine.reserveChange(109);
+    assertEquals(109, reservation.getAmount());
+    assertFalse("Reserved coins should not be available", changeMachine.isChangePossible(9));
+    assertNull(changeMachine.reserveChange(9));
+    assertEquals(1, change.getCoinStock(Coin.COIN100));
+
+    changeMachine.release(reservation);
+    assertFalse(reservation.isActive());
+    assertTrue(changeMachine.isChangePossible(109));
+  }
+
+  @Test
+  public void testGiveReservedChange() {
+    ChangeReservation reservation = changeMachine.reserveChange(61);
+    changeMachine.giveChange(reservation, new EmptyContext());
+    assertEquals(0, change.getCoinStock(Coin.COIN1));
+    assertEquals(0, change.getCoinStock(Coin.COIN20));
+    changeMachine.release(reservation); // already given: nothing happens
+    assertFalse(changeMachine.isChangePossible(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetCoinStockBelowReserved() {
+    changeMachine.reserveChange(100);
+    changeMachine.setCoinStock(Coin.COIN100, 0);
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.junit.Test;
+
+import vendingmachine.Coin;
+import vendingmachine.CoinSet;
+import vendingmachine.components.Change;
+import vendingmachine.components.GreedyChangePolicy;
+import vendingmachine.components.MinCoinsChangePolicy;
+
+public class CoinSetTest {
+
+  private static final Coin FOUR = new Coin(4, "4 tokens");
+  private static final Coin THREE = new Coin(3, "3 tokens");
+  private static final Coin ONE = new Coin(1, "1 token");
+
+  private static final CoinSet TOKENS = new CoinSet(Arrays.asList(ONE, FOUR, THREE));
+
+  @Test
+  public void testOrder() {
+    assertEquals(Arrays.asList(FOUR, THREE, ONE), TOKENS.getCoins());
+    assertArrayEquals(new int[] { 4, 3, 1 }, TOKENS.getValues());
+    assertEquals(1, TOKENS.indexOf(THREE));
+    assertEquals(Coin.COINS, CoinSet.EURO.getCoins());
+    assertFalse(TOKENS.contains(Coin.COIN1));
+  }
+
+  @Test
+  public void testCanonical() {
+    assertTrue(CoinSet.EURO.isCanonical());
+    assertTrue(new CoinSet(Arrays.asList(new Coin(25, "25"), new Coin(10, "10"),
+        new Coin(5, "5"), new Coin(1, "1"))).isCanonical());
+    assertFalse(TOKENS.isCanonical()); // 6 = 3 + 3
+    assertFalse("No unit coin", new CoinSet(Arrays.asList(new Coin(5, "5"),
+        new Coin(2, "2"))).isCanonical());
+  }
+
+  @Test
+  public void testFewestCoins() {
+    assertArrayEquals(new int[] { 1, 1, 0, 1, 1, 0, 2, 0 }, CoinSet.EURO.getFewestCoins(334));
+    assertArrayEquals(new int[] { 0, 2, 0 }, TOKENS.getFewestCoins(6));
+    assertArrayEquals(new int[] { 1, 2, 0 }, TOKENS.getFewestCoins(10));
+    assertEquals(26, Arrays.stream(TOKENS.getFewestCoins(102)).sum()); // beyond the table
+    int[] given = { 7, 7, 7 };
+    assertTrue(TOKENS.getFewestCoins(10, given)); // with the table of the thread
+    assertArrayEquals(new int[] { 1, 2, 0 }, given);
+
+    CoinSet noUnit = new CoinSet(Arrays.asList(new Coin(5, "5"), new Coin(2, "2")));
+    assertArrayEquals(new int[] { 0, 3 }, noUnit.getFewestCoins(6));
+    assertNull(noUnit.getFewestCoins(3));
+  }
+
+  @Test
+  public void testNonCanonicalChange() {
+    Map<Coin, Integer> coinsStock = new Hashtable<Coin, Integer>();
+    coinsStock.put(FOUR, 5);
+    coinsStock.put(THREE, 5);
+    coinsStock.put(ONE, 5);
+    Change change = new Change(TOKENS, coinsStock, GreedyChangePolicy.getInstance());
+    Map<Coin, Integer> given = change.giveChange(6);
+    assertEquals(2, (int) given.get(THREE));
+    assertEquals(0, (int) given.get(FOUR));
+
+    // Only one 3 left: the fewest coins are searched among the available ones
+    change.setCoinStock(THREE, 1);
+    assertArrayEquals(new int[] { 1, 1, 0 },
+        MinCoinsChangePolicy.getInstance().computeChange(7, TOKENS, new int[] { 5, 1, 5 }));
+    assertArrayEquals(new int[] { 1, 0, 2 },
+        GreedyChangePolicy.getInstance().computeChange(6, TOKENS, new int[] { 5, 1, 5 }));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSameValues() {
+    new CoinSet(Arrays.asList(ONE, new Coin(1, "1 other token")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmpty() {
+    new CoinSet(Collections.<Coin>emptyList());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCoinNotInSet() {
+    TOKENS.indexOf(Coin.COIN1);
+  }
+
+}
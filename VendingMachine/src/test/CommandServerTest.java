@@ -0,0 +1,144 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import vendingmachine.Coin;
+import vendingmachine.components.Context;
+import vendingmachine.components.VirtualClock;
+import vendingmachine.remote.CommandClient;
+import vendingmachine.remote.CommandProtocol;
+import vendingmachine.remote.CommandServer;
+
+public class CommandServerTest {
+
+  private static final int COIN50 = Coin.COINS.indexOf(Coin.COIN50);
+  private static final int COIN10 = Coin.COINS.indexOf(Coin.COIN10);
+
+  private ExecutorService executor;
+  private VirtualClock clock;
+  private Context machine;
+  private Context otherMachine;
+  private CommandServer server;
+  private CommandClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = Executors.newSingleThreadExecutor();
+    clock = new VirtualClock();
+    machine = TestMachines.createMachine(clock);
+    otherMachine = TestMachines.createMachine(clock);
+    server = new CommandServer();
+    server.addMachine(machine, executor);
+    server.addMachine(otherMachine, executor);
+    final InetSocketAddress address =
+        server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    client = new CommandClient(address);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+    server.close();
+    executor.shutdown();
+    executor.awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Runs an action on the thread of the machines and waits for its end.
+   */
+  private void onMachines(Runnable action) throws Exception {
+    executor.submit(action).get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testOrder() throws Exception {
+    final int id = machine.getId();
+    assertEquals(CommandProtocol.STATUS_OK, client.call(id, CommandProtocol.COIN, COIN50, 0));
+    assertEquals(50, client.getAmountInside());
+    assertEquals(CommandProtocol.STATUS_OK, client.call(id, CommandProtocol.DRINK, 0, 0));
+    assertEquals(CommandProtocol.STATUS_OK, client.call(id, CommandProtocol.MORE, 0, 0));
+    assertEquals(CommandProtocol.STATUS_OK, client.call(id, CommandProtocol.CONFIRM, 0, 0));
+    assertEquals(0, client.getAmountInside());
+    onMachines(() -> {
+      assertEquals("Preparing", machine.getState().toString());
+      clock.advance(60000);
+    });
+    assertEquals(CommandProtocol.STATUS_OK, client.call(id, CommandProtocol.TAKE_CUP, 0, 0));
+    assertEquals(CommandProtocol.STATUS_OK, client.call(id, CommandProtocol.TAKE_CHANGE, 0, 0));
+    onMachines(() -> {
+      assertEquals(1, machine.getServedDrinksNbr());
+      assertEquals(4, machine.getStock().getCupsNbr());
+      assertEquals("Idle", otherMachine.getState().toString());
+    });
+  }
+
+  @Test
+  public void testPipelinedRequests() throws Exception {
+    // More requests than the pipeline of the connection, to two machines
+    final int coins = CommandServer.MAX_PIPELINED;
+    for (int i = 0; i < coins; i++) {
+      client.send(machine.getId(), CommandProtocol.COIN, COIN10, 0);
+      client.send(otherMachine.getId(), CommandProtocol.STATUS, 0, 0);
+      if (i % 64 == 63) {
+        for (int j = i - 63; j <= i; j++) {
+          assertEquals(CommandProtocol.STATUS_OK, client.receive());
+          assertEquals(10 * (j + 1), client.getAmountInside());
+          assertEquals(CommandProtocol.STATUS_OK, client.receive());
+          assertEquals(0, client.getAmountInside());
+        }
+      }
+    }
+    onMachines(() -> assertEquals(10 * coins, machine.getAmountInside()));
+  }
+
+  @Test
+  public void testErrors() throws Exception {
+    final int id = machine.getId();
+    assertEquals(CommandProtocol.STATUS_UNKNOWN_MACHINE,
+        client.call(-1, CommandProtocol.CONFIRM, 0, 0));
+    assertEquals(-1, client.getAmountInside());
+    assertEquals(CommandProtocol.STATUS_BAD_REQUEST, client.call(id, (byte) 99, 0, 0));
+    assertEquals(CommandProtocol.STATUS_BAD_REQUEST,
+        client.call(id, CommandProtocol.DRINK, 2, 0));
+    assertEquals(CommandProtocol.STATUS_BAD_REQUEST,
+        client.call(id, CommandProtocol.COIN, Coin.COINS.size(), 0));
+    // More cups removed than in stock
+    assertEquals(CommandProtocol.STATUS_REFUSED,
+        client.call(id, CommandProtocol.RESTOCK_CUPS, 0, -6));
+
+    server.removeMachine(otherMachine);
+    assertEquals(CommandProtocol.STATUS_UNKNOWN_MACHINE,
+        client.call(otherMachine.getId(), CommandProtocol.STATUS, 0, 0));
+  }
+
+  @Test
+  public void testRestock() throws Exception {
+    final int id = machine.getId();
+    assertEquals(CommandProtocol.STATUS_OK,
+        client.call(id, CommandProtocol.RESTOCK_COIN, COIN50, 10));
+    assertEquals(CommandProtocol.STATUS_OK,
+        client.call(id, CommandProtocol.RESTOCK_DRINK, 1, -2));
+    assertEquals(CommandProtocol.STATUS_OK, client.call(id, CommandProtocol.RESTOCK_CUPS, 0, 20));
+    assertEquals(CommandProtocol.STATUS_OK, client.call(id, CommandProtocol.RESTOCK_SUGAR, 0, 1));
+    assertEquals(CommandProtocol.STATUS_OK,
+        client.call(id, CommandProtocol.RESTOCK_SPOONS, 0, 2));
+    onMachines(() -> {
+      assertEquals(15, machine.getChangeMachine().getCoinsStock(Coin.COIN50));
+      assertEquals(3, machine.getStock().getDrinkQty(machine.getDrinks().get(1)));
+      assertEquals(25, machine.getStock().getCupsNbr());
+      assertEquals(6, machine.getStock().getSugarCubesNbr());
+      assertEquals(7, machine.getStock().getSpoonsNbr());
+    });
+  }
+
+}
@@ -5,8 +5,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Before;
@@ -19,7 +21,9 @@ import vendingmachine.SoundLoader;
 import vendingmachine.components.Change;
 import vendingmachine.components.ChangeMachine;
 import vendingmachine.components.Context;
+import vendingmachine.components.Order;
 import vendingmachine.components.Stock;
+import vendingmachine.components.VirtualClock;
 import vendingmachine.states.Asking;
 import vendingmachine.states.Idle;
 import vendingmachine.states.NoCup;
@@ -216,6 +220,66 @@ public class ContextTest {
     assertSame(Preparing.getInstance(), context.getState());
   }
 
+  @Test
+  public void testOrderWhilePreparing() {
+    context.coinInserted(Coin.COIN100);
+    context.drinkButton(context.getDrinks().get(1)); // costs 0.4 euro, sugared
+    context.confirm();
+    assertSame(Preparing.getInstance(), context.getState());
+
+    context.coinInserted(Coin.COIN50);
+    assertEquals("Coins are accepted during the preparation", 50, context.getAmountInside());
+    context.drinkButton(context.getDrinks().get(1));
+    assertSame(Asking.getInstance(), context.getState());
+    context.confirm();
+    assertSame(Preparing.getInstance(), context.getState());
+    assertEquals(1, context.getPendingOrdersNbr());
+
+    context.drinkButton(context.getDrinks().get(4)); // Free, sugared, only one in stock
+    context.confirm();
+    assertEquals(Context.MAX_PENDING_ORDERS, context.getPendingOrdersNbr());
+    assertFalse("The only e has been ordered", context.isDrinkAvailable(context.getDrinks().get(4)));
+
+    context.coinInserted(Coin.COIN50);
+    context.drinkButton(context.getDrinks().get(1));
+    assertSame("The queue of orders is full", Preparing.getInstance(), context.getState());
+    context.cancel();
+    assertEquals("Change is given back to the next client", 0, context.getAmountInside());
+  }
+
+  @Test
+  public void testOrderBatch() {
+    context.coinInserted(Coin.COIN100);
+    List<Order> batch = new ArrayList<Order>();
+    batch.add(new Order(context.getDrinks().get(1), 2)); // 0.4 euro, sugared
+    batch.add(new Order(context.getDrinks().get(3), 0)); // Free, not sugared
+    batch.add(new Order(context.getDrinks().get(3), 0));
+    batch.add(new Order(context.getDrinks().get(3), 0)); // Last d in stock
+    context.orderBatch(batch);
+    assertSame(Preparing.getInstance(), context.getState());
+    assertEquals("Change is given once for the whole batch", 0, context.getAmountInside());
+    assertEquals(3, context.getPendingOrdersNbr());
+    assertFalse("All the d have been ordered", context.isDrinkAvailable(context.getDrinks().get(3)));
+  }
+
+  @Test
+  public void testOrderBatchRefused() {
+    context.coinInserted(Coin.COIN50);
+    List<Order> batch = new ArrayList<Order>();
+    batch.add(new Order(context.getDrinks().get(1), 0)); // 0.4 euro
+    batch.add(new Order(context.getDrinks().get(1), 0));
+    context.orderBatch(batch);
+    assertSame("Not enough money inserted", Idle.getInstance(), context.getState());
+
+    batch.clear();
+    for (int i = 0; i < 4; i++) {
+      batch.add(new Order(context.getDrinks().get(3), 0)); // Free, only 3 in stock
+    }
+    context.orderBatch(batch);
+    assertSame("Not enough stock", Idle.getInstance(), context.getState());
+    assertEquals(50, context.getAmountInside());
+  }
+
   @Test
   public void testNoSpoonCancel() {
     context.setSpoonsStock(0);
@@ -279,4 +343,115 @@ public class ContextTest {
     assertFalse("Maintenance is impossible in Asking", context.isAvailableForMaintenance());
   }
 
+  @Test
+  public void testServableDrinks() {
+    List<Drink> drinks = context.getDrinks();
+    assertFalse("a is out of stock", context.isServable(drinks.get(0)));
+    assertFalse("b costs 0.4 euro", context.isServable(drinks.get(1)));
+    assertTrue(context.isServable(drinks.get(3)));
+
+    context.coinInserted(Coin.COIN50);
+    assertTrue(context.isServable(drinks.get(1)));
+    assertFalse("c costs 0.7 euro", context.isServable(drinks.get(2)));
+
+    context.setCoinStock(Coin.COIN10, 0); // 0.10 euro can't be given back anymore
+    assertFalse(context.isServable(drinks.get(1)));
+    context.setCoinStock(Coin.COIN10, 1);
+    assertTrue(context.isServable(drinks.get(1)));
+
+    context.cancel();
+    assertFalse(context.isServable(drinks.get(1)));
+    context.setCupStock(0);
+    assertFalse("No cup left", context.isServable(drinks.get(3)));
+  }
+
+  @Test
+  public void testSetPrices() {
+    Drink oldB = context.getDrinks().get(1); // costs 0.40 euro
+    context.coinInserted(Coin.COIN50);
+    context.drinkButton(oldB);
+    assertSame(Asking.getInstance(), context.getState());
+
+    Map<Drink, Integer> prices = new Hashtable<Drink, Integer>();
+    prices.put(oldB, 60);
+    context.setPrices(prices);
+    assertEquals(60, context.getDrinks().get(1).getPrice());
+    assertEquals(40, oldB.getPrice());
+    assertSame(Asking.getInstance(), context.getState());
+
+    context.confirm(); // paid at the price it was chosen at
+    assertSame(Preparing.getInstance(), context.getState());
+    assertEquals(0, context.getAmountInside());
+    assertEquals(4, changeMachine.getCoinsStock(Coin.COIN10));
+
+    context.coinInserted(Coin.COIN50);
+    context.drinkButton(oldB); // ordered at the new price
+    assertSame(Preparing.getInstance(), context.getState());
+    assertEquals(50, context.getAmountInside());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetPricesUnknownDrink() {
+    Map<Drink, Integer> prices = new Hashtable<Drink, Integer>();
+    prices.put(new Drink("z", true, 10), 20);
+    context.setPrices(prices);
+  }
+
+  /**
+   * Orders three drinks at once on a machine with three dispensers, and returns the
+   * lowest temperature of the water while they are prepared.
+   */
+  private double orderRush(boolean thermalAdmission) {
+    VirtualClock clock = new VirtualClock();
+    Context machine = new Context(changeMachine, stock, 0, 3, clock);
+    machine.setUI(new EmptyUI());
+    machine.setThermalAdmission(thermalAdmission);
+    Drink free = machine.getDrinks().get(3); // free, without sugar, 3 in stock
+    for (int i = 0; i < 3; i++) {
+      machine.drinkButton(free);
+    }
+    if (thermalAdmission) {
+      assertEquals("The third preparation must wait", 1, machine.getPendingOrdersNbr());
+    }
+    double lowest = machine.getHeatingSystem().getTemperature();
+    for (int i = 0; i < 60; i++) {
+      clock.advance(1000);
+      lowest = Math.min(lowest, machine.getHeatingSystem().getTemperature());
+    }
+    assertEquals(0, machine.getPendingOrdersNbr());
+    assertEquals(0, machine.getStock().getDrinkQty(free));
+    return lowest;
+  }
+
+  @Test
+  public void testThermalAdmission() {
+    assertTrue("The water should get too cold", orderRush(false) < 80);
+    setUp();
+    assertTrue("The water should stay hot enough", orderRush(true) >= 80);
+  }
+
+  @Test
+  public void testThermalAdmissionOfBatch() {
+    Drink free = new Drink("f", false, 0);
+    Map<Drink, Integer> drinkQty = new LinkedHashMap<Drink, Integer>();
+    drinkQty.put(free, 6);
+    VirtualClock clock = new VirtualClock();
+    Context machine = new Context(changeMachine, new Stock(5, 10, 5, drinkQty), 0, 1, clock);
+    machine.setUI(new EmptyUI());
+    machine.setThermalAdmission(true);
+    List<Order> batch = new ArrayList<Order>();
+    for (int i = 0; i < 6; i++) {
+      batch.add(new Order(free, 0));
+    }
+    machine.orderBatch(batch);
+    for (int i = 0; i < 120; i++) {
+      clock.advance(1000);
+    }
+    // The delayed drinks are prepared next to the first cups, which are never taken
+    assertEquals(0, machine.getPendingOrdersNbr());
+    assertEquals(6, machine.getServedDrinksNbr());
+    assertEquals(4, machine.getStock().getCupsNbr());
+    assertTrue(machine.getHeatingSystem().getTemperature() >= 80);
+  }
+
 }
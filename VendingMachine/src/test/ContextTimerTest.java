@@ -1,12 +1,19 @@
 package test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
 import vendingmachine.Coin;
 import vendingmachine.SoundLoader;
+import vendingmachine.components.Context;
+import vendingmachine.components.Order;
 import vendingmachine.states.Asking;
 import vendingmachine.states.Idle;
 import vendingmachine.states.Preparing;
@@ -57,14 +64,15 @@ public class ContextTimerTest extends ContextTest {
   }
 
   /**
-   * Makes an order of a drink. Then checks that another Drink can not be ordered
-   * because a cup is inside the machine. Takes the cup (and the change) and orders again.
-   * Takes some second to wait for the end of the preparation.
+   * Makes an order of a drink. Then checks that another Drink can be paid and ordered
+   * while a cup is inside the machine, but that its preparation only begins once the cup
+   * has been taken. Takes some seconds to wait for the end of the preparation.
    * 
    * @throws InterruptedException call to Thread.sleep(long)
    */
   @Test
-  public void cantOrderWhenCupInMachine() throws InterruptedException {
+  public void nextOrderWaitsForCupRemoval() throws InterruptedException {
+    final int oldDrinkStock = context.getStock().getDrinkQty(context.getDrinks().get(1));
     context.coinInserted(Coin.COIN100);
     context.drinkButton(context.getDrinks().get(1)); // Costs 0.40 euro
     context.confirm();
@@ -72,11 +80,71 @@ public class ContextTimerTest extends ContextTest {
 
     context.coinInserted(Coin.COIN100);
     context.drinkButton(context.getDrinks().get(1));
-    assertSame("Order impossible because a cup is inside", Idle.getInstance(), context.getState());
+    assertSame("Order possible while a cup is inside", Asking.getInstance(), context.getState());
+    context.confirm();
+    assertSame(Preparing.getInstance(), context.getState());
+    assertFalse("Preparation must wait for the cup to be taken", context.isPreparing());
+    assertEquals(1, context.getPendingOrdersNbr());
+
     context.takeChange();
     context.takeCup(); // Removes the cup
-    context.drinkButton(context.getDrinks().get(1));
-    assertSame("Order possible because cup has been removed",
-        Asking.getInstance(), context.getState());
+    assertTrue("Preparation begins when the cup is removed", context.isPreparing());
+    assertEquals(0, context.getPendingOrdersNbr());
+    Thread.sleep(SoundLoader.getInstance().FILLING.getMicrosecondLength() / 1000 + 100);
+    assertSame(Idle.getInstance(), context.getState());
+    assertEquals(oldDrinkStock - 2, context.getStock().getDrinkQty(context.getDrinks().get(1)));
   }
+
+  /**
+   * Makes two orders on a machine with two dispensers. Checks that both drinks are
+   * prepared at the same time and that each cup can be taken independently.
+   * Takes some seconds to wait for the end of the preparation.
+   * 
+   * @throws InterruptedException call to Thread.sleep(long)
+   */
+  @Test
+  public void dispensersPrepareConcurrently() throws InterruptedException {
+    final Context twoDispensers = new Context(changeMachine, stock, 0, 2);
+    twoDispensers.setUI(new EmptyUI());
+    final int oldDrinkStock = stock.getDrinkQty(twoDispensers.getDrinks().get(3));
+
+    twoDispensers.drinkButton(twoDispensers.getDrinks().get(3)); // Free, not sugared
+    twoDispensers.drinkButton(twoDispensers.getDrinks().get(3));
+    assertEquals("No order should wait", 0, twoDispensers.getPendingOrdersNbr());
+    assertTrue(twoDispensers.getDispensers().get(0).isPreparing());
+    assertTrue(twoDispensers.getDispensers().get(1).isPreparing());
+
+    Thread.sleep(SoundLoader.getInstance().FILLING.getMicrosecondLength() / 1000 + 100);
+    assertSame(Idle.getInstance(), twoDispensers.getState());
+    assertEquals(oldDrinkStock - 2, stock.getDrinkQty(twoDispensers.getDrinks().get(3)));
+    twoDispensers.takeCup();
+    assertTrue("The second cup is still inside", twoDispensers.isCupInside());
+    twoDispensers.takeCup();
+    assertFalse(twoDispensers.isCupInside());
+  }
+
+  /**
+   * Orders a batch of two drinks. Checks that the second one is prepared right after
+   * the first one, without taking the cup, and that both cups are taken at once.
+   * Takes some seconds to wait for the end of the preparations.
+   * 
+   * @throws InterruptedException call to Thread.sleep(long)
+   */
+  @Test
+  public void batchPreparedBackToBack() throws InterruptedException {
+    final List<Order> batch = new ArrayList<Order>();
+    batch.add(new Order(context.getDrinks().get(3), 0)); // Free, not sugared
+    batch.add(new Order(context.getDrinks().get(3), 0));
+    context.orderBatch(batch);
+
+    Thread.sleep(SoundLoader.getInstance().FILLING.getMicrosecondLength() / 1000 + 100);
+    assertTrue("First cup is ready", context.isCupInside());
+    assertTrue("Second drink is prepared without taking the cup", context.isPreparing());
+    Thread.sleep(SoundLoader.getInstance().FILLING.getMicrosecondLength() / 1000 + 100);
+    assertSame(Idle.getInstance(), context.getState());
+    assertEquals(2, context.getDispensers().get(0).getCupsNbr());
+    context.takeCup();
+    assertFalse("Both cups are taken at once", context.isCupInside());
+  }
+
 }
@@ -0,0 +1,93 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import vendingmachine.Drink;
+import vendingmachine.DrinkCatalog;
+
+public class DrinkCatalogTest {
+
+  private List<Drink> drinks;
+  private DrinkCatalog catalog;
+
+  @Before
+  public void setUp() {
+    drinks = new ArrayList<Drink>();
+    drinks.add(new Drink("a", true, 70));
+    drinks.add(new Drink("b", false, 30));
+    drinks.add(new Drink("c", true, 70));
+    drinks.add(new Drink("d", true, 40));
+    catalog = new DrinkCatalog(drinks);
+  }
+
+  @Test
+  public void testIds() {
+    assertEquals(4, catalog.size());
+    for (int i = 0; i < drinks.size(); i++) {
+      assertSame(drinks.get(i), catalog.get(i));
+      assertEquals(i, catalog.getId(drinks.get(i)));
+    }
+    assertEquals(drinks, catalog.getDrinks());
+    assertEquals("Equal drinks must have the same id", 2, catalog.getId(new Drink("c", true, 50)));
+    assertFalse(catalog.contains(new Drink("c", false, 70)));
+  }
+
+  @Test
+  public void testPrices() {
+    assertEquals(30, catalog.getMinPrice());
+    assertFalse(catalog.areAllFree());
+    int[] expected = { 1, 3, 0, 2 }; // stable for equal prices
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], catalog.getIdByPrice(i));
+    }
+    assertTrue(new DrinkCatalog(Arrays.asList(new Drink("e", false, 0))).areAllFree());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateDrink() {
+    drinks.add(new Drink("a", true, 10));
+    new DrinkCatalog(drinks);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownDrink() {
+    catalog.getId(new Drink("z", true, 10));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testUnmodifiableDrinks() {
+    catalog.getDrinks().add(new Drink("z", true, 10));
+  }
+
+  @Test
+  public void testWithPrices() {
+    Map<Drink, Integer> prices = new HashMap<Drink, Integer>();
+    prices.put(new Drink("b", false, 0), 90);
+    DrinkCatalog repriced = catalog.withPrices(prices);
+    assertEquals(30, catalog.get(1).getPrice());
+    assertEquals(90, repriced.get(1).getPrice());
+    assertEquals(catalog.getDrinks(), repriced.getDrinks());
+    assertEquals(40, repriced.getMinPrice());
+    assertEquals(1, repriced.getIdByPrice(3));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativePrice() {
+    Map<Drink, Integer> prices = new HashMap<Drink, Integer>();
+    prices.put(drinks.get(0), -10);
+    catalog.withPrices(prices);
+  }
+
+}
@@ -0,0 +1,96 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.JMX;
+import javax.management.ObjectName;
+import javax.swing.SwingUtilities;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import vendingmachine.components.ITimer;
+import vendingmachine.components.SwingClock;
+import vendingmachine.monitoring.EdtWatchdog;
+import vendingmachine.monitoring.EventDispatchMXBean;
+
+public class EdtWatchdogTest {
+
+  private static EdtWatchdog watchdog;
+
+  @BeforeClass
+  public static void setUpClass() {
+    Configurator.setLevel("EdtWatchdog", Level.ERROR); // The slow events are expected
+    watchdog = EdtWatchdog.getInstance();
+    watchdog.install();
+    watchdog.install(); // Does nothing
+  }
+
+  @After
+  public void tearDown() {
+    watchdog.setSlowThreshold(EdtWatchdog.DEFAULT_SLOW_THRESHOLD);
+  }
+
+  @Test
+  public void testSlowHandlerAttributed() throws Exception {
+    long slowEvents = watchdog.getSlowEvents();
+    watchdog.setSlowThreshold(50);
+    SwingUtilities.invokeAndWait(EdtWatchdog.timed("slowHandler", () -> sleep(120)));
+    SwingUtilities.invokeAndWait(() -> {}); // The slow event has been recorded
+    assertEquals(slowEvents + 1, watchdog.getSlowEvents());
+    long p50 = watchdog.getHandlerLatencyP50().get("slowHandler");
+    assertTrue("p50 = " + p50, p50 >= 120000);
+  }
+
+  @Test
+  public void testFirstHandlerWins() throws Exception {
+    SwingUtilities.invokeAndWait(EdtWatchdog.timed("outer", EdtWatchdog.timed("inner", () -> {})));
+    SwingUtilities.invokeAndWait(() -> {});
+    Map<String, Long> p99 = watchdog.getHandlerLatencyP99();
+    assertTrue(p99.containsKey("outer"));
+    assertFalse(p99.containsKey("inner"));
+  }
+
+  @Test
+  public void testTimerAttributed() {
+    ITimer timer = SwingClock.getInstance().createTimer("testTimer", 10, false, () -> {});
+    timer.restart();
+    for (int i = 0; i < 100 && !watchdog.getHandlerLatencyP99().containsKey("testTimer"); i++) {
+      sleep(20);
+    }
+    assertTrue(watchdog.getHandlerLatencyP99().containsKey("testTimer"));
+  }
+
+  @Test
+  public void testMBean() throws Exception {
+    SwingUtilities.invokeAndWait(() -> {});
+    EventDispatchMXBean bean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+        new ObjectName("vendingmachine:type=EventDispatch"), EventDispatchMXBean.class);
+    assertTrue(bean.getDispatchedEvents() > 0);
+    assertTrue(bean.getLatencyP99() >= bean.getLatencyP50());
+    bean.setSlowThreshold(250);
+    assertEquals(250, watchdog.getSlowThreshold());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeThreshold() {
+    watchdog.setSlowThreshold(-1);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -1,8 +1,5 @@
 package test;
 
-import java.util.Map;
-
-import vendingmachine.Coin;
 import vendingmachine.components.IContext;
 import vendingmachine.states.Problem;
 import vendingmachine.states.State;
@@ -10,7 +7,7 @@ import vendingmachine.states.State;
 public class EmptyContext implements IContext {
 
   @Override
-  public void addChangeOut(Map<Coin, Integer> moneyToGive) {}
+  public void addChangeOut(int[] coinsNbr) {}
 
   @Override
   public void problemSolved(Problem problem) {}
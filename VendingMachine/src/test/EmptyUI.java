@@ -29,6 +29,15 @@ public class EmptyUI implements IMachineGUI, TemperatureListener {
   @Override
   public void updateUI() {}
 
+  @Override
+  public void updateServableDrinks() {}
+
+  @Override
+  public void updateAcceptedCoins() {}
+
+  @Override
+  public void updateDrinks() {}
+
   @Override
   public void enableRepair(boolean bool) {}
 
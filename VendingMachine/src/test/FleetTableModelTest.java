@@ -0,0 +1,84 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import javax.swing.event.TableModelEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import vendingmachine.components.Stock;
+import vendingmachine.components.VirtualClock;
+import vendingmachine.ui.FleetTableModel;
+
+public class FleetTableModelTest {
+
+  private static final int MACHINES = 5000;
+
+  private FleetTableModel model;
+  private TableModelEvent lastEvent;
+
+  @Before
+  public void setUp() {
+    model = new FleetTableModel();
+    VirtualClock clock = new VirtualClock();
+    for (int i = 0; i < MACHINES; i++) {
+      model.addMachine(TestMachines.createMachine(TestMachines.createChangeMachine(5),
+          new Stock(4, 5, 6, TestMachines.createDrinks(7, 3)), 1, clock));
+    }
+    model.addTableModelListener(e -> lastEvent = e);
+  }
+
+  @Test
+  public void testValues() {
+    assertEquals(MACHINES, model.getRowCount());
+    assertEquals(8, model.getColumnCount());
+    assertEquals(model.getMachine(3).getId(), model.getValueAt(3, 0));
+    assertEquals("Idle", model.getValueAt(3, 1));
+    assertEquals("-", model.getValueAt(3, 2));
+    assertEquals(5, model.getValueAt(3, 4));
+    assertEquals(4, model.getValueAt(3, 5));
+    assertEquals(6, model.getValueAt(3, 6));
+    assertEquals(3, model.getValueAt(3, 7));
+    assertFalse(model.hasProblems(3));
+  }
+
+  @Test
+  public void testOnlyRefreshedRowsChange() {
+    assertEquals(5, model.getValueAt(100, 4)); // first snapshot of row 100
+    model.refresh(0, 40);
+    assertEquals(0, lastEvent.getFirstRow());
+    assertEquals(40, lastEvent.getLastRow());
+    lastEvent = null;
+    model.refresh(0, 40);
+    assertSame("Nothing changed", null, lastEvent);
+
+    model.getMachine(2).setCupStock(0);
+    model.getMachine(100).setCupStock(0);
+    model.refresh(0, 40);
+    assertEquals(2, lastEvent.getFirstRow());
+    assertEquals(2, lastEvent.getLastRow());
+    assertEquals("NoCup", model.getValueAt(2, 1));
+    assertEquals("NoCup", model.getValueAt(2, 2));
+    assertTrue(model.hasProblems(2));
+    assertEquals(0, model.getValueAt(2, 4));
+
+    // Row 100 is not refreshed: it keeps its first snapshot
+    assertEquals(5, model.getValueAt(100, 4));
+    model.refresh(90, 110);
+    assertEquals(0, model.getValueAt(100, 4));
+  }
+
+  @Test
+  public void testRefreshOutOfRows() {
+    model.refresh(MACHINES - 2, MACHINES + 10);
+    assertEquals(MACHINES - 1, lastEvent.getLastRow());
+    lastEvent = null;
+    model.refresh(-5, -1);
+    assertSame(null, lastEvent);
+  }
+
+}
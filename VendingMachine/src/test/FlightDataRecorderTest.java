@@ -0,0 +1,125 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import vendingmachine.Coin;
+import vendingmachine.Drink;
+import vendingmachine.components.Context;
+import vendingmachine.components.Stock;
+import vendingmachine.components.VirtualClock;
+import vendingmachine.monitoring.FlightDataRecorder;
+import vendingmachine.monitoring.FlightDataRecorder.Kind;
+
+public class FlightDataRecorderTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCapacityPowerOfTwo() {
+    new FlightDataRecorder(100);
+  }
+
+  @Test
+  public void testWrapAround() {
+    FlightDataRecorder recorder = new FlightDataRecorder(4);
+    assertEquals("Last 0 event(s):", recorder.dump());
+    for (int i = 0; i < 6; i++) {
+      recorder.record(i * 1000, Kind.TEMPERATURE, 900 + i, null);
+    }
+    assertEquals(6, recorder.getRecordedNbr());
+    String[] lines = recorder.dump().split(System.lineSeparator());
+    // The oldest slot may be the one being written: it is not dumped
+    assertEquals(4, lines.length);
+    assertEquals("Last 3 event(s):", lines[0]);
+    assertEquals("   -2.000 s  TEMPERATURE 90.3", lines[1]);
+    assertEquals("    0.000 s  TEMPERATURE 90.5", lines[3]);
+  }
+
+  @Test
+  public void testDumpWhileRecording() throws Exception {
+    final FlightDataRecorder recorder = new FlightDataRecorder(8);
+    final AtomicBoolean stop = new AtomicBoolean();
+    // Record n is at n ms, with a value telling n % 1000 (in tenths)
+    Thread writer = new Thread(() -> {
+      for (long n = 0; !stop.get(); n++) {
+        recorder.record(n, Kind.TEMPERATURE, (int) (n % 1000) * 10, null);
+      }
+    });
+    writer.start();
+    try {
+      for (int d = 0; d < 20000; d++) {
+        String[] lines = recorder.dump().split(System.lineSeparator());
+        int last = lines.length - 1;
+        if (last == 0) {
+          continue;
+        }
+        int newest = parseValue(lines[last]);
+        for (int j = 1; j <= last; j++) {
+          // A torn record would mix the time of a record with the value of another
+          int offset = (int) Math.round(Double.parseDouble(lines[j].substring(0, 9)) * 1000);
+          assertEquals(lines[j], j - last, offset);
+          assertEquals(lines[j], Math.floorMod(newest + offset, 1000), parseValue(lines[j]));
+        }
+      }
+    } finally {
+      stop.set(true);
+      writer.join();
+    }
+  }
+
+  /**
+   * @return the value of a TEMPERATURE line, in degrees
+   */
+  private static int parseValue(String line) {
+    return (int) Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+  }
+
+  @Test
+  public void testRecordDoesNotAllocate() {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    FlightDataRecorder recorder = new FlightDataRecorder(256);
+    for (int i = 0; i < 100000; i++) { // warm-up
+      recorder.record(i, Kind.COIN, 50, Coin.COIN50);
+    }
+    long id = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(id);
+    for (int i = 0; i < 100000; i++) {
+      recorder.record(i, Kind.COIN, 50, Coin.COIN50);
+    }
+    long allocated = threads.getThreadAllocatedBytes(id) - before;
+    assertTrue(allocated + " bytes allocated", allocated < 1024);
+  }
+
+  @Test
+  public void testMachineEvents() {
+    Map<Drink, Integer> drinkQty = new LinkedHashMap<Drink, Integer>();
+    drinkQty.put(new Drink("a", true, 30), 5);
+    drinkQty.put(new Drink("b", true, 40), 5);
+    VirtualClock clock = new VirtualClock();
+    Context machine = TestMachines.createMachine(TestMachines.createChangeMachine(5),
+        new Stock(5, 5, 5, drinkQty), 1, clock);
+
+    machine.coinInserted(Coin.COIN50);
+    clock.advance(1000);
+    machine.drinkButton(machine.getDrinks().get(1));
+    machine.more();
+    machine.confirm();
+    clock.advance(60000);
+    machine.takeCup();
+    String dump = machine.dumpFlightData();
+    assertTrue(dump, dump.contains("COIN " + Coin.COIN50.TEXT));
+    assertTrue(dump, dump.contains("DRINK b"));
+    assertTrue(dump, dump.contains("STATE Preparing"));
+    assertTrue(dump, dump.indexOf("MORE") < dump.indexOf("CONFIRM"));
+    assertTrue(dump, dump.indexOf("CONFIRM") < dump.lastIndexOf("TAKE_CUP"));
+    assertTrue(dump, dump.contains("TEMPERATURE")); // one sample per degree
+  }
+
+}
@@ -0,0 +1,107 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import vendingmachine.Coin;
+import vendingmachine.Drink;
+import vendingmachine.components.ChangeMachine;
+import vendingmachine.components.Context;
+import vendingmachine.components.Stock;
+import vendingmachine.components.VirtualClock;
+
+public class FlightRecorderTest {
+
+  private ChangeMachine changeMachine;
+  private Stock stock;
+
+  @Before
+  public void setUp() {
+    changeMachine = TestMachines.createChangeMachine(5);
+    Map<Drink, Integer> drinkQty = new LinkedHashMap<Drink, Integer>();
+    drinkQty.put(new Drink("a", true, 30), 5);
+    drinkQty.put(new Drink("b", true, 40), 5);
+    stock = new Stock(5, 5, 5, drinkQty);
+  }
+
+  /**
+   * Orders a drink and takes it while recording the events of the machine.
+   */
+  private List<RecordedEvent> recordOrder() throws IOException {
+    final Path file = Files.createTempFile("vendingmachine", ".jfr");
+    try (Recording recording = new Recording()) {
+      for (String name: new String[] { "StateDwell", "ChangeSolver", "Preparation",
+          "Problem", "UIRefresh" }) {
+        recording.enable("vendingmachine." + name);
+      }
+      recording.start();
+      VirtualClock clock = new VirtualClock();
+      Context machine = TestMachines.createMachine(changeMachine, stock, 1, clock);
+      machine.coinInserted(Coin.COIN50);
+      machine.drinkButton(machine.getDrinks().get(1)); // Costs 0.40 euro
+      machine.confirm();
+      clock.advance(60000);
+      machine.takeCup();
+      machine.setCupStock(0);
+      recording.stop();
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+    List<RecordedEvent> found = new ArrayList<RecordedEvent>();
+    for (RecordedEvent event: events) {
+      if (event.getEventType().getName().equals("vendingmachine." + name)) {
+        found.add(event);
+      }
+    }
+    return found;
+  }
+
+  @Test
+  public void testEvents() throws IOException {
+    List<RecordedEvent> events = recordOrder();
+
+    List<RecordedEvent> states = ofType(events, "StateDwell");
+    assertEquals("Idle", states.get(0).getString("state"));
+    assertEquals("Asking", states.get(0).getString("nextState"));
+    assertEquals("Preparing", states.get(1).getString("nextState"));
+    for (int i = 1; i < states.size(); i++) {
+      assertEquals(states.get(i - 1).getString("nextState"), states.get(i).getString("state"));
+    }
+
+    List<RecordedEvent> changes = ofType(events, "ChangeSolver");
+    assertTrue(changes.size() > 0);
+    assertTrue(changes.get(changes.size() - 1).getBoolean("possible"));
+
+    List<RecordedEvent> preparations = ofType(events, "Preparation");
+    assertEquals(1, preparations.size());
+    assertEquals("b", preparations.get(0).getString("drink"));
+
+    List<RecordedEvent> problems = ofType(events, "Problem");
+    assertEquals(1, problems.size());
+    assertEquals("NoCup", problems.get(0).getString("problem"));
+    assertTrue(problems.get(0).getBoolean("raised"));
+
+    assertTrue(ofType(events, "UIRefresh").size() > 0);
+  }
+
+}
@@ -0,0 +1,68 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import vendingmachine.CoinSet;
+import vendingmachine.Drink;
+import vendingmachine.DrinkCatalog;
+import vendingmachine.components.GreedyChangePolicy;
+import vendingmachine.simulation.Demand;
+import vendingmachine.simulation.FloatOptimizer;
+import vendingmachine.simulation.MachineSimulation;
+import vendingmachine.simulation.SimulationResult;
+
+public class FloatOptimizerTest {
+
+  private static final double TARGET = 0.02;
+
+  private FloatOptimizer optimizer;
+
+  @Before
+  public void setUp() {
+    DrinkCatalog catalog = new DrinkCatalog(Arrays.asList(new Drink("Coffee", true, 40),
+        new Drink("Soup", false, 65), new Drink("Tea", true, 35)));
+    Demand demand = new Demand(60, new double[] { 3, 1, 2 }, 0.3);
+    // One hour of service
+    MachineSimulation simulation = new MachineSimulation(catalog, CoinSet.EURO, GreedyChangePolicy.getInstance(),
+        demand, 3600 * 1000, 1);
+    optimizer = new FloatOptimizer(simulation, 8, TARGET, 42);
+  }
+
+  @Test
+  public void testSameSeedSameResult() {
+    int[] coinsFloat = { 0, 0, 2, 2, 2, 2, 2, 2 };
+    SimulationResult result = optimizer.evaluate(coinsFloat);
+    assertEquals(result.toString(), optimizer.evaluate(coinsFloat).toString());
+    assertEquals(result.getClients(), result.getServed() + result.getChangeRefusals()
+        + result.getGaveUp());
+    assertTrue(result.getClients() > 8 * 40);
+  }
+
+  @Test
+  public void testEmptyFloat() {
+    SimulationResult result = optimizer.evaluate(new int[8]);
+    assertTrue("The first clients can't get change", result.getChangeRefusals() > 0);
+  }
+
+  @Test
+  public void testOptimize() {
+    int[] best = optimizer.optimize(100);
+    assertNotNull(best);
+    assertTrue(optimizer.meetsTarget(best));
+    for (int i = 0; i < best.length; i++) {
+      if (best[i] > 0) {
+        int[] smaller = best.clone();
+        smaller[i]--;
+        assertTrue("The float should be minimal", !optimizer.meetsTarget(smaller));
+      }
+    }
+  }
+
+}
@@ -7,7 +7,11 @@ import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 
+import vendingmachine.components.HeaterController;
 import vendingmachine.components.HeatingSystem;
+import vendingmachine.components.PredictiveHeaterController;
+import vendingmachine.components.ThermostatController;
+import vendingmachine.components.VirtualClock;
 
 public class HeatingSystemTest {
 
@@ -65,4 +69,47 @@ public class HeatingSystemTest {
     assertEquals(93, heatSys.getTemperature(), 10e-6);
   }
 
+  /**
+   * Orders bursts of drinks at the same times each day, and returns the time spent
+   * with cold water during the last day.
+   */
+  private static long getColdSecondsOfLastDay(HeaterController controller) {
+    VirtualClock clock = new VirtualClock();
+    HeatingSystem heatingSystem = new HeatingSystem(new EmptyContext(), clock);
+    heatingSystem.setController(controller);
+    long coldSeconds = 0;
+    for (int day = 0; day < 3; day++) {
+      coldSeconds = heatingSystem.getColdSeconds();
+      for (int hour: new int[] { 8, 12, 16 }) {
+        clock.advance((day * 24 + hour) * 3600 * 1000L - clock.getTime());
+        for (int i = 0; i < 10; i++) { // a rush: one order every 8 seconds
+          heatingSystem.drinkOrdered();
+          clock.advance(8000);
+        }
+      }
+    }
+    clock.advance(3 * 24 * 3600 * 1000L - clock.getTime());
+    return heatingSystem.getColdSeconds() - coldSeconds;
+  }
+
+  @Test
+  public void testPredictiveController() {
+    long thermostat = getColdSecondsOfLastDay(ThermostatController.getInstance());
+    long predictive = getColdSecondsOfLastDay(new PredictiveHeaterController());
+    assertTrue("The rushes should cool the water down", thermostat > 0);
+    assertTrue(predictive + " cold seconds instead of " + thermostat, predictive < thermostat);
+  }
+
+  @Test
+  public void testPreheating() {
+    PredictiveHeaterController controller = new PredictiveHeaterController();
+    assertEquals(96, controller.getTargetTemperature(0), 10e-6);
+    for (int i = 0; i < 60; i++) {
+      controller.drinkOrdered(600 + i * 5);
+    }
+    // the same slot of the next day is expected to be busy, and so is the end of this one
+    assertTrue(controller.getTargetTemperature(24 * 3600 + 500) > 96);
+    assertEquals(96, controller.getTargetTemperature(12 * 3600), 10e-6);
+  }
+
 }
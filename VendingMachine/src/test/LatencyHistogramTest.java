@@ -0,0 +1,53 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import vendingmachine.monitoring.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testExactBelow32() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 20; i++) {
+      histogram.record(i);
+    }
+    assertEquals(20, histogram.getCount());
+    assertEquals(10, histogram.getPercentile(50));
+    assertEquals(20, histogram.getPercentile(99));
+    assertEquals(1, histogram.getPercentile(0));
+  }
+
+  @Test
+  public void testPercentilesWithin3Percent() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100000; i++) {
+      histogram.record(i * 10L);
+    }
+    long p50 = histogram.getPercentile(50);
+    long p99 = histogram.getPercentile(99);
+    assertTrue("p50 = " + p50, p50 >= 500000 && p50 <= 500000 * 1.03);
+    assertTrue("p99 = " + p99, p99 >= 990000 && p99 <= 990000 * 1.03);
+  }
+
+  @Test
+  public void testExtremesAndReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentile(99));
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(0, histogram.getPercentile(50));
+    assertTrue(histogram.getPercentile(100) > 3600L * 1000000);
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongPercentile() {
+    new LatencyHistogram().getPercentile(101);
+  }
+
+}
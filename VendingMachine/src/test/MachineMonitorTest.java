@@ -0,0 +1,125 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import vendingmachine.Coin;
+import vendingmachine.Drink;
+import vendingmachine.components.Context;
+import vendingmachine.components.Stock;
+import vendingmachine.components.VirtualClock;
+import vendingmachine.monitoring.FleetStatistics;
+import vendingmachine.monitoring.MachineMonitor;
+
+public class MachineMonitorTest {
+
+  private static final Executor DIRECT = Runnable::run;
+
+  private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+  private VirtualClock clock;
+  private Context machine;
+  private ObjectName name;
+
+  @Before
+  public void setUp() {
+    Map<Drink, Integer> drinkQty = new LinkedHashMap<Drink, Integer>();
+    drinkQty.put(new Drink("a", true, 30), 5);
+    drinkQty.put(new Drink("b", true, 40), 5);
+    clock = new VirtualClock();
+    machine = TestMachines.createMachine(TestMachines.createChangeMachine(5),
+        new Stock(5, 5, 5, drinkQty), 1, clock);
+    name = MachineMonitor.register(machine, DIRECT);
+  }
+
+  @After
+  public void tearDown() {
+    MachineMonitor.unregister(machine, DIRECT);
+  }
+
+  @Test
+  public void testMachineAttributes() throws Exception {
+    assertTrue(server.isRegistered(name));
+    assertEquals("Idle", server.getAttribute(name, "State"));
+    assertEquals(5, server.getAttribute(name, "Cups"));
+
+    machine.coinInserted(Coin.COIN50);
+    machine.drinkButton(machine.getDrinks().get(1)); // Costs 0.40 euro
+    machine.confirm();
+    assertEquals("Preparing", server.getAttribute(name, "State"));
+    assertEquals(1L, server.getAttribute(name, "PlacedOrders"));
+    assertEquals(0L, server.getAttribute(name, "ServedDrinks"));
+    clock.advance(60000);
+    machine.takeCup();
+    assertEquals(1L, server.getAttribute(name, "ServedDrinks"));
+    assertEquals(4, server.getAttribute(name, "Cups"));
+
+    TabularData drinks = (TabularData) server.getAttribute(name, "DrinkStock");
+    CompositeData b = drinks.get(new Object[] { "b" });
+    assertEquals(4, b.get("value"));
+    TabularData coins = (TabularData) server.getAttribute(name, "CoinStock");
+    assertEquals(6, coins.get(new Object[] { Coin.COIN50.TEXT }).get("value"));
+  }
+
+  @Test
+  public void testOperations() throws Exception {
+    machine.setCupStock(0);
+    assertArrayEquals(new String[] { "NoCup" }, (String[]) server.getAttribute(name, "Problems"));
+    machine.setCupStock(5);
+    assertEquals(0, ((String[]) server.getAttribute(name, "Problems")).length);
+
+    server.invoke(name, "resetTemperature", null, null);
+    assertEquals(machine.getHeatingSystem().getTemperature(),
+        (Double) server.getAttribute(name, "Temperature"), 0);
+    server.invoke(name, "repairStuckCoins", null, null);
+    assertEquals("Idle", server.getAttribute(name, "State"));
+  }
+
+  @Test
+  public void testFleet() throws Exception {
+    FleetStatistics fleet = FleetStatistics.getInstance();
+    ObjectName fleetName = new ObjectName("vendingmachine:type=Fleet");
+    assertTrue(server.isRegistered(fleetName));
+    long machines = fleet.getMachines();
+    long placed = fleet.getPlacedOrders();
+    long sales = fleet.getSales();
+    long raised = fleet.getProblemsRaised();
+    long active = fleet.getActiveProblems();
+
+    machine.coinInserted(Coin.COIN50);
+    machine.drinkButton(machine.getDrinks().get(1));
+    machine.confirm();
+    assertEquals(placed + 1, server.getAttribute(fleetName, "PlacedOrders"));
+    assertEquals(sales + 40, server.getAttribute(fleetName, "Sales"));
+    clock.advance(60000);
+    machine.takeCup();
+
+    machine.setCupStock(0);
+    assertEquals(raised + 1, fleet.getProblemsRaised());
+    assertEquals(active + 1, fleet.getActiveProblems());
+
+    MachineMonitor.unregister(machine, DIRECT);
+    assertFalse(server.isRegistered(name));
+    assertEquals(machines - 1, fleet.getMachines());
+    assertEquals(active, fleet.getActiveProblems());
+    machine.setCupStock(5); // not reported anymore
+    assertEquals(active, fleet.getActiveProblems());
+    name = MachineMonitor.register(machine, DIRECT);
+  }
+
+}
@@ -0,0 +1,36 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import vendingmachine.MoneyFormat;
+import vendingmachine.Utils;
+
+public class MoneyFormatTest {
+
+  @Test
+  public void testSameTextAsBefore() {
+    MoneyFormat format = new MoneyFormat("Price: ", "!");
+    for (int amount: new int[] { 0, 1, 5, 40, 120, 275, MoneyFormat.MAX_CACHED_AMOUNT,
+        MoneyFormat.MAX_CACHED_AMOUNT + 1, -30 }) {
+      assertEquals("Price: " + amount / 100.0 + " " + Utils.EURO + "!", format.format(amount));
+    }
+    assertEquals("0.5 " + Utils.EURO, MoneyFormat.toEuros(50));
+  }
+
+  @Test
+  public void testTextsReused() {
+    MoneyFormat format = new MoneyFormat("", " entered");
+    assertSame(format.format(130), format.format(130));
+    assertSame(MoneyFormat.toEuros(MoneyFormat.MAX_CACHED_AMOUNT),
+        MoneyFormat.toEuros(MoneyFormat.MAX_CACHED_AMOUNT));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullPrefix() {
+    new MoneyFormat(null, "");
+  }
+
+}
@@ -0,0 +1,62 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import vendingmachine.SoundLoader;
+import vendingmachine.components.Context;
+import vendingmachine.components.SwingClock;
+import vendingmachine.ui.RenderingBenchmark;
+
+public class RenderingBenchmarkTest {
+
+  private Context machine;
+
+  @Before
+  public void setUp() {
+    SoundLoader.setMuted(true);
+    machine = TestMachines.createMachine(SwingClock.getInstance());
+  }
+
+  @After
+  public void tearDown() {
+    SoundLoader.setMuted(false);
+  }
+
+  @Test
+  public void testPaintHeadless() throws Exception {
+    RenderingBenchmark.Result[] results = new RenderingBenchmark.Result[2];
+    SwingUtilities.invokeAndWait(() -> {
+      RenderingBenchmark benchmark = new RenderingBenchmark(machine);
+      results[0] = benchmark.paint(640, 480, 2, 5);
+      results[1] = benchmark.paint(1024, 768, 0, 3);
+    });
+    assertEquals(5, results[0].getFrames());
+    assertEquals(3, results[1].getFrames());
+    for (RenderingBenchmark.Result result: results) {
+      assertTrue(result.getMeanMicros() > 0);
+      assertTrue(result.getP99Micros() >= result.getP50Micros());
+      assertTrue(result.getBytesPerFrame() >= 0);
+    }
+  }
+
+  @Test
+  public void testWrongSize() throws Exception {
+    boolean[] refused = new boolean[1];
+    SwingUtilities.invokeAndWait(() -> {
+      try {
+        new RenderingBenchmark(machine).paint(0, 480, 0, 1);
+      } catch (IllegalArgumentException e) {
+        refused[0] = true;
+      }
+    });
+    assertTrue(refused[0]);
+  }
+
+}
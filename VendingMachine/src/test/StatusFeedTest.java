@@ -0,0 +1,243 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import vendingmachine.components.Context;
+import vendingmachine.components.Stock;
+import vendingmachine.components.VirtualClock;
+import vendingmachine.remote.StatusDelta;
+import vendingmachine.remote.StatusFeed;
+import vendingmachine.remote.StatusListener;
+
+public class StatusFeedTest {
+
+  private static final Executor DIRECT = Runnable::run;
+
+  /**
+   * The fields of a machine: 6 fields, 8 coins and 2 drinks.
+   */
+  private static final int FIELDS = 16;
+
+  private Context machine;
+  private Context otherMachine;
+  private StatusFeed feed;
+
+  /**
+   * The deltas received by the listener, one Map (by machine id, then by field)
+   * per call of the listener.
+   */
+  private final BlockingQueue<Map<Integer, Map<Integer, Integer>>> deliveries =
+      new LinkedBlockingQueue<Map<Integer, Map<Integer, Integer>>>();
+
+  @Before
+  public void setUp() {
+    VirtualClock clock = new VirtualClock();
+    machine = createMachine(clock);
+    otherMachine = createMachine(clock);
+    feed = new StatusFeed();
+    feed.addMachine(machine, DIRECT);
+    feed.addMachine(otherMachine, DIRECT);
+  }
+
+  private static Context createMachine(VirtualClock clock) {
+    return TestMachines.createMachine(TestMachines.createChangeMachine(5),
+        new Stock(5, 5, 5, TestMachines.createDrinks(7, 3)), 1, clock);
+  }
+
+  @After
+  public void tearDown() {
+    feed.close();
+  }
+
+  private static Map<Integer, Map<Integer, Integer>> decode(ByteBuffer deltas) {
+    final Map<Integer, Map<Integer, Integer>> machines =
+        new HashMap<Integer, Map<Integer, Integer>>();
+    final StatusDelta delta = new StatusDelta();
+    while (delta.read(deltas)) {
+      final Map<Integer, Integer> fields = new HashMap<Integer, Integer>();
+      for (int i = 0; i < delta.getFieldsNbr(); i++) {
+        fields.put(delta.getField(i), delta.getValue(i));
+      }
+      assertNull("One delta per machine", machines.put(delta.getMachineId(), fields));
+    }
+    return machines;
+  }
+
+  private Map<Integer, Map<Integer, Integer>> nextDelivery() throws InterruptedException {
+    final Map<Integer, Map<Integer, Integer>> delivery = deliveries.poll(5, TimeUnit.SECONDS);
+    assertTrue("No delivery", delivery != null);
+    return delivery;
+  }
+
+  @Test
+  public void testFirstDeltaIsComplete() throws Exception {
+    feed.subscribe(deltas -> deliveries.add(decode(deltas)));
+    feed.sample();
+    final Map<Integer, Map<Integer, Integer>> delivery = nextDelivery();
+    assertEquals(2, delivery.size());
+    final Map<Integer, Integer> fields = delivery.get(machine.getId());
+    assertEquals(FIELDS, fields.size());
+    assertEquals("Idle", StatusDelta.getStateName(fields.get(StatusDelta.STATE)));
+    assertEquals(0, (int) fields.get(StatusDelta.PROBLEMS));
+    assertEquals(Math.round(machine.getHeatingSystem().getTemperature() * 10),
+        (long) fields.get(StatusDelta.TEMPERATURE));
+    assertEquals(5, (int) fields.get(StatusDelta.CUPS));
+    assertEquals(5, (int) fields.get(StatusDelta.FIRST_COIN + 7));
+    assertEquals(7, (int) fields.get(StatusDelta.FIRST_DRINK));
+    assertEquals(3, (int) fields.get(StatusDelta.FIRST_DRINK + 1));
+  }
+
+  @Test
+  public void testOnlyChangedFields() throws Exception {
+    feed.subscribe(deltas -> deliveries.add(decode(deltas)));
+    feed.sample();
+    nextDelivery();
+    feed.sample();
+    assertNull("Nothing changed", deliveries.poll(100, TimeUnit.MILLISECONDS));
+
+    machine.setDrinkStock(machine.getDrinks().get(1), 2);
+    feed.sample();
+    Map<Integer, Map<Integer, Integer>> delivery = nextDelivery();
+    assertEquals(1, delivery.size());
+    Map<Integer, Integer> fields = delivery.get(machine.getId());
+    assertEquals(1, fields.size());
+    assertEquals(2, (int) fields.get(StatusDelta.FIRST_DRINK + 1));
+
+    otherMachine.setCupStock(0);
+    feed.sample();
+    fields = nextDelivery().get(otherMachine.getId());
+    assertEquals(0, (int) fields.get(StatusDelta.CUPS));
+    final int problems = fields.get(StatusDelta.PROBLEMS);
+    assertEquals(1, Integer.bitCount(problems));
+    assertEquals("NoCup", StatusDelta.getStateName(Integer.numberOfTrailingZeros(problems)));
+  }
+
+  @Test
+  public void testSlowSubscriberIsCoalesced() throws Exception {
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    feed.sample();
+    final StatusFeed.Subscription subscription = feed.subscribe(deltas -> {
+      deliveries.add(decode(deltas));
+      entered.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    assertTrue(entered.await(5, TimeUnit.SECONDS));
+    assertEquals(2, nextDelivery().size());
+
+    // The subscriber is busy: three changes of the cups are merged into one delta
+    for (int cups = 4; cups >= 2; cups--) {
+      machine.setCupStock(cups);
+      feed.sample();
+    }
+    assertEquals(2, subscription.getCoalescedChanges());
+    release.countDown();
+    final Map<Integer, Map<Integer, Integer>> delivery = nextDelivery();
+    assertEquals(1, delivery.size());
+    assertEquals(1, delivery.get(machine.getId()).size());
+    assertEquals(2, (int) delivery.get(machine.getId()).get(StatusDelta.CUPS));
+  }
+
+  @Test
+  public void testUnsubscribe() throws Exception {
+    final CountDownLatch unsubscribed = new CountDownLatch(1);
+    final StatusFeed.Subscription subscription = feed.subscribe(new StatusListener() {
+      @Override
+      public void statusChanged(ByteBuffer deltas) {
+        deliveries.add(decode(deltas));
+      }
+
+      @Override
+      public void unsubscribed() {
+        unsubscribed.countDown();
+      }
+    });
+    subscription.close();
+    assertTrue(unsubscribed.await(5, TimeUnit.SECONDS));
+    feed.sample();
+    assertNull(deliveries.poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testUnsubscribeBlockedSubscriber() throws Exception {
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch unsubscribed = new CountDownLatch(1);
+    feed.sample();
+    final StatusFeed.Subscription subscription = feed.subscribe(new StatusListener() {
+      @Override
+      public void statusChanged(ByteBuffer deltas) {
+        entered.countDown();
+        try {
+          new CountDownLatch(1).await(); // never released, like a client not reading
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      @Override
+      public void unsubscribed() {
+        unsubscribed.countDown();
+      }
+    });
+    assertTrue(entered.await(5, TimeUnit.SECONDS));
+    subscription.close();
+    assertTrue(unsubscribed.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testSocket() throws Exception {
+    final InetSocketAddress address =
+        feed.listen(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    try (SocketChannel channel = SocketChannel.open(address)) {
+      feed.sample();
+      Map<Integer, Map<Integer, Integer>> delivery = decode(readMessage(channel));
+      assertEquals(2, delivery.size());
+      assertEquals(FIELDS, delivery.get(otherMachine.getId()).size());
+
+      otherMachine.setSpoonsStock(1);
+      feed.sample();
+      delivery = decode(readMessage(channel));
+      assertFalse(delivery.containsKey(machine.getId()));
+      assertEquals(1, (int) delivery.get(otherMachine.getId()).get(StatusDelta.SPOONS));
+    }
+  }
+
+  private static ByteBuffer readMessage(SocketChannel channel) throws Exception {
+    final ByteBuffer size = ByteBuffer.allocate(4);
+    readFully(channel, size);
+    final ByteBuffer message = ByteBuffer.allocate(size.getInt());
+    readFully(channel, message);
+    return message;
+  }
+
+  private static void readFully(SocketChannel channel, ByteBuffer buffer) throws Exception {
+    while (buffer.hasRemaining()) {
+      assertTrue("Connection closed", channel.read(buffer) >= 0);
+    }
+    buffer.flip();
+  }
+
+}
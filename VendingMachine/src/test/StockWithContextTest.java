@@ -1,7 +1,11 @@
 package test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.Hashtable;
 import java.util.LinkedHashMap;
@@ -17,15 +21,20 @@ import vendingmachine.SoundLoader;
 import vendingmachine.components.Change;
 import vendingmachine.components.ChangeMachine;
 import vendingmachine.components.Context;
+import vendingmachine.components.Restock;
 import vendingmachine.components.Stock;
+import vendingmachine.components.StockReservation;
+import vendingmachine.states.Asking;
 import vendingmachine.states.Idle;
 import vendingmachine.states.NoCup;
 import vendingmachine.states.NoSpoon;
+import vendingmachine.states.Preparing;
 
 public class StockWithContextTest {
 
   private Context context;
   private Stock stock;
+  private ChangeMachine cm;
 
   @BeforeClass
   public static void setUpClass() {
@@ -44,7 +53,7 @@ public class StockWithContextTest {
       acceptedCoins.put(Coin.COINS.get(i), acceptedCoinsTab[i]);
     }
     Change change = new Change(coinsStock);
-    ChangeMachine cm = new ChangeMachine(change,acceptedCoins);
+    cm = new ChangeMachine(change,acceptedCoins);
 
     // Initialize Stock
     String[] drinkNameTab = { "a", "b", "c", "d", "e" };
@@ -132,4 +141,124 @@ public class StockWithContextTest {
     assertSame(Idle.getInstance(), context.getState());
   }
 
+  @Test
+  public void testReservation() {
+    Drink drink = context.getDrinks().get(0);
+    StockReservation reservation = stock.reserve(drink);
+    assertTrue(reservation.isSpoonReserved());
+    assertFalse(stock.isDrinkAvailable(drink));
+    assertTrue(stock.isDrinkInStock(drink));
+    assertNull(stock.reserve(drink));
+
+    assertTrue(stock.reserveSugar(reservation, 3));
+    assertFalse(stock.isSugarAvailable(3));
+    stock.commit(reservation, context);
+    assertFalse(reservation.isActive());
+    assertEquals(0, stock.getDrinkQty(drink));
+    assertEquals(2, stock.getSugarCubesNbr());
+    assertEquals(4, stock.getSpoonsNbr());
+    assertEquals(4, stock.getCupsNbr());
+  }
+
+  @Test
+  public void testReleaseReservation() {
+    Drink drink = context.getDrinks().get(2);
+    StockReservation reservation = stock.reserve(drink);
+    stock.reserveSugar(reservation, 5);
+    assertFalse(stock.isSugarAvailable(1));
+    stock.release(reservation);
+    stock.release(reservation); // already over: nothing happens
+    assertTrue(stock.isSugarAvailable(5));
+    assertEquals(2, stock.getDrinkQty(drink));
+    assertEquals(5, stock.getCupsNbr());
+  }
+
+  @Test
+  public void testReservedWhileChoosingSugar() {
+    Drink drink = context.getDrinks().get(2); // 2 in stock, costs 0.70 euro
+    context.coinInserted(Coin.COIN100);
+    context.drinkButton(drink);
+    assertSame(Asking.getInstance(), context.getState());
+    assertTrue(context.isDrinkAvailable(drink));
+    context.setCupStock(4);
+    stock.removeDrink(drink); // the last one is reserved
+    assertFalse(context.isDrinkAvailable(drink));
+
+    context.cancel();
+    assertSame(Idle.getInstance(), context.getState());
+    assertEquals(0, context.getAmountInside());
+    assertTrue(context.isDrinkAvailable(drink));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetStockBelowReserved() {
+    stock.reserve(context.getDrinks().get(1));
+    context.setCupStock(0);
+  }
+
+  private Restock restock(int coin10, int drinkA, int cups, int sugar, int spoons) {
+    Map<Coin, Integer> coins = new Hashtable<Coin, Integer>();
+    coins.put(Coin.COIN10, coin10);
+    Map<Drink, Integer> drinks = new Hashtable<Drink, Integer>();
+    drinks.put(context.getDrinks().get(0), drinkA);
+    return new Restock(coins, drinks, cups, sugar, spoons);
+  }
+
+  @Test
+  public void testRestock() {
+    context.setCupStock(0);
+    assertSame(NoCup.getInstance(), context.getState());
+
+    long version = cm.getChangeVersion();
+    context.restock(restock(3, 2, 10, -5, 1));
+    assertTrue("The coins changed", cm.getChangeVersion() != version);
+    assertSame(Idle.getInstance(), context.getState());
+    assertEquals(8, cm.getCoinsStock(Coin.COIN10));
+    assertEquals(3, stock.getDrinkQty(context.getDrinks().get(0)));
+    assertEquals(10, stock.getCupsNbr());
+    assertEquals(0, stock.getSugarCubesNbr());
+    assertEquals(6, stock.getSpoonsNbr());
+
+    context.restock(restock(0, 0, -10, 0, 0));
+    assertSame(NoCup.getInstance(), context.getState());
+  }
+
+  @Test
+  public void testRestockAllOrNothing() {
+    long version = cm.getChangeVersion();
+    try {
+      context.restock(restock(-2, 5, 10, 1, -6)); // only 5 spoons
+    } catch (IllegalArgumentException e) {
+      assertEquals(version, cm.getChangeVersion());
+      assertEquals(5, cm.getCoinsStock(Coin.COIN10));
+      assertEquals(1, stock.getDrinkQty(context.getDrinks().get(0)));
+      assertEquals(5, stock.getCupsNbr());
+      assertEquals(5, stock.getSpoonsNbr());
+      return;
+    }
+    fail("The spoons can't be removed");
+  }
+
+  @Test
+  public void testRestockDuringOrder() {
+    Drink drink = context.getDrinks().get(2); // 2 in stock, costs 0.70 euro
+    context.coinInserted(Coin.COIN100);
+    context.drinkButton(drink);
+    assertSame(Asking.getInstance(), context.getState());
+
+    Map<Drink, Integer> drinks = new Hashtable<Drink, Integer>();
+    drinks.put(drink, -1);
+    context.restock(new Restock(new Hashtable<Coin, Integer>(), drinks, 0, 0, 0));
+    assertSame(Asking.getInstance(), context.getState());
+    assertEquals(100, context.getAmountInside());
+    try {
+      context.restock(new Restock(new Hashtable<Coin, Integer>(), drinks, 0, 0, 0));
+      fail("The last drink is reserved");
+    } catch (IllegalArgumentException e) {
+      assertEquals(1, stock.getDrinkQty(drink));
+    }
+    context.confirm();
+    assertSame(Preparing.getInstance(), context.getState());
+  }
+
 }
\ No newline at end of file
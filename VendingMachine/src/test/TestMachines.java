@@ -0,0 +1,89 @@
+package test;
+
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import vendingmachine.Coin;
+import vendingmachine.Drink;
+import vendingmachine.components.Change;
+import vendingmachine.components.ChangeMachine;
+import vendingmachine.components.Context;
+import vendingmachine.components.IClock;
+import vendingmachine.components.Stock;
+
+/**
+ * Builds the machines shared by the tests and their parts: every Coin is accepted.
+ */
+public final class TestMachines {
+
+  /**
+   * @param coinsNbr the stock of each Coin
+   * @return the same stock for every Coin
+   */
+  public static Map<Coin, Integer> createCoinsStock(int coinsNbr) {
+    Map<Coin, Integer> coinsStock = new Hashtable<Coin, Integer>();
+    for (Coin coin: Coin.COINS) {
+      coinsStock.put(coin, coinsNbr);
+    }
+    return coinsStock;
+  }
+
+  /**
+   * @return every Coin accepted
+   */
+  public static Map<Coin, Boolean> createAcceptedCoins() {
+    Map<Coin, Boolean> acceptedCoins = new Hashtable<Coin, Boolean>();
+    for (Coin coin: Coin.COINS) {
+      acceptedCoins.put(coin, true);
+    }
+    return acceptedCoins;
+  }
+
+  /**
+   * @param coinsNbr the stock of each Coin
+   * @return a ChangeMachine accepting every Coin
+   */
+  public static ChangeMachine createChangeMachine(int coinsNbr) {
+    return new ChangeMachine(new Change(createCoinsStock(coinsNbr)), createAcceptedCoins());
+  }
+
+  /**
+   * @param coffeesNbr the stock of Coffee
+   * @param soupsNbr the stock of Soup
+   * @return the stock of a Coffee (0.40 euro, sugared) and a Soup (0.65 euro),
+   *     in this order
+   */
+  public static Map<Drink, Integer> createDrinks(int coffeesNbr, int soupsNbr) {
+    Map<Drink, Integer> drinkQty = new LinkedHashMap<Drink, Integer>();
+    drinkQty.put(new Drink("Coffee", true, 40), coffeesNbr);
+    drinkQty.put(new Drink("Soup", false, 65), soupsNbr);
+    return drinkQty;
+  }
+
+  /**
+   * @param changeMachine the ChangeMachine of the machine
+   * @param stock the Stock of the machine
+   * @param dispensersNbr the number of dispensers
+   * @param clock the clock of the machine
+   * @return a machine on an EmptyUI, whose coins never get stuck
+   */
+  public static Context createMachine(ChangeMachine changeMachine, Stock stock,
+      int dispensersNbr, IClock clock) {
+    Context machine = new Context(changeMachine, stock, 0, dispensersNbr, clock);
+    machine.setUI(new EmptyUI());
+    return machine;
+  }
+
+  /**
+   * @param clock the clock of the machine
+   * @return a machine with one dispenser, 5 of each Coin, 5 Coffee, 5 Soup and 5 of
+   *     each other item
+   */
+  public static Context createMachine(IClock clock) {
+    return createMachine(createChangeMachine(5), new Stock(5, 5, 5, createDrinks(5, 5)), 1, clock);
+  }
+
+  private TestMachines() {}
+
+}
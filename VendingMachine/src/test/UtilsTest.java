@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotSame;
 
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Map;
 
@@ -11,6 +12,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import vendingmachine.Coin;
+import vendingmachine.CoinSet;
 import vendingmachine.Utils;
 
 public class UtilsTest {
@@ -33,6 +35,16 @@ public class UtilsTest {
     assertEquals(0, Utils.totalValue(hashtable));
   }
 
+  @Test
+  public void testResetCoinsMapOfCoinSet() {
+    Coin token = new Coin(3, "3 tokens");
+    Map<Coin, Integer> tokens = new Hashtable<Coin, Integer>();
+    tokens.put(token, 4);
+    Utils.resetCoinsMap(tokens, new CoinSet(Arrays.asList(token, new Coin(1, "1 token"))));
+    assertEquals(2, tokens.size());
+    assertEquals(0, Utils.totalValue(tokens));
+  }
+
   @Test
   public void testCopy() {
     Map<Coin, Integer> tableCopy = Utils.copy(hashtable);
@@ -0,0 +1,41 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import vendingmachine.components.ITimer;
+import vendingmachine.components.VirtualClock;
+
+public class VirtualClockTest {
+
+  @Test
+  public void testTimers() {
+    VirtualClock clock = new VirtualClock();
+    List<String> actions = new ArrayList<String>();
+    ITimer once = clock.createTimer("once", 1500, false, () -> actions.add("once " + clock.getTime()));
+    ITimer repeated = clock.createTimer("every", 1000, true, () -> actions.add("every " + clock.getTime()));
+    once.restart();
+    repeated.restart();
+
+    clock.advance(2000);
+    assertEquals(2000, clock.getTime());
+    assertEquals("[every 1000, once 1500, every 2000]", actions.toString());
+
+    once.restart(); // due at 3500
+    repeated.stop();
+    clock.advance(500);
+    once.restart(); // due at 4000 instead
+    clock.advance(5000);
+    assertEquals("[every 1000, once 1500, every 2000, once 4000]", actions.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGoBack() {
+    new VirtualClock().advance(-1);
+  }
+
+}
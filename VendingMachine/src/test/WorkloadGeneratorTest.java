@@ -0,0 +1,103 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import vendingmachine.CoinSet;
+import vendingmachine.Drink;
+import vendingmachine.DrinkCatalog;
+import vendingmachine.SoundLoader;
+import vendingmachine.components.Change;
+import vendingmachine.components.ChangeMachine;
+import vendingmachine.components.Context;
+import vendingmachine.components.GreedyChangePolicy;
+import vendingmachine.components.IClock;
+import vendingmachine.components.Stock;
+import vendingmachine.simulation.Demand;
+import vendingmachine.simulation.LatencyRecorder;
+import vendingmachine.simulation.Workload;
+import vendingmachine.simulation.WorkloadGenerator;
+import vendingmachine.simulation.WorkloadReport;
+import vendingmachine.simulation.WorkloadReport.Stage;
+
+public class WorkloadGeneratorTest {
+
+  private DrinkCatalog catalog;
+  private Demand demand;
+
+  @Before
+  public void setUp() {
+    catalog = new DrinkCatalog(Arrays.asList(new Drink("Coffee", true, 40),
+        new Drink("Soup", false, 65), new Drink("Tea", true, 35)));
+    demand = new Demand(45, new double[] { 3, 1, 2 }, 0.3);
+  }
+
+  private Context createMachine(IClock clock) {
+    ChangeMachine changeMachine = new ChangeMachine(new Change(CoinSet.EURO,
+        TestMachines.createCoinsStock(10), GreedyChangePolicy.getInstance()),
+        TestMachines.createAcceptedCoins());
+    Stock stock = new Stock(1000, 1000, 1000, catalog, new int[] { 1000, 1000, 1000 });
+    return new Context(changeMachine, stock, 0, 2, clock);
+  }
+
+  private WorkloadGenerator generator(Workload workload) {
+    // One hour of service
+    return new WorkloadGenerator(workload, this::createMachine, 3600 * 1000);
+  }
+
+  private static void assertConsistent(WorkloadReport report) {
+    assertEquals(report.toString(), report.getArrived(), report.getPlaced()
+        + report.getRefusedForChange() + report.getRefusedOther() + report.getCancelled());
+    assertTrue(report.getServed() <= report.getPlaced());
+    assertEquals(report.getArrived(), report.getLatencies(Stage.QUEUEING).getCount());
+    assertEquals(report.getServed(), report.getLatencies(Stage.PREPARATION).getCount());
+    assertEquals(report.getServed() - report.getCupsLeft(),
+        report.getLatencies(Stage.TOTAL).getCount());
+  }
+
+  @Test
+  public void testPatientCustomers() {
+    WorkloadReport report = generator(new Workload(demand, new double[] { 1, 2, 1 }, 0, 600, 0, 0))
+        .run(7);
+    assertConsistent(report);
+    assertTrue(report.getArrived() > 40);
+    assertEquals(0, report.getCancelled());
+    assertEquals(0, report.getCupsLeft());
+    assertEquals(report.toString(), report.getArrived(),
+        report.getPlaced() + report.getRefusedForChange());
+    LatencyRecorder total = report.getLatencies(Stage.TOTAL);
+    assertTrue(total.getPercentile(50) <= total.getPercentile(99));
+    assertTrue(total.getPercentile(50) >= report.getLatencies(Stage.PREPARATION).getPercentile(0));
+  }
+
+  @Test
+  public void testSameSeedSameReport() {
+    Workload workload = new Workload(demand, new double[] { 1, 1 }, 0.5, 60, 0.1, 0.1);
+    assertEquals(generator(workload).run(3).toString(), generator(workload).run(3).toString());
+  }
+
+  @Test
+  public void testFleet() {
+    Workload workload = new Workload(demand, new double[] { 1, 1 }, 0.5, 60, 0.2, 0.2);
+    WorkloadGenerator generator = generator(workload);
+    WorkloadReport fleet = generator.runFleet(4, 100);
+    assertFalse("The sounds are given back", SoundLoader.isMuted());
+    assertConsistent(fleet);
+    assertTrue(fleet.getCancelled() > 0);
+    assertTrue(fleet.getCupsLeft() > 0);
+    WorkloadReport sum = new WorkloadReport();
+    for (int i = 0; i < 4; i++) {
+      WorkloadReport report = generator.run(100 + i);
+      assertConsistent(report);
+      sum.add(report);
+    }
+    assertEquals(sum.toString(), fleet.toString());
+  }
+
+}
@@ -5,24 +5,30 @@ import java.util.Collections;
 import java.util.List;
 
 /**
- * This enumeration supplies all the Euro coins.
- * This gives the eight Euro coins.
- * Coins are and should be listed in descending order of their values.
+ * A Coin is a denomination accepted by a vending machine: a value (in cents)
+ * and a String representation. The coins of a machine are grouped in a CoinSet.
+ * This class supplies the eight Euro coins, the default coins of a machine.
+ *
+ * @see CoinSet
  */
-public enum Coin {
-  COIN200 (200, "2 " + Utils.EURO),
-  COIN100 (100, "1 " + Utils.EURO),
-  COIN50  (50, "0.50 " + Utils.EURO),
-  COIN20  (20, "0.20 " + Utils.EURO),
-  COIN10  (10, "0.10 " + Utils.EURO),
-  COIN5   (5, "0.05 " + Utils.EURO),
-  COIN2   (2, "0.02 " + Utils.EURO),
-  COIN1   (1, "0.01 " + Utils.EURO);
+public final class Coin {
+
+  public static final Coin COIN200 = new Coin(200, "2 " + Utils.EURO);
+  public static final Coin COIN100 = new Coin(100, "1 " + Utils.EURO);
+  public static final Coin COIN50 = new Coin(50, "0.50 " + Utils.EURO);
+  public static final Coin COIN20 = new Coin(20, "0.20 " + Utils.EURO);
+  public static final Coin COIN10 = new Coin(10, "0.10 " + Utils.EURO);
+  public static final Coin COIN5 = new Coin(5, "0.05 " + Utils.EURO);
+  public static final Coin COIN2 = new Coin(2, "0.02 " + Utils.EURO);
+  public static final Coin COIN1 = new Coin(1, "0.01 " + Utils.EURO);
 
   /**
-   * Unmodifiable List of all the coins, in descending order of their values.
+   * Unmodifiable List of the Euro coins, in descending order of their values.
+   *
+   * @see CoinSet#EURO
    */
-  public static final List<Coin> COINS = Collections.unmodifiableList(Arrays.asList(Coin.values()));
+  public static final List<Coin> COINS = Collections.unmodifiableList(Arrays.asList(
+      COIN200, COIN100, COIN50, COIN20, COIN10, COIN5, COIN2, COIN1));
 
   /**
    * The integer value of the coin, expressed in cents.
@@ -42,7 +48,7 @@ public enum Coin {
    * @param value the value of the coin (in cents, strictly positive)
    * @param text the String representation of the coin (can't be empty)
    */
-  private Coin(int value, String text) {
+  public Coin(int value, String text) {
     if (value <= 0) {
       throw new IllegalArgumentException("Value of a Coin should be strictly positive");
     }
@@ -53,4 +59,21 @@ public enum Coin {
     this.TEXT = text;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Coin)) {
+      return false;
+    }
+    final Coin other = (Coin) o;
+    return VALUE == other.VALUE && TEXT.equals(other.TEXT);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * VALUE + TEXT.hashCode();
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,285 @@
+package vendingmachine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable set of denominations: the coins a vending machine accepts and gives back.
+ * The coins are sorted in descending order of their values, and each Coin is given
+ * a dense index (its rank in that order), so that the values related to the coins
+ * can be stored in arrays.
+ *
+ * <p>At creation, the set is checked to be canonical or not: a set is canonical if
+ * giving the biggest coins first always gives the change with the fewest coins
+ * (the Euro coins are canonical, {4, 3, 1} is not: 6 = 3 + 3, not 4 + 1 + 1).
+ * Following Kozen and Zaks, a set with a unit coin is canonical if the greedy way
+ * is optimal for all the amounts lower than the sum of the two biggest values.
+ * Sets without a unit coin are never considered canonical, as the greedy way can
+ * get stuck on amounts that are possible.
+ * The fewest coins of a canonical set are found in O(number of coins); for the
+ * other sets, a table of the fewest coins for each amount is computed once, and
+ * extended once per thread for the bigger amounts asked.
+ */
+public final class CoinSet {
+
+  /**
+   * The eight Euro coins.
+   */
+  public static final CoinSet EURO = new CoinSet(Coin.COINS);
+
+  /**
+   * The number of times the biggest value covered by the table of a non canonical set.
+   */
+  private static final int TABLE_FACTOR = 4;
+
+  /**
+   * The number of coins of an impossible amount in the tables.
+   */
+  private static final int IMPOSSIBLE = Integer.MAX_VALUE;
+
+  /**
+   * Unmodifiable List of the coins, in descending order of their values.
+   */
+  private final List<Coin> coins;
+
+  /**
+   * A Map mapping each Coin to its index.
+   */
+  private final Map<Coin, Integer> indexes;
+
+  /**
+   * The value of each Coin, in descending order.
+   */
+  private final int[] values;
+
+  /**
+   * True if the biggest coins first always give the fewest coins.
+   */
+  private final boolean canonical;
+
+  /**
+   * For a non canonical set, the tables used by each thread: the fewest coins needed
+   * for each amount up to the size of the tables ({@code IMPOSSIBLE} if the amount
+   * can't be made), and the index of a Coin given in a way with the fewest coins for
+   * each amount. The tables computed by the constructor are shared by the threads until
+   * a thread asks a bigger amount. Null for a canonical set.
+   */
+  private final ThreadLocal<int[][]> tables;
+
+  /**
+   * Creates a set of the specified coins, which are sorted in descending order
+   * of their values. Throws an IllegalArgumentException if the List is empty,
+   * if a Coin is null, or if two coins have the same value.
+   *
+   * @param coins the List of the coins of the set
+   */
+  public CoinSet(List<Coin> coins) {
+    if (coins.isEmpty()) {
+      throw new IllegalArgumentException("A set of coins can't be empty");
+    }
+    final List<Coin> sorted = new ArrayList<Coin>(coins);
+    for (Coin coin: sorted) {
+      if (coin == null) {
+        throw new IllegalArgumentException("A coin of the set can't be null");
+      }
+    }
+    sorted.sort(Comparator.comparingInt((Coin coin) -> coin.VALUE).reversed());
+    this.coins = Collections.unmodifiableList(sorted);
+
+    this.indexes = new HashMap<Coin, Integer>();
+    this.values = new int[sorted.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = sorted.get(i).VALUE;
+      indexes.put(sorted.get(i), i);
+      if (i > 0 && values[i] == values[i - 1]) {
+        throw new IllegalArgumentException("Two coins of the set are worth " + values[i]);
+      }
+    }
+
+    final int checked = values.length == 1 ? values[0] : values[0] + values[1];
+    final int tableSize = Math.max(checked, TABLE_FACTOR * values[0]);
+    final int[] count = new int[tableSize + 1];
+    final int[] last = new int[tableSize + 1];
+    fillTables(values, count, last);
+    this.canonical = values[values.length - 1] == 1 && isGreedyOptimal(values, count, checked);
+    this.tables = canonical ? null : ThreadLocal.withInitial(() -> new int[][] { count, last });
+  }
+
+  /**
+   * Fills the tables of the fewest coins needed for each amount, with as many coins
+   * of each value as wanted. Takes O(size of the tables * number of coins) operations.
+   *
+   * @param values the value of each coin
+   * @param count filled with the fewest coins of each amount
+   * @param last filled with the index of a coin given for each amount
+   */
+  private static void fillTables(int[] values, int[] count, int[] last) {
+    Arrays.fill(count, IMPOSSIBLE);
+    count[0] = 0;
+    for (int a = 1; a < count.length; a++) {
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] <= a && count[a - values[i]] != IMPOSSIBLE
+            && count[a - values[i]] + 1 < count[a]) {
+          count[a] = count[a - values[i]] + 1;
+          last[a] = i;
+        }
+      }
+    }
+  }
+
+  /**
+   * @param values the value of each coin, in descending order
+   * @param count the fewest coins of each amount
+   * @param max the highest amount to check
+   * @return true if the biggest coins first give the fewest coins for all the amounts
+   *     up to {@code max}, false otherwise
+   */
+  private static boolean isGreedyOptimal(int[] values, int[] count, int max) {
+    for (int a = 1; a <= max; a++) {
+      int remainder = a;
+      int given = 0;
+      for (int value: values) {
+        given += remainder / value;
+        remainder %= value;
+      }
+      if (remainder != 0 || given != count[a]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of coins of the set
+   */
+  public int size() {
+    return values.length;
+  }
+
+  /**
+   * @param index the index of a Coin
+   * @return the Coin with the specified index
+   */
+  public Coin get(int index) {
+    return coins.get(index);
+  }
+
+  /**
+   * Returns the index of the specified Coin.
+   * Throws an IllegalArgumentException if the Coin is not in the set.
+   *
+   * @param coin a Coin of the set
+   * @return the index of {@code coin}
+   */
+  public int indexOf(Coin coin) {
+    final Integer index = indexes.get(coin);
+    if (index == null) {
+      throw new IllegalArgumentException(coin.TEXT + " is not in the set of coins");
+    }
+    return index;
+  }
+
+  /**
+   * @param coin a Coin
+   * @return true if {@code coin} is in the set, false otherwise
+   */
+  public boolean contains(Coin coin) {
+    return indexes.containsKey(coin);
+  }
+
+  /**
+   * @return an unmodifiable List of the coins, in descending order of their values
+   */
+  public List<Coin> getCoins() {
+    return coins;
+  }
+
+  /**
+   * @return the value of each Coin, in descending order (a copy)
+   */
+  public int[] getValues() {
+    return values.clone();
+  }
+
+  /**
+   * @param coinsNbr the number of each Coin, in the order of the set
+   * @return the total value of the coins (in cents)
+   */
+  public int totalValue(int[] coinsNbr) {
+    int amount = 0;
+    for (int i = 0; i < values.length; i++) {
+      amount += values[i] * coinsNbr[i];
+    }
+    return amount;
+  }
+
+  /**
+   * @return true if giving the biggest coins first always gives the fewest coins
+   */
+  public boolean isCanonical() {
+    return canonical;
+  }
+
+  /**
+   * Returns the way of making {@code amount} with the fewest coins, with as many
+   * coins of each value as wanted. Takes O(number of coins) operations for a canonical
+   * set, and O(number of coins given) for the other ones when the amount is covered
+   * by the table (extended once per thread for bigger amounts).
+   * Throws an IllegalArgumentException if {@code amount} is negative.
+   *
+   * @param amount the amount to make (in cents)
+   * @return the number of each Coin to give, or null if the amount can't be made
+   */
+  public int[] getFewestCoins(int amount) {
+    final int[] given = new int[values.length];
+    return getFewestCoins(amount, given) ? given : null;
+  }
+
+  /**
+   * Computes the way of making {@code amount} with the fewest coins into {@code given},
+   * like {@link #getFewestCoins(int)} but without allocating anything once the table
+   * of the thread covers the amount.
+   * Throws an IllegalArgumentException if {@code amount} is negative.
+   *
+   * @param amount the amount to make (in cents)
+   * @param given receives the number of each Coin to give (undefined if the amount
+   *     can't be made)
+   * @return true if the amount can be made, false otherwise
+   */
+  public boolean getFewestCoins(int amount, int[] given) {
+    Utils.checkPositiveIntIllegal(amount, "the amount to make");
+    if (canonical) {
+      int remainder = amount;
+      for (int i = 0; i < values.length; i++) {
+        given[i] = remainder / values[i];
+        remainder %= values[i];
+      }
+      return true;
+    }
+
+    final int[][] table = tables.get();
+    if (amount >= table[0].length) {
+      final int[] count = new int[amount + 1];
+      final int[] last = new int[amount + 1];
+      fillTables(values, count, last);
+      table[0] = count;
+      table[1] = last;
+    }
+    final int[] count = table[0];
+    final int[] last = table[1];
+    if (count[amount] == IMPOSSIBLE) {
+      return false;
+    }
+    Arrays.fill(given, 0);
+    for (int a = amount; a > 0; a -= values[last[a]]) {
+      given[last[a]]++;
+    }
+    return true;
+  }
+
+}
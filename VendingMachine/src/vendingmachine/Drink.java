@@ -4,6 +4,7 @@ package vendingmachine;
  * Defines drinks objects consisting of a name, a price and a boolean "sugar".
  * The attributes are a String name, a price (in cents) and a
  * boolean "sugar" to tell if the drink is likely or not to contain sugar.
+ * Two Drink's are equal if they have the same name and sugar, whatever their price.
  */
 public class Drink {
 
@@ -56,4 +57,32 @@ public class Drink {
     return this.sugar;
   }
 
+  /**
+   * Returns a Drink equal to this one, with another price.
+   * This Drink is not changed: the orders already made keep their price.
+   *
+   * @param price the new price (in cents)
+   * @return a copy of this Drink with the specified price
+   */
+  public Drink withPrice(int price) {
+    return new Drink(name, sugar, price);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof Drink)) {
+      return false;
+    }
+    final Drink other = (Drink) obj;
+    return sugar == other.sugar && name.equals(other.name);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * name.hashCode() + (sugar ? 1 : 0);
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+package vendingmachine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable list of the Drink's a vending machine can dispense.
+ * Each Drink is given a dense id (its index in the catalog, from 0 to {@code size() - 1}),
+ * so that the values related to the drinks can be stored in arrays.
+ * The order of the drinks never changes. Some facts about the drinks
+ * (all free, minimal price, order of the prices) are computed once at creation.
+ */
+public final class DrinkCatalog {
+
+  /**
+   * Unmodifiable List of the drinks, the index of each Drink being its id.
+   */
+  private final List<Drink> drinks;
+
+  /**
+   * A Map mapping each Drink to its id.
+   */
+  private final Map<Drink, Integer> ids;
+
+  /**
+   * The ids of the drinks, sorted by ascending price (stable for equal prices).
+   */
+  private final int[] byPrice;
+
+  /**
+   * The lowest price of the drinks (in cents, 0 if the catalog is empty).
+   */
+  private final int minPrice;
+
+  /**
+   * True if all the drinks are free, false otherwise.
+   */
+  private final boolean allFree;
+
+  /**
+   * Creates a catalog of the specified drinks, in the same order.
+   * Throws an IllegalArgumentException if a Drink is null or listed twice.
+   *
+   * @param drinks the List of the Drink's of the catalog
+   */
+  public DrinkCatalog(List<Drink> drinks) {
+    this.ids = new HashMap<Drink, Integer>();
+    for (int i = 0; i < drinks.size(); i++) {
+      final Drink drink = drinks.get(i);
+      if (drink == null) {
+        throw new IllegalArgumentException("A drink of the catalog can't be null");
+      }
+      if (ids.put(drink, i) != null) {
+        throw new IllegalArgumentException(drink.getName() + " is listed twice in the catalog");
+      }
+    }
+    this.drinks = Collections.unmodifiableList(new ArrayList<Drink>(drinks));
+
+    final Integer[] sorted = new Integer[drinks.size()];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = i;
+    }
+    Arrays.sort(sorted, Comparator.comparingInt(id -> this.drinks.get(id).getPrice()));
+    this.byPrice = new int[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      byPrice[i] = sorted[i];
+    }
+
+    this.minPrice = drinks.isEmpty() ? 0 : drinks.get(byPrice[0]).getPrice();
+    this.allFree = drinks.isEmpty() || drinks.get(byPrice[byPrice.length - 1]).getPrice() == 0;
+  }
+
+  /**
+   * Returns a copy of the catalog with new prices: the drinks and their ids are the same,
+   * only the prices of the drinks listed in {@code prices} change.
+   * Throws an IllegalArgumentException if a Drink is not in the catalog or a price is
+   * null or negative.
+   *
+   * @param prices the new price of some drinks (in cents)
+   * @return a new DrinkCatalog with the new prices
+   */
+  public DrinkCatalog withPrices(Map<Drink, Integer> prices) {
+    final List<Drink> repriced = new ArrayList<Drink>(drinks);
+    for (Map.Entry<Drink, Integer> entry: prices.entrySet()) {
+      if (entry.getValue() == null) {
+        throw new IllegalArgumentException("The price of a drink can't be null");
+      }
+      Utils.checkPositiveIntIllegal(entry.getValue(), "price of " + entry.getKey().getName());
+      final int id = getId(entry.getKey());
+      repriced.set(id, drinks.get(id).withPrice(entry.getValue()));
+    }
+    return new DrinkCatalog(repriced);
+  }
+
+  /**
+   * @return the number of drinks in the catalog
+   */
+  public int size() {
+    return byPrice.length;
+  }
+
+  /**
+   * @param id the id of a Drink
+   * @return the Drink with the specified id
+   */
+  public Drink get(int id) {
+    return drinks.get(id);
+  }
+
+  /**
+   * Returns the id of the specified Drink.
+   * Throws an IllegalArgumentException if the Drink is not in the catalog.
+   *
+   * @param drink a Drink of the catalog
+   * @return the id of {@code drink}
+   */
+  public int getId(Drink drink) {
+    final Integer id = ids.get(drink);
+    if (id == null) {
+      throw new IllegalArgumentException(drink.getName() + " is not in the catalog");
+    }
+    return id;
+  }
+
+  /**
+   * @param drink a Drink
+   * @return true if {@code drink} is in the catalog, false otherwise
+   */
+  public boolean contains(Drink drink) {
+    return ids.containsKey(drink);
+  }
+
+  /**
+   * Returns the id of the Drink at the specified rank of the prices:
+   * {@code getIdByPrice(0)} is the cheapest Drink.
+   *
+   * @param rank the rank of the Drink in ascending order of the prices
+   * @return the id of the Drink
+   */
+  public int getIdByPrice(int rank) {
+    return byPrice[rank];
+  }
+
+  /**
+   * @return an unmodifiable List of the drinks, in the order of their ids
+   */
+  public List<Drink> getDrinks() {
+    return drinks;
+  }
+
+  /**
+   * @return the lowest price of the drinks (in cents)
+   */
+  public int getMinPrice() {
+    return minPrice;
+  }
+
+  /**
+   * @return true if all the drinks are free, false otherwise
+   */
+  public boolean areAllFree() {
+    return allFree;
+  }
+
+}
@@ -0,0 +1,77 @@
+package vendingmachine;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Renders amounts of money (in cents) into messages, such as the price of a drink,
+ * the same way as {@code amount / 100.0 + " " + Utils.EURO} does.
+ * Each message is built the first time an amount is rendered and then reused,
+ * so that refreshing a display does not build any String.
+ * A MoneyFormat is thread-safe and may be shared by all the machines.
+ */
+public final class MoneyFormat {
+
+  /**
+   * The largest amount whose message is kept (in cents).
+   * The messages of larger or negative amounts are built on each call.
+   */
+  public static final int MAX_CACHED_AMOUNT = 10000;
+
+  private static final MoneyFormat EUROS = new MoneyFormat("", "");
+
+  private final String prefix;
+
+  private final String suffix;
+
+  /**
+   * The message of each amount from 0 to MAX_CACHED_AMOUNT, null until rendered.
+   */
+  private final AtomicReferenceArray<String> texts;
+
+  /**
+   * Creates a MoneyFormat rendering messages made of a prefix, an amount in euros and a suffix.
+   *
+   * @param prefix the text before the amount
+   * @param suffix the text after the amount (and the Euro symbol)
+   */
+  public MoneyFormat(String prefix, String suffix) {
+    if (prefix == null || suffix == null) {
+      throw new IllegalArgumentException("The prefix and the suffix can't be null");
+    }
+    this.prefix = prefix;
+    this.suffix = suffix;
+    this.texts = new AtomicReferenceArray<String>(MAX_CACHED_AMOUNT + 1);
+  }
+
+  /**
+   * @param amount an amount of money (in cents)
+   * @return the amount in euros followed by the Euro symbol
+   */
+  public static String toEuros(int amount) {
+    return EUROS.format(amount);
+  }
+
+  /**
+   * @param amount an amount of money (in cents)
+   * @return the message of {@code amount}
+   */
+  public String format(int amount) {
+    if (amount < 0 || amount > MAX_CACHED_AMOUNT) {
+      return build(amount);
+    }
+    String text = texts.get(amount);
+    if (text == null) {
+      text = build(amount);
+      // Two threads may build the same message: either one is kept
+      if (!texts.compareAndSet(amount, null, text)) {
+        text = texts.get(amount);
+      }
+    }
+    return text;
+  }
+
+  private String build(int amount) {
+    return prefix + amount / 100.0 + " " + Utils.EURO + suffix;
+  }
+
+}
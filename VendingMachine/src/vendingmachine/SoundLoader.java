@@ -25,6 +25,11 @@ public final class SoundLoader {
 
   private static final Logger log = LogManager.getLogger("PictureLoader");
 
+  /**
+   * True if no sound must be played (for the simulations of machines).
+   */
+  private static volatile boolean muted = false;
+
   /**
    * Sound that indicates that something is ready (five beeps).
    * Source: http://goo.gl/DH8JSJ
@@ -72,7 +77,7 @@ public final class SoundLoader {
    * @param clip the Clip to play
    */
   public static void play(Clip clip) {
-    if (clip != null) {
+    if (clip != null && !muted) {
       if (clip.isRunning()) {
         clip.stop();
       }
@@ -81,6 +86,22 @@ public final class SoundLoader {
     }
   }
 
+  /**
+   * Mutes or unmutes all the sounds: while muted, {@code play} does nothing.
+   *
+   * @param mute true to mute the sounds, false to play them again
+   */
+  public static void setMuted(boolean mute) {
+    muted = mute;
+  }
+
+  /**
+   * @return true if all the sounds are muted, false otherwise
+   */
+  public static boolean isMuted() {
+    return muted;
+  }
+
   /**
    * Stops the specified clip (if it exists).
    * 
@@ -94,7 +115,8 @@ public final class SoundLoader {
 
   /**
    * Returns a Clip loaded from the file name specified.
-   * If the file does not exists or is not a valid sound file, returns null.
+   * If the file does not exists, is not a valid sound file or if no audio device
+   * can play it (headless servers), returns null.
    * 
    * @param file the name of the sound file, placed in /resources/
    * @return the Clip loaded from the file if it exists, null otherwise
@@ -107,7 +129,8 @@ public final class SoundLoader {
       stream = AudioSystem.getAudioInputStream(SoundLoader.class.getResource("/resources/sounds/" + file));
       clip = AudioSystem.getClip(null);
       clip.open(stream);
-    } catch (UnsupportedAudioFileException | IOException | LineUnavailableException | NullPointerException e) {
+    } catch (UnsupportedAudioFileException | IOException | LineUnavailableException | NullPointerException
+        | IllegalArgumentException e) {
       clip = null;
       log.error(file + " not properly loaded. Sounds will be missing.");
     }
@@ -28,24 +28,21 @@ public final class Utils {
    */
   public static int totalValue(Map<Coin, Integer> map) {
     int amount = 0;
-    for (Coin coin: Coin.COINS) {
-      amount += coin.VALUE * map.get(coin);
+    for (Map.Entry<Coin, Integer> entry: map.entrySet()) {
+      amount += entry.getKey().VALUE * entry.getValue();
     }
     return amount;
   }
 
   /**
-   * Creates a copy of the Map passed as a parameter.
+   * Creates a copy of the Map passed as a parameter, holding the same Coin's
+   * whatever their CoinSet.
    * 
    * @param map the Map to copy
    * @return a copy of the map
    */
   public static Map<Coin, Integer> copy(Map<Coin, Integer> map) {
-    final Map<Coin, Integer> res = new Hashtable<Coin, Integer>();
-    for (Coin coin: Coin.COINS) {
-      res.put(coin, map.get(coin)); // copy of the Integer
-    }
-    return res;
+    return new Hashtable<Coin, Integer>(map);
   }
 
   /**
@@ -60,6 +57,19 @@ public final class Utils {
     }
   }
 
+  /**
+   * Maps each Coin of the specified CoinSet to the Integer 0, adding the ones
+   * missing from the map. The other keys of the map are left as they are.
+   * 
+   * @param map the map to reset/init
+   * @param coinSet the coins to map to 0
+   */
+  public static void resetCoinsMap(Map<Coin, Integer> map, CoinSet coinSet) {
+    for (Coin coin: coinSet.getCoins()) {
+      map.put(coin, 0);
+    }
+  }
+
   /**
    * Checks if an integer is positive.
    * If it is not positive, throws a NumberFormatException.
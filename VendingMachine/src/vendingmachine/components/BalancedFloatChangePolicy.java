@@ -0,0 +1,42 @@
+package vendingmachine.components;
+
+/**
+ * Gives back the change so that the stock of each coin stays as close as possible
+ * to a target float. The cost of a coin is the square of the difference between
+ * its remaining stock and its target, so that the coins the machine has too many
+ * of are given first.
+ */
+public final class BalancedFloatChangePolicy extends BoundedChangeSolver {
+
+  /**
+   * The target stock of each coin, in descending order of the values.
+   */
+  private final int[] target;
+
+  /**
+   * Creates a policy balancing the stock toward the specified target.
+   * Throws an IllegalArgumentException if a target is negative.
+   *
+   * @param target the target stock of each coin, in descending order of the values
+   */
+  public BalancedFloatChangePolicy(int[] target) {
+    for (int t: target) {
+      if (t < 0) {
+        throw new IllegalArgumentException("The target of a coin can't be negative");
+      }
+    }
+    this.target = target.clone();
+  }
+
+  @Override
+  protected long cost(int[] values, int coin, int given, int available) {
+    final long difference = available - given - target[coin];
+    return difference * difference;
+  }
+
+  @Override
+  public String toString() {
+    return "Balance the float";
+  }
+
+}
@@ -0,0 +1,130 @@
+package vendingmachine.components;
+
+import java.util.Arrays;
+
+import vendingmachine.CoinSet;
+
+/**
+ * A ChangePolicy that finds, among all the ways of giving the change with the coins
+ * available, the one with the lowest cost. The cost of a way is the sum of the costs
+ * of each coin given, defined by the subclasses.
+ * The search is exact: it is a dynamic programming on the amounts from 0 to the change,
+ * adding the coins one by one, each one bounded by its available number. It takes
+ * O(amount * total number of usable coins) operations.
+ */
+public abstract class BoundedChangeSolver implements ChangePolicy {
+
+  /**
+   * The cost of an impossible change.
+   */
+  private static final long IMPOSSIBLE = Long.MAX_VALUE;
+
+  /**
+   * Returns the cost of giving {@code given} coins of the coin {@code coin}.
+   * Must be positive.
+   *
+   * @param values the value of each coin, in descending order
+   * @param coin the index of the coin in {@code values}
+   * @param given the number of coins given
+   * @param available the number of this coin that could be given
+   * @return the cost of giving those coins
+   */
+  protected abstract long cost(int[] values, int coin, int given, int available);
+
+  /**
+   * The tables of the search used by each thread, grown to the biggest change computed.
+   */
+  private final ThreadLocal<Tables> tables = ThreadLocal.withInitial(Tables::new);
+
+  @Override
+  public int[] computeChange(int amount, CoinSet coins, int[] available) {
+    final int[] given = new int[coins.size()];
+    return computeChange(amount, coins, available, given) ? given : null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * Reuses the tables of the thread, so that nothing is allocated once they cover
+   * the amount and the coins.
+   */
+  @Override
+  public boolean computeChange(int amount, CoinSet coins, int[] available, int[] given) {
+    final Tables t = tables.get();
+    t.ensureCapacity(coins.size(), amount);
+    final int[] values = t.values;
+    for (int i = 0; i < values.length; i++) {
+      values[i] = coins.get(i).VALUE;
+    }
+    long[] best = t.best; // lowest cost for each amount with the coins so far
+    long[] next = t.next;
+    final int[][] chosen = t.chosen;
+    Arrays.fill(best, 0, amount + 1, IMPOSSIBLE);
+    best[0] = 0;
+
+    for (int i = 0; i < values.length; i++) {
+      Arrays.fill(next, 0, amount + 1, IMPOSSIBLE);
+      for (int a = 0; a <= amount; a++) {
+        final int max = Math.min(available[i], a / values[i]);
+        for (int k = 0; k <= max; k++) {
+          final long previous = best[a - k * values[i]];
+          if (previous != IMPOSSIBLE) {
+            final long total = previous + cost(values, i, k, available[i]);
+            if (total < next[a]) {
+              next[a] = total;
+              chosen[i][a] = k;
+            }
+          }
+        }
+      }
+      final long[] swapped = best;
+      best = next;
+      next = swapped;
+    }
+
+    if (best[amount] == IMPOSSIBLE) {
+      return false;
+    }
+    int a = amount;
+    for (int i = values.length - 1; i >= 0; i--) {
+      given[i] = chosen[i][a];
+      a -= given[i] * values[i];
+    }
+    return true;
+  }
+
+  /**
+   * The tables of the search of a thread. Only the entries up to the amount of the
+   * current change are used; those of the chosen coins are written by each search
+   * before being read.
+   */
+  private static final class Tables {
+
+    private int[] values = new int[0];
+
+    private long[] best = new long[1];
+
+    private long[] next = new long[1];
+
+    private int[][] chosen = new int[0][1];
+
+    /**
+     * Grows the tables, if needed, to the specified number of coins and amount.
+     *
+     * @param coinsNbr the number of coins of the set
+     * @param amount the amount of the change
+     */
+    void ensureCapacity(int coinsNbr, int amount) {
+      if (values.length != coinsNbr) {
+        values = new int[coinsNbr];
+        chosen = new int[coinsNbr][best.length];
+      }
+      if (best.length <= amount) {
+        best = new long[amount + 1];
+        next = new long[amount + 1];
+        chosen = new int[coinsNbr][amount + 1];
+      }
+    }
+
+  }
+
+}
@@ -2,53 +2,163 @@ package vendingmachine.components;
 
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import vendingmachine.Coin;
+import vendingmachine.CoinSet;
 import vendingmachine.Utils;
+import vendingmachine.monitoring.ChangeSolverEvent;
 
 /**
  * This class deals with a stock of coins and performs operations on it.
  * It can give change on a specified amount or tell if the change is possible.
+ *
+ * <p>The coins needed to give change can be reserved as soon as an order is validated
+ * ({@code reserveChange(int)}), then given back ({@code giveChange(ChangeReservation)})
+ * or made available again ({@code release}). The stock of each coin is a lock-free
+ * counter, so that the change may be handled from several threads.
+ *
+ * <p>The coins given back are chosen by a ChangePolicy (the biggest coins first by default),
+ * among the coins of a CoinSet (the Euro coins by default).
  */
 public class Change {
 
   private static final Logger log = LogManager.getLogger("Change");
 
   /**
-   * A Map of the coins stock, mapping each Coin to its stock.
+   * The coins the stock is made of.
    */
-  private final Map<Coin, Integer> coinsStock;
+  private final CoinSet coinSet;
 
   /**
-   * Used by {@code isChangePossible(int} to use the computation done in
-   * {@code giveChange(int)}. Can not be accessed from the outside.
+   * The stock counter of each Coin, in the order of the CoinSet.
    */
-  private Map<Coin, Integer> coinsStockTemp;
+  private final StockCounter[] coinsStock;
 
   /**
-   * Creates a Change object based on the coinsStock specified.
+   * Incremented each time the stock of coins (or what is reserved) changes.
+   */
+  private final AtomicLong version;
+
+  /**
+   * The ChangePolicy choosing the coins to give back.
+   */
+  private volatile ChangePolicy policy;
+
+  /**
+   * The arrays of the available coins and of the coins to give, reused by each
+   * computation of a thread so that checking the change allocates nothing.
+   */
+  private final ThreadLocal<int[][]> scratch;
+
+  /**
+   * Creates a Change object of Euro coins based on the coinsStock specified,
+   * giving back the biggest coins first.
    * 
    * @param coinsStock a Map mapping each Coin to its stock
    */
   public Change(Map<Coin, Integer> coinsStock) {
+    this(coinsStock, GreedyChangePolicy.getInstance());
+  }
+
+  /**
+   * Creates a Change object of Euro coins based on the coinsStock specified,
+   * giving back the coins chosen by the specified ChangePolicy.
+   *
+   * @param coinsStock a Map mapping each Coin to its stock
+   * @param policy the ChangePolicy choosing the coins to give back
+   */
+  public Change(Map<Coin, Integer> coinsStock, ChangePolicy policy) {
+    this(CoinSet.EURO, coinsStock, policy);
+  }
+
+  /**
+   * Creates a Change object of the specified coins based on the coinsStock specified,
+   * giving back the coins chosen by the specified ChangePolicy.
+   * Throws an IllegalArgumentException if a stock is negative or if {@code coinsStock}
+   * does not list all the coins of the CoinSet.
+   *
+   * @param coinSet the coins the stock is made of
+   * @param coinsStock a Map mapping each Coin to its stock
+   * @param policy the ChangePolicy choosing the coins to give back
+   */
+  public Change(CoinSet coinSet, Map<Coin, Integer> coinsStock, ChangePolicy policy) {
     for (Integer i: coinsStock.values()) {
       Utils.checkPositiveIntIllegal(i, "stock of coins");
     }
-    if (!coinsStock.keySet().containsAll(Coin.COINS)) {
-      throw new IllegalArgumentException("coinsStock has to list all the coins defined in Coin");
+    if (!coinsStock.keySet().containsAll(coinSet.getCoins())) {
+      throw new IllegalArgumentException("coinsStock has to list all the coins of the set");
+    }
+    this.coinSet = coinSet;
+    this.coinsStock = new StockCounter[coinSet.size()];
+    for (int i = 0; i < this.coinsStock.length; i++) {
+      this.coinsStock[i] = new StockCounter(coinsStock.get(coinSet.get(i)));
+    }
+    this.version = new AtomicLong();
+    this.policy = policy;
+    final int size = coinSet.size();
+    this.scratch = ThreadLocal.withInitial(() -> new int[2][size]);
+  }
+
+  /**
+   * Computes the coins to give back on {@code amount} with the coins that are
+   * available (in stock and not reserved), according to the ChangePolicy.
+   *
+   * The array returned belongs to the calling thread and is overwritten by its next
+   * computation.
+   *
+   * @param amount number of cents to give change for
+   * @return the number of each Coin to give, or null if the change is not possible
+   */
+  private int[] computeChange(int amount) {
+    final ChangeSolverEvent event = ChangeSolverEvent.isRecording() ? new ChangeSolverEvent() : null;
+    if (event != null) {
+      event.begin();
+    }
+    final int[][] arrays = scratch.get();
+    final int[] available = arrays[0];
+    for (int i = 0; i < coinsStock.length; i++) {
+      available[i] = coinsStock[i].getAvailable();
+    }
+    final ChangePolicy current = policy;
+    final boolean possible = current.computeChange(amount, coinSet, available, arrays[1]);
+    if (event != null) {
+      event.done(amount, current.getClass().getSimpleName(), possible);
     }
-    this.coinsStock = coinsStock;
+    return possible ? arrays[1] : null;
+  }
+
+  /**
+   * @return the CoinSet the stock is made of
+   */
+  public CoinSet getCoinSet() {
+    return coinSet;
+  }
+
+  /**
+   * @return the ChangePolicy choosing the coins to give back
+   */
+  public ChangePolicy getPolicy() {
+    return policy;
+  }
 
-    this.coinsStockTemp = new Hashtable<Coin, Integer>();
+  /**
+   * Changes the way the coins to give back are chosen.
+   *
+   * @param policy the new ChangePolicy
+   */
+  public void setPolicy(ChangePolicy policy) {
+    this.policy = policy;
+    version.incrementAndGet(); // the feasibility of the change may differ
   }
 
   /**
    * Returns true if it is possible to give change with the current stock for the
-   * amount value (in cents), false otherwise. Updates coinsStockTemp accordingly,
-   * which is the new value coinsStock should take after giving the change.
+   * amount value (in cents), false otherwise. The coins reserved by other orders
+   * are not taken into account.
    * Throws an IllegalArgumentException if {@code amount} is negative.
    * 
    * @param amount number of cents to give change for.
@@ -56,39 +166,163 @@ public class Change {
    */
   public boolean isChangePossible(int amount) {
     Utils.checkPositiveIntIllegal(amount, "the amount to give change on");
-    coinsStockTemp = Utils.copy(coinsStock);
-    int remainder = amount;
-    for (Coin coin: Coin.COINS) {
-      while (remainder >= coin.VALUE && coinsStockTemp.get(coin) > 0) {
-        coinsStockTemp.put(coin, coinsStockTemp.get(coin) - 1);
-        remainder -= coin.VALUE;
+    if (computeChange(amount) == null) {
+      log.warn("Can not give " + amount / 100.0 + " " + Utils.EURO + " of change.");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Same as {@code isChangePossible(int)}, without logging anything when the change
+   * is not possible.
+   * Throws an IllegalArgumentException if {@code amount} is negative.
+   *
+   * @param amount number of cents to give change for.
+   * @return true if change on the amount is possible, false otherwise
+   */
+  public boolean canGiveChange(int amount) {
+    Utils.checkPositiveIntIllegal(amount, "the amount to give change on");
+    return computeChange(amount) != null;
+  }
+
+  /**
+   * Returns a number that changes each time the coins that can be given back change.
+   * Two equal versions guarantee that the answers of {@code isChangePossible} are the same.
+   *
+   * @return the current version of the stock of coins
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * Reserves the coins needed to give change on {@code amount}. The reserved coins
+   * can not be used by anything else until the reservation is committed or released.
+   * If another reservation took some coins in the meantime, the computation is
+   * done again with the remaining coins.
+   * Throws an IllegalArgumentException if {@code amount} is negative.
+   *
+   * @param amount number of cents to give change for
+   * @return the ChangeReservation, or null if the change is not possible
+   */
+  public ChangeReservation reserveChange(int amount) {
+    return reserveChange(amount, null);
+  }
+
+  /**
+   * Same as {@code reserveChange(int)}, reusing a reservation of this Change that is
+   * over if there is one.
+   *
+   * @param amount number of cents to give change for
+   * @param spare a ChangeReservation of this Change that is over, or null to create
+   *     a new one
+   * @return the ChangeReservation ({@code spare} if it is not null), or null if the
+   *     change is not possible
+   */
+  ChangeReservation reserveChange(int amount, ChangeReservation spare) {
+    Utils.checkPositiveIntIllegal(amount, "the amount to give change on");
+    while (true) {
+      final int[] coins = computeChange(amount);
+      if (coins == null) {
+        log.warn("Can not give " + amount / 100.0 + " " + Utils.EURO + " of change.");
+        return null;
+      }
+      int reserved = 0;
+      while (reserved < coins.length && coinsStock[reserved].tryReserve(coins[reserved])) {
+        reserved++;
+      }
+      if (reserved == coins.length) {
+        version.incrementAndGet();
+        if (spare == null) {
+          return new ChangeReservation(amount, coins.clone());
+        }
+        spare.reuse(amount, coins);
+        return spare;
+      }
+      for (int i = 0; i < reserved; i++) { // rollback, then try again
+        coinsStock[i].release(coins[i]);
       }
     }
-    if (remainder != 0) {
-      log.warn("Can not give " + amount / 100.0 + " " + Utils.EURO + " of change.");
+  }
+
+  /**
+   * Gives back the coins of the specified reservation and removes them from the stock.
+   * Returns a Map of the Coin's given back (mapping each Coin to the number of times
+   * it is given). Throws an IllegalStateException if the reservation is already over.
+   *
+   * @param reservation the ChangeReservation to commit
+   * @return a Map of the money that is given back.
+   */
+  public Map<Coin, Integer> giveChange(ChangeReservation reservation) {
+    final int[] coins = commit(reservation);
+    final Map<Coin, Integer> moneyToGive = new Hashtable<Coin, Integer>();
+    for (int i = 0; i < coins.length; i++) {
+      moneyToGive.put(coinSet.get(i), coins[i]);
+    }
+    return moneyToGive;
+  }
+
+  /**
+   * Same as {@code giveChange(ChangeReservation)}, without building a Map.
+   * Throws an IllegalStateException if the reservation is already over.
+   *
+   * @param reservation the ChangeReservation to commit
+   * @return the number of each Coin given back, in the order of the CoinSet
+   *     (the array of the reservation, which must not be modified)
+   */
+  int[] commit(ChangeReservation reservation) {
+    if (!reservation.end()) {
+      throw new IllegalStateException("Reservation already committed or released");
+    }
+    for (int i = 0; i < coinsStock.length; i++) {
+      coinsStock[i].commit(reservation.getCoins(i));
+    }
+    version.incrementAndGet();
+    return reservation.getCoins();
+  }
+
+  /**
+   * Makes the coins of the specified reservation available again.
+   * Does nothing if the reservation is already over.
+   *
+   * @param reservation the ChangeReservation to release
+   */
+  public void release(ChangeReservation reservation) {
+    if (reservation.end()) {
+      for (int i = 0; i < coinsStock.length; i++) {
+        coinsStock[i].release(reservation.getCoins(i));
+      }
+      version.incrementAndGet();
     }
-    return remainder == 0;
   }
 
   /**
    * Gives change on the amount specified and updates the coins stock accordingly.
    * If it is not possible, throws an IllegalArgumentException.
    * Returns a Map of the Coin's given back (mapping each Coin to the number of times
-   * it is given). Updates the specified IContext of the coins that are given back.
+   * it is given).
    * 
    * @param amount the amount to give change on
    * @return a Map of the money that is given back.
    */
   public Map<Coin, Integer> giveChange(int amount) {
-    if (!isChangePossible(amount)) {
+    return giveChange(reserveGivenChange(amount));
+  }
+
+  /**
+   * Reserves the change on an amount that must be given back.
+   * If it is not possible, throws an IllegalArgumentException.
+   *
+   * @param amount the amount to give change on
+   * @return the ChangeReservation
+   */
+  ChangeReservation reserveGivenChange(int amount) {
+    final ChangeReservation reservation = reserveChange(amount);
+    if (reservation == null) {
       throw new IllegalArgumentException();
     }
-    final Map<Coin, Integer> moneyToGive = new Hashtable<Coin, Integer>();
-    for (Coin coin: Coin.COINS) {
-      moneyToGive.put(coin, coinsStock.get(coin) - coinsStockTemp.get(coin));
-      coinsStock.put(coin, coinsStockTemp.get(coin));
-    }
-    return moneyToGive;
+    return reservation;
   }
 
   /**
@@ -97,7 +331,16 @@ public class Change {
    * @param coin the Coin to add to the stock
    */
   public void insertCoin(Coin coin) {
-    coinsStock.put(coin, coinsStock.get(coin) + 1);
+    coinsStock[coinSet.indexOf(coin)].add(1);
+    version.incrementAndGet();
+  }
+
+  /**
+   * @param index the index of a Coin in the CoinSet
+   * @return the number of this Coin in stock and not reserved
+   */
+  int getAvailableCoins(int index) {
+    return coinsStock[index].getAvailable();
   }
 
   /**
@@ -105,20 +348,46 @@ public class Change {
    * @return the stock value of the specified Coin
    */
   public int getCoinStock(Coin coin) {
-    return coinsStock.get(coin);
+    return coinsStock[coinSet.indexOf(coin)].getStock();
   }
 
   /**
    * Updates the stock of {@code coin} to the {@code value} specified.
-   * Throws an IllegalArgumentException if the value is negative.
+   * Throws an IllegalArgumentException if the value is negative or lower than
+   * the number of {@code coin} reserved.
    * 
    * @param coin the Coin whose stock must be changed
    * @param value the new value for the {@code coin} (must be positive)
    */
   public void setCoinStock(Coin coin, int value) {
     Utils.checkPositiveIntIllegal(value, "stock of " + coin.TEXT + " coins");
-    Utils.logChange(value - coinsStock.get(coin), value, "\"" + coin.TEXT + "\" coin(s)");
-    coinsStock.put(coin, value);
+    final int oldValue = coinsStock[coinSet.indexOf(coin)].set(value);
+    version.incrementAndGet();
+    Utils.logChange(value - oldValue, value, "\"" + coin.TEXT + "\" coin(s)");
+  }
+
+  /**
+   * Adds the counters of the coins changed by {@code restock} to {@code deltas},
+   * with the quantity to add to each one. Changes nothing.
+   * Throws an IllegalArgumentException if a Coin is not in the CoinSet.
+   *
+   * @param restock the Restock whose coins must be found
+   * @param deltas the Map the counters and their quantities are added to
+   * @see #restocked()
+   */
+  void collectRestock(Restock restock, Map<StockCounter, Integer> deltas) {
+    for (Map.Entry<Coin, Integer> entry: restock.getCoins().entrySet()) {
+      Stock.putDelta(deltas, coinsStock[coinSet.indexOf(entry.getKey())], entry.getValue());
+    }
+  }
+
+  /**
+   * Increments the version once the deltas collected by {@code collectRestock} have
+   * been added to the stock of coins. Incrementing it before would let a reader cache
+   * the answers for the old stock under the new version.
+   */
+  void restocked() {
+    version.incrementAndGet();
   }
 
 }
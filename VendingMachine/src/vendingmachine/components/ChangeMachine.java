@@ -1,13 +1,19 @@
 package vendingmachine.components;
 
+import java.util.Arrays;
 import java.util.Map;
 
 import vendingmachine.Coin;
+import vendingmachine.CoinSet;
+import vendingmachine.DrinkCatalog;
 
 /**
  * This class is able to perform operations about change and coins.
  * It uses as an attribute a Change object. Coins can be inserted.
  * Some coins can be refused.
+ * With the adaptive acceptance, a coin is also refused as long as the change on it
+ * could not be given for any drink (a 2 euros coin for a 0.40 drink when the float
+ * is low), which is updated after each change of the stock of coins.
  * 
  * @see Coin
  */
@@ -20,21 +26,152 @@ public class ChangeMachine {
 
   private final Change change;
 
+  /**
+   * True if the coins are refused when the change on them is not possible.
+   */
+  private boolean adaptiveAcceptance;
+
+  /**
+   * The different prices of the drinks, in ascending order.
+   */
+  private int[] prices;
+
+  /**
+   * For each Coin (in the order of the CoinSet), true if the change on it
+   * is possible for a drink with the current stock of coins.
+   */
+  private final boolean[] changeAccepted;
+
+  /**
+   * For each Coin, the stocks of the coins that may be given back on it when
+   * {@code changeAccepted} was computed, each one capped at the number of times
+   * the coin fits in the change.
+   */
+  private final int[][] acceptedStocks;
+
+  /**
+   * For each Coin, true if {@code acceptedStocks} tells what {@code changeAccepted}
+   * was computed for.
+   */
+  private final boolean[] acceptedKnown;
+
+  /**
+   * The ChangePolicy the acceptance of the coins was computed with.
+   */
+  private ChangePolicy acceptedPolicy;
+
+  /**
+   * The capped stocks of the coins, reused by each update of the acceptance.
+   */
+  private final int[] stocks;
+
   /**
    * Builds a change machine with the specified Change object.
    * Each coin may be accepted or not by the change machine.
    * Throws an IllegalArgumentException if {@code acceptedCoins}
-   * do not list all the coins of Coin.
+   * do not list all the coins of the CoinSet of {@code change}.
    * 
    * @param change a Change that deals with the stock of coins
    * @param acceptedCoins a Map that tells if each Coin is accepted or not
    */
   public ChangeMachine(Change change, Map<Coin, Boolean> acceptedCoins) {
-    if (!acceptedCoins.keySet().containsAll(Coin.COINS)) {
-      throw new IllegalArgumentException("acceptedCoins has to list all the coins defined in Coin");
+    if (!acceptedCoins.keySet().containsAll(change.getCoinSet().getCoins())) {
+      throw new IllegalArgumentException("acceptedCoins has to list all the coins of the set");
     }
     this.change = change;
     this.acceptedCoins = acceptedCoins;
+    this.adaptiveAcceptance = false;
+    this.prices = new int[0];
+    final int size = change.getCoinSet().size();
+    this.changeAccepted = new boolean[size];
+    this.acceptedStocks = new int[size][size];
+    this.acceptedKnown = new boolean[size];
+    this.stocks = new int[size];
+    updateAcceptedCoins();
+  }
+
+  /**
+   * Enables or disables the adaptive acceptance of the coins, and updates the
+   * accepted coins.
+   *
+   * @param adaptiveAcceptance true to refuse the coins whose change is not possible
+   * @return true if the acceptance of at least one Coin changed, false otherwise
+   */
+  public boolean setAdaptiveAcceptance(boolean adaptiveAcceptance) {
+    final CoinSet coinSet = change.getCoinSet();
+    final boolean[] accepted = new boolean[coinSet.size()];
+    for (int i = 0; i < accepted.length; i++) {
+      accepted[i] = isCoinAccepted(coinSet.get(i));
+    }
+    this.adaptiveAcceptance = adaptiveAcceptance;
+    updateAcceptedCoins();
+    boolean changed = false;
+    for (int i = 0; i < accepted.length; i++) {
+      changed |= accepted[i] != isCoinAccepted(coinSet.get(i));
+    }
+    return changed;
+  }
+
+  /**
+   * Sets the prices the change must be possible for, taken from the drinks of
+   * the specified catalog, and updates the accepted coins.
+   *
+   * @param catalog the DrinkCatalog of the machine
+   * @return true if the acceptance of at least one Coin changed, false otherwise
+   */
+  public boolean setDrinkPrices(DrinkCatalog catalog) {
+    final int[] sorted = new int[catalog.size()];
+    int size = 0;
+    for (int rank = 0; rank < catalog.size(); rank++) {
+      final int price = catalog.get(catalog.getIdByPrice(rank)).getPrice();
+      if (size == 0 || sorted[size - 1] != price) {
+        sorted[size++] = price;
+      }
+    }
+    this.prices = Arrays.copyOf(sorted, size);
+    Arrays.fill(acceptedKnown, false);
+    return updateAcceptedCoins();
+  }
+
+  /**
+   * Updates, for each Coin, whether the change on it is possible for one of the
+   * drinks. A Coin worth at most the highest price is always possible.
+   * The change on a Coin only depends on the available stock of the smaller coins,
+   * each one up to the number of times it fits in the change: the change is only
+   * computed again (once per price) for the coins whose capped stocks changed since.
+   * So the coins inserted into a well stocked machine cost no change computation.
+   *
+   * @return true if the acceptance of at least one Coin changed, false otherwise
+   */
+  public boolean updateAcceptedCoins() {
+    final CoinSet coinSet = change.getCoinSet();
+    final ChangePolicy policy = change.getPolicy();
+    if (policy != acceptedPolicy) {
+      Arrays.fill(acceptedKnown, false);
+      acceptedPolicy = policy;
+    }
+    boolean changed = false;
+    for (int i = 0; i < changeAccepted.length; i++) {
+      final int value = coinSet.get(i).VALUE;
+      boolean accepted = prices.length == 0 || value <= prices[prices.length - 1];
+      if (!accepted) {
+        final int maxChange = value - prices[0];
+        for (int j = 0; j < stocks.length; j++) {
+          stocks[j] = Math.min(change.getAvailableCoins(j), maxChange / coinSet.get(j).VALUE);
+        }
+        if (acceptedKnown[i] && Arrays.equals(stocks, acceptedStocks[i])) {
+          continue;
+        }
+        for (int j = 0; j < prices.length && !accepted; j++) {
+          accepted = change.canGiveChange(value - prices[j]);
+        }
+        System.arraycopy(stocks, 0, acceptedStocks[i], 0, stocks.length);
+        acceptedKnown[i] = true;
+      }
+      changed |= accepted != changeAccepted[i];
+      changeAccepted[i] = accepted;
+    }
+    return changed && adaptiveAcceptance;
   }
 
   /**
@@ -44,7 +181,47 @@ public class ChangeMachine {
    * @param context the IContext to notify of the coins given
    */
   public void giveChange(int amount, IContext context) {
-    context.addChangeOut(change.giveChange(amount));
+    context.addChangeOut(change.commit(change.reserveGivenChange(amount)));
+  }
+
+  /**
+   * Reserves the coins needed to give change on the specified amount.
+   *
+   * @param amount the amount to give change on
+   * @return the ChangeReservation, or null if the change is not possible
+   */
+  public ChangeReservation reserveChange(int amount) {
+    return change.reserveChange(amount);
+  }
+
+  /**
+   * Same as {@code reserveChange(int)}, reusing a reservation that is over.
+   *
+   * @param amount the amount to give change on
+   * @param spare a ChangeReservation of this ChangeMachine that is over, or null
+   * @return the ChangeReservation, or null if the change is not possible
+   */
+  ChangeReservation reserveChange(int amount, ChangeReservation spare) {
+    return change.reserveChange(amount, spare);
+  }
+
+  /**
+   * Gives back the coins of the specified reservation.
+   *
+   * @param reservation the ChangeReservation to commit
+   * @param context the IContext to notify of the coins given
+   */
+  public void giveChange(ChangeReservation reservation, IContext context) {
+    context.addChangeOut(change.commit(reservation));
+  }
+
+  /**
+   * Makes the coins of the specified reservation available again.
+   *
+   * @param reservation the ChangeReservation to release
+   */
+  public void release(ChangeReservation reservation) {
+    change.release(reservation);
   }
 
   /**
@@ -58,6 +235,47 @@ public class ChangeMachine {
     return change.isChangePossible(amount);
   }
 
+  /**
+   * Same as {@code isChangePossible(int)}, without logging anything when the change
+   * is not possible.
+   *
+   * @param amount number of cents to give change for.
+   * @return true if change on the amount is possible, false otherwise
+   */
+  public boolean canGiveChange(int amount) {
+    return change.canGiveChange(amount);
+  }
+
+  /**
+   * @return a number that changes each time the coins that can be given back change
+   */
+  public long getChangeVersion() {
+    return change.getVersion();
+  }
+
+  /**
+   * @return the ChangePolicy choosing the coins given back by the machine
+   */
+  public ChangePolicy getChangePolicy() {
+    return change.getPolicy();
+  }
+
+  /**
+   * Changes the way the coins given back by the machine are chosen.
+   *
+   * @param policy the new ChangePolicy
+   */
+  public void setChangePolicy(ChangePolicy policy) {
+    change.setPolicy(policy);
+  }
+
+  /**
+   * @return the CoinSet of the coins accepted and given back by the machine
+   */
+  public CoinSet getCoinSet() {
+    return change.getCoinSet();
+  }
+
   /**
    * Adds the specified coin to the stock.
    * 
@@ -72,7 +290,21 @@ public class ChangeMachine {
    * @return true if the coin is accepted, false otherwise
    */
   public boolean isCoinAccepted(Coin coin) {
-    return acceptedCoins.get(coin);
+    return acceptedCoins.get(coin)
+        && (!adaptiveAcceptance || changeAccepted[change.getCoinSet().indexOf(coin)]);
+  }
+
+  /**
+   * Tells why a Coin is refused: a Coin accepted by the configuration is still
+   * refused by the adaptive acceptance as long as the change on it is not possible.
+   *
+   * @param coin the Coin that may be accepted
+   * @return true if the coin is accepted by the configuration but refused because
+   *     the change on it is not possible, false otherwise
+   */
+  public boolean isCoinRefusedForChange(Coin coin) {
+    return acceptedCoins.get(coin) && adaptiveAcceptance
+        && !changeAccepted[change.getCoinSet().indexOf(coin)];
   }
 
   /**
@@ -89,7 +321,7 @@ public class ChangeMachine {
   public Object getInfo() {
     final StringBuilder sb = new StringBuilder(160);
     sb.append("Coins:\n");
-    for (Coin coin: Coin.COINS) {
+    for (Coin coin: change.getCoinSet().getCoins()) {
       sb.append(coin.TEXT).append(": ")
       .append(change.getCoinStock(coin))
       .append(" available.\n");
@@ -107,4 +339,24 @@ public class ChangeMachine {
     change.setCoinStock(coin, value);
   }
 
+  /**
+   * Adds the counters of the coins changed by {@code restock} to {@code deltas}.
+   *
+   * @param restock the Restock whose coins must be found
+   * @param deltas the Map the counters and their quantities are added to
+   * @see Change#collectRestock(Restock, Map)
+   */
+  void collectRestock(Restock restock, Map<StockCounter, Integer> deltas) {
+    change.collectRestock(restock, deltas);
+  }
+
+  /**
+   * Tells that the deltas collected by {@code collectRestock} have been added.
+   *
+   * @see Change#restocked()
+   */
+  void restocked() {
+    change.restocked();
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package vendingmachine.components;
+
+import vendingmachine.CoinSet;
+
+/**
+ * A ChangePolicy chooses which coins are given back when change must be given.
+ * Several sets of coins may give the same amount: the policy decides which one
+ * is the best for the machine (fewest coins, keeping the small coins, ...).
+ * The coins are described by arrays indexed like the coins of the CoinSet.
+ *
+ * @see Change
+ */
+public interface ChangePolicy {
+
+  /**
+   * Computes the coins to give back on {@code amount}.
+   *
+   * @param amount the amount to give change on (in cents, positive)
+   * @param coins the CoinSet of the machine
+   * @param available the number of each coin that can be given back
+   * @return the number of each coin to give, or null if the change is not possible
+   */
+  int[] computeChange(int amount, CoinSet coins, int[] available);
+
+  /**
+   * Computes the coins to give back on {@code amount} into {@code given}, so that
+   * the policies used on each order need not allocate a new array.
+   * By default, copies the result of {@code computeChange(amount, coins, available)}.
+   *
+   * @param amount the amount to give change on (in cents, positive)
+   * @param coins the CoinSet of the machine
+   * @param available the number of each coin that can be given back
+   * @param given receives the number of each coin to give (undefined if the change
+   *     is not possible)
+   * @return true if the change is possible, false otherwise
+   */
+  default boolean computeChange(int amount, CoinSet coins, int[] available, int[] given) {
+    final int[] result = computeChange(amount, coins, available);
+    if (result == null) {
+      return false;
+    }
+    System.arraycopy(result, 0, given, 0, given.length);
+    return true;
+  }
+
+}
@@ -0,0 +1,97 @@
+package vendingmachine.components;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A ChangeReservation holds the coins of the Change reserved to give change
+ * on an amount. It is created by {@code Change.reserveChange(int)} and ends
+ * either by being committed (the coins are given back) or released.
+ * Once over, the machine may reuse it for the change of one of its next orders.
+ */
+public final class ChangeReservation {
+
+  /**
+   * The amount of change reserved (in cents).
+   */
+  private int amount;
+
+  /**
+   * The number of each Coin reserved, in the order of the CoinSet.
+   */
+  private final int[] coins;
+
+  /**
+   * Becomes true when the reservation is committed or released.
+   */
+  private final AtomicBoolean over;
+
+  /**
+   * Creates a reservation of the specified coins.
+   *
+   * @param amount the amount of change reserved (in cents)
+   * @param coins the number of each Coin reserved, in the order of the CoinSet
+   */
+  ChangeReservation(int amount, int[] coins) {
+    this.amount = amount;
+    this.coins = coins;
+    this.over = new AtomicBoolean(false);
+  }
+
+  /**
+   * Makes a reservation that is over hold new coins.
+   * Throws an IllegalStateException if the reservation is still active.
+   *
+   * @param amount the amount of change reserved (in cents)
+   * @param coins the number of each Coin reserved, in the order of the CoinSet
+   *     (copied into the reservation)
+   */
+  void reuse(int amount, int[] coins) {
+    if (isActive()) {
+      throw new IllegalStateException("An active reservation can't be reused");
+    }
+    this.amount = amount;
+    System.arraycopy(coins, 0, this.coins, 0, this.coins.length);
+    over.set(false);
+  }
+
+  /**
+   * @return the amount of change reserved (in cents)
+   */
+  public int getAmount() {
+    return amount;
+  }
+
+  /**
+   * @return the number of each Coin reserved, in the order of the CoinSet
+   *     (not a copy: it must not be modified)
+   */
+  int[] getCoins() {
+    return coins;
+  }
+
+  /**
+   * @param index the index of a Coin in the CoinSet
+   * @return the number of this Coin reserved
+   */
+  int getCoins(int index) {
+    return coins[index];
+  }
+
+  /**
+   * Marks the reservation as over. Only the first call succeeds, so that a reservation
+   * can not be both committed and released.
+   *
+   * @return true if the reservation was not over yet, false otherwise
+   */
+  boolean end() {
+    return over.compareAndSet(false, true);
+  }
+
+  /**
+   * @return true if the reservation has not been committed or released yet
+   */
+  public boolean isActive() {
+    return !over.get();
+  }
+
+}
@@ -1,22 +1,40 @@
 package vendingmachine.components;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
-import javax.swing.Timer;
+import javax.sound.sampled.Clip;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import vendingmachine.Coin;
+import vendingmachine.CoinSet;
 import vendingmachine.Drink;
+import vendingmachine.DrinkCatalog;
+import vendingmachine.MoneyFormat;
 import vendingmachine.SoundLoader;
 import vendingmachine.Utils;
+import vendingmachine.monitoring.FleetStatistics;
+import vendingmachine.monitoring.FlightDataRecorder;
+import vendingmachine.monitoring.FlightDataRecorder.Kind;
+import vendingmachine.monitoring.PreparationEvent;
+import vendingmachine.monitoring.ProblemEvent;
+import vendingmachine.monitoring.StateDwellEvent;
+import vendingmachine.monitoring.UIRefreshEvent;
 import vendingmachine.states.Idle;
 import vendingmachine.states.NoCup;
+import vendingmachine.states.Preparing;
 import vendingmachine.states.Problem;
 import vendingmachine.states.State;
 import vendingmachine.states.StuckCoin;
@@ -31,11 +49,41 @@ public class Context implements IMachine, IContext {
 
   private static final Logger log = LogManager.getLogger("Context");
 
+  /**
+   * The logger the flight data is dumped to when a problem is encountered.
+   */
+  private static final Logger flightLog = LogManager.getLogger("FlightData");
+
+  /**
+   * The id given to the last machine created.
+   */
+  private static final AtomicInteger lastId = new AtomicInteger();
+
+  /**
+   * The maximal number of paid orders that can wait for the end of the current preparation.
+   */
+  public static final int MAX_PENDING_ORDERS = 2;
+
+  /**
+   * The maximal number of drinks that can be ordered in a single batch.
+   */
+  public static final int MAX_BATCH_SIZE = 10;
+
+  /**
+   * The duration of a preparation (in milliseconds) when the filling sound is missing.
+   */
+  public static final int DEFAULT_PREPARING_TIME = 3000;
+
   /**
    * The probability for a coin to get stuck (between 0 and 1).
    */
   public final double COIN_STUCK_PROB;
 
+  /**
+   * The id of the machine, unique in the application (starting from 1).
+   */
+  private final int id;
+
   /*
    * The different parts of the machine.
    */
@@ -59,29 +107,131 @@ public class Context implements IMachine, IContext {
   private int chosenSugar;
 
   /**
-   * If there is (true) or not (false) a cup inside.
+   * The drink that is currently ordered.
    */
-  private boolean cupInside;
+  private Drink chosenDrink;
 
   /**
-   * The drink that is currently ordered.
+   * The items of the Stock reserved for the chosen drink (null if there is no choice).
    */
-  private Drink chosenDrink;
+  private StockReservation choiceReservation;
 
   /**
-   * The Coin's currently in the container to be given back.
+   * The coins reserved to give change on the chosen drink (null if there is no choice).
    */
-  private final Map<Coin, Integer> changeOut;
+  private ChangeReservation changeReservation;
 
   /**
-   * The UI associated with the machine.
+   * The paid Order's waiting for the end of the current preparation (FIFO).
    */
-  private IMachineGUI machineGUI;
+  private final Queue<Order> pendingOrders;
+
+  /**
+   * The Dispenser's of the machine, each one preparing one drink at a time.
+   */
+  private final List<Dispenser> dispensers;
+
+  /**
+   * The Dispenser's that can begin a preparation, in the order they became available.
+   */
+  private final Queue<Dispenser> freeDispensers;
+
+  /**
+   * The Dispenser's whose cup is waiting to be taken, in the order the drinks were ready.
+   */
+  private final Queue<Dispenser> cupsWaiting;
+
+  /**
+   * True if the preparations are delayed while the water is not hot enough for them.
+   */
+  private boolean thermalAdmission;
+
+  /**
+   * True if the preparation of the next Order is delayed because of the temperature.
+   */
+  private boolean admissionDelayed;
+
+  /**
+   * The timer trying again to start the delayed preparations, as the water heats.
+   */
+  private final ITimer admissionTimer;
+
+  /**
+   * The JFR event of the current State (null if it is not recorded).
+   */
+  private StateDwellEvent stateEvent;
+
+  /**
+   * The JFR event of the preparation of each Dispenser (null if it is not recorded).
+   */
+  private final PreparationEvent[] preparationEvents;
+
+  /**
+   * The number of orders placed since the creation of the machine.
+   */
+  private long placedOrders;
 
   /**
-   * The timer that triggers the end of the preparation after some seconds.
+   * The number of drinks prepared since the creation of the machine.
    */
-  private final Timer preparingTimer;
+  private long servedDrinks;
+
+  /**
+   * The statistics of the fleet the machine reports to (null if it is not monitored).
+   */
+  private FleetStatistics fleet;
+
+  /**
+   * The IClock the events are timed with.
+   */
+  private final IClock clock;
+
+  /**
+   * The last events of the machine.
+   */
+  private final FlightDataRecorder flightData;
+
+  /**
+   * The last temperature recorded in the flight data (in whole degrees).
+   */
+  private int recordedDegrees;
+
+  /**
+   * The identifier of the last batch of Order's that has been placed.
+   */
+  private int lastBatch;
+
+  /**
+   * True for each Drink (indexed by the ids of the catalog) that can be served now.
+   */
+  private final boolean[] servableDrinks;
+
+  /**
+   * For each Drink, the amount of change whose feasibility is cached in
+   * {@code changeFeasible} (-1 if nothing is cached).
+   */
+  private final int[] feasibleAmounts;
+
+  /**
+   * For each Drink, true if the change on its cached amount can be given back.
+   */
+  private final boolean[] changeFeasible;
+
+  /**
+   * The version of the coins stock the cached feasibilities were computed with.
+   */
+  private long changeVersion;
+
+  /**
+   * The number of each Coin currently in the container to be given back,
+   * in the order of the CoinSet.
+   */
+  private final int[] changeOut;
+
+  /**
+   * The UI associated with the machine.
+   */
+  private IMachineGUI machineGUI;
 
   /**
    * A Set of the Problem's the machine is currently facing.
@@ -89,12 +239,37 @@ public class Context implements IMachine, IContext {
   private final Set<Problem> currentProblems;
 
   /**
-   * A Map of the Coin's that are stuck inside the machine.
+   * The number of each Coin stuck inside the machine, in the order of the CoinSet.
+   */
+  private final int[] stuckCoins;
+
+  /**
+   * The texts displayed on each order, built once.
+   */
+  private final DisplayTexts texts;
+
+  /**
+   * Receives the Order's of the cups taken, emptied after each cup.
+   */
+  private final List<Order> takenOrders;
+
+  /**
+   * The Order's whose cups have been taken, to be reused by the next orders.
+   */
+  private final Queue<Order> spareOrders;
+
+  /**
+   * The StockReservation's that are over, to be reused by the next orders.
+   */
+  private final Queue<StockReservation> spareReservations;
+
+  /**
+   * The last ChangeReservation that is over, to be reused (null if there is none).
    */
-  private final Map<Coin, Integer> stuckCoins;
+  private ChangeReservation spareChange;
 
   /**
-   * Creates a vending machine with the specified attributes.
+   * Creates a vending machine with the specified attributes and a single Dispenser.
    * Also creates a HeatingSystem linked to the machine.
    * Initializes all the fields and logs that a new machine has been built.
    * 
@@ -103,84 +278,536 @@ public class Context implements IMachine, IContext {
    * @param coinStuckProb the probability (between 0 and 1) of a coin getting stuck
    */
   public Context(ChangeMachine changeMachine, Stock stock, double coinStuckProb) {
+    this(changeMachine, stock, coinStuckProb, 1);
+  }
+
+  /**
+   * Creates a vending machine with the specified attributes and {@code dispensersNbr}
+   * Dispenser's that can prepare drinks at the same time.
+   * Also creates a HeatingSystem linked to the machine, shared by all the Dispenser's.
+   * Initializes all the fields and logs that a new machine has been built.
+   * Throws an IllegalArgumentException if {@code dispensersNbr} is not strictly positive.
+   * 
+   * @param changeMachine the ChangeMachine associated with the Context
+   * @param stock the Stock associated with the Context
+   * @param coinStuckProb the probability (between 0 and 1) of a coin getting stuck
+   * @param dispensersNbr the number of Dispenser's of the machine
+   */
+  public Context(ChangeMachine changeMachine, Stock stock, double coinStuckProb,
+      int dispensersNbr) {
+    this(changeMachine, stock, coinStuckProb, dispensersNbr, SwingClock.getInstance());
+  }
+
+  /**
+   * Creates a vending machine with the specified attributes, whose preparations and
+   * temperature go on with the specified IClock (a VirtualClock to simulate it faster
+   * than the real time).
+   * Throws an IllegalArgumentException if {@code dispensersNbr} is not strictly positive.
+   * 
+   * @param changeMachine the ChangeMachine associated with the Context
+   * @param stock the Stock associated with the Context
+   * @param coinStuckProb the probability (between 0 and 1) of a coin getting stuck
+   * @param dispensersNbr the number of Dispenser's of the machine
+   * @param clock the IClock of the machine
+   */
+  public Context(ChangeMachine changeMachine, Stock stock, double coinStuckProb,
+      int dispensersNbr, IClock clock) {
+    if (dispensersNbr <= 0) {
+      throw new IllegalArgumentException("A machine needs at least one dispenser");
+    }
+    this.id = lastId.incrementAndGet();
     this.state = Idle.getInstance();
+    this.clock = clock;
+    this.flightData = new FlightDataRecorder(FlightDataRecorder.DEFAULT_CAPACITY);
 
     this.changeMachine = changeMachine;
     this.stock = stock;
     this.COIN_STUCK_PROB = coinStuckProb;
 
-    this.heatingSystem = new HeatingSystem(this);
+    this.heatingSystem = new HeatingSystem(this, clock);
+    this.recordedDegrees = (int) heatingSystem.getTemperature();
+    heatingSystem.addObserver(this::recordTemperature);
+    this.thermalAdmission = true;
+    this.admissionTimer = clock.createTimer("startNextOrder", 1000, false, this::startNextOrder);
     this.amountInside = 0;
     this.chosenSugar = 0;
-    this.cupInside = false;
-    this.changeOut = new Hashtable<Coin, Integer>();
-    Utils.resetCoinsMap(changeOut);
+    this.pendingOrders = new ArrayDeque<Order>(MAX_PENDING_ORDERS);
+    this.changeOut = new int[changeMachine.getCoinSet().size()];
+    this.texts = new DisplayTexts();
+    this.takenOrders = new ArrayList<Order>(MAX_BATCH_SIZE);
+    this.spareOrders = new ArrayDeque<Order>();
+    this.spareReservations = new ArrayDeque<StockReservation>();
 
     currentProblems = new HashSet<Problem>();
-    stuckCoins = new Hashtable<Coin, Integer>();
-    Utils.resetCoinsMap(stuckCoins);
+    stuckCoins = new int[changeMachine.getCoinSet().size()];
     if (!stock.isCupInStock()) {
       this.state = NoCup.getInstance();
       currentProblems.add(NoCup.getInstance());
     }
 
-    preparingTimer = new Timer(
-        (int) (SoundLoader.getInstance().FILLING.getMicrosecondLength() / 1000),
-        e -> this.preparingOver());
-    preparingTimer.setRepeats(false); // makes its action only once
+    final Clip filling = SoundLoader.getInstance().FILLING;
+    final int preparingTime = filling == null
+        ? DEFAULT_PREPARING_TIME : (int) (filling.getMicrosecondLength() / 1000);
+    dispensers = new ArrayList<Dispenser>(dispensersNbr);
+    preparationEvents = new PreparationEvent[dispensersNbr];
+    freeDispensers = new ArrayDeque<Dispenser>(dispensersNbr);
+    cupsWaiting = new ArrayDeque<Dispenser>(dispensersNbr);
+    for (int i = 0; i < dispensersNbr; i++) {
+      final Dispenser dispenser = new Dispenser(i, preparingTime, this::preparingOver, clock);
+      dispensers.add(dispenser);
+      freeDispensers.add(dispenser);
+    }
+
+    final int drinksNbr = stock.getCatalog().size();
+    servableDrinks = new boolean[drinksNbr];
+    feasibleAmounts = new int[drinksNbr];
+    changeFeasible = new boolean[drinksNbr];
+    changeVersion = -1;
+    changeMachine.setDrinkPrices(stock.getCatalog());
+    updateServableDrinks();
 
+    enter(state);
     log.info("New Vending Machine Built");
   }
 
   /**
-   * Called at the end of the preparation of a drink.
-   * Updates all the stock values and logs all the information about the order.
-   * If no problems were created during the preparation, changes state to Idle.
+   * Called at the end of the preparation of a drink by the specified Dispenser.
+   * Removes the items reserved for the order from the stock and logs all the
+   * information about the order.
+   * If the client was only waiting for his drink and no problems were created
+   * during the preparation, changes state to Idle (or stays in Preparing if
+   * other orders are not over).
+   *
+   * @param dispenser the Dispenser whose preparation is over
    */
-  private void preparingOver() {
-    giveChange(amountInside - chosenDrink.getPrice());
+  private void preparingOver(Dispenser dispenser) {
+    final Drink drink = dispenser.getPreparingOrder().getDrink();
+    final int sugar = dispenser.getPreparingOrder().getSugar();
+    final boolean spoon = dispenser.getPreparingOrder().getReservation().isSpoonReserved();
+    stock.commit(dispenser.getPreparingOrder().getReservation(), this);
+    if (log.isInfoEnabled()) {
+      logOrder(drink, sugar, spoon);
+    }
+
+    final Order order = dispenser.finish(spoon);
+    servedDrinks++;
+    if (fleet != null) {
+      fleet.drinkServed();
+    }
+    if (preparationEvents[dispenser.getIndex()] != null) {
+      preparationEvents[dispenser.getIndex()].finish();
+      preparationEvents[dispenser.getIndex()] = null;
+    }
+    if (dispenser.getCupsNbr() == 1) {
+      cupsWaiting.add(dispenser);
+    }
+    machineGUI.setCupBool(true, spoon);
+
+    machineGUI.setCupText(texts.getCupText(drink, sugar));
+    machineGUI.setTemporaryNorthText(texts.getReadyText(drink));
+
+    heatingSystem.drinkOrdered();
+    if (currentProblems.isEmpty() && order.isSameBatch(pendingOrders.peek())) {
+      if (isAdmitted()) {
+        // the batch goes on without waiting for the cup
+        startPreparation(dispenser, pendingOrders.poll());
+      } else {
+        admissionTimer.restart();
+      }
+    }
+    if (state == Preparing.getInstance()) {
+      changeState(getRestingState());
+    }
+    updateUI();
+  }
+
+  /**
+   * Logs the items of an order whose preparation is over, with what remains in stock.
+   *
+   * @param drink the Drink prepared
+   * @param sugar the number of sugar cubes of the drink
+   * @param spoon true if a spoon has been given
+   */
+  private void logOrder(Drink drink, int sugar, boolean spoon) {
     final StringBuilder logMsg = new StringBuilder(100);
     logMsg.append("New order:").append(System.lineSeparator())
-          .append("\t").append(chosenDrink.getName());
-    stock.removeDrink(chosenDrink);
-    logMsg.append(" (").append(stock.getDrinkQty(chosenDrink))
+          .append("\t").append(drink.getName());
+    logMsg.append(" (").append(stock.getDrinkQty(drink))
           .append(" remaining);").append(System.lineSeparator());
 
-    if (chosenDrink.isSugar()) {
-      stock.removeSugarCubes(chosenSugar);
-      logMsg.append("\tWith ").append(chosenSugar).append(" sugar cube(s) (")
+    if (drink.isSugar()) {
+      logMsg.append("\tWith ").append(sugar).append(" sugar cube(s) (")
       .append(stock.getSugarCubesNbr()).append(" remaining);").append(System.lineSeparator());
     }
 
-    boolean spoon = false;
-    if (chosenDrink.isSugar() && stock.isSpoonInStock()) {
-      stock.removeSpoon();
-      spoon = true;
+    if (spoon) {
       logMsg.append("\tWith a spoon (").append(stock.getSpoonsNbr())
             .append(" remaining);").append(System.lineSeparator());
     }
 
-    stock.removeCup(this);
     logMsg.append('\t').append(stock.getCupsNbr()).append(" cup(s) remaining.");
-    setCupBool(true, spoon);
-
     log.info(logMsg.toString());
-    machineGUI.setCupText(chosenDrink.getName() + " (" + chosenSugar + " sugar cube(s))");
-    machineGUI.setTemporaryNorthText("Your " + chosenDrink.getName() + " is ready!");
+  }
 
-    heatingSystem.drinkOrdered();
+  /**
+   * Called when the client chooses {@code drink}. Reserves the items of the Stock
+   * it needs (the drink, a cup and a spoon if there is one) and the coins to give
+   * change on the amount inserted, so that they can not be taken by anything else
+   * while the client chooses his sugar. The reservations end either when the order
+   * is placed ({@code placeOrder()}) or when the choice is canceled ({@code cancelChoice()}).
+   *
+   * @param drink the Drink chosen by the client
+   * @return true if everything has been reserved, false if the change is not possible
+   */
+  public boolean reserveChoice(Drink drink) {
+    cancelChoice();
+    final StockReservation reservation = stock.reserve(drink, spareReservations.peek());
+    if (reservation == null) {
+      return false;
+    }
+    if (reservation == spareReservations.peek()) {
+      spareReservations.poll();
+    }
+    final ChangeReservation change =
+        changeMachine.reserveChange(amountInside - drink.getPrice(), spareChange);
+    if (change == null) {
+      stock.release(reservation);
+      spareReservations.add(reservation);
+      return false;
+    }
+    spareChange = null;
+    chosenDrink = drink;
+    choiceReservation = reservation;
+    changeReservation = change;
+    updateServableDrinks();
+    return true;
+  }
+
+  /**
+   * Releases the items and the coins reserved for the drink chosen by the client,
+   * if any. Called when the choice is canceled or interrupted by a problem.
+   */
+  public void cancelChoice() {
+    if (choiceReservation != null) {
+      stock.release(choiceReservation);
+      changeMachine.release(changeReservation);
+      spareReservations.add(choiceReservation);
+      spareChange = changeReservation;
+      choiceReservation = null;
+      changeReservation = null;
+      updateServableDrinks();
+    }
+  }
+
+  /**
+   * @return true if a spoon has been reserved for the drink chosen by the client
+   */
+  public boolean isSpoonReserved() {
+    return choiceReservation != null && choiceReservation.isSpoonReserved();
+  }
+
+  /**
+   * Called when the client confirms his choice, which must have been reserved with
+   * {@code reserveChoice}. The sugar is reserved, the chosen drink is paid (the change
+   * on what was inserted is given back) and a new Order is added to the queue.
+   * Its preparation begins immediately if the machine is free, otherwise as soon as
+   * the previous orders are over and their cups have been taken.
+   * If the sugar can not be reserved anymore, the client is asked to choose again.
+   */
+  public void placeOrder() {
+    final int sugar = chosenDrink.isSugar() ? chosenSugar : 0;
+    if (sugar > 0 && !stock.reserveSugar(choiceReservation, sugar)) {
+      machineGUI.setTemporaryNorthText("No more sugar in stock");
+      return;
+    }
+    giveChange(changeReservation);
+    pendingOrders.add(newOrder(chosenDrink, sugar, 0, choiceReservation));
+    orderPlaced(chosenDrink.getPrice());
+    choiceReservation = null;
+    changeReservation = null;
+    if (log.isInfoEnabled()) {
+      log.info(chosenDrink.getName() + " ordered (" + pendingOrders.size() + " order(s) waiting).");
+    }
     chosenSugar = 0;
-    if (currentProblems.isEmpty()) {
-      changeState(Idle.getInstance());
+    changeState(Preparing.getInstance());
+    startNextOrder();
+  }
+
+  /**
+   * Called when the client orders a batch of drinks at once. The items of all the
+   * Order's and the change are reserved, then the whole batch is paid (change is
+   * given back only once) and all its Order's are added to the queue.
+   * They are prepared back to back, their cups are taken together.
+   * If anything can not be reserved, nothing is ordered.
+   *
+   * @param orders the List of the Order's (Drink and sugar) of the batch
+   * @return true if the batch has been ordered, false otherwise
+   */
+  public boolean placeBatch(List<Order> orders) {
+    final List<StockReservation> reservations = new ArrayList<StockReservation>(orders.size());
+    boolean reserved = true;
+    for (int i = 0; i < orders.size() && reserved; i++) {
+      final Drink drink = orders.get(i).getDrink();
+      final int sugar = drink.isSugar() ? orders.get(i).getSugar() : 0;
+      final StockReservation reservation = stock.reserve(drink, spareReservations.peek());
+      if (reservation != null) {
+        if (reservation == spareReservations.peek()) {
+          spareReservations.poll();
+        }
+        reservations.add(reservation);
+      }
+      reserved = reservation != null && (sugar == 0 || stock.reserveSugar(reservation, sugar));
+    }
+    final ChangeReservation change =
+        reserved ? changeMachine.reserveChange(amountInside - getBatchPrice(orders)) : null;
+    if (change == null) {
+      for (StockReservation reservation: reservations) {
+        stock.release(reservation);
+        spareReservations.add(reservation);
+      }
+      return false;
+    }
+
+    giveChange(change);
+    lastBatch++;
+    for (int i = 0; i < orders.size(); i++) {
+      final StockReservation reservation = reservations.get(i);
+      pendingOrders.add(newOrder(reservation.getDrink(), reservation.getSugar(),
+          lastBatch, reservation));
+      orderPlaced(reservation.getDrink().getPrice());
+    }
+    log.info("Batch of " + orders.size() + " drink(s) ordered ("
+        + pendingOrders.size() + " order(s) waiting).");
+    chosenSugar = 0;
+    changeState(Preparing.getInstance());
+    startNextOrder();
+    return true;
+  }
+
+  /**
+   * Creates an Order, reusing one whose cups have been taken if there is one.
+   *
+   * @param drink the Drink ordered
+   * @param sugar the number of sugar cubes chosen
+   * @param batch the identifier of the batch (0 if the Order is alone)
+   * @param reservation the StockReservation of the items needed by the Order
+   * @return the new Order
+   */
+  private Order newOrder(Drink drink, int sugar, int batch, StockReservation reservation) {
+    final Order order = spareOrders.poll();
+    if (order == null) {
+      return new Order(drink, sugar, batch, reservation);
+    }
+    order.reuse(drink, sugar, batch, reservation);
+    return order;
+  }
+
+  /**
+   * Counts an order placed, in the machine and in its fleet.
+   *
+   * @param price the price of the order (in cents)
+   */
+  private void orderPlaced(int price) {
+    placedOrders++;
+    if (fleet != null) {
+      fleet.orderPlaced(price);
+    }
+  }
+
+  /**
+   * @param orders a List of Order's
+   * @return the total price of the Order's (in cents)
+   */
+  public static int getBatchPrice(List<Order> orders) {
+    int price = 0;
+    for (Order order: orders) {
+      price += order.getDrink().getPrice();
+    }
+    return price;
+  }
+
+  /**
+   * Tells if all the Order's of a batch can be served with the items that are not
+   * reserved by other orders: each drink, the cups and the sugar must be available.
+   *
+   * @param orders the List of the Order's of the batch
+   * @return true if the stocks are sufficient for the whole batch, false otherwise
+   */
+  public boolean isBatchAvailable(List<Order> orders) {
+    final DrinkCatalog catalog = stock.getCatalog();
+    final int[] drinks = new int[catalog.size()];
+    int sugar = 0;
+    for (Order order: orders) {
+      final Drink drink = order.getDrink();
+      final int id = catalog.getId(drink);
+      if (stock.getAvailableDrinkQty(drink) < ++drinks[id]) {
+        return false;
+      }
+      if (drink.isSugar()) {
+        sugar += order.getSugar();
+      }
+    }
+    return isSugarAvailable(sugar) && stock.getAvailableCupsNbr() >= orders.size();
+  }
+
+  /**
+   * Updates the drinks that can be served now: the drink and a cup must be available,
+   * the amount inserted must be sufficient and the change on it must be possible.
+   * The drinks are checked by ascending price: once a Drink is too expensive, so are
+   * all the next ones and no change is computed for them. The feasibility of the change
+   * on each amount is cached as long as the coins do not change. When they change,
+   * the coins accepted by the ChangeMachine are updated too.
+   * Notifies the UI if a Drink or a Coin changed.
+   */
+  private void updateServableDrinks() {
+    final DrinkCatalog catalog = stock.getCatalog();
+    final long version = changeMachine.getChangeVersion();
+    if (version != changeVersion) {
+      Arrays.fill(feasibleAmounts, -1);
+      changeVersion = version;
+      if (changeMachine.updateAcceptedCoins() && machineGUI != null) {
+        machineGUI.updateAcceptedCoins();
+      }
+    }
+    final boolean cupAvailable = stock.isCupAvailable();
+    boolean affordable = true;
+    boolean changed = false;
+    for (int rank = 0; rank < catalog.size(); rank++) {
+      final int id = catalog.getIdByPrice(rank);
+      final Drink drink = catalog.get(id);
+      final int change = amountInside - drink.getPrice();
+      affordable &= change >= 0;
+      boolean servable = false;
+      if (affordable && cupAvailable && stock.isDrinkAvailable(drink)) {
+        if (feasibleAmounts[id] != change) {
+          changeFeasible[id] = changeMachine.canGiveChange(change);
+          feasibleAmounts[id] = change;
+        }
+        servable = changeFeasible[id];
+      }
+      changed |= servable != servableDrinks[id];
+      servableDrinks[id] = servable;
+    }
+    if (changed && machineGUI != null) {
+      machineGUI.updateServableDrinks();
+    }
+  }
+
+  @Override
+  public boolean isServable(Drink drink) {
+    return servableDrinks[stock.getCatalog().getId(drink)];
+  }
+
+  /**
+   * Begins the preparation of the waiting Order's, as long as there is a free
+   * Dispenser (no drink in preparation and no cup inside) and no problem.
+   * The Dispenser that has been available for the longest time is used first,
+   * unless the next Order belongs to a batch whose cups wait in a Dispenser:
+   * the batch goes on in that Dispenser.
+   * If the water would get too cold, the preparations are delayed and tried
+   * again each second.
+   *
+   * @see #isAdmitted()
+   */
+  private void startNextOrder() {
+    boolean started = false;
+    while (currentProblems.isEmpty() && !pendingOrders.isEmpty()) {
+      Dispenser dispenser = getBatchDispenser(pendingOrders.peek());
+      if (dispenser == null && freeDispensers.isEmpty()) {
+        break;
+      }
+      if (!isAdmitted()) {
+        admissionTimer.restart();
+        break;
+      }
+      if (dispenser == null) {
+        dispenser = freeDispensers.poll();
+      }
+      startPreparation(dispenser, pendingOrders.poll());
+      started = true;
+    }
+    if (started) {
+      SoundLoader.play(SoundLoader.getInstance().FILLING);
+      updateUI();
     }
-    machineGUI.updateUI();
   }
 
   /**
-   * Restarts the Timer that triggers the end of the preparation.
+   * Finds the Dispenser holding the cups of the batch of an Order, when the preparation
+   * of the batch has been delayed by the thermal admission control.
+   *
+   * @param order the Order to prepare
+   * @return the idle Dispenser whose cups belong to the batch of {@code order},
+   *     null if there is none
    */
-  public void restartPreparingTimer() {
-    preparingTimer.restart();
+  private Dispenser getBatchDispenser(Order order) {
+    for (int i = 0; i < dispensers.size(); i++) {
+      final Dispenser dispenser = dispensers.get(i);
+      if (dispenser.getCupsNbr() > 0 && dispenser.canPrepare(order)) {
+        return dispenser;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param dispenser the Dispenser beginning the preparation
+   * @param order the Order to prepare
+   */
+  private void startPreparation(Dispenser dispenser, Order order) {
+    dispenser.start(order);
+    if (PreparationEvent.isRecording()) {
+      preparationEvents[dispenser.getIndex()] = new PreparationEvent(id, dispenser.getIndex(),
+          order.getDrink().getName(), order.getSugar());
+    }
+  }
+
+  /**
+   * Thermal admission control: each drink in preparation mixes running water in the
+   * container when it is over, so one more preparation can only begin if the water
+   * stays above the cold limit after all of them. Otherwise, the heater is asked to
+   * heat until it does: a short delay instead of the ColdWater Problem.
+   *
+   * @return true if one more preparation can begin now, false otherwise
+   */
+  private boolean isAdmitted() {
+    int orders = 1;
+    for (int i = 0; i < dispensers.size(); i++) {
+      if (dispensers.get(i).isPreparing()) {
+        orders++;
+      }
+    }
+    if (!thermalAdmission || heatingSystem.canMix(orders)) {
+      admissionDelayed = false;
+      return true;
+    }
+    if (!admissionDelayed) {
+      admissionDelayed = true;
+      log.info("Preparation delayed until the water is hot enough.");
+    }
+    heatingSystem.preheatFor(orders);
+    return false;
+  }
+
+  /**
+   * @param thermalAdmission true to delay the preparations while the water is not hot
+   *     enough for them (the default), false to start them as soon as possible
+   */
+  public void setThermalAdmission(boolean thermalAdmission) {
+    this.thermalAdmission = thermalAdmission;
+  }
+
+  /**
+   * Returns the State the machine must be in when no client is choosing a drink:
+   * Preparing if an Order is in preparation or waiting, Idle otherwise.
+   *
+   * @return the State to go back to at the end of an operation
+   */
+  public State getRestingState() {
+    if (isPreparing() || !pendingOrders.isEmpty()) {
+      return Preparing.getInstance();
+    }
+    return Idle.getInstance();
   }
 
   /**
@@ -191,10 +818,24 @@ public class Context implements IMachine, IContext {
    */
   public void changeState(State newState) {
     this.state.exit(this);
-    this.state = newState;
+    enter(newState);
     this.state.entry(this);
 
-    machineGUI.updateUI();
+    updateUI();
+  }
+
+  /**
+   * Sets the current State, ending the StateDwellEvent of the previous one.
+   *
+   * @param newState the State the machine is now in
+   */
+  private void enter(State newState) {
+    if (stateEvent != null) {
+      stateEvent.exit(newState.toString());
+    }
+    this.state = newState;
+    record(Kind.STATE, 0, newState);
+    stateEvent = StateDwellEvent.isRecording() ? new StateDwellEvent(id, newState.toString()) : null;
   }
 
   @Override
@@ -206,13 +847,21 @@ public class Context implements IMachine, IContext {
   public void addProblem(Problem problem) {
     if (currentProblems.add(problem)) {
       log.warn(problem + " problem encountered!");
+      ProblemEvent.emit(id, problem.toString(), true);
+      if (fleet != null) {
+        fleet.problemRaised();
+      }
+      cancelChoice();
       if (this.state.isProblem()) {
-        this.state = problem;
+        enter(problem);
         this.state.entry(this);
-        machineGUI.updateUI();
+        updateUI();
       } else {
         changeState(problem);
       }
+      if (flightLog.isWarnEnabled()) {
+        flightLog.warn(problem + " problem in machine " + id + ". " + flightData.dump());
+      }
     }
   }
 
@@ -220,8 +869,13 @@ public class Context implements IMachine, IContext {
   public void problemSolved(Problem problem) {
     if (currentProblems.remove(problem)) {
       log.info(problem + " problem solved!");
+      ProblemEvent.emit(id, problem.toString(), false);
+      if (fleet != null) {
+        fleet.problemSolved();
+      }
       if (currentProblems.isEmpty()) {
-        changeState(Idle.getInstance());
+        changeState(getRestingState());
+        startNextOrder();
       } else if (this.state == problem) {
         changeState(currentProblems.iterator().next());
       } else {
@@ -232,34 +886,53 @@ public class Context implements IMachine, IContext {
 
   @Override
   public void coinInserted(Coin coin) {
+    record(Kind.COIN, coin.VALUE, coin);
     state.coinInserted(coin, this);
   }
 
   @Override
   public void confirm() {
+    record(Kind.CONFIRM, 0, null);
     state.confirm(this);
   }
 
   @Override
   public void cancel() {
+    record(Kind.CANCEL, 0, null);
     state.cancel(this);
   }
 
   @Override
   public void less() {
+    record(Kind.LESS, 0, null);
     state.less(this);
     machineGUI.updateSugarText();
   }
 
   @Override
   public void more() {
+    record(Kind.MORE, 0, null);
     state.more(this);
     machineGUI.updateSugarText();
   }
 
   @Override
   public void drinkButton(Drink drink) {
-    state.drinkButton(drink, this);
+    final Drink current = getCurrentDrink(drink);
+    record(Kind.DRINK, stock.getCatalog().getId(current), current);
+    state.drinkButton(current, this);
+  }
+
+  /**
+   * The buttons of the UI may still hold a Drink with its price before a change
+   * of the catalog: the drinks are always ordered at their current price.
+   *
+   * @param drink a Drink of the catalog, at any price
+   * @return the Drink equal to {@code drink} in the current catalog
+   */
+  private Drink getCurrentDrink(Drink drink) {
+    final DrinkCatalog catalog = stock.getCatalog();
+    return catalog.get(catalog.getId(drink));
   }
 
   @Override
@@ -271,12 +944,7 @@ public class Context implements IMachine, IContext {
    * @return true if all the Drinks are free, false otherwise.
    */
   public boolean areDrinksFree() {
-    for (Drink drink: stock.getDrinks()) {
-      if (drink.getPrice() != 0) {
-        return false;
-      }
-    }
-    return true;
+    return stock.getCatalog().areAllFree();
   }
 
   @Override
@@ -284,7 +952,7 @@ public class Context implements IMachine, IContext {
     final StringBuilder sb = new StringBuilder(300);
     sb.append("State: ").append(state)
     .append("\n\nStuck coin probability: ").append((int) (COIN_STUCK_PROB * 100)).append(" %\n\n")
-    .append(amountInside / 100.0).append(" " + Utils.EURO + " inserted.\n\n")
+    .append(MoneyFormat.toEuros(amountInside)).append(" inserted.\n\n")
 
     .append(changeMachine.getInfo())
 
@@ -316,7 +984,14 @@ public class Context implements IMachine, IContext {
    * Updates the IMachineGUI associated with the Context.
    */
   public void updateUI() {
+    final UIRefreshEvent event = UIRefreshEvent.isRecording() ? new UIRefreshEvent() : null;
+    if (event != null) {
+      event.begin();
+    }
     machineGUI.updateUI();
+    if (event != null) {
+      event.done(id);
+    }
   }
 
   /**
@@ -326,13 +1001,33 @@ public class Context implements IMachine, IContext {
     return stock;
   }
 
-  /**
-   * @return the amount entered by the client (in cents)
-   */
+  @Override
   public int getAmountInside() {
     return amountInside;
   }
 
+  /**
+   * Gives back the coins of the specified reservation, made for the change
+   * on the amount inserted.
+   *
+   * @param reservation the ChangeReservation to commit
+   */
+  private void giveChange(ChangeReservation reservation) {
+    if (reservation.getAmount() != 0) {
+      changeMachine.giveChange(reservation, this);
+      if (log.isInfoEnabled()) {
+        log.info(MoneyFormat.toEuros(reservation.getAmount()) + " of change given back.");
+      }
+      machineGUI.setChangeBool(true);
+    } else {
+      changeMachine.release(reservation);
+    }
+    spareChange = reservation;
+    amountInside = 0;
+    updateServableDrinks();
+    machineGUI.updateInfo();
+  }
+
   /**
    * Simulates the giving of the change on the amount specified.
    * The amount must be positive.
@@ -342,10 +1037,13 @@ public class Context implements IMachine, IContext {
   public void giveChange(int amount) {
     if (amount != 0) {
       changeMachine.giveChange(amount, this);
-      log.info(amount / 100.0 + " " + Utils.EURO + " of change given back.");
+      if (log.isInfoEnabled()) {
+        log.info(MoneyFormat.toEuros(amount) + " of change given back.");
+      }
       machineGUI.setChangeBool(true);
     }
     amountInside = 0;
+    updateServableDrinks();
     machineGUI.updateInfo();
   }
 
@@ -362,6 +1060,21 @@ public class Context implements IMachine, IContext {
     return changeMachine.isCoinAccepted(coin);
   }
 
+  /**
+   * @param coin the Coin that may be accepted
+   * @return true if the Coin is refused only because the change on it is not possible,
+   *     false otherwise
+   * @see ChangeMachine#isCoinRefusedForChange(Coin)
+   */
+  public boolean isCoinRefusedForChange(Coin coin) {
+    return changeMachine.isCoinRefusedForChange(coin);
+  }
+
+  @Override
+  public CoinSet getCoinSet() {
+    return changeMachine.getCoinSet();
+  }
+
   /**
    * Simulates the insertion of the specified Coin.
    * 
@@ -370,8 +1083,11 @@ public class Context implements IMachine, IContext {
   public void insertCoin(Coin coin) {
     amountInside += coin.VALUE;
     changeMachine.insertCoin(coin);
-    log.info(coin.TEXT + " inserted (" + amountInside / 100.0 + " " + Utils.EURO + " in total).");
-    machineGUI.setTemporaryNorthText(coin.TEXT + " inserted");
+    if (log.isInfoEnabled()) {
+      log.info(coin.TEXT + " inserted (" + amountInside / 100.0 + " " + Utils.EURO + " in total).");
+    }
+    machineGUI.setTemporaryNorthText(texts.getInsertedText(coin));
+    updateServableDrinks();
     machineGUI.updateInfo();
   }
 
@@ -379,7 +1095,73 @@ public class Context implements IMachine, IContext {
    * @return true if a cup is waiting to be taken, false otherwise
    */
   public boolean isCupInside() {
-    return cupInside;
+    return !cupsWaiting.isEmpty();
+  }
+
+  /**
+   * @return true if a drink is currently in preparation, false otherwise
+   */
+  public boolean isPreparing() {
+    for (int i = 0; i < dispensers.size(); i++) {
+      if (dispensers.get(i).isPreparing()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return an unmodifiable List of the Dispenser's of the machine
+   */
+  public List<Dispenser> getDispensers() {
+    return Collections.unmodifiableList(dispensers);
+  }
+
+  /**
+   * @return the number of paid Order's waiting for the end of the current preparation
+   */
+  public int getPendingOrdersNbr() {
+    return pendingOrders.size();
+  }
+
+  /**
+   * @return true if another Order can be added to the queue, false otherwise
+   */
+  public boolean canQueueOrder() {
+    return pendingOrders.size() < MAX_PENDING_ORDERS;
+  }
+
+  /**
+   * Tells if {@code drink} can be ordered, the drinks reserved by the orders
+   * that are not served yet being unavailable.
+   *
+   * @param drink the Drink that may be ordered
+   * @return true if there is a {@code drink} left for a new order, false otherwise
+   */
+  public boolean isDrinkAvailable(Drink drink) {
+    return stock.isDrinkAvailable(drink);
+  }
+
+  /**
+   * @return true if there is a cup left for a new order, false otherwise
+   */
+  public boolean isCupAvailable() {
+    return stock.isCupAvailable();
+  }
+
+  /**
+   * @return true if there is a spoon left for a new sugared order, false otherwise
+   */
+  public boolean isSpoonAvailable() {
+    return stock.isSpoonAvailable();
+  }
+
+  /**
+   * @param sugar the number of sugar cubes that may be chosen
+   * @return true if {@code sugar} sugar cubes are left for a new order, false otherwise
+   */
+  public boolean isSugarAvailable(int sugar) {
+    return stock.isSugarAvailable(sugar);
   }
 
   /**
@@ -410,37 +1192,63 @@ public class Context implements IMachine, IContext {
     this.chosenSugar = chosenSugar;
   }
 
-  /**
-   * Tells the UI to display or not the cup, with or without a spoon.
-   * The {@code spoon} parameter is useless if {@code cup} is false.
-   * 
-   * @param cup true if the cup must be displayed, false otherwise
-   * @param spoon true if a spoon is given with the cup
-   */
-  public void setCupBool(boolean cup, boolean spoon) {
-    machineGUI.setCupBool(cup, spoon);
-    cupInside = cup;
-  }
 
   @Override
   public void takeChange() {
+    record(Kind.TAKE_CHANGE, 0, null);
     machineGUI.setChangeBool(false);
-    final int value = Utils.totalValue(changeOut);
+    final int value = getCoinSet().totalValue(changeOut);
     if (value > 0) {
-      Utils.resetCoinsMap(changeOut);
+      Arrays.fill(changeOut, 0);
       machineGUI.updateChangeOutInfo();
     }
   }
 
+  /**
+   * Takes the cups of the Dispenser whose cup has been waiting for the longest time
+   * (all the cups of a batch are on the same tray).
+   * If another cup is still inside, the UI displays it.
+   * If it is not preparing another drink of a batch, the Dispenser becomes free and
+   * begins the next preparation (if any).
+   */
   @Override
   public void takeCup() {
-    if (cupInside) {
-      this.setCupBool(false, false);
+    record(Kind.TAKE_CUP, 0, null);
+    if (!cupsWaiting.isEmpty()) {
+      final Dispenser dispenser = cupsWaiting.poll();
+      dispenser.takeCups(takenOrders);
+      if (cupsWaiting.isEmpty()) {
+        machineGUI.setCupBool(false, false);
+      } else {
+        machineGUI.setCupBool(true, cupsWaiting.peek().isSpoonInside());
+      }
       machineGUI.setTemporaryNorthText("Have a nice day!");
-      log.info("Cup of " + chosenDrink.getName() + " taken.");
+      if (log.isInfoEnabled()) {
+        for (int i = 0; i < takenOrders.size(); i++) {
+          log.info("Cup of " + takenOrders.get(i).getDrink().getName() + " taken.");
+        }
+      }
+      for (int i = 0; i < takenOrders.size(); i++) {
+        spareReservations.add(takenOrders.get(i).getReservation());
+        spareOrders.add(takenOrders.get(i));
+      }
+      takenOrders.clear();
+      if (!dispenser.isPreparing()) {
+        freeDispensers.add(dispenser);
+        startNextOrder();
+      }
     }
   }
 
+  @Override
+  public void orderBatch(List<Order> orders) {
+    final List<Order> current = new ArrayList<Order>(orders.size());
+    for (Order order: orders) {
+      current.add(new Order(getCurrentDrink(order.getDrink()), order.getSugar()));
+    }
+    state.orderBatch(current, this);
+  }
+
   @Override
   public void setWaterSupply(boolean bool) {
     heatingSystem.setWaterSupply(bool);
@@ -448,20 +1256,34 @@ public class Context implements IMachine, IContext {
 
   @Override
   public <T extends IMachineGUI & TemperatureListener> void setUI(T machineGUI) {
+    if (this.machineGUI instanceof TemperatureListener) {
+      heatingSystem.removeObserver((TemperatureListener) this.machineGUI);
+    }
     this.machineGUI = machineGUI;
     heatingSystem.addObserver(machineGUI);
+
+    // The new UI displays what the machine is showing now
+    machineGUI.setTemperature(heatingSystem.getTemperature());
+    if (!cupsWaiting.isEmpty()) {
+      machineGUI.setCupBool(true, cupsWaiting.peek().isSpoonInside());
+    }
+    if (getCoinSet().totalValue(changeOut) > 0) {
+      machineGUI.setChangeBool(true);
+    }
+    machineGUI.enableRepair(currentProblems.contains(StuckCoin.getInstance()));
   }
 
   @Override
   public String getChangeOutInfo() {
     final StringBuilder sb = new StringBuilder(40);
     sb.append("<html>");
-    for (Coin coin: Coin.COINS) {
-      sb.append(coin.TEXT).append(": ")
-        .append(changeOut.get(coin)).append(" coin(s).<br>");
+    final CoinSet coinSet = changeMachine.getCoinSet();
+    for (int i = 0; i < coinSet.size(); i++) {
+      sb.append(coinSet.get(i).TEXT).append(": ")
+        .append(changeOut[i]).append(" coin(s).<br>");
     }
-    sb.append("Total: ").append(Utils.totalValue(changeOut) / 100.0)
-      .append(" " + Utils.EURO + ".</html>");
+    sb.append("Total: ").append(MoneyFormat.toEuros(coinSet.totalValue(changeOut)))
+      .append(".</html>");
     return sb.toString();
   }
 
@@ -471,16 +1293,16 @@ public class Context implements IMachine, IContext {
    * @param coin the Coin that is given back
    */
   public void addChangeOutCoin(Coin coin) {
-    changeOut.put(coin, changeOut.get(coin) + 1);
+    changeOut[getCoinSet().indexOf(coin)]++;
     machineGUI.updateChangeOutInfo();
     machineGUI.setChangeBool(true);
     log.info(coin.TEXT + " inserted but not allowed.");
   }
 
   @Override
-  public void addChangeOut(Map<Coin, Integer> moneyToGive) {
-    for (Coin coin: Coin.COINS) {
-      changeOut.put(coin, changeOut.get(coin) + moneyToGive.get(coin));
+  public void addChangeOut(int[] coinsNbr) {
+    for (int i = 0; i < changeOut.length; i++) {
+      changeOut[i] += coinsNbr[i];
     }
     machineGUI.updateChangeOutInfo();
   }
@@ -488,18 +1310,21 @@ public class Context implements IMachine, IContext {
   @Override
   public void setCoinStock(Coin coin, int value) {
     changeMachine.setCoinStock(coin, value);
+    updateServableDrinks();
     machineGUI.updateInfo();
   }
 
   @Override
   public void setDrinkStock(Drink drink, int value) {
     stock.setDrinkStock(drink, value);
+    updateServableDrinks();
     machineGUI.updateInfo();
   }
 
   @Override
   public void setCupStock(int value) {
     stock.setCupStock(value, this);
+    updateServableDrinks();
     machineGUI.updateInfo();
   }
 
@@ -515,6 +1340,163 @@ public class Context implements IMachine, IContext {
     machineGUI.updateInfo();
   }
 
+  /**
+   * {@inheritDoc}
+   * Logs a single line, updates the drinks that can be served and the UI once,
+   * and adds or solves the NoCup Problem if needed.
+   */
+  @Override
+  public void restock(Restock restock) {
+    final Map<StockCounter, Integer> deltas = new LinkedHashMap<StockCounter, Integer>();
+    changeMachine.collectRestock(restock, deltas);
+    stock.collectRestock(restock, deltas);
+    if (!StockCounter.tryAddAll(deltas)) {
+      throw new IllegalArgumentException("Can't restock " + restock
+          + "; some items are missing or reserved by orders.");
+    }
+    changeMachine.restocked();
+    log.info("Restock: " + restock + ".");
+
+    if (stock.getCupsNbr() == 0) {
+      addProblem(NoCup.getInstance());
+    } else {
+      problemSolved(NoCup.getInstance());
+    }
+    updateServableDrinks();
+    machineGUI.updateInfo();
+  }
+
+  /**
+   * {@inheritDoc}
+   * The new DrinkCatalog is a copy of the current one, swapped in a single write:
+   * the pending Order's and the choice of the client keep their own Drink, hence their
+   * price. The prices the change must be possible for, the drinks that can be served
+   * and the drink buttons of the UI are updated.
+   */
+  @Override
+  public void setPrices(Map<Drink, Integer> prices) {
+    final DrinkCatalog catalog = stock.getCatalog().withPrices(prices);
+    stock.setCatalog(catalog);
+    if (log.isInfoEnabled()) {
+      log.info("New prices: " + catalog.getDrinks().stream()
+          .map(drink -> drink.getName() + " " + MoneyFormat.toEuros(drink.getPrice()))
+          .collect(Collectors.joining(", ")) + ".");
+    }
+
+    final boolean acceptanceChanged = changeMachine.setDrinkPrices(catalog);
+    updateServableDrinks();
+    if (machineGUI != null) {
+      if (acceptanceChanged) {
+        machineGUI.updateAcceptedCoins();
+      }
+      machineGUI.updateDrinks();
+      machineGUI.updateInfo();
+    }
+  }
+
+  /**
+   * Enables or disables the adaptive acceptance of the coins, and updates the
+   * accepted coins of the UI if needed.
+   *
+   * @param adaptiveAcceptance true to refuse the coins whose change is not possible
+   */
+  public void setAdaptiveAcceptance(boolean adaptiveAcceptance) {
+    if (changeMachine.setAdaptiveAcceptance(adaptiveAcceptance) && machineGUI != null) {
+      machineGUI.updateAcceptedCoins();
+    }
+  }
+
+  @Override
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * @return the HeatingSystem shared by all the Dispenser's
+   */
+  public HeatingSystem getHeatingSystem() {
+    return heatingSystem;
+  }
+
+  /**
+   * Records an event of the machine in its flight data.
+   *
+   * @param kind the Kind of event
+   * @param value the value of the event
+   * @param subject what the event is about, or null
+   */
+  private void record(Kind kind, int value, Object subject) {
+    flightData.record(clock.getTime(), kind, value, subject);
+  }
+
+  /**
+   * Records the temperature in the flight data each time it changes of a whole degree.
+   *
+   * @param temperature the new temperature of the water
+   */
+  private void recordTemperature(double temperature) {
+    final int degrees = (int) temperature;
+    if (degrees != recordedDegrees) {
+      recordedDegrees = degrees;
+      record(Kind.TEMPERATURE, (int) Math.round(temperature * 10), null);
+    }
+  }
+
+  /**
+   * Writes the last events of the machine (coins, buttons, states and temperatures).
+   * May be called by any thread.
+   *
+   * @return the text of the events, from the oldest to the newest
+   */
+  public String dumpFlightData() {
+    return flightData.dump();
+  }
+
+  /**
+   * @return the ChangeMachine of the machine
+   */
+  public ChangeMachine getChangeMachine() {
+    return changeMachine;
+  }
+
+  /**
+   * @return a copy of the Set of the Problem's the machine is currently facing
+   */
+  public Set<Problem> getProblems() {
+    return new HashSet<Problem>(currentProblems);
+  }
+
+  /**
+   * @return the number of Problem's the machine is currently facing
+   */
+  public int getProblemsNbr() {
+    return currentProblems.size();
+  }
+
+  /**
+   * @return the number of orders placed since the creation of the machine
+   */
+  public long getPlacedOrdersNbr() {
+    return placedOrders;
+  }
+
+  /**
+   * @return the number of drinks prepared since the creation of the machine
+   */
+  public long getServedDrinksNbr() {
+    return servedDrinks;
+  }
+
+  /**
+   * Makes the machine report its orders, drinks and problems to the statistics
+   * of a fleet from now on.
+   *
+   * @param fleet the FleetStatistics to report to (null to stop reporting)
+   */
+  public void setFleet(FleetStatistics fleet) {
+    this.fleet = fleet;
+  }
+
   @Override
   public boolean isAvailableForMaintenance() {
     return state.isAvailableForMaintenance();
@@ -552,16 +1534,16 @@ public class Context implements IMachine, IContext {
    * @param coin the Coin that is stuck
    */
   public void addStuckCoin(Coin coin) {
-    stuckCoins.put(coin, stuckCoins.get(coin) + 1);
+    stuckCoins[getCoinSet().indexOf(coin)]++;
   }
 
   /**
    * "Unsticks" the stuck coins and gives them back in the container to the user.
    */
   public void unstickCoins() {
-    if (Utils.totalValue(stuckCoins) > 0) {
+    if (getCoinSet().totalValue(stuckCoins) > 0) {
       this.addChangeOut(stuckCoins);
-      Utils.resetCoinsMap(stuckCoins);
+      Arrays.fill(stuckCoins, 0);
       machineGUI.setChangeBool(true);
     }
   }
@@ -0,0 +1,163 @@
+package vendingmachine.components;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A Dispenser is one of the nozzles of a vending machine. It prepares one Order
+ * at a time, then keeps the cup until the client takes it. The Order's of a same
+ * batch are prepared back to back: their cups are put together on the tray of
+ * the Dispenser and taken at once.
+ * Each Dispenser has its own timer triggering the end of its preparation,
+ * all the Dispensers of a machine share the same HeatingSystem.
+ */
+public class Dispenser {
+
+  /**
+   * The index of the Dispenser in its machine (starting from 0).
+   */
+  private final int index;
+
+  /**
+   * The timer that triggers the end of the preparation after some seconds.
+   */
+  private final ITimer preparingTimer;
+
+  /**
+   * The Order currently in preparation (null if no drink is being prepared).
+   */
+  private Order preparingOrder;
+
+  /**
+   * The Order's whose cups are waiting to be taken (empty if there is no cup).
+   */
+  private final List<Order> cupOrders;
+
+  /**
+   * True if a spoon has been given with a cup waiting to be taken.
+   */
+  private boolean spoon;
+
+  /**
+   * Creates a Dispenser whose preparations last {@code preparingTime} milliseconds.
+   * The {@code preparingOver} Consumer is called with this Dispenser at the end
+   * of each preparation, the time going on with the specified IClock.
+   *
+   * @param index the index of the Dispenser in its machine
+   * @param preparingTime the duration of a preparation (in milliseconds)
+   * @param preparingOver called at the end of each preparation
+   * @param clock the IClock creating the timer of the preparations
+   */
+  Dispenser(int index, int preparingTime, Consumer<Dispenser> preparingOver, IClock clock) {
+    this.index = index;
+    // makes its action only once
+    this.preparingTimer = clock.createTimer("preparingOver", preparingTime, false, () -> preparingOver.accept(this));
+    this.cupOrders = new ArrayList<Order>();
+  }
+
+  /**
+   * Begins the preparation of the specified Order.
+   * The Dispenser must be able to prepare it.
+   *
+   * @param order the Order to prepare
+   * @see #canPrepare(Order)
+   */
+  void start(Order order) {
+    if (!canPrepare(order)) {
+      throw new IllegalStateException("Dispenser " + index + " is not available");
+    }
+    preparingOrder = order;
+    preparingTimer.restart();
+  }
+
+  /**
+   * Ends the current preparation: the cup of the Order stays in the Dispenser
+   * until it is taken.
+   *
+   * @param withSpoon true if a spoon is given with the cup
+   * @return the Order that has been prepared
+   */
+  Order finish(boolean withSpoon) {
+    final Order order = preparingOrder;
+    cupOrders.add(order);
+    spoon |= withSpoon;
+    preparingOrder = null;
+    return order;
+  }
+
+  /**
+   * Removes all the cups from the tray of the Dispenser.
+   *
+   * @param orders receives the Order's whose cups have been taken (nothing if there was no cup)
+   */
+  void takeCups(List<Order> orders) {
+    for (int i = 0; i < cupOrders.size(); i++) {
+      orders.add(cupOrders.get(i));
+    }
+    cupOrders.clear();
+    spoon = false;
+  }
+
+  /**
+   * Tells if the specified Order can be prepared now: no drink must be in preparation,
+   * and the tray must be empty or only hold cups of the same batch.
+   *
+   * @param order the Order that may be prepared
+   * @return true if the preparation of {@code order} can begin, false otherwise
+   */
+  public boolean canPrepare(Order order) {
+    return preparingOrder == null
+        && (cupOrders.isEmpty() || order.isSameBatch(cupOrders.get(cupOrders.size() - 1)));
+  }
+
+  /**
+   * @return the index of the Dispenser in its machine
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * @return true if no drink is being prepared and no cup is inside, false otherwise
+   */
+  public boolean isAvailable() {
+    return preparingOrder == null && cupOrders.isEmpty();
+  }
+
+  /**
+   * @return true if a drink is currently in preparation, false otherwise
+   */
+  public boolean isPreparing() {
+    return preparingOrder != null;
+  }
+
+  /**
+   * @return true if a cup is waiting to be taken, false otherwise
+   */
+  public boolean isCupInside() {
+    return !cupOrders.isEmpty();
+  }
+
+  /**
+   * @return the number of cups waiting to be taken on the tray
+   */
+  public int getCupsNbr() {
+    return cupOrders.size();
+  }
+
+  /**
+   * @return true if a spoon has been given with a cup waiting to be taken
+   */
+  public boolean isSpoonInside() {
+    return spoon;
+  }
+
+  /**
+   * @return the Order currently in preparation (null if there is none)
+   */
+  public Order getPreparingOrder() {
+    return preparingOrder;
+  }
+
+}
@@ -0,0 +1,84 @@
+package vendingmachine.components;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import vendingmachine.Coin;
+import vendingmachine.Drink;
+
+/**
+ * The texts a machine displays on each order, built the first time they are needed
+ * and then reused, so that serving a drink does not build any String.
+ * Like the machine, a DisplayTexts is not thread-safe.
+ */
+final class DisplayTexts {
+
+  /**
+   * The text of a cup for each number of sugar cubes, by name of Drink.
+   */
+  private final Map<String, String[]> cupTexts;
+
+  /**
+   * The text telling a Drink is ready, by name of Drink.
+   */
+  private final Map<String, String> readyTexts;
+
+  /**
+   * The text telling a Coin is inserted, by Coin.
+   */
+  private final Map<Coin, String> insertedTexts;
+
+  DisplayTexts() {
+    cupTexts = new HashMap<String, String[]>();
+    readyTexts = new HashMap<String, String>();
+    insertedTexts = new HashMap<Coin, String>();
+  }
+
+  /**
+   * @param drink the Drink in the cup
+   * @param sugar the number of sugar cubes in the cup
+   * @return the text of the cup
+   */
+  String getCupText(Drink drink, int sugar) {
+    String[] texts = cupTexts.get(drink.getName());
+    if (texts == null || texts.length <= sugar) {
+      final String[] more = new String[sugar + 1];
+      if (texts != null) {
+        System.arraycopy(texts, 0, more, 0, texts.length);
+      }
+      texts = more;
+      cupTexts.put(drink.getName(), texts);
+    }
+    if (texts[sugar] == null) {
+      texts[sugar] = drink.getName() + " (" + sugar + " sugar cube(s))";
+    }
+    return texts[sugar];
+  }
+
+  /**
+   * @param drink the Drink that has been prepared
+   * @return the text telling the Drink is ready
+   */
+  String getReadyText(Drink drink) {
+    String text = readyTexts.get(drink.getName());
+    if (text == null) {
+      text = "Your " + drink.getName() + " is ready!";
+      readyTexts.put(drink.getName(), text);
+    }
+    return text;
+  }
+
+  /**
+   * @param coin the Coin inserted
+   * @return the text telling the Coin is inserted
+   */
+  String getInsertedText(Coin coin) {
+    String text = insertedTexts.get(coin);
+    if (text == null) {
+      text = coin.TEXT + " inserted";
+      insertedTexts.put(coin, text);
+    }
+    return text;
+  }
+
+}
@@ -0,0 +1,52 @@
+package vendingmachine.components;
+
+import vendingmachine.CoinSet;
+
+/**
+ * Gives back the biggest coins first, as long as they are available.
+ * It is the fastest policy, but it drains the big coins and may not find the change
+ * when the stock is low even though it is possible (50 + 10 for 0.60 when there is
+ * no 0.10 coin left, instead of 3 * 20).
+ * The biggest coins first only give the fewest coins with a canonical CoinSet:
+ * with the other sets, the fewest coins are read in the table of the set, and
+ * searched among the available coins if they are not all available.
+ */
+public final class GreedyChangePolicy implements ChangePolicy {
+
+  private static final GreedyChangePolicy INSTANCE = new GreedyChangePolicy();
+
+  /**
+   * @return the unique instance of the class
+   */
+  public static GreedyChangePolicy getInstance() {
+    return INSTANCE;
+  }
+
+  private GreedyChangePolicy() {}
+
+  @Override
+  public int[] computeChange(int amount, CoinSet coins, int[] available) {
+    final int[] given = new int[coins.size()];
+    return computeChange(amount, coins, available, given) ? given : null;
+  }
+
+  @Override
+  public boolean computeChange(int amount, CoinSet coins, int[] available, int[] given) {
+    if (!coins.isCanonical()) {
+      return MinCoinsChangePolicy.getInstance().computeChange(amount, coins, available, given);
+    }
+    int remainder = amount;
+    for (int i = 0; i < given.length; i++) {
+      final int value = coins.get(i).VALUE;
+      given[i] = Math.min(remainder / value, available[i]);
+      remainder -= given[i] * value;
+    }
+    return remainder == 0;
+  }
+
+  @Override
+  public String toString() {
+    return "Biggest coins first";
+  }
+
+}
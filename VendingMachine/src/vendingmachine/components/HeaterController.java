@@ -0,0 +1,30 @@
+package vendingmachine.components;
+
+/**
+ * A HeaterController decides when the heater of a HeatingSystem is switched on or off.
+ * It is asked each time the temperature changes, and told when a drink is ordered,
+ * so that it may learn when the drinks are ordered.
+ * The times are given in seconds since the creation of the HeatingSystem.
+ *
+ * @see HeatingSystem
+ */
+public interface HeaterController {
+
+  /**
+   * Tells if the heater must heat at the specified temperature.
+   *
+   * @param temperature the current temperature of the water
+   * @param heating true if the heater is heating now
+   * @param time the current time (in seconds)
+   * @return true if the heater must heat, false otherwise
+   */
+  boolean isHeating(double temperature, boolean heating, long time);
+
+  /**
+   * Called each time a drink is ordered, which cools the water down.
+   *
+   * @param time the time of the order (in seconds)
+   */
+  void drinkOrdered(long time);
+
+}
@@ -1,9 +1,7 @@
 package vendingmachine.components;
 
-import java.util.HashSet;
-import java.util.Set;
-
-import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.List;
 
 import vendingmachine.states.ColdWater;
 import vendingmachine.states.NoWater;
@@ -26,17 +24,36 @@ import vendingmachine.ui.TemperatureListener;
  * So the heat transferred is computed by h * A * dT (Joules); dividing by
  * C * m gives thus the difference in temperature at each second.
  * This may not be exactly realistic but is still satisfactory.
+ *
+ * <p>The heater is switched on and off by a HeaterController (a ThermostatController
+ * by default). The time spent with water below the cold limit is counted, to compare
+ * the controllers.
  */
 public class HeatingSystem {
 
   /*
    * Some default temperatures of the system.
    */
-  private static final double MIN_TEMPERATURE = 90.0;
+  static final double MIN_TEMPERATURE = 90.0;
   private static final double DEFAULT_TEMPERATURE = 93.0;
-  private static final double MAX_TEMPERATURE = 96.0;
-  private static final double COLD_LIMIT = 80.0;
-  private static final double RUNNING_WATER_TEMPERATURE = 60.0;
+  static final double MAX_TEMPERATURE = 96.0;
+  static final double COLD_LIMIT = 80.0;
+  static final double RUNNING_WATER_TEMPERATURE = 60.0;
+
+  /**
+   * The part of the water that stays in the container when a drink is ordered.
+   */
+  static final double MIXING_RATIO = 0.8;
+
+  /**
+   * The highest temperature the water is ever preheated to.
+   */
+  static final double MAX_PREHEATING = 99.0;
+
+  /**
+   * The margin kept above the cold limit when the drinks to prepare are admitted.
+   */
+  private static final double ADMISSION_MARGIN = 0.5;
 
   /**
    * True if water supply is enabled, false otherwise.
@@ -54,9 +71,31 @@ public class HeatingSystem {
   private boolean heating;
 
   /**
-   * An observer to notify each time temperature is changed.
+   * Decides when the heater is heating.
+   */
+  private HeaterController controller;
+
+  /**
+   * The heater heats at least up to this temperature, whatever the HeaterController
+   * (0 if nothing has been asked by {@code preheatFor}).
+   */
+  private double preheatTarget;
+
+  /**
+   * The number of seconds since the creation of the HeatingSystem (with water supply).
+   */
+  private long seconds;
+
+  /**
+   * The number of seconds spent with water below the cold limit.
    */
-  private Set<TemperatureListener> observers;
+  private long coldSeconds;
+
+  /**
+   * The observers to notify each time temperature is changed (each one only once).
+   * Notified by index, not to allocate an iterator every second.
+   */
+  private final List<TemperatureListener> observers;
 
   /**
    * The machine to update when state changes.
@@ -66,7 +105,7 @@ public class HeatingSystem {
   /**
    * The timer that updates the temperature every second.
    */
-  private final Timer timer;
+  private final ITimer timer;
 
   /**
    * Creates a HeatingSystem linked to the specified context.
@@ -76,15 +115,28 @@ public class HeatingSystem {
    * @param context the IContext to associate with the HeatingSystem
    */
   public HeatingSystem(IContext context) {
+    this(context, SwingClock.getInstance());
+  }
+
+  /**
+   * Creates a HeatingSystem linked to the specified context, whose temperature
+   * is updated each second of the specified IClock.
+   * Temperature is on 93 degrees, water supply is enabled, system is heating.
+   * 
+   * @param context the IContext to associate with the HeatingSystem
+   * @param clock the IClock the temperature is updated with
+   */
+  public HeatingSystem(IContext context, IClock clock) {
     this.context = context;
     this.waterSupply = true;
     this.temperature = DEFAULT_TEMPERATURE;
     this.heating = true;
-    
-    observers = new HashSet<TemperatureListener>();
+    this.controller = ThermostatController.getInstance();
+
+    observers = new ArrayList<TemperatureListener>();
 
-    timer = new Timer(1000, e -> this.updateTemperature());
-    timer.start();
+    timer = clock.createTimer("updateTemperature", 1000, true, this::updateTemperature);
+    timer.restart();
   }
 
   /**
@@ -93,6 +145,10 @@ public class HeatingSystem {
    */
   private void updateTemperature() {
     if (waterSupply) {
+      seconds++;
+      if (temperature < COLD_LIMIT) {
+        coldSeconds++;
+      }
       if (heating) {
         setTemperature(temperature + 60 * 1 * (150 - temperature) / (4180 * 2));
       } else {
@@ -108,11 +164,78 @@ public class HeatingSystem {
     return this.temperature;
   }
 
+  /**
+   * @return the HeaterController switching the heater on and off
+   */
+  public HeaterController getController() {
+    return controller;
+  }
+
+  /**
+   * @param controller the new HeaterController switching the heater on and off
+   */
+  public void setController(HeaterController controller) {
+    this.controller = controller;
+    updateState();
+  }
+
+  /**
+   * @return the number of seconds spent with water below the cold limit, which makes
+   *     the machine stop serving
+   */
+  public long getColdSeconds() {
+    return coldSeconds;
+  }
+
+  /**
+   * Predicts the temperature after {@code orders} drinks are ordered in a row,
+   * each one replacing 1/5 of the water by running water.
+   *
+   * @param orders the number of drinks ordered
+   * @return the temperature after the drinks, without heating
+   */
+  public double predictTemperature(int orders) {
+    return RUNNING_WATER_TEMPERATURE
+        + (temperature - RUNNING_WATER_TEMPERATURE) * Math.pow(MIXING_RATIO, orders);
+  }
+
+  /**
+   * Tells if {@code orders} drinks can be ordered in a row without the water getting
+   * below the cold limit. Always true without water supply (the machine can't serve).
+   *
+   * @param orders the number of drinks ordered
+   * @return true if the water stays hot enough, false otherwise
+   */
+  public boolean canMix(int orders) {
+    return !waterSupply || predictTemperature(orders) >= COLD_LIMIT + ADMISSION_MARGIN;
+  }
+
+  /**
+   * Keeps the heater heating until the water can take {@code orders} drinks in a row
+   * (or reaches 99 degrees), whatever the HeaterController.
+   *
+   * @param orders the number of drinks that should be ordered in a row
+   */
+  public void preheatFor(int orders) {
+    preheatTarget = Math.min(MAX_PREHEATING, RUNNING_WATER_TEMPERATURE
+        + (COLD_LIMIT + ADMISSION_MARGIN - RUNNING_WATER_TEMPERATURE) / Math.pow(MIXING_RATIO, orders));
+    updateState();
+  }
+
   /**
    * @param observer the TemperatureListener to notify of a change of temperature
    */
   public void addObserver(TemperatureListener observer) {
-    observers.add(observer);
+    if (!observers.contains(observer)) {
+      observers.add(observer);
+    }
+  }
+
+  /**
+   * @param observer a TemperatureListener that must not be notified anymore
+   */
+  public void removeObserver(TemperatureListener observer) {
+    observers.remove(observer);
   }
 
   /**
@@ -129,8 +252,8 @@ public class HeatingSystem {
     if (waterSupply) {
       this.temperature = temperature;
       updateState();
-      for (TemperatureListener observer: observers) {
-        observer.setTemperature(this.temperature);
+      for (int i = 0; i < observers.size(); i++) {
+        observers.get(i).setTemperature(this.temperature);
       }
     }
   }
@@ -166,7 +289,8 @@ public class HeatingSystem {
    */
   public void drinkOrdered() {
     if (waterSupply) {
-      setTemperature((4 * temperature + RUNNING_WATER_TEMPERATURE) / 5);
+      controller.drinkOrdered(seconds);
+      setTemperature(MIXING_RATIO * temperature + (1 - MIXING_RATIO) * RUNNING_WATER_TEMPERATURE);
       updateState();
     }
   }
@@ -176,10 +300,11 @@ public class HeatingSystem {
    * Notifies the IContext associated if the temperature becomes too cold.
    */
   private void updateState() {
-    if (heating && temperature > MAX_TEMPERATURE) {
-      heating = false;
-    } else if (!heating && temperature < MIN_TEMPERATURE) {
+    heating = controller.isHeating(temperature, heating, seconds);
+    if (temperature < preheatTarget) {
       heating = true;
+    } else {
+      preheatTarget = 0;
     }
 
     if (temperature >= COLD_LIMIT) {
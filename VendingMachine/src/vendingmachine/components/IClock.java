@@ -0,0 +1,28 @@
+package vendingmachine.components;
+
+/**
+ * The source of time of a vending machine: the preparations of the drinks and the
+ * temperature of the water go on with the timers it creates.
+ * The machines shown to a user follow the real time ({@code SwingClock}), the
+ * simulated ones follow a {@code VirtualClock}.
+ */
+public interface IClock {
+
+  /**
+   * Creates a timer calling {@code action} after {@code delay} milliseconds
+   * (and every {@code delay} milliseconds if it repeats). The timer is not started.
+   *
+   * @param name the name of the action, telling the timers apart when they are monitored
+   * @param delay the delay of the timer (in milliseconds)
+   * @param repeats true if the action must happen every {@code delay} milliseconds
+   * @param action the action of the timer
+   * @return the ITimer created
+   */
+  ITimer createTimer(String name, int delay, boolean repeats, Runnable action);
+
+  /**
+   * @return the current time of the clock (in milliseconds)
+   */
+  long getTime();
+
+}
@@ -1,8 +1,5 @@
 package vendingmachine.components;
 
-import java.util.Map;
-
-import vendingmachine.Coin;
 import vendingmachine.states.Problem;
 import vendingmachine.states.State;
 
@@ -12,11 +9,11 @@ import vendingmachine.states.State;
 public interface IContext {
 
   /**
-   * Adds a Map of Coin's to the outside container.
+   * Adds coins to the outside container.
    * 
-   * @param moneyToGive the Map to add to {@code changeOut}
+   * @param coinsNbr the number of each Coin to add, in the order of the CoinSet
    */
-  void addChangeOut(Map<Coin, Integer> moneyToGive);
+  void addChangeOut(int[] coinsNbr);
 
   /**
    * Removes the specified Problem from the list of problems the machine is facing.
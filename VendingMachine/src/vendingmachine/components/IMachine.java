@@ -1,8 +1,10 @@
 package vendingmachine.components;
 
 import java.util.List;
+import java.util.Map;
 
 import vendingmachine.Coin;
+import vendingmachine.CoinSet;
 import vendingmachine.Drink;
 import vendingmachine.ui.IMachineGUI;
 import vendingmachine.ui.TemperatureListener;
@@ -40,6 +42,14 @@ public interface IMachine {
    */
   void drinkButton(Drink drink);
 
+  /**
+   * Orders a batch of drinks at once: the whole batch is checked and paid in a single
+   * transaction and the drinks are prepared back to back.
+   * 
+   * @param orders the List of the Order's (Drink and sugar) of the batch
+   */
+  void orderBatch(List<Order> orders);
+
   /**
    * Simulates what happens when the client takes his change.
    */
@@ -62,6 +72,22 @@ public interface IMachine {
    */
   List<Drink> getDrinks();
 
+  /**
+   * Tells if {@code drink} can be served right now: it is in stock (with a cup),
+   * the amount inserted is enough and the change on it can be given back.
+   * The IMachineGUI is notified by {@code updateServableDrinks()} each time
+   * the answer changes for a Drink.
+   *
+   * @param drink a Drink of the machine
+   * @return true if {@code drink} can be served right now, false otherwise
+   */
+  boolean isServable(Drink drink);
+
+  /**
+   * @return the amount entered by the client and not spent yet (in cents)
+   */
+  int getAmountInside();
+
   /**
    * @return a String with all the information about the coins outside the machine
    */
@@ -83,8 +109,9 @@ public interface IMachine {
   String getSugarText();
 
   /**
-   * Sets the UI that is linked with the machine.
-   * Also links the UI to the HeatingSystem.
+   * Sets the UI that is linked with the machine, in place of the previous one.
+   * Also links the UI to the HeatingSystem, and displays on it the temperature,
+   * the cup and the change waiting.
    * 
    * @param <T> must implement both IMachineGUI and TemperatureListener
    * @param observer the UI that must be updated by the machine and its heating system
@@ -123,6 +150,28 @@ public interface IMachine {
    */
   void setSpoonsStock(int value);
 
+  /**
+   * Applies all the changes of a technician visit at once: either every stock of the
+   * Restock is changed or none is. Unlike the other stock setters, it is allowed in
+   * any State: the items reserved by the orders in progress are never removed.
+   * Throws an IllegalArgumentException (and changes nothing) if a Coin or a Drink is
+   * unknown, or if more items would be removed than are in stock and not reserved.
+   *
+   * @param restock the quantities of coins, drinks, cups, sugar cubes and spoons to add
+   */
+  void restock(Restock restock);
+
+  /**
+   * Changes the prices of some drinks at once, without losing the state of the machine.
+   * Allowed in any State: a drink being chosen or prepared keeps the price it was
+   * chosen at, the next orders are made at the new prices.
+   * Throws an IllegalArgumentException (and changes nothing) if a Drink is unknown
+   * or a price is negative.
+   *
+   * @param prices the new price of some drinks (in cents)
+   */
+  void setPrices(Map<Drink, Integer> prices);
+
   /**
    * @return true if the stocks can be currently changed, false otherwise
    */
@@ -144,4 +193,14 @@ public interface IMachine {
    */
   boolean isCoinAccepted(Coin coin);
 
+  /**
+   * @return the CoinSet of the coins the machine accepts and gives back
+   */
+  CoinSet getCoinSet();
+
+  /**
+   * @return the id of the machine, unique in the application
+   */
+  int getId();
+
 }
\ No newline at end of file
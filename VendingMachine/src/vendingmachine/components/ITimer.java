@@ -0,0 +1,22 @@
+package vendingmachine.components;
+
+/**
+ * A timer created by an IClock, calling its action once or repeatedly
+ * after its delay.
+ *
+ * @see IClock
+ */
+public interface ITimer {
+
+  /**
+   * Starts the timer, or starts it again from the beginning if it is running:
+   * the action happens after the whole delay.
+   */
+  void restart();
+
+  /**
+   * Stops the timer: its action does not happen anymore until it is restarted.
+   */
+  void stop();
+
+}
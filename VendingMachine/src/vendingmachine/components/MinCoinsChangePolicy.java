@@ -0,0 +1,48 @@
+package vendingmachine.components;
+
+import vendingmachine.CoinSet;
+
+/**
+ * Gives back the change with as few coins as possible.
+ * Unlike the greedy policy, it always finds the change when it is possible.
+ * The fewest coins with as many coins as wanted, given by the CoinSet in
+ * O(number of coins), are taken if they are available: the search among the
+ * available coins is only done when the stock lacks some of them.
+ */
+public final class MinCoinsChangePolicy extends BoundedChangeSolver {
+
+  private static final MinCoinsChangePolicy INSTANCE = new MinCoinsChangePolicy();
+
+  /**
+   * @return the unique instance of the class
+   */
+  public static MinCoinsChangePolicy getInstance() {
+    return INSTANCE;
+  }
+
+  private MinCoinsChangePolicy() {}
+
+  @Override
+  public boolean computeChange(int amount, CoinSet coins, int[] available, int[] given) {
+    if (!coins.getFewestCoins(amount, given)) {
+      return false;
+    }
+    for (int i = 0; i < given.length; i++) {
+      if (given[i] > available[i]) {
+        return super.computeChange(amount, coins, available, given);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  protected long cost(int[] values, int coin, int given, int available) {
+    return given;
+  }
+
+  @Override
+  public String toString() {
+    return "Fewest coins";
+  }
+
+}
@@ -0,0 +1,106 @@
+package vendingmachine.components;
+
+import vendingmachine.Drink;
+import vendingmachine.Utils;
+
+/**
+ * An Order is a Drink that has been paid and confirmed by a client,
+ * with the quantity of sugar he chose. It waits in the queue of the Context
+ * until it can be prepared.
+ * The Order's of a machine are reused once their cups have been taken, so that
+ * serving drinks does not allocate anything: only the Order's built by the
+ * clients of the machine are never modified.
+ */
+public final class Order {
+
+  /**
+   * The Drink that has been ordered.
+   */
+  private Drink drink;
+
+  /**
+   * The quantity of sugar chosen by the client.
+   */
+  private int sugar;
+
+  /**
+   * The identifier of the batch the Order belongs to (0 if it was ordered alone).
+   */
+  private int batch;
+
+  /**
+   * The items of the Stock reserved for the Order (null if nothing has been reserved).
+   */
+  private StockReservation reservation;
+
+  /**
+   * Creates an Order of the specified Drink with {@code sugar} sugar cubes.
+   * Throws an IllegalArgumentException if the quantity of sugar is negative.
+   *
+   * @param drink the Drink ordered
+   * @param sugar the number of sugar cubes chosen (must be positive)
+   */
+  public Order(Drink drink, int sugar) {
+    this(drink, sugar, 0, null);
+  }
+
+  /**
+   * Creates an Order of the specified Drink with {@code sugar} sugar cubes,
+   * belonging to the specified batch, whose items are reserved in the Stock.
+   *
+   * @param drink the Drink ordered
+   * @param sugar the number of sugar cubes chosen (must be positive)
+   * @param batch the identifier of the batch (0 if the Order is alone)
+   * @param reservation the StockReservation of the items needed by the Order
+   */
+  Order(Drink drink, int sugar, int batch, StockReservation reservation) {
+    reuse(drink, sugar, batch, reservation);
+  }
+
+  /**
+   * Makes an Order whose cups have been taken describe a new Order.
+   * Throws an IllegalArgumentException if the quantity of sugar is negative.
+   *
+   * @param drink the Drink ordered
+   * @param sugar the number of sugar cubes chosen (must be positive)
+   * @param batch the identifier of the batch (0 if the Order is alone)
+   * @param reservation the StockReservation of the items needed by the Order
+   */
+  void reuse(Drink drink, int sugar, int batch, StockReservation reservation) {
+    Utils.checkPositiveIntIllegal(sugar, "sugar of an order");
+    this.drink = drink;
+    this.sugar = sugar;
+    this.batch = batch;
+    this.reservation = reservation;
+  }
+
+  /**
+   * @return the Drink that has been ordered
+   */
+  public Drink getDrink() {
+    return drink;
+  }
+
+  /**
+   * @return the number of sugar cubes chosen by the client
+   */
+  public int getSugar() {
+    return sugar;
+  }
+
+  /**
+   * @return the StockReservation of the Order (null if nothing has been reserved)
+   */
+  StockReservation getReservation() {
+    return reservation;
+  }
+
+  /**
+   * @param other the Order that may be prepared with this one
+   * @return true if both Order's belong to the same batch, false otherwise
+   */
+  public boolean isSameBatch(Order other) {
+    return batch != 0 && other != null && batch == other.batch;
+  }
+
+}
@@ -0,0 +1,154 @@
+package vendingmachine.components;
+
+/**
+ * Preheats the water before the rushes, learned from the past orders of the machine.
+ *
+ * <p>The day is divided in slots of 15 minutes, and the rate of the orders of each
+ * slot is learned with an exponential moving average over the days (the day starting
+ * with the HeatingSystem). Before each slot and during it, the controller expects the
+ * number of orders of the next two minutes (the learned rate plus one standard
+ * deviation, the arrivals being roughly Poisson) and raises the hysteresis band so that
+ * the water stays above the cold limit after that many orders in a row:
+ * each order replaces 1/5 of the water by running water, so after {@code k} orders
+ * the water must have started above {@code 60 + (limit - 60) / 0.8^k} degrees.
+ * The band never goes below the one of the ThermostatController, nor above 99 degrees;
+ * while preheating, it is narrowed to one degree.
+ *
+ * <p>A controller learns from one machine only: each HeatingSystem needs its own.
+ */
+public final class PredictiveHeaterController implements HeaterController {
+
+  /**
+   * The duration of a slot (in seconds).
+   */
+  private static final int SLOT = 900;
+
+  /**
+   * The number of slots in a day.
+   */
+  private static final int SLOTS = 24 * 3600 / SLOT;
+
+  /**
+   * The time the orders are anticipated (in seconds).
+   */
+  private static final int HORIZON = 120;
+
+  /**
+   * The weight of the last day in the learned rates.
+   */
+  private static final double SMOOTHING = 0.5;
+
+  /**
+   * The width of the hysteresis band while preheating: narrow, so that the water is
+   * as hot as possible when the rush begins.
+   */
+  private static final double PREHEATING_BAND = 1.0;
+
+  /**
+   * The margin kept above the cold limit after the expected orders.
+   */
+  private static final double MARGIN = 1.0;
+
+  /**
+   * The learned rate of the orders of each slot of the day (in orders per second).
+   */
+  private final double[] rates;
+
+  /**
+   * True for each slot whose rate has been learned at least once.
+   */
+  private final boolean[] learned;
+
+  /**
+   * The time the current slot began (in seconds).
+   */
+  private long slotStart;
+
+  /**
+   * The number of orders of the current slot so far.
+   */
+  private int slotOrders;
+
+  /**
+   * Creates a controller that has not learned anything yet: it behaves as the
+   * ThermostatController until the first orders.
+   */
+  public PredictiveHeaterController() {
+    this.rates = new double[SLOTS];
+    this.learned = new boolean[SLOTS];
+  }
+
+  @Override
+  public boolean isHeating(double temperature, boolean heating, long time) {
+    final double max = getTargetTemperature(time);
+    final double min = max > HeatingSystem.MAX_TEMPERATURE
+        ? max - PREHEATING_BAND : HeatingSystem.MIN_TEMPERATURE;
+    if (heating && temperature > max) {
+      return false;
+    } else if (!heating && temperature < min) {
+      return true;
+    }
+    return heating;
+  }
+
+  @Override
+  public void drinkOrdered(long time) {
+    roll(time);
+    slotOrders++;
+  }
+
+  /**
+   * Returns the temperature the water is heated up to at the specified time:
+   * high enough to stay above the cold limit after the orders expected soon.
+   *
+   * @param time the current time (in seconds)
+   * @return the upper limit of the hysteresis band
+   */
+  public double getTargetTemperature(long time) {
+    roll(time);
+    final double expected = getExpectedRate(time) * HORIZON;
+    final int orders = (int) Math.ceil(expected + Math.sqrt(expected));
+    final double required = HeatingSystem.RUNNING_WATER_TEMPERATURE
+        + (HeatingSystem.COLD_LIMIT + MARGIN - HeatingSystem.RUNNING_WATER_TEMPERATURE)
+        / Math.pow(HeatingSystem.MIXING_RATIO, orders);
+    return Math.max(HeatingSystem.MAX_TEMPERATURE, Math.min(HeatingSystem.MAX_PREHEATING, required));
+  }
+
+  /**
+   * @param time the current time (in seconds)
+   * @return the highest rate of the orders between now and the horizon: the rates learned
+   *     for the current and the next slots, and the rate of the current slot so far
+   */
+  private double getExpectedRate(long time) {
+    double rate = Math.max(getLearnedRate(time), getLearnedRate(time + HORIZON));
+    if (time - slotStart >= HORIZON) {
+      rate = Math.max(rate, (double) slotOrders / (time - slotStart));
+    }
+    return rate;
+  }
+
+  /**
+   * @param time a time (in seconds)
+   * @return the rate learned for the slot of {@code time} (0 if nothing has been learned)
+   */
+  private double getLearnedRate(long time) {
+    return rates[(int) (time / SLOT % SLOTS)];
+  }
+
+  /**
+   * Ends the slots that are over at the specified time, learning their rates.
+   *
+   * @param time the current time (in seconds)
+   */
+  private void roll(long time) {
+    while (time >= slotStart + SLOT) {
+      final int slot = (int) (slotStart / SLOT % SLOTS);
+      final double rate = (double) slotOrders / SLOT;
+      rates[slot] = learned[slot] ? SMOOTHING * rate + (1 - SMOOTHING) * rates[slot] : rate;
+      learned[slot] = true;
+      slotOrders = 0;
+      slotStart += SLOT;
+    }
+  }
+
+}
@@ -0,0 +1,33 @@
+package vendingmachine.components;
+
+/**
+ * Gives back the change keeping as many small coins as possible, as they are
+ * the ones needed to give the exact change later.
+ * Giving a coin costs the number of such coins needed to make the biggest one
+ * (a 0.01 coin costs 200 when the biggest is 2.00, a 2.00 coin costs 1).
+ */
+public final class PreserveSmallCoinsChangePolicy extends BoundedChangeSolver {
+
+  private static final PreserveSmallCoinsChangePolicy INSTANCE =
+      new PreserveSmallCoinsChangePolicy();
+
+  /**
+   * @return the unique instance of the class
+   */
+  public static PreserveSmallCoinsChangePolicy getInstance() {
+    return INSTANCE;
+  }
+
+  private PreserveSmallCoinsChangePolicy() {}
+
+  @Override
+  protected long cost(int[] values, int coin, int given, int available) {
+    return given * (long) ((values[0] + values[coin] - 1) / values[coin]);
+  }
+
+  @Override
+  public String toString() {
+    return "Keep small coins";
+  }
+
+}
@@ -0,0 +1,132 @@
+package vendingmachine.components;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import vendingmachine.Coin;
+import vendingmachine.Drink;
+
+/**
+ * A Restock is the visit of a technician as a whole: the number of coins, drinks,
+ * cups, sugar cubes and spoons added to the machine (or removed from it if negative).
+ * It is applied at once by {@code IMachine.restock(Restock)}: either all the changes are
+ * done or none of them.
+ */
+public final class Restock {
+
+  /**
+   * The number of each Coin added (unmodifiable, the coins not listed are unchanged).
+   */
+  private final Map<Coin, Integer> coins;
+
+  /**
+   * The number of each Drink added (unmodifiable, the drinks not listed are unchanged).
+   */
+  private final Map<Drink, Integer> drinks;
+
+  private final int cups;
+  private final int sugarCubes;
+  private final int spoons;
+
+  /**
+   * Creates a Restock adding the specified quantities to the stocks of the machine.
+   * A negative quantity removes items. Throws an IllegalArgumentException if a Coin,
+   * a Drink or a quantity of the maps is null.
+   *
+   * @param coins the number of each Coin to add (the coins not listed are unchanged)
+   * @param drinks the number of each Drink to add (the drinks not listed are unchanged)
+   * @param cups the number of cups to add
+   * @param sugarCubes the number of sugar cubes to add
+   * @param spoons the number of spoons to add
+   */
+  public Restock(Map<Coin, Integer> coins, Map<Drink, Integer> drinks, int cups,
+      int sugarCubes, int spoons) {
+    this.coins = copy(coins, "coin");
+    this.drinks = copy(drinks, "drink");
+    this.cups = cups;
+    this.sugarCubes = sugarCubes;
+    this.spoons = spoons;
+  }
+
+  /**
+   * @param map a Map of quantities
+   * @param part the name of the keys, for the message of the exception
+   * @return an unmodifiable copy of {@code map}, in the same order
+   */
+  private static <K> Map<K, Integer> copy(Map<K, Integer> map, String part) {
+    final Map<K, Integer> copy = new LinkedHashMap<K, Integer>();
+    for (Map.Entry<K, Integer> entry: map.entrySet()) {
+      if (entry.getKey() == null || entry.getValue() == null) {
+        throw new IllegalArgumentException("A " + part + " of a restock and its quantity"
+            + " can't be null");
+      }
+      copy.put(entry.getKey(), entry.getValue());
+    }
+    return Collections.unmodifiableMap(copy);
+  }
+
+  /**
+   * @return an unmodifiable Map of the number of each Coin added
+   */
+  public Map<Coin, Integer> getCoins() {
+    return coins;
+  }
+
+  /**
+   * @return an unmodifiable Map of the number of each Drink added
+   */
+  public Map<Drink, Integer> getDrinks() {
+    return drinks;
+  }
+
+  /**
+   * @return the number of cups added
+   */
+  public int getCups() {
+    return cups;
+  }
+
+  /**
+   * @return the number of sugar cubes added
+   */
+  public int getSugarCubes() {
+    return sugarCubes;
+  }
+
+  /**
+   * @return the number of spoons added
+   */
+  public int getSpoons() {
+    return spoons;
+  }
+
+  /**
+   * @return a String listing the changes of the Restock, such as
+   *     {@code "+10 \"0.50 EUR\" coin(s), -2 Tea(s), +50 cup(s)"}
+   */
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder(120);
+    for (Map.Entry<Coin, Integer> entry: coins.entrySet()) {
+      append(sb, entry.getValue(), "\"" + entry.getKey().TEXT + "\" coin(s)");
+    }
+    for (Map.Entry<Drink, Integer> entry: drinks.entrySet()) {
+      append(sb, entry.getValue(), entry.getKey().getName() + "(s)");
+    }
+    append(sb, cups, "cup(s)");
+    append(sb, sugarCubes, "sugar cube(s)");
+    append(sb, spoons, "spoon(s)");
+    return sb.length() == 0 ? "nothing" : sb.toString();
+  }
+
+  private static void append(StringBuilder sb, int quantity, String part) {
+    if (quantity != 0) {
+      if (sb.length() > 0) {
+        sb.append(", ");
+      }
+      sb.append(quantity > 0 ? "+" : "").append(quantity).append(' ').append(part);
+    }
+  }
+
+}
@@ -1,33 +1,47 @@
 package vendingmachine.components;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import vendingmachine.Drink;
+import vendingmachine.DrinkCatalog;
 import vendingmachine.Utils;
 import vendingmachine.states.NoCup;
 
 /**
  * The Stock class lists all the stock values needed for a drinks vending machine
  * (sugar cubes, cups, spoons and drinks).
+ *
+ * <p>The items needed by an order can be reserved as soon as the order is validated
+ * ({@code reserve(Drink)}), then either removed from the stock ({@code commit}) or
+ * made available again ({@code release}). The reserved items can not be removed
+ * by anything else, so committing a reservation never fails. All the counters are
+ * lock-free, so that the stock may be accessed from several threads.
  */
 public class Stock {
 
   /*
    * The number of sugar, cups and spoons in stock.
    */
-  private int sugarCubesNbr;
-  private int cupsNbr;
-  private int spoonsNbr;
+  private final StockCounter sugarCubesNbr;
+  private final StockCounter cupsNbr;
+  private final StockCounter spoonsNbr;
 
   /**
-   * A Map that maps to each Drink its stock as an Integer.
+   * The DrinkCatalog of the drinks the machine can dispense.
    */
-  private final Map<Drink, Integer> drinkQty;
+  private volatile DrinkCatalog catalog;
 
   /**
-   * Creates a Stock with the specified values.
+   * The stock counter of each Drink, indexed by the ids of the catalog.
+   */
+  private final StockCounter[] drinkQty;
+
+  /**
+   * Creates a Stock with the specified values. The catalog of the drinks
+   * lists them in the iteration order of {@code drinkQty}.
    * Throws an IllegalArgumentException if a value is negative.
    * 
    * @param sugarCubesNbr the number of sugar cubes
@@ -36,16 +50,61 @@ public class Stock {
    * @param drinkQty a Map mapping each Drink to its stock value
    */
   public Stock(int sugarCubesNbr, int cupsNbr, int spoonsNbr, Map<Drink, Integer> drinkQty) {
+    this(sugarCubesNbr, cupsNbr, spoonsNbr,
+        new DrinkCatalog(new ArrayList<Drink>(drinkQty.keySet())), toArray(drinkQty.values()));
+  }
+
+  /**
+   * Creates a Stock with the specified values.
+   * Throws an IllegalArgumentException if a value is negative or if there is
+   * not one stock value for each Drink of the catalog.
+   *
+   * @param sugarCubesNbr the number of sugar cubes
+   * @param cupsNbr the number of cups
+   * @param spoonsNbr the number of spoons
+   * @param catalog the DrinkCatalog of the drinks of the machine
+   * @param drinkQty the stock value of each Drink, indexed by the ids of the catalog
+   */
+  public Stock(int sugarCubesNbr, int cupsNbr, int spoonsNbr, DrinkCatalog catalog,
+      int[] drinkQty) {
     Utils.checkPositiveIntIllegal(sugarCubesNbr, "sugar stock");
     Utils.checkPositiveIntIllegal(cupsNbr, "cups stock");
     Utils.checkPositiveIntIllegal(spoonsNbr, "spoons stock");
-    for (Integer i: drinkQty.values()) {
+    if (drinkQty.length != catalog.size()) {
+      throw new IllegalArgumentException("There must be a stock value for each drink");
+    }
+    for (int i: drinkQty) {
       Utils.checkPositiveIntIllegal(i, "drinks");
     }
-    this.sugarCubesNbr = sugarCubesNbr;
-    this.cupsNbr = cupsNbr;
-    this.spoonsNbr = spoonsNbr;
-    this.drinkQty = drinkQty;
+    this.sugarCubesNbr = new StockCounter(sugarCubesNbr);
+    this.cupsNbr = new StockCounter(cupsNbr);
+    this.spoonsNbr = new StockCounter(spoonsNbr);
+    this.catalog = catalog;
+    this.drinkQty = new StockCounter[drinkQty.length];
+    for (int i = 0; i < drinkQty.length; i++) {
+      this.drinkQty[i] = new StockCounter(drinkQty[i]);
+    }
+  }
+
+  /**
+   * @param values a Collection of Integer's
+   * @return an array of the values, in the iteration order of the Collection
+   */
+  private static int[] toArray(Collection<Integer> values) {
+    final int[] array = new int[values.size()];
+    int i = 0;
+    for (Integer value: values) {
+      array[i++] = value;
+    }
+    return array;
+  }
+
+  /**
+   * @param drink a Drink of the catalog
+   * @return the stock counter of {@code drink}
+   */
+  private StockCounter counter(Drink drink) {
+    return drinkQty[catalog.getId(drink)];
   }
 
   /**
@@ -53,21 +112,21 @@ public class Stock {
    * @return true if there is at least {@code sugar} sugar cubes in stock.
    */
   public boolean isSugarInStock(int sugar) {
-    return sugar <= sugarCubesNbr;
+    return sugar <= sugarCubesNbr.getStock();
   }
 
   /**
    * @return true if there is a cup in stock, false otherwise
    */
   public boolean isCupInStock() {
-    return cupsNbr > 0;
+    return cupsNbr.getStock() > 0;
   }
 
   /**
    * @return true if there is a spoon in stock, false otherwise
    */
   public boolean isSpoonInStock() {
-    return spoonsNbr > 0;
+    return spoonsNbr.getStock() > 0;
   }
 
   /**
@@ -75,35 +134,159 @@ public class Stock {
    * @return true if there is a {@code drink} in stock, false otherwise
    */
   public boolean isDrinkInStock(Drink drink) {
-    return drinkQty.get(drink) > 0;
+    return counter(drink).getStock() > 0;
+  }
+
+  /**
+   * @param sugar the number of sugar cubes that may be available
+   * @return true if at least {@code sugar} sugar cubes are in stock and not reserved
+   */
+  public boolean isSugarAvailable(int sugar) {
+    return sugar <= sugarCubesNbr.getAvailable();
+  }
+
+  /**
+   * @return true if there is a cup in stock that is not reserved, false otherwise
+   */
+  public boolean isCupAvailable() {
+    return cupsNbr.getAvailable() > 0;
+  }
+
+  /**
+   * @return true if there is a spoon in stock that is not reserved, false otherwise
+   */
+  public boolean isSpoonAvailable() {
+    return spoonsNbr.getAvailable() > 0;
+  }
+
+  /**
+   * @param drink the Drink that may be available
+   * @return true if there is a {@code drink} in stock that is not reserved, false otherwise
+   */
+  public boolean isDrinkAvailable(Drink drink) {
+    return counter(drink).getAvailable() > 0;
+  }
+
+  /**
+   * Reserves the items needed to serve {@code drink}: the drink itself, a cup and,
+   * if the drink may contain sugar, a spoon if one is available.
+   * The sugar cubes are reserved later by {@code reserveSugar}.
+   *
+   * @param drink the Drink to reserve
+   * @return the StockReservation, or null if the drink or a cup is not available
+   */
+  public StockReservation reserve(Drink drink) {
+    return reserve(drink, null);
+  }
+
+  /**
+   * Same as {@code reserve(Drink)}, reusing a reservation that is over if there is one.
+   *
+   * @param drink the Drink to reserve
+   * @param spare a StockReservation that is over, or null to create a new one
+   * @return the StockReservation ({@code spare} if it is not null), or null if the
+   *     drink or a cup is not available
+   */
+  StockReservation reserve(Drink drink, StockReservation spare) {
+    final StockCounter drinkCounter = counter(drink);
+    if (!drinkCounter.tryReserve(1)) {
+      return null;
+    }
+    if (!cupsNbr.tryReserve(1)) {
+      drinkCounter.release(1);
+      return null;
+    }
+    final boolean spoon = drink.isSugar() && spoonsNbr.tryReserve(1);
+    if (spare == null) {
+      return new StockReservation(drink, spoon);
+    }
+    spare.reuse(drink, spoon);
+    return spare;
+  }
+
+  /**
+   * Reserves {@code sugar} sugar cubes for the specified reservation, which must
+   * be active and have no sugar reserved yet.
+   *
+   * @param reservation the StockReservation of the order
+   * @param sugar the number of sugar cubes to reserve
+   * @return true if the sugar cubes have been reserved, false if not enough are available
+   */
+  public boolean reserveSugar(StockReservation reservation, int sugar) {
+    Utils.checkPositiveIntIllegal(sugar, "sugar to reserve");
+    if (!reservation.isActive() || reservation.getSugar() != 0) {
+      throw new IllegalStateException("Sugar can't be reserved for this reservation");
+    }
+    if (sugarCubesNbr.tryReserve(sugar)) {
+      reservation.setSugar(sugar);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Removes all the items of the specified reservation from the stock.
+   * If the number of cups becomes zero, notifies the specified IContext of the problem.
+   * Throws an IllegalStateException if the reservation is already over.
+   *
+   * @param reservation the StockReservation to commit
+   * @param context the IContext to notify if there is no cups left
+   */
+  public void commit(StockReservation reservation, IContext context) {
+    if (!reservation.end()) {
+      throw new IllegalStateException("Reservation already committed or released");
+    }
+    counter(reservation.getDrink()).commit(1);
+    sugarCubesNbr.commit(reservation.getSugar());
+    if (reservation.isSpoonReserved()) {
+      spoonsNbr.commit(1);
+    }
+    cupsNbr.commit(1);
+    if (!isCupInStock()) {
+      context.addProblem(NoCup.getInstance());
+    }
+  }
+
+  /**
+   * Makes all the items of the specified reservation available again.
+   * Does nothing if the reservation is already over.
+   *
+   * @param reservation the StockReservation to release
+   */
+  public void release(StockReservation reservation) {
+    if (reservation.end()) {
+      counter(reservation.getDrink()).release(1);
+      sugarCubesNbr.release(reservation.getSugar());
+      if (reservation.isSpoonReserved()) {
+        spoonsNbr.release(1);
+      }
+      cupsNbr.release(1);
+    }
   }
 
   /**
    * Removes {@code i} sugar cubes from the stock.
-   * Throws an IllegalArgumentException if there is not {@code i} sugar cubes in stock.
+   * Throws an IllegalArgumentException if there is not {@code i} sugar cubes
+   * in stock that are not reserved.
    * 
    * @param i number of sugar cubes to remove.
    */
   public void removeSugarCubes(int i) {
-    if (isSugarInStock(i)) {
-      sugarCubesNbr -= i;
-    } else {
-      throw new IllegalArgumentException(
-          "Can't remove " + i + " sugar cubes; only " + sugarCubesNbr + " remaining.");
+    if (!sugarCubesNbr.tryRemove(i)) {
+      throw new IllegalArgumentException("Can't remove " + i + " sugar cubes; only "
+          + sugarCubesNbr.getAvailable() + " remaining.");
     }
   }
 
   /**
    * Removes one cup from the stock.
-   * Throws an IllegalArgumentException if there is no cup in stock.
+   * Throws an IllegalArgumentException if there is no cup in stock that is not reserved.
    * If the number of cups becomes zero, notifies the specified IContext of the problem.
    * 
    * @param context the IContext to notify if there is no cups left
    */
   public void removeCup(IContext context) {
-    if (isCupInStock()) {
-      cupsNbr -= 1;
-    } else {
+    if (!cupsNbr.tryRemove(1)) {
       throw new IllegalArgumentException("Can't remove a cup when none in stock");
     }
     if (!isCupInStock()) {
@@ -113,26 +296,22 @@ public class Stock {
 
   /**
    * Removes one spoon from the stock.
-   * Throws an IllegalArgumentException if there is no spoons in stock.
+   * Throws an IllegalArgumentException if there is no spoons in stock that is not reserved.
    */
   public void removeSpoon() {
-    if (isSpoonInStock()) {
-      spoonsNbr -= 1;
-    } else {
+    if (!spoonsNbr.tryRemove(1)) {
       throw new IllegalArgumentException("Can't remove a spoon when none in stock");
     }
   }
 
   /**
    * Removes one {@code drink} from the stock.
-   * Throws an IllegalArgumentException if this drink was not in stock.
+   * Throws an IllegalArgumentException if this drink was not in stock (or reserved).
    * 
    * @param drink the Drink to remove
    */
   public void removeDrink(Drink drink) {
-    if (isDrinkInStock(drink)) {
-      drinkQty.put(drink, drinkQty.get(drink) - 1);
-    } else {
+    if (!counter(drink).tryRemove(1)) {
       throw new IllegalArgumentException("Can't remove a " + drink.getName() + "; none left in stock");
     }
   }
@@ -141,21 +320,21 @@ public class Stock {
    * @return the number of sugar cubes in stock
    */
   public int getSugarCubesNbr() {
-    return sugarCubesNbr;
+    return sugarCubesNbr.getStock();
   }
 
   /**
    * @return the number of cups in stock
    */
   public int getCupsNbr() {
-    return cupsNbr;
+    return cupsNbr.getStock();
   }
 
   /**
    * @return the number of spoons in stock
    */
   public int getSpoonsNbr() {
-    return spoonsNbr;
+    return spoonsNbr.getStock();
   }
 
   /**
@@ -163,14 +342,51 @@ public class Stock {
    * @return the number of the specified Drink in stock
    */
   public int getDrinkQty(Drink drink) {
-    return drinkQty.get(drink);
+    return counter(drink).getStock();
   }
 
   /**
-   * @return a List of the drinks the machine can dispense
+   * @param drink the drink whose available quantity must be known
+   * @return the number of the specified Drink in stock that are not reserved
+   */
+  int getAvailableDrinkQty(Drink drink) {
+    return counter(drink).getAvailable();
+  }
+
+  /**
+   * @return the number of cups in stock that are not reserved
+   */
+  int getAvailableCupsNbr() {
+    return cupsNbr.getAvailable();
+  }
+
+  /**
+   * @return an unmodifiable List of the drinks the machine can dispense, in the order
+   *     of the catalog
    */
   public List<Drink> getDrinks() {
-    return new ArrayList<Drink>(drinkQty.keySet());
+    return catalog.getDrinks();
+  }
+
+  /**
+   * @return the DrinkCatalog of the drinks the machine can dispense
+   */
+  public DrinkCatalog getCatalog() {
+    return catalog;
+  }
+
+  /**
+   * Replaces the catalog by a new one with the same drinks in the same order, usually
+   * with other prices. The stock of each Drink is kept, and so are the reservations.
+   * Throws an IllegalArgumentException if the drinks of the catalogs are not the same.
+   *
+   * @param newCatalog the DrinkCatalog replacing the current one
+   */
+  void setCatalog(DrinkCatalog newCatalog) {
+    if (!newCatalog.getDrinks().equals(catalog.getDrinks())) {
+      throw new IllegalArgumentException("The new catalog must have the same drinks");
+    }
+    catalog = newCatalog;
   }
 
   /**
@@ -179,15 +395,15 @@ public class Stock {
   public String getInfo() {
     final StringBuilder sb = new StringBuilder(120);
     sb.append("Drink(s): \n");
-    for (Drink drink: this.getDrinks()) {
-      sb.append(drink.getName()).append(": ")
-      .append(drinkQty.get(drink)).append(" available.\n");
+    for (int i = 0; i < drinkQty.length; i++) {
+      sb.append(catalog.get(i).getName()).append(": ")
+      .append(drinkQty[i].getStock()).append(" available.\n");
     }
 
     sb.append('\n')
-    .append(cupsNbr).append(" cup(s) available.\n")
-    .append(sugarCubesNbr).append(" sugar cube(s) available.\n")
-    .append(spoonsNbr).append(" spoon(s) available.\n");
+    .append(cupsNbr.getStock()).append(" cup(s) available.\n")
+    .append(sugarCubesNbr.getStock()).append(" sugar cube(s) available.\n")
+    .append(spoonsNbr.getStock()).append(" spoon(s) available.\n");
     return sb.toString();
   }
 
@@ -195,14 +411,15 @@ public class Stock {
    * Sets a new number of sugar cubes in stock. Logs the change that is done.
    * If you want to remove only some sugar cubes from the stock, you should use
    * {@code removeSugarCubes()} instead.
-   * If the number is negative, throws an IllegalArgumentException.
+   * If the number is negative or lower than the number of reserved sugar cubes,
+   * throws an IllegalArgumentException.
    * 
    * @param newSugarCubesNbr the number of sugar cubes to set
    */
   void setSugarStock(int newSugarCubesNbr) {
     Utils.checkPositiveIntIllegal(newSugarCubesNbr, "cups stock");
-    Utils.logChange(newSugarCubesNbr - this.sugarCubesNbr, newSugarCubesNbr, "sugar cube(s)");
-    this.sugarCubesNbr = newSugarCubesNbr;
+    final int oldSugarCubesNbr = sugarCubesNbr.set(newSugarCubesNbr);
+    Utils.logChange(newSugarCubesNbr - oldSugarCubesNbr, newSugarCubesNbr, "sugar cube(s)");
   }
 
   /**
@@ -210,42 +427,45 @@ public class Stock {
    * If you want to remove only one cup from the stock, you should use
    * {@code removeCup()} instead.
    * If the number of cups reaches 0 or is no more 0, updates the Context.
-   * If the number is negative, throws an IllegalArgumentException.
+   * If the number is negative or lower than the number of reserved cups,
+   * throws an IllegalArgumentException.
    * 
    * @param newCupsNbr the number of cups to set
    * @param context the IContext to update if the number of cups reaches 0
    */
   void setCupStock(int newCupsNbr, IContext context) {
     Utils.checkPositiveIntIllegal(newCupsNbr, "cups stock");
-    Utils.logChange(newCupsNbr - this.cupsNbr, newCupsNbr, "cup(s)");
+    final int oldCupsNbr = cupsNbr.set(newCupsNbr);
+    Utils.logChange(newCupsNbr - oldCupsNbr, newCupsNbr, "cup(s)");
 
     if (newCupsNbr == 0) {
       context.addProblem(NoCup.getInstance());
-    } else if (this.cupsNbr == 0 && newCupsNbr > 0) {
+    } else if (oldCupsNbr == 0 && newCupsNbr > 0) {
       context.problemSolved(NoCup.getInstance());
     }
-    this.cupsNbr = newCupsNbr;
   }
 
   /**
    * Sets a new number of spoons in stock. Logs the change that is done.
    * If you want to remove only one spoon from the stock, you should use
    * {@code removeSpoon()} instead.
-   * If the number is negative, throws an IllegalArgumentException.
+   * If the number is negative or lower than the number of reserved spoons,
+   * throws an IllegalArgumentException.
    * 
    * @param newSpoonsNbr the number of spoons to set
    */
   void setSpoonsStock(int newSpoonsNbr) {
     Utils.checkPositiveIntIllegal(newSpoonsNbr, "spoons stock");
-    Utils.logChange(newSpoonsNbr - this.spoonsNbr, newSpoonsNbr, "spoon(s)");
-    this.spoonsNbr = newSpoonsNbr;
+    final int oldSpoonsNbr = spoonsNbr.set(newSpoonsNbr);
+    Utils.logChange(newSpoonsNbr - oldSpoonsNbr, newSpoonsNbr, "spoon(s)");
   }
 
   /**
    * Updates the stock of {@code drink} to the {@code value} specified.
    * If you want to remove only one drink from the stock, you should use
    * {@code removeDrink(Drink)} instead.
-   * Throws an IllegalArgumentException if {@code value} is negative.
+   * Throws an IllegalArgumentException if {@code value} is negative or lower
+   * than the number of reserved {@code drink}.
    * Logs the change that is done.
    * 
    * @param drink the Drink whose stock must be changed
@@ -253,8 +473,36 @@ public class Stock {
    */
   void setDrinkStock(Drink drink, int value) {
     Utils.checkPositiveIntIllegal(value, drink.getName());
-    Utils.logChange(value - drinkQty.get(drink), value, drink.getName() + "(s)");
-    drinkQty.put(drink, value);
+    final int oldValue = counter(drink).set(value);
+    Utils.logChange(value - oldValue, value, drink.getName() + "(s)");
+  }
+
+  /**
+   * Adds the counters of the items changed by {@code restock} to {@code deltas},
+   * with the quantity to add to each one. Changes nothing.
+   * Throws an IllegalArgumentException if a Drink is not in the catalog.
+   *
+   * @param restock the Restock whose items must be found
+   * @param deltas the Map the counters and their quantities are added to
+   */
+  void collectRestock(Restock restock, Map<StockCounter, Integer> deltas) {
+    for (Map.Entry<Drink, Integer> entry: restock.getDrinks().entrySet()) {
+      putDelta(deltas, counter(entry.getKey()), entry.getValue());
+    }
+    putDelta(deltas, cupsNbr, restock.getCups());
+    putDelta(deltas, sugarCubesNbr, restock.getSugarCubes());
+    putDelta(deltas, spoonsNbr, restock.getSpoons());
+  }
+
+  /**
+   * @param deltas the quantity to add to each StockCounter
+   * @param counter a StockCounter
+   * @param delta the quantity to add to {@code counter} (nothing is put if 0)
+   */
+  static void putDelta(Map<StockCounter, Integer> deltas, StockCounter counter, int delta) {
+    if (delta != 0) {
+      deltas.put(counter, delta);
+    }
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+package vendingmachine.components;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free counter of items in stock, some of which may be reserved by orders.
+ * The stock and the reserved quantity are packed in a single AtomicLong, so that
+ * both are always read and updated together with compare-and-set loops.
+ * The reserved quantity can never exceed the stock: once reserved, items can
+ * always be removed.
+ */
+final class StockCounter {
+
+  /**
+   * The stock (32 high bits) and the reserved quantity (32 low bits).
+   */
+  private final AtomicLong value;
+
+  /**
+   * Creates a counter with the specified stock and nothing reserved.
+   *
+   * @param stock the initial stock (must be positive)
+   */
+  StockCounter(int stock) {
+    this.value = new AtomicLong(pack(stock, 0));
+  }
+
+  private static long pack(int stock, int reserved) {
+    return ((long) stock << 32) | (reserved & 0xFFFFFFFFL);
+  }
+
+  private static int stockOf(long value) {
+    return (int) (value >>> 32);
+  }
+
+  private static int reservedOf(long value) {
+    return (int) value;
+  }
+
+  /**
+   * @return the number of items in stock (reserved or not)
+   */
+  int getStock() {
+    return stockOf(value.get());
+  }
+
+  /**
+   * @return the number of items reserved by orders
+   */
+  int getReserved() {
+    return reservedOf(value.get());
+  }
+
+  /**
+   * @return the number of items in stock that are not reserved
+   */
+  int getAvailable() {
+    final long v = value.get();
+    return stockOf(v) - reservedOf(v);
+  }
+
+  /**
+   * Reserves {@code n} items if they are available.
+   *
+   * @param n the number of items to reserve
+   * @return true if the items have been reserved, false if not enough are available
+   */
+  boolean tryReserve(int n) {
+    while (true) {
+      final long v = value.get();
+      if (stockOf(v) - reservedOf(v) < n) {
+        return false;
+      }
+      if (value.compareAndSet(v, pack(stockOf(v), reservedOf(v) + n))) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Cancels the reservation of {@code n} items, which become available again.
+   *
+   * @param n the number of reserved items to release
+   */
+  void release(int n) {
+    while (true) {
+      final long v = value.get();
+      if (reservedOf(v) < n) {
+        throw new IllegalStateException("Can't release " + n + " items; only "
+            + reservedOf(v) + " reserved.");
+      }
+      if (value.compareAndSet(v, pack(stockOf(v), reservedOf(v) - n))) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Removes {@code n} reserved items from the stock. Never fails if the items
+   * have been reserved before.
+   *
+   * @param n the number of reserved items to remove
+   */
+  void commit(int n) {
+    while (true) {
+      final long v = value.get();
+      if (reservedOf(v) < n) {
+        throw new IllegalStateException("Can't commit " + n + " items; only "
+            + reservedOf(v) + " reserved.");
+      }
+      if (value.compareAndSet(v, pack(stockOf(v) - n, reservedOf(v) - n))) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Removes {@code n} items that are not reserved from the stock.
+   *
+   * @param n the number of items to remove
+   * @return true if the items have been removed, false if not enough are available
+   */
+  boolean tryRemove(int n) {
+    while (true) {
+      final long v = value.get();
+      if (stockOf(v) - reservedOf(v) < n) {
+        return false;
+      }
+      if (value.compareAndSet(v, pack(stockOf(v) - n, reservedOf(v)))) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Adds {@code n} items to the stock.
+   *
+   * @param n the number of items to add
+   */
+  void add(int n) {
+    while (true) {
+      final long v = value.get();
+      if (value.compareAndSet(v, pack(stockOf(v) + n, reservedOf(v)))) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Adds {@code n} items to the stock, or removes {@code -n} items if {@code n} is negative.
+   * Removes nothing if the stock would become lower than the number of reserved items.
+   *
+   * @param n the number of items to add (negative to remove)
+   * @return true if the stock has been changed, false otherwise
+   */
+  boolean tryAdd(int n) {
+    while (true) {
+      final long v = value.get();
+      if (stockOf(v) + n < reservedOf(v)) {
+        return false;
+      }
+      if (value.compareAndSet(v, pack(stockOf(v) + n, reservedOf(v)))) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Adds a quantity to each counter, all or nothing: the removals are done first,
+   * and undone if one of them fails, so that the additions can never fail.
+   *
+   * @param deltas the quantity to add to each StockCounter (negative to remove)
+   * @return true if all the counters have been changed, false if none has been
+   */
+  static boolean tryAddAll(Map<StockCounter, Integer> deltas) {
+    for (Map.Entry<StockCounter, Integer> entry: deltas.entrySet()) {
+      if (entry.getValue() < 0 && !entry.getKey().tryAdd(entry.getValue())) {
+        for (Map.Entry<StockCounter, Integer> done: deltas.entrySet()) {
+          if (done.getKey() == entry.getKey()) {
+            return false;
+          }
+          if (done.getValue() < 0) {
+            done.getKey().add(-done.getValue());
+          }
+        }
+      }
+    }
+    for (Map.Entry<StockCounter, Integer> entry: deltas.entrySet()) {
+      if (entry.getValue() > 0) {
+        entry.getKey().add(entry.getValue());
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Sets a new stock value. Throws an IllegalArgumentException if the new value
+   * is lower than the number of reserved items.
+   *
+   * @param stock the new stock value
+   * @return the previous stock value
+   */
+  int set(int stock) {
+    while (true) {
+      final long v = value.get();
+      if (stock < reservedOf(v)) {
+        throw new IllegalArgumentException("Can't set the stock to " + stock + "; "
+            + reservedOf(v) + " item(s) are reserved by orders.");
+      }
+      if (value.compareAndSet(v, pack(stock, reservedOf(v)))) {
+        return stockOf(v);
+      }
+    }
+  }
+
+}
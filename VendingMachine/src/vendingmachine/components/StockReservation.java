@@ -0,0 +1,111 @@
+package vendingmachine.components;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import vendingmachine.Drink;
+
+/**
+ * A StockReservation holds the items of the Stock reserved for one order:
+ * a Drink, a cup, some sugar cubes and maybe a spoon.
+ * It is created by {@code Stock.reserve(Drink)} and ends either by being
+ * committed (the items are removed from the stock) or released.
+ * Once over, the machine may reuse it for one of its next orders.
+ */
+public final class StockReservation {
+
+  /**
+   * The Drink reserved.
+   */
+  private Drink drink;
+
+  /**
+   * True if a spoon is reserved, false otherwise.
+   */
+  private boolean spoon;
+
+  /**
+   * The number of sugar cubes reserved.
+   */
+  private int sugar;
+
+  /**
+   * Becomes true when the reservation is committed or released.
+   */
+  private final AtomicBoolean over;
+
+  /**
+   * Creates a reservation of a Drink and a cup, with or without a spoon.
+   *
+   * @param drink the Drink reserved
+   * @param spoon true if a spoon is reserved
+   */
+  StockReservation(Drink drink, boolean spoon) {
+    this.drink = drink;
+    this.spoon = spoon;
+    this.sugar = 0;
+    this.over = new AtomicBoolean(false);
+  }
+
+  /**
+   * Makes a reservation that is over hold new items.
+   * Throws an IllegalStateException if the reservation is still active.
+   *
+   * @param drink the Drink reserved
+   * @param spoon true if a spoon is reserved
+   */
+  void reuse(Drink drink, boolean spoon) {
+    if (isActive()) {
+      throw new IllegalStateException("An active reservation can't be reused");
+    }
+    this.drink = drink;
+    this.spoon = spoon;
+    this.sugar = 0;
+    over.set(false);
+  }
+
+  /**
+   * @return the Drink reserved
+   */
+  public Drink getDrink() {
+    return drink;
+  }
+
+  /**
+   * @return true if a spoon is reserved, false otherwise
+   */
+  public boolean isSpoonReserved() {
+    return spoon;
+  }
+
+  /**
+   * @return the number of sugar cubes reserved
+   */
+  public int getSugar() {
+    return sugar;
+  }
+
+  /**
+   * @param sugar the number of sugar cubes that have been reserved
+   */
+  void setSugar(int sugar) {
+    this.sugar = sugar;
+  }
+
+  /**
+   * Marks the reservation as over. Only the first call succeeds, so that a reservation
+   * can not be both committed and released.
+   *
+   * @return true if the reservation was not over yet, false otherwise
+   */
+  boolean end() {
+    return over.compareAndSet(false, true);
+  }
+
+  /**
+   * @return true if the reservation has not been committed or released yet
+   */
+  public boolean isActive() {
+    return !over.get();
+  }
+
+}
@@ -0,0 +1,48 @@
+package vendingmachine.components;
+
+import javax.swing.Timer;
+
+import vendingmachine.monitoring.EdtWatchdog;
+
+/**
+ * An IClock following the real time, whose timers are Swing Timer's:
+ * their actions happen on the event dispatch thread, where the EdtWatchdog
+ * attributes them to the name of their timer.
+ */
+public final class SwingClock implements IClock {
+
+  private static final SwingClock INSTANCE = new SwingClock();
+
+  /**
+   * @return the unique instance of the class
+   */
+  public static SwingClock getInstance() {
+    return INSTANCE;
+  }
+
+  private SwingClock() {}
+
+  @Override
+  public ITimer createTimer(String name, int delay, boolean repeats, Runnable action) {
+    final Runnable timed = EdtWatchdog.timed(name, action);
+    final Timer timer = new Timer(delay, e -> timed.run());
+    timer.setRepeats(repeats);
+    return new ITimer() {
+      @Override
+      public void restart() {
+        timer.restart();
+      }
+
+      @Override
+      public void stop() {
+        timer.stop();
+      }
+    };
+  }
+
+  @Override
+  public long getTime() {
+    return System.currentTimeMillis();
+  }
+
+}
@@ -0,0 +1,34 @@
+package vendingmachine.components;
+
+/**
+ * Keeps the temperature between 90 and 96 degrees: the heater is switched on below
+ * 90 degrees and off above 96 degrees, whatever the orders.
+ * It is the default HeaterController of a HeatingSystem.
+ */
+public final class ThermostatController implements HeaterController {
+
+  private static final ThermostatController INSTANCE = new ThermostatController();
+
+  /**
+   * @return the unique instance of the class
+   */
+  public static ThermostatController getInstance() {
+    return INSTANCE;
+  }
+
+  private ThermostatController() {}
+
+  @Override
+  public boolean isHeating(double temperature, boolean heating, long time) {
+    if (heating && temperature > HeatingSystem.MAX_TEMPERATURE) {
+      return false;
+    } else if (!heating && temperature < HeatingSystem.MIN_TEMPERATURE) {
+      return true;
+    }
+    return heating;
+  }
+
+  @Override
+  public void drinkOrdered(long time) {}
+
+}
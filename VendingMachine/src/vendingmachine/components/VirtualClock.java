@@ -0,0 +1,135 @@
+package vendingmachine.components;
+
+import java.util.PriorityQueue;
+
+/**
+ * An IClock whose time only goes on when it is advanced, so that a machine can be
+ * simulated much faster than the real time and always in the same way.
+ * The actions of the timers happen on the thread advancing the clock, in the order
+ * of their times (and of their scheduling for equal times).
+ * A VirtualClock is not thread-safe: it must be used by one thread at a time.
+ */
+public class VirtualClock implements IClock {
+
+  /**
+   * The current time (in milliseconds since the creation of the clock).
+   */
+  private long time;
+
+  /**
+   * The number of actions scheduled so far, used to keep their order.
+   */
+  private long scheduled;
+
+  /**
+   * The timers waiting to fire, the earliest first.
+   */
+  private final PriorityQueue<VirtualTimer> timers;
+
+  /**
+   * Creates a clock at the time 0, with no timer.
+   */
+  public VirtualClock() {
+    this.time = 0;
+    this.scheduled = 0;
+    this.timers = new PriorityQueue<VirtualTimer>();
+  }
+
+  /**
+   * @return the current time (in milliseconds since the creation of the clock)
+   */
+  @Override
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * Makes the time go on for {@code millis} milliseconds, making all the actions
+   * of the timers happen in the meantime.
+   * Throws an IllegalArgumentException if {@code millis} is negative.
+   *
+   * @param millis the duration to advance the clock by (in milliseconds)
+   */
+  public void advance(long millis) {
+    if (millis < 0) {
+      throw new IllegalArgumentException("The time can't go back");
+    }
+    final long end = time + millis;
+    while (!timers.isEmpty() && timers.peek().due <= end) {
+      final VirtualTimer timer = timers.poll();
+      time = timer.due;
+      timer.fire();
+    }
+    time = end;
+  }
+
+  @Override
+  public ITimer createTimer(String name, int delay, boolean repeats, Runnable action) {
+    return new VirtualTimer(delay, repeats, action);
+  }
+
+  /**
+   * A timer of the VirtualClock. It is in the queue of the clock while it is
+   * scheduled: restarting or stopping it takes it out of the queue first, so that
+   * scheduling a timer never allocates anything.
+   */
+  private final class VirtualTimer implements ITimer, Comparable<VirtualTimer> {
+
+    private final int delay;
+    private final boolean repeats;
+    private final Runnable action;
+
+    /**
+     * The time the timer fires at, if it is scheduled.
+     */
+    private long due;
+
+    /**
+     * The rank of the scheduling, to keep the order of the timers due at the same time.
+     */
+    private long order;
+
+    VirtualTimer(int delay, boolean repeats, Runnable action) {
+      this.delay = delay;
+      this.repeats = repeats;
+      this.action = action;
+    }
+
+    /**
+     * Puts the timer in the queue, {@code delay} milliseconds from now.
+     */
+    private void schedule() {
+      due = time + delay;
+      order = scheduled++;
+      timers.add(this);
+    }
+
+    /**
+     * Makes the action happen, once the timer has been taken out of the queue.
+     */
+    void fire() {
+      if (repeats) {
+        schedule();
+      }
+      action.run();
+    }
+
+    @Override
+    public void restart() {
+      timers.remove(this);
+      schedule();
+    }
+
+    @Override
+    public void stop() {
+      timers.remove(this);
+    }
+
+    @Override
+    public int compareTo(VirtualTimer other) {
+      return due != other.due ? Long.compare(due, other.due) : Long.compare(order, other.order);
+    }
+
+  }
+
+}
@@ -0,0 +1,58 @@
+package vendingmachine.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event lasting the computation of the coins to give back by a ChangePolicy.
+ * Created on the stack and never kept, so that it costs nothing when not recorded.
+ */
+@Name("vendingmachine.ChangeSolver")
+@Label("Change Computation")
+@Category("Vending Machine")
+@Description("Computation of the coins to give back on an amount")
+public final class ChangeSolverEvent extends Event {
+
+  /**
+   * An event never committed, telling if the events of this type are recorded.
+   */
+  private static final ChangeSolverEvent PROBE = new ChangeSolverEvent();
+
+  @Label("Amount")
+  @Description("The amount to give change on, in cents")
+  private int amount;
+
+  @Label("Policy")
+  private String policy;
+
+  @Label("Possible")
+  private boolean possible;
+
+  /**
+   * @return true if the event is recorded, false if it is not worth creating
+   */
+  public static boolean isRecording() {
+    return PROBE.isEnabled();
+  }
+
+  /**
+   * Ends the event and commits it if it is recorded.
+   *
+   * @param amount the amount to give change on (in cents)
+   * @param policy the name of the ChangePolicy
+   * @param possible true if the change has been found
+   */
+  public void done(int amount, String policy, boolean possible) {
+    end();
+    if (shouldCommit()) {
+      this.amount = amount;
+      this.policy = policy;
+      this.possible = possible;
+      commit();
+    }
+  }
+
+}
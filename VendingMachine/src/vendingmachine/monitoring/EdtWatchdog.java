@@ -0,0 +1,358 @@
+package vendingmachine.monitoring;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.InvocationEvent;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Watches the Event Dispatch Thread, on which all the machines shown to a user run:
+ * a slow event handler freezes all of them. Once installed, the watchdog measures the
+ * latency of each event (the time it waited in the event queue plus the time its
+ * handler ran) and reports the slow ones. An event is attributed to the first handler
+ * wrapped by {@code timed} it runs (a button of the GUI, a timer of a machine...),
+ * the other events to their class (PaintEvent, MouseEvent...).
+ * A handler still running after the slow threshold is reported with the stack of the
+ * Event Dispatch Thread, so that a frozen machine can be diagnosed while it is frozen.
+ * The events running a modal dialog are not measured: they wait for the user.
+ */
+public final class EdtWatchdog implements EventDispatchMXBean {
+
+  private static final EdtWatchdog INSTANCE = new EdtWatchdog();
+
+  /**
+   * The default latency above which an event is reported as slow (in milliseconds).
+   */
+  public static final long DEFAULT_SLOW_THRESHOLD = 100;
+
+  /**
+   * The period of the checks of a handler running for too long (in milliseconds).
+   */
+  private static final long CHECK_PERIOD = 50;
+
+  /**
+   * The shortest time between two reports of slow events (in nanoseconds): when the
+   * queue is flooded, reporting each event would slow it down even more.
+   */
+  private static final long REPORT_PERIOD = 1000000000L;
+
+  private static final Logger log = LogManager.getLogger("EdtWatchdog");
+
+  /**
+   * @return the unique instance of the class
+   */
+  public static EdtWatchdog getInstance() {
+    return INSTANCE;
+  }
+
+  private final LatencyHistogram latencies;
+
+  /**
+   * The latencies of the events of each handler, by name of handler.
+   */
+  private final Map<String, LatencyHistogram> handlerLatencies;
+
+  private final AtomicLong dispatchedEvents;
+  private final AtomicLong slowEvents;
+
+  private volatile long slowThreshold;
+
+  private boolean installed;
+
+  /*
+   * The event being dispatched, written by the Event Dispatch Thread and read by
+   * the checks of the handlers running for too long.
+   */
+  private volatile Thread dispatchThread;
+
+  /**
+   * The time the dispatch of the event started ({@code System.nanoTime()}),
+   * 0 if no event is dispatched.
+   */
+  private volatile long dispatchStart;
+
+  /**
+   * The name of the handler of the event, null until a timed handler runs.
+   */
+  private volatile String handler;
+
+  /**
+   * True if the event dispatches other events itself, as a modal dialog does.
+   */
+  private volatile boolean nestedDispatch;
+
+  /*
+   * The last report of a slow event ({@code System.nanoTime()}) and the number of
+   * slow events not reported since (only used by the Event Dispatch Thread).
+   */
+  private long lastReport;
+  private int unreported;
+
+  /**
+   * The start of the last event reported as running for too long
+   * (only used by the checks).
+   */
+  private long reportedStart;
+
+  private EdtWatchdog() {
+    latencies = new LatencyHistogram();
+    handlerLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
+    dispatchedEvents = new AtomicLong();
+    slowEvents = new AtomicLong();
+    slowThreshold = DEFAULT_SLOW_THRESHOLD;
+  }
+
+  /**
+   * Starts watching the Event Dispatch Thread: pushes a measuring EventQueue on the
+   * system event queue, starts the checks of the handlers running for too long and
+   * registers the MBean {@code vendingmachine:type=EventDispatch}.
+   * Does nothing if the watchdog is already installed.
+   * Throws an IllegalStateException if the MBean can't be registered.
+   */
+  public synchronized void install() {
+    if (installed) {
+      return;
+    }
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      server.registerMBean(this, new ObjectName(MachineMonitor.DOMAIN + ":type=EventDispatch"));
+    } catch (JMException e) {
+      throw new IllegalStateException("Can't register the MBean of the event dispatch", e);
+    }
+    Toolkit.getDefaultToolkit().getSystemEventQueue().push(new TimedEventQueue());
+    final ScheduledExecutorService checks = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread thread = new Thread(r, "EDT watchdog");
+      thread.setDaemon(true);
+      return thread;
+    });
+    checks.scheduleAtFixedRate(this::checkRunningHandler, CHECK_PERIOD, CHECK_PERIOD,
+        TimeUnit.MILLISECONDS);
+    installed = true;
+  }
+
+  /**
+   * @return true if the watchdog measures the events
+   */
+  public synchronized boolean isInstalled() {
+    return installed;
+  }
+
+  /**
+   * Wraps an action so that the events running it are attributed to {@code name}.
+   *
+   * @param name the name of the handler
+   * @param action an action run on the Event Dispatch Thread
+   * @return the action wrapped
+   */
+  public static Runnable timed(String name, Runnable action) {
+    return () -> {
+      INSTANCE.handling(name);
+      action.run();
+    };
+  }
+
+  /**
+   * Wraps an ActionListener so that the events running it are attributed to {@code name}.
+   *
+   * @param name the name of the handler
+   * @param listener an ActionListener of a Swing component or timer
+   * @return the ActionListener wrapped
+   */
+  public static ActionListener timed(String name, ActionListener listener) {
+    return e -> {
+      INSTANCE.handling(name);
+      listener.actionPerformed(e);
+    };
+  }
+
+  /**
+   * Attributes the event being dispatched to the specified handler,
+   * unless it is already attributed.
+   */
+  private void handling(String name) {
+    if (handler == null && dispatchStart != 0) {
+      handler = name;
+    }
+  }
+
+  /**
+   * Records the latency of an event which did not dispatch other events,
+   * and reports it if it is slow.
+   *
+   * @param event the event dispatched
+   * @param name the name of its handler, null if it is not known
+   * @param waited the time the event waited in the queue (in milliseconds)
+   * @param ran the time its handler ran (in nanoseconds)
+   */
+  private void record(AWTEvent event, String name, long waited, long ran) {
+    final String handlerName = name != null ? name : event.getClass().getSimpleName();
+    final long micros = waited * 1000 + ran / 1000;
+    latencies.record(micros);
+    handlerLatencies.computeIfAbsent(handlerName, k -> new LatencyHistogram()).record(micros);
+    dispatchedEvents.incrementAndGet();
+    if (micros > slowThreshold * 1000) {
+      slowEvents.incrementAndGet();
+      final long now = System.nanoTime();
+      if (lastReport != 0 && now - lastReport < REPORT_PERIOD) {
+        unreported++;
+      } else {
+        log.warn("Slow event on the event dispatch thread: " + handlerName + " waited "
+            + waited + " ms in the queue and ran " + ran / 1000000 + " ms"
+            + (unreported > 0 ? " (" + unreported + " other slow events since the last one)."
+                : "."));
+        lastReport = now;
+        unreported = 0;
+      }
+    }
+  }
+
+  /**
+   * Reports the handler running on the Event Dispatch Thread if it runs for longer
+   * than the slow threshold, once per event.
+   */
+  private void checkRunningHandler() {
+    final long start = dispatchStart;
+    if (start == 0 || start == reportedStart || nestedDispatch) {
+      return;
+    }
+    final long millis = (System.nanoTime() - start) / 1000000;
+    if (millis > slowThreshold) {
+      reportedStart = start;
+      final String name = handler;
+      final StringBuilder sb = new StringBuilder(1000);
+      sb.append("The event dispatch thread has been running ")
+        .append(name != null ? name : "an event").append(" for ").append(millis).append(" ms:");
+      for (StackTraceElement element: dispatchThread.getStackTrace()) {
+        sb.append("\n\tat ").append(element);
+      }
+      log.warn(sb.toString());
+    }
+  }
+
+  /**
+   * @param event an event about to be dispatched
+   * @return the time it waited in the queue (in milliseconds), 0 if it is not known
+   */
+  private static long waitedMillis(AWTEvent event) {
+    final long when;
+    if (event instanceof InvocationEvent) {
+      when = ((InvocationEvent) event).getWhen();
+    } else if (event instanceof InputEvent) {
+      when = ((InputEvent) event).getWhen();
+    } else {
+      return 0;
+    }
+    return Math.max(0, System.currentTimeMillis() - when);
+  }
+
+  @Override
+  public long getDispatchedEvents() {
+    return dispatchedEvents.get();
+  }
+
+  @Override
+  public long getSlowEvents() {
+    return slowEvents.get();
+  }
+
+  @Override
+  public long getLatencyP50() {
+    return latencies.getPercentile(50);
+  }
+
+  @Override
+  public long getLatencyP99() {
+    return latencies.getPercentile(99);
+  }
+
+  @Override
+  public Map<String, Long> getHandlerLatencyP50() {
+    return getHandlerPercentiles(50);
+  }
+
+  @Override
+  public Map<String, Long> getHandlerLatencyP99() {
+    return getHandlerPercentiles(99);
+  }
+
+  private Map<String, Long> getHandlerPercentiles(double percent) {
+    final Map<String, Long> percentiles = new TreeMap<String, Long>();
+    for (Map.Entry<String, LatencyHistogram> entry: handlerLatencies.entrySet()) {
+      percentiles.put(entry.getKey(), entry.getValue().getPercentile(percent));
+    }
+    return percentiles;
+  }
+
+  @Override
+  public long getSlowThreshold() {
+    return slowThreshold;
+  }
+
+  /**
+   * Throws an IllegalArgumentException if {@code millis} is negative.
+   */
+  @Override
+  public void setSlowThreshold(long millis) {
+    if (millis < 0) {
+      throw new IllegalArgumentException("The slow threshold can't be negative");
+    }
+    slowThreshold = millis;
+  }
+
+  @Override
+  public void resetLatencies() {
+    latencies.reset();
+    for (LatencyHistogram histogram: handlerLatencies.values()) {
+      histogram.reset();
+    }
+  }
+
+  /**
+   * The EventQueue measuring the events it dispatches.
+   */
+  private final class TimedEventQueue extends EventQueue {
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+      final long outerStart = dispatchStart;
+      final String outerHandler = handler;
+      final long waited = waitedMillis(event);
+      dispatchThread = Thread.currentThread();
+      handler = null;
+      nestedDispatch = false;
+      final long start = System.nanoTime();
+      dispatchStart = start;
+      try {
+        super.dispatchEvent(event);
+      } finally {
+        final long ran = System.nanoTime() - start;
+        if (!nestedDispatch) {
+          record(event, handler, waited, ran);
+        }
+        handler = outerHandler;
+        dispatchStart = outerStart;
+        // The outer event, if any, is dispatching other events
+        nestedDispatch = outerStart != 0;
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,62 @@
+package vendingmachine.monitoring;
+
+import java.util.Map;
+
+/**
+ * The management interface of the Event Dispatch Thread running the machines,
+ * registered in the platform MBeanServer as {@code vendingmachine:type=EventDispatch}.
+ * The latency of an event is the time it waited in the event queue plus the time
+ * its handler ran (in microseconds).
+ *
+ * @see EdtWatchdog
+ */
+public interface EventDispatchMXBean {
+
+  /**
+   * @return the number of events dispatched since the watchdog is installed
+   */
+  long getDispatchedEvents();
+
+  /**
+   * @return the number of events whose latency was above the slow threshold
+   */
+  long getSlowEvents();
+
+  /**
+   * @return the median latency of all the events (in microseconds)
+   */
+  long getLatencyP50();
+
+  /**
+   * @return the 99th percentile of the latency of all the events (in microseconds)
+   */
+  long getLatencyP99();
+
+  /**
+   * @return the median latency of the events of each handler, by name of handler
+   *     (in microseconds)
+   */
+  Map<String, Long> getHandlerLatencyP50();
+
+  /**
+   * @return the 99th percentile of the latency of the events of each handler,
+   *     by name of handler (in microseconds)
+   */
+  Map<String, Long> getHandlerLatencyP99();
+
+  /**
+   * @return the latency above which an event is reported as slow (in milliseconds)
+   */
+  long getSlowThreshold();
+
+  /**
+   * @param millis the latency above which an event is reported as slow (in milliseconds)
+   */
+  void setSlowThreshold(long millis);
+
+  /**
+   * Forgets the latencies recorded so far.
+   */
+  void resetLatencies();
+
+}
@@ -0,0 +1,41 @@
+package vendingmachine.monitoring;
+
+/**
+ * The management interface of all the monitored vending machines together,
+ * registered in the platform MBeanServer as {@code vendingmachine:type=Fleet}.
+ *
+ * @see FleetStatistics
+ */
+public interface FleetMXBean {
+
+  /**
+   * @return the number of monitored machines
+   */
+  long getMachines();
+
+  /**
+   * @return the number of orders placed on all the machines
+   */
+  long getPlacedOrders();
+
+  /**
+   * @return the number of drinks prepared by all the machines
+   */
+  long getServedDrinks();
+
+  /**
+   * @return the price of all the orders placed (in cents)
+   */
+  long getSales();
+
+  /**
+   * @return the number of problems raised on all the machines
+   */
+  long getProblemsRaised();
+
+  /**
+   * @return the number of problems the machines are facing now
+   */
+  long getActiveProblems();
+
+}
@@ -0,0 +1,118 @@
+package vendingmachine.monitoring;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The aggregates of all the monitored machines. Each machine adds its own events
+ * to the counters as they happen, so that reading the fleet never walks the machines.
+ * The counters are LongAdder's: the machines running on different threads hardly
+ * ever contend on them.
+ */
+public final class FleetStatistics implements FleetMXBean {
+
+  private static final FleetStatistics INSTANCE = new FleetStatistics();
+
+  /**
+   * @return the unique instance of the class
+   */
+  public static FleetStatistics getInstance() {
+    return INSTANCE;
+  }
+
+  private final LongAdder machines;
+  private final LongAdder placedOrders;
+  private final LongAdder servedDrinks;
+  private final LongAdder sales;
+  private final LongAdder problemsRaised;
+  private final LongAdder activeProblems;
+
+  private FleetStatistics() {
+    machines = new LongAdder();
+    placedOrders = new LongAdder();
+    servedDrinks = new LongAdder();
+    sales = new LongAdder();
+    problemsRaised = new LongAdder();
+    activeProblems = new LongAdder();
+  }
+
+  /**
+   * Counts a new monitored machine, with the problems it is already facing.
+   *
+   * @param problems the number of problems of the machine
+   */
+  void machineAdded(int problems) {
+    machines.increment();
+    activeProblems.add(problems);
+  }
+
+  /**
+   * Forgets a machine that is not monitored anymore, with its current problems.
+   *
+   * @param problems the number of problems of the machine
+   */
+  void machineRemoved(int problems) {
+    machines.decrement();
+    activeProblems.add(-problems);
+  }
+
+  /**
+   * @param price the price of the order placed (in cents)
+   */
+  public void orderPlaced(int price) {
+    placedOrders.increment();
+    sales.add(price);
+  }
+
+  /**
+   * Counts a drink whose preparation is over.
+   */
+  public void drinkServed() {
+    servedDrinks.increment();
+  }
+
+  /**
+   * Counts a new problem of a machine.
+   */
+  public void problemRaised() {
+    problemsRaised.increment();
+    activeProblems.increment();
+  }
+
+  /**
+   * Counts a problem that has been solved.
+   */
+  public void problemSolved() {
+    activeProblems.decrement();
+  }
+
+  @Override
+  public long getMachines() {
+    return machines.sum();
+  }
+
+  @Override
+  public long getPlacedOrders() {
+    return placedOrders.sum();
+  }
+
+  @Override
+  public long getServedDrinks() {
+    return servedDrinks.sum();
+  }
+
+  @Override
+  public long getSales() {
+    return sales.sum();
+  }
+
+  @Override
+  public long getProblemsRaised() {
+    return problemsRaised.sum();
+  }
+
+  @Override
+  public long getActiveProblems() {
+    return activeProblems.sum();
+  }
+
+}
@@ -0,0 +1,176 @@
+package vendingmachine.monitoring;
+
+import java.lang.invoke.VarHandle;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import vendingmachine.Coin;
+import vendingmachine.Drink;
+
+/**
+ * The flight data of a vending machine: a ring buffer holding its last events
+ * (coins, buttons, states and temperatures), to tell what led to a problem.
+ * All the records are preallocated: recording an event only writes into arrays,
+ * so that the machine can record everything it does without allocating anything.
+ * <p>
+ * There is a single writer, the thread of the machine. Any other thread may
+ * {@code dump} the buffer without lock: it copies the records, then drops the
+ * ones the writer may have overwritten meanwhile or may be writing now. So once the
+ * buffer is full, a dump holds one record less than the capacity. Memory fences keep
+ * this correct under the Java memory model, not only on x86 processors.
+ */
+public final class FlightDataRecorder {
+
+  /**
+   * The kinds of events recorded.
+   */
+  public enum Kind {
+    /** A Coin is inserted (the value is its value in cents). */
+    COIN,
+    /** A Drink button is pushed (the value is the id of the Drink in the catalog). */
+    DRINK,
+    /** The confirm button is pushed. */
+    CONFIRM,
+    /** The cancel button is pushed. */
+    CANCEL,
+    /** The sugar is decreased. */
+    LESS,
+    /** The sugar is increased. */
+    MORE,
+    /** The change is taken. */
+    TAKE_CHANGE,
+    /** A cup is taken. */
+    TAKE_CUP,
+    /** The machine enters a State. */
+    STATE,
+    /** The temperature changed (the value is in tenths of degree). */
+    TEMPERATURE;
+
+    private static final Kind[] VALUES = values();
+  }
+
+  /**
+   * The default number of records kept.
+   */
+  public static final int DEFAULT_CAPACITY = 512;
+
+  private final int mask;
+  private final long[] times;
+  private final byte[] kinds;
+  private final int[] values;
+
+  /**
+   * What the event is about (a Coin, a Drink, a State...), shared with the machine.
+   */
+  private final Object[] subjects;
+
+  /**
+   * The number of events recorded since the creation. Published after each record,
+   * so that the readers see the whole record.
+   */
+  private final AtomicLong written;
+
+  /**
+   * Creates an empty recorder.
+   * Throws an IllegalArgumentException if the capacity is not a power of two.
+   *
+   * @param capacity the number of records kept
+   */
+  public FlightDataRecorder(int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("The capacity must be a power of two");
+    }
+    this.mask = capacity - 1;
+    this.times = new long[capacity];
+    this.kinds = new byte[capacity];
+    this.values = new int[capacity];
+    this.subjects = new Object[capacity];
+    this.written = new AtomicLong();
+  }
+
+  /**
+   * Records an event, overwriting the oldest record if the buffer is full.
+   * Must only be called by the thread of the machine.
+   *
+   * @param time the time of the event (in milliseconds)
+   * @param kind the Kind of event
+   * @param value the value of the event (its meaning depends on the Kind)
+   * @param subject what the event is about (a Coin, a Drink, a State...), or null
+   */
+  public void record(long time, Kind kind, int value, Object subject) {
+    final long n = written.get();
+    // The slot may be read by a dump: it must not be overwritten before the
+    // previous record is published
+    VarHandle.storeStoreFence();
+    final int i = (int) n & mask;
+    times[i] = time;
+    kinds[i] = (byte) kind.ordinal();
+    values[i] = value;
+    subjects[i] = subject;
+    written.lazySet(n + 1);
+  }
+
+  /**
+   * @return the number of records kept
+   */
+  public int getCapacity() {
+    return mask + 1;
+  }
+
+  /**
+   * @return the number of events recorded since the creation
+   */
+  public long getRecordedNbr() {
+    return written.get();
+  }
+
+  /**
+   * Writes the records, from the oldest to the newest, one per line. The time of each
+   * record is given relative to the newest one. May be called by any thread: the
+   * oldest slot of a full buffer is left out, as the writer may be overwriting it.
+   *
+   * @return the text of the records
+   */
+  public String dump() {
+    final int capacity = mask + 1;
+    final long end = written.get();
+    final long start = Math.max(0, end - capacity);
+    final int size = (int) (end - start);
+    final long[] t = new long[size];
+    final byte[] k = new byte[size];
+    final int[] v = new int[size];
+    final Object[] s = new Object[size];
+    for (int j = 0; j < size; j++) {
+      final int i = (int) (start + j) & mask;
+      t[j] = times[i];
+      k[j] = kinds[i];
+      v[j] = values[i];
+      s[j] = subjects[i];
+    }
+    // The records written during the copy may have overwritten the oldest ones, and
+    // the slot of the record being written now may be torn. The copy must be done
+    // before the count is read again.
+    VarHandle.loadLoadFence();
+    final int first = (int) Math.max(0, Math.min(size, written.get() + 1 - capacity - start));
+
+    final StringBuilder sb = new StringBuilder(40 * (size - first + 1));
+    sb.append("Last ").append(size - first).append(" event(s):");
+    for (int j = first; j < size; j++) {
+      sb.append(System.lineSeparator()).append(String.format(Locale.ROOT, "%9.3f s  ",
+          (t[j] - t[size - 1]) / 1000.0));
+      final Kind kind = Kind.VALUES[k[j]];
+      sb.append(kind);
+      if (kind == Kind.TEMPERATURE) {
+        sb.append(' ').append(v[j] / 10.0);
+      } else if (s[j] instanceof Coin) {
+        sb.append(' ').append(((Coin) s[j]).TEXT);
+      } else if (s[j] instanceof Drink) {
+        sb.append(' ').append(((Drink) s[j]).getName());
+      } else if (s[j] != null) {
+        sb.append(' ').append(s[j]);
+      }
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,119 @@
+package vendingmachine.monitoring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations (in microseconds) in buckets and gives their percentiles.
+ * The durations below 32 microseconds are exact, the longer ones are known within
+ * about 3 %: each power of two is split in 32 buckets. Recording a duration never
+ * allocates anything and the percentiles can be read from any thread while
+ * durations are recorded.
+ */
+public final class LatencyHistogram {
+
+  /**
+   * The number of buckets of each power of two (as a power of two).
+   */
+  private static final int SUB_BUCKET_BITS = 5;
+
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * The longest duration counted (about 19 hours), longer ones are counted as it.
+   */
+  private static final long MAX_MICROS = (1L << 36) - 1;
+
+  private final AtomicLongArray counts;
+
+  /**
+   * Creates a histogram with no duration.
+   */
+  public LatencyHistogram() {
+    counts = new AtomicLongArray(bucketOf(MAX_MICROS) + 1);
+  }
+
+  /**
+   * @param micros the duration to record (in microseconds), 0 if it is negative
+   */
+  public void record(long micros) {
+    counts.incrementAndGet(bucketOf(Math.max(0, Math.min(micros, MAX_MICROS))));
+  }
+
+  /**
+   * @return the number of durations recorded
+   */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the longest duration of the bucket holding the smallest duration that is
+   * at least as long as {@code percent} % of the durations recorded (the nearest rank).
+   * Throws an IllegalArgumentException if {@code percent} is not between 0 and 100.
+   *
+   * @param percent the percentile wanted (between 0 and 100)
+   * @return the percentile (in microseconds), 0 if nothing has been recorded
+   */
+  public long getPercentile(double percent) {
+    if (!(percent >= 0 && percent <= 100)) {
+      throw new IllegalArgumentException("A percentile must be between 0 and 100");
+    }
+    final long[] snapshot = new long[counts.length()];
+    long count = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return highestOf(i);
+      }
+    }
+    return MAX_MICROS;
+  }
+
+  /**
+   * Forgets all the durations recorded.
+   */
+  public void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+  }
+
+  /**
+   * @param micros a duration between 0 and MAX_MICROS
+   * @return the index of the bucket counting {@code micros}
+   */
+  private static int bucketOf(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    final int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) - SUB_BUCKETS);
+  }
+
+  /**
+   * @param bucket the index of a bucket
+   * @return the longest duration counted in the bucket
+   */
+  private static long highestOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    final int shift = bucket / SUB_BUCKETS - 1;
+    final long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+}
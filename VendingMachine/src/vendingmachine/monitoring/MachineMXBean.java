@@ -0,0 +1,93 @@
+package vendingmachine.monitoring;
+
+import java.util.Map;
+
+/**
+ * The management interface of one vending machine, registered in the platform
+ * MBeanServer as {@code vendingmachine:type=Machine,id=<id>}.
+ *
+ * @see MachineMonitor
+ */
+public interface MachineMXBean {
+
+  /**
+   * @return the name of the current State
+   */
+  String getState();
+
+  /**
+   * @return the names of the current problems
+   */
+  String[] getProblems();
+
+  /**
+   * @return the temperature of the water
+   */
+  double getTemperature();
+
+  /**
+   * @return the number of seconds spent with water too cold to serve
+   */
+  long getColdSeconds();
+
+  /**
+   * @return the amount inserted by the current client (in cents)
+   */
+  int getAmountInside();
+
+  /**
+   * @return the number of paid orders waiting for a Dispenser
+   */
+  int getPendingOrders();
+
+  /**
+   * @return the number of orders placed since the creation of the machine
+   */
+  long getPlacedOrders();
+
+  /**
+   * @return the number of drinks prepared since the creation of the machine
+   */
+  long getServedDrinks();
+
+  /**
+   * @return the number of cups in stock
+   */
+  int getCups();
+
+  /**
+   * @return the number of sugar cubes in stock
+   */
+  int getSugarCubes();
+
+  /**
+   * @return the number of spoons in stock
+   */
+  int getSpoons();
+
+  /**
+   * @return the stock of each Drink, by name
+   */
+  Map<String, Integer> getDrinkStock();
+
+  /**
+   * @return the stock of each Coin, by text
+   */
+  Map<String, Integer> getCoinStock();
+
+  /**
+   * Changes the temperature of the water to its initial value.
+   */
+  void resetTemperature();
+
+  /**
+   * Removes the StuckCoin problem.
+   */
+  void repairStuckCoins();
+
+  /**
+   * @return the last events of the machine, from the oldest to the newest
+   */
+  String dumpFlightData();
+
+}
@@ -0,0 +1,219 @@
+package vendingmachine.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import vendingmachine.Coin;
+import vendingmachine.Drink;
+import vendingmachine.components.Context;
+
+/**
+ * The MachineMXBean of a Context. The machine is not thread-safe: the attributes are
+ * read and the operations are done on the thread of the machine (usually the Event
+ * Dispatch Thread), through the Executor given at registration.
+ * A registered machine also reports its orders and problems to the FleetStatistics.
+ */
+public final class MachineMonitor implements MachineMXBean {
+
+  /**
+   * The domain of the names of the MBeans.
+   */
+  static final String DOMAIN = "vendingmachine";
+
+  /**
+   * The longest time waited for the thread of the machine (in seconds).
+   */
+  private static final long READ_TIMEOUT = 5;
+
+  private final Context context;
+
+  /**
+   * Runs the tasks on the thread of the machine.
+   */
+  private final Executor executor;
+
+  private MachineMonitor(Context context, Executor executor) {
+    this.context = context;
+    this.executor = executor;
+  }
+
+  /**
+   * Registers the MBean of the specified machine in the platform MBeanServer,
+   * and the MBean of the fleet if it is not registered yet.
+   * Throws an IllegalStateException if the MBeans can't be registered.
+   *
+   * @param context the machine to monitor
+   * @param executor runs a task on the thread of the machine (such as
+   *     {@code SwingUtilities::invokeLater})
+   * @return the ObjectName of the MBean of the machine
+   */
+  public static ObjectName register(Context context, Executor executor) {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      final ObjectName fleet = new ObjectName(DOMAIN + ":type=Fleet");
+      synchronized (MachineMonitor.class) {
+        if (!server.isRegistered(fleet)) {
+          server.registerMBean(FleetStatistics.getInstance(), fleet);
+        }
+      }
+      final ObjectName name = getName(context);
+      server.registerMBean(new MachineMonitor(context, executor), name);
+      executor.execute(() -> {
+        context.setFleet(FleetStatistics.getInstance());
+        FleetStatistics.getInstance().machineAdded(context.getProblems().size());
+      });
+      return name;
+    } catch (JMException e) {
+      throw new IllegalStateException("Can't register the MBean of machine " + context.getId(), e);
+    }
+  }
+
+  /**
+   * Unregisters the MBean of the specified machine, which stops reporting to the fleet.
+   * Throws an IllegalStateException if the MBean can't be unregistered.
+   *
+   * @param context a machine registered by {@code register}
+   * @param executor runs a task on the thread of the machine
+   */
+  public static void unregister(Context context, Executor executor) {
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(getName(context));
+      executor.execute(() -> {
+        context.setFleet(null);
+        FleetStatistics.getInstance().machineRemoved(context.getProblems().size());
+      });
+    } catch (JMException e) {
+      throw new IllegalStateException("Can't unregister the MBean of machine "
+          + context.getId(), e);
+    }
+  }
+
+  /**
+   * @param context a machine
+   * @return the ObjectName of the MBean of {@code context}
+   * @throws JMException if the name is malformed
+   */
+  private static ObjectName getName(Context context) throws JMException {
+    return new ObjectName(DOMAIN + ":type=Machine,id=" + context.getId());
+  }
+
+  /**
+   * Reads a value on the thread of the machine.
+   *
+   * @param supplier computes the value
+   * @return the value computed by {@code supplier}
+   */
+  private <T> T read(Supplier<T> supplier) {
+    final FutureTask<T> task = new FutureTask<T>(supplier::get);
+    executor.execute(task);
+    try {
+      return task.get(READ_TIMEOUT, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading the machine", e);
+    } catch (ExecutionException | TimeoutException e) {
+      throw new IllegalStateException("Can't read the machine " + context.getId(), e);
+    }
+  }
+
+  @Override
+  public String getState() {
+    return read(() -> context.getState().toString());
+  }
+
+  @Override
+  public String[] getProblems() {
+    return read(() -> context.getProblems().stream().map(Object::toString)
+        .sorted().toArray(String[]::new));
+  }
+
+  @Override
+  public double getTemperature() {
+    return read(() -> context.getHeatingSystem().getTemperature());
+  }
+
+  @Override
+  public long getColdSeconds() {
+    return read(() -> context.getHeatingSystem().getColdSeconds());
+  }
+
+  @Override
+  public int getAmountInside() {
+    return read(context::getAmountInside);
+  }
+
+  @Override
+  public int getPendingOrders() {
+    return read(context::getPendingOrdersNbr);
+  }
+
+  @Override
+  public long getPlacedOrders() {
+    return read(context::getPlacedOrdersNbr);
+  }
+
+  @Override
+  public long getServedDrinks() {
+    return read(context::getServedDrinksNbr);
+  }
+
+  @Override
+  public int getCups() {
+    return context.getStock().getCupsNbr(); // the counters of the Stock are thread-safe
+  }
+
+  @Override
+  public int getSugarCubes() {
+    return context.getStock().getSugarCubesNbr();
+  }
+
+  @Override
+  public int getSpoons() {
+    return context.getStock().getSpoonsNbr();
+  }
+
+  @Override
+  public Map<String, Integer> getDrinkStock() {
+    final Map<String, Integer> stock = new LinkedHashMap<String, Integer>();
+    for (Drink drink: context.getDrinks()) {
+      stock.put(drink.getName(), context.getStock().getDrinkQty(drink));
+    }
+    return stock;
+  }
+
+  @Override
+  public Map<String, Integer> getCoinStock() {
+    final Map<String, Integer> stock = new LinkedHashMap<String, Integer>();
+    for (Coin coin: context.getCoinSet().getCoins()) {
+      stock.put(coin.TEXT, context.getChangeMachine().getCoinsStock(coin));
+    }
+    return stock;
+  }
+
+  @Override
+  public void resetTemperature() {
+    executor.execute(context::resetTemperature);
+  }
+
+  @Override
+  public void repairStuckCoins() {
+    executor.execute(context::repairStuckCoins);
+  }
+
+  @Override
+  public String dumpFlightData() {
+    return context.dumpFlightData(); // the flight data can be read by any thread
+  }
+
+}
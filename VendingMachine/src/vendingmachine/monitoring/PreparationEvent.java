@@ -0,0 +1,66 @@
+package vendingmachine.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event lasting from the start of the preparation of a drink to its end.
+ * Only created while it is recorded (see {@code isRecording()}).
+ */
+@Name("vendingmachine.Preparation")
+@Label("Preparation")
+@Category("Vending Machine")
+@Description("Preparation of a drink by a dispenser")
+public final class PreparationEvent extends Event {
+
+  private static final PreparationEvent PROBE = new PreparationEvent(0, 0, "", 0);
+
+  @Label("Machine")
+  private int machine;
+
+  @Label("Dispenser")
+  private int dispenser;
+
+  @Label("Drink")
+  private String drink;
+
+  @Label("Sugar")
+  private int sugar;
+
+  /**
+   * Begins the event: the specified Dispenser starts a preparation.
+   *
+   * @param machine the id of the machine
+   * @param dispenser the index of the Dispenser
+   * @param drink the name of the Drink prepared
+   * @param sugar the number of sugar cubes
+   */
+  public PreparationEvent(int machine, int dispenser, String drink, int sugar) {
+    this.machine = machine;
+    this.dispenser = dispenser;
+    this.drink = drink;
+    this.sugar = sugar;
+    begin();
+  }
+
+  /**
+   * @return true if the event is recorded, false if it is not worth creating
+   */
+  public static boolean isRecording() {
+    return PROBE.isEnabled();
+  }
+
+  /**
+   * Ends the event: the drink is ready.
+   */
+  public void finish() {
+    end();
+    if (shouldCommit()) {
+      commit();
+    }
+  }
+
+}
@@ -0,0 +1,45 @@
+package vendingmachine.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * An instant JFR event: a Problem is raised or solved.
+ */
+@Name("vendingmachine.Problem")
+@Label("Problem")
+@Category("Vending Machine")
+@Description("A problem raised or solved in a vending machine")
+public final class ProblemEvent extends Event {
+
+  @Label("Machine")
+  private int machine;
+
+  @Label("Problem")
+  private String problem;
+
+  @Label("Raised")
+  @Description("True if the problem is raised, false if it is solved")
+  private boolean raised;
+
+  /**
+   * Commits a ProblemEvent if it is recorded.
+   *
+   * @param machine the id of the machine
+   * @param problem the name of the Problem
+   * @param raised true if the Problem is raised, false if it is solved
+   */
+  public static void emit(int machine, String problem, boolean raised) {
+    final ProblemEvent event = new ProblemEvent();
+    if (event.shouldCommit()) {
+      event.machine = machine;
+      event.problem = problem;
+      event.raised = raised;
+      event.commit();
+    }
+  }
+
+}
@@ -0,0 +1,63 @@
+package vendingmachine.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event lasting from the entry of a machine in a State to its exit:
+ * its duration is the time spent in the State.
+ * Only created while it is recorded (see {@code isRecording()}).
+ */
+@Name("vendingmachine.StateDwell")
+@Label("State Dwell")
+@Category("Vending Machine")
+@Description("Time spent by a vending machine in a state")
+public final class StateDwellEvent extends Event {
+
+  private static final StateDwellEvent PROBE = new StateDwellEvent(0, "");
+
+  @Label("Machine")
+  private int machine;
+
+  @Label("State")
+  private String state;
+
+  @Label("Next State")
+  private String nextState;
+
+  /**
+   * Begins the event: the specified machine enters the specified State.
+   *
+   * @param machine the id of the machine
+   * @param state the name of the State entered
+   */
+  public StateDwellEvent(int machine, String state) {
+    this.machine = machine;
+    this.state = state;
+    begin();
+  }
+
+  /**
+   * @return true if the event is recorded, false if it is not worth creating
+   */
+  public static boolean isRecording() {
+    return PROBE.isEnabled();
+  }
+
+  /**
+   * Ends the event: the machine leaves the State.
+   *
+   * @param next the name of the next State
+   */
+  public void exit(String next) {
+    end();
+    if (shouldCommit()) {
+      this.nextState = next;
+      commit();
+    }
+  }
+
+}
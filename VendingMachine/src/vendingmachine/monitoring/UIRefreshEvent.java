@@ -0,0 +1,47 @@
+package vendingmachine.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event lasting a full refresh of the user interface of a machine.
+ * Created on the stack and never kept, so that it costs nothing when not recorded.
+ */
+@Name("vendingmachine.UIRefresh")
+@Label("UI Refresh")
+@Category("Vending Machine")
+@Description("Full refresh of the user interface of a vending machine")
+public final class UIRefreshEvent extends Event {
+
+  /**
+   * An event never committed, telling if the events of this type are recorded.
+   */
+  private static final UIRefreshEvent PROBE = new UIRefreshEvent();
+
+  @Label("Machine")
+  private int machine;
+
+  /**
+   * @return true if the event is recorded, false if it is not worth creating
+   */
+  public static boolean isRecording() {
+    return PROBE.isEnabled();
+  }
+
+  /**
+   * Ends the event and commits it if it is recorded.
+   *
+   * @param machine the id of the machine
+   */
+  public void done(int machine) {
+    end();
+    if (shouldCommit()) {
+      this.machine = machine;
+      commit();
+    }
+  }
+
+}
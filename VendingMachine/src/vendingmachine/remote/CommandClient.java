@@ -0,0 +1,135 @@
+package vendingmachine.remote;
+
+import static vendingmachine.remote.CommandProtocol.REQUEST_SIZE;
+import static vendingmachine.remote.CommandProtocol.RESPONSE_SIZE;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A blocking client of the CommandServer, such as a payment terminal or a load tester.
+ * The requests are buffered by {@code send} and the responses read by {@code receive},
+ * so that many requests can be pipelined: the responses come in the order of the
+ * requests. A client must not send more than {@code CommandServer.MAX_PIPELINED}
+ * requests without receiving their responses, or the server stops reading them.
+ * A client must only be used by one thread at a time.
+ */
+public final class CommandClient implements Closeable {
+
+  private final SocketChannel channel;
+
+  /**
+   * The requests not sent yet (ready to be written into).
+   */
+  private final ByteBuffer requests;
+
+  private final ByteBuffer response;
+
+  /**
+   * The amount inside the machine of the last response received (in cents).
+   */
+  private int amountInside;
+
+  /**
+   * Connects to a CommandServer.
+   *
+   * @param address the address the server listens on
+   * @throws IOException if the server can't be reached
+   */
+  public CommandClient(InetSocketAddress address) throws IOException {
+    channel = SocketChannel.open(address);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    requests = ByteBuffer.allocate(REQUEST_SIZE * CommandServer.MAX_PIPELINED);
+    response = ByteBuffer.allocate(RESPONSE_SIZE);
+  }
+
+  /**
+   * Buffers a request, sending the buffered requests if the buffer is full.
+   *
+   * @param machineId the id of the machine
+   * @param command the command, one of the commands of the CommandProtocol
+   * @param item the index of the Coin or Drink of the command (0 if it has none)
+   * @param value the quantity of the command (0 if it has none)
+   * @throws IOException if the connection fails
+   */
+  public void send(int machineId, byte command, int item, int value) throws IOException {
+    if (item < 0 || item > 0xFF) {
+      throw new IllegalArgumentException("The item of a command must be between 0 and 255");
+    }
+    if (requests.remaining() < REQUEST_SIZE) {
+      flush();
+    }
+    requests.putInt(machineId).put(command).put((byte) item).putInt(value);
+  }
+
+  /**
+   * Sends the buffered requests.
+   *
+   * @throws IOException if the connection fails
+   */
+  public void flush() throws IOException {
+    requests.flip();
+    while (requests.hasRemaining()) {
+      channel.write(requests);
+    }
+    requests.clear();
+  }
+
+  /**
+   * Sends the buffered requests and waits for the response of the oldest request
+   * not answered yet.
+   *
+   * @return the status of the response, one of the statuses of the CommandProtocol
+   * @throws IOException if the connection fails or is closed by the server
+   */
+  public byte receive() throws IOException {
+    if (requests.position() > 0) {
+      flush();
+    }
+    response.clear();
+    while (response.hasRemaining()) {
+      if (channel.read(response) < 0) {
+        throw new EOFException("The command server closed the connection");
+      }
+    }
+    response.flip();
+    final byte status = response.get();
+    amountInside = response.getInt();
+    return status;
+  }
+
+  /**
+   * Sends a request and waits for its response. There must not be other requests
+   * waiting for their responses.
+   *
+   * @param machineId the id of the machine
+   * @param command the command, one of the commands of the CommandProtocol
+   * @param item the index of the Coin or Drink of the command (0 if it has none)
+   * @param value the quantity of the command (0 if it has none)
+   * @return the status of the response, one of the statuses of the CommandProtocol
+   * @throws IOException if the connection fails or is closed by the server
+   */
+  public byte call(int machineId, byte command, int item, int value) throws IOException {
+    send(machineId, command, item, value);
+    return receive();
+  }
+
+  /**
+   * @return the amount inside the machine after the command of the last response
+   *     received (in cents), -1 if the machine is unknown
+   */
+  public int getAmountInside() {
+    return amountInside;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+}
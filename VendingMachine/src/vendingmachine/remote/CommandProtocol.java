@@ -0,0 +1,78 @@
+package vendingmachine.remote;
+
+/**
+ * The binary protocol of the CommandServer. A client sends requests of
+ * {@code REQUEST_SIZE} bytes and receives one response of {@code RESPONSE_SIZE} bytes
+ * per request, in the order of the requests. A client may send many requests without
+ * waiting for their responses (pipelining). All the integers are big-endian.
+ *
+ * <p>A request is made of the id of the machine (int), the command (byte, one of the
+ * constants of this class), the item of the command (unsigned byte: the index of a Coin
+ * in the CoinSet of the machine or of a Drink in the List of its drinks) and the value
+ * of the command (int: the quantity added by a restock).
+ *
+ * <p>A response is made of its status (byte), one of the {@code STATUS_*} constants,
+ * and of the amount inside the machine after the command (int, in cents), or -1 if
+ * the machine is unknown.
+ */
+public final class CommandProtocol {
+
+  /**
+   * The size of a request (in bytes).
+   */
+  public static final int REQUEST_SIZE = 10;
+
+  /**
+   * The size of a response (in bytes).
+   */
+  public static final int RESPONSE_SIZE = 5;
+
+  /*
+   * The commands, mapped onto the methods of IMachine.
+   */
+  /** Does nothing: only reads the amount inside the machine. */
+  public static final byte STATUS = 0;
+  /** Inserts the Coin {@code item}. */
+  public static final byte COIN = 1;
+  /** Presses the button of the Drink {@code item}. */
+  public static final byte DRINK = 2;
+  /** Presses the button "-" (less sugar). */
+  public static final byte LESS = 3;
+  /** Presses the button "+" (more sugar). */
+  public static final byte MORE = 4;
+  /** Presses the button "Confirm". */
+  public static final byte CONFIRM = 5;
+  /** Presses the button "Cancel". */
+  public static final byte CANCEL = 6;
+  /** Takes the cup out of the machine. */
+  public static final byte TAKE_CUP = 7;
+  /** Takes the change out of the machine. */
+  public static final byte TAKE_CHANGE = 8;
+  /** Adds {@code value} coins of the Coin {@code item}. */
+  public static final byte RESTOCK_COIN = 9;
+  /** Adds {@code value} drinks of the Drink {@code item}. */
+  public static final byte RESTOCK_DRINK = 10;
+  /** Adds {@code value} cups. */
+  public static final byte RESTOCK_CUPS = 11;
+  /** Adds {@code value} sugar cubes. */
+  public static final byte RESTOCK_SUGAR = 12;
+  /** Adds {@code value} spoons. */
+  public static final byte RESTOCK_SPOONS = 13;
+
+  /*
+   * The statuses of the responses.
+   */
+  /** The command was done. */
+  public static final byte STATUS_OK = 0;
+  /** No machine has the id of the request. */
+  public static final byte STATUS_UNKNOWN_MACHINE = 1;
+  /** The command or its item is unknown. */
+  public static final byte STATUS_BAD_REQUEST = 2;
+  /** The machine refused the command, such as a restock removing too many items. */
+  public static final byte STATUS_REFUSED = 3;
+  /** The command failed unexpectedly, or the machine can't run commands anymore. */
+  public static final byte STATUS_ERROR = 4;
+
+  private CommandProtocol() {}
+
+}
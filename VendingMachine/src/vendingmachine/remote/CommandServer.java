@@ -0,0 +1,541 @@
+package vendingmachine.remote;
+
+import static vendingmachine.remote.CommandProtocol.REQUEST_SIZE;
+import static vendingmachine.remote.CommandProtocol.RESPONSE_SIZE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import vendingmachine.Coin;
+import vendingmachine.CoinSet;
+import vendingmachine.Drink;
+import vendingmachine.components.IMachine;
+import vendingmachine.components.Restock;
+
+/**
+ * An embedded server driving machines with the CommandProtocol, so that payment
+ * terminals or a load tester can use the machines without their user interface.
+ * A single thread serves all the connections with non-blocking channels. The machines
+ * are not thread-safe: each command is run by the Executor of its machine, and the
+ * responses are sent back in the order of the requests of their connection.
+ * A connection can pipeline up to {@code MAX_PIPELINED} requests; beyond, the server
+ * stops reading it until the responses of the first requests are sent.
+ */
+public final class CommandServer implements Closeable {
+
+  /**
+   * The largest number of requests of a connection waiting for their responses.
+   */
+  public static final int MAX_PIPELINED = 256;
+
+  private static final Logger log = LogManager.getLogger("CommandServer");
+
+  /**
+   * The machines that can be driven, by id.
+   */
+  private final Map<Integer, Target> machines;
+
+  /**
+   * The connections whose first responses are ready to be sent.
+   */
+  private final Queue<Connection> ready;
+
+  /**
+   * True if the selector has been woken up and has not looked at {@code ready} since.
+   */
+  private final AtomicBoolean wakingUp;
+
+  private Selector selector;
+  private ServerSocketChannel serverChannel;
+  private Thread thread;
+  private volatile boolean closed;
+
+  /**
+   * Creates a server without any machine. It is started by {@code start}.
+   */
+  public CommandServer() {
+    machines = new ConcurrentHashMap<Integer, Target>();
+    ready = new ConcurrentLinkedQueue<Connection>();
+    wakingUp = new AtomicBoolean();
+  }
+
+  /**
+   * Makes the specified machine reachable by its id. Can be called at any time.
+   * Throws an IllegalArgumentException if a machine with the same id is already added.
+   *
+   * @param machine the machine to drive
+   * @param executor runs a command on the thread of the machine (such as
+   *     {@code SwingUtilities::invokeLater})
+   */
+  public void addMachine(IMachine machine, Executor executor) {
+    if (machines.putIfAbsent(machine.getId(), new Target(machine, executor)) != null) {
+      throw new IllegalArgumentException("The machine " + machine.getId()
+          + " is already added to the command server");
+    }
+  }
+
+  /**
+   * Makes the specified machine unreachable: the next commands to it are answered by
+   * {@code STATUS_UNKNOWN_MACHINE}.
+   *
+   * @param machine a machine added by {@code addMachine}
+   */
+  public void removeMachine(IMachine machine) {
+    machines.remove(machine.getId());
+  }
+
+  /**
+   * Starts listening on the specified address, with a thread serving the connections.
+   * Throws an IllegalStateException if the server is already started or closed.
+   *
+   * @param address the address to listen on (port 0 for any free port)
+   * @return the address the server listens on
+   * @throws IOException if the address can't be listened on
+   */
+  public synchronized InetSocketAddress start(InetSocketAddress address) throws IOException {
+    if (thread != null || closed) {
+      throw new IllegalStateException("The command server can only be started once");
+    }
+    selector = Selector.open();
+    try {
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.bind(address);
+      serverChannel.configureBlocking(false);
+      serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      if (serverChannel != null) {
+        serverChannel.close();
+      }
+      selector.close();
+      throw e;
+    }
+    final InetSocketAddress local = (InetSocketAddress) serverChannel.getLocalAddress();
+    thread = new Thread(this::serve, "Command server");
+    thread.setDaemon(true);
+    thread.start();
+    log.info("The command server listens on " + local);
+    return local;
+  }
+
+  /**
+   * Stops the server and closes all its connections, after the end of the commands
+   * being handled by the server thread. The commands already given to the machines
+   * are still done, but their responses are not sent.
+   */
+  @Override
+  public void close() {
+    final Thread serverThread;
+    synchronized (this) {
+      closed = true;
+      serverThread = thread;
+    }
+    if (serverThread != null) {
+      selector.wakeup();
+      try {
+        serverThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * The loop of the server thread: accepts the connections, reads their requests and
+   * sends the responses ready.
+   */
+  private void serve() {
+    try {
+      while (!closed) {
+        selector.select();
+        wakingUp.set(false);
+        Connection connection;
+        while ((connection = ready.poll()) != null) {
+          connection.queued.set(false);
+          connection.flush();
+        }
+        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          final SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept();
+          } else {
+            connection = (Connection) key.attachment();
+            if (key.isReadable()) {
+              connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+              connection.flush();
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      log.error("The command server stopped", e);
+    } finally {
+      for (SelectionKey key: selector.keys()) {
+        closeQuietly(key.channel());
+      }
+      closeQuietly(selector);
+      log.info("The command server is closed");
+    }
+  }
+
+  /**
+   * Accepts a new connection, if any.
+   *
+   * @throws IOException if the server channel fails
+   */
+  private void accept() throws IOException {
+    final SocketChannel channel = serverChannel.accept();
+    if (channel != null) {
+      try {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        new Connection(channel);
+      } catch (IOException e) {
+        log.warn("Can't accept a connection", e);
+        closeQuietly(channel);
+      }
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      log.warn("Can't close " + closeable, e);
+    }
+  }
+
+  /**
+   * A machine and the Executor running its commands.
+   */
+  private static final class Target {
+
+    private final IMachine machine;
+    private final Executor executor;
+
+    private Target(IMachine machine, Executor executor) {
+      this.machine = machine;
+      this.executor = executor;
+    }
+
+  }
+
+  /**
+   * A connection of a client, only used by the server thread (except {@code completed}).
+   * Its requests waiting for their responses are kept in a ring of Command's,
+   * reused from one request to the next.
+   */
+  private final class Connection {
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+
+    /**
+     * The bytes read and not handled yet (ready to be written into).
+     */
+    private final ByteBuffer input;
+
+    /**
+     * The responses not sent yet (ready to be written into).
+     */
+    private final ByteBuffer output;
+
+    /**
+     * The ring of the requests waiting for their responses.
+     */
+    private final Command[] commands;
+
+    /**
+     * The index in {@code commands} of the oldest request waiting for its response.
+     */
+    private int first;
+
+    /**
+     * The number of requests waiting for their responses.
+     */
+    private int pending;
+
+    /**
+     * True if the client will not send requests anymore.
+     */
+    private boolean endOfInput;
+
+    /**
+     * True if the connection is in {@code ready}.
+     */
+    private final AtomicBoolean queued;
+
+    private Connection(SocketChannel channel) throws IOException {
+      this.channel = channel;
+      this.input = ByteBuffer.allocate(REQUEST_SIZE * 64);
+      this.output = ByteBuffer.allocate(RESPONSE_SIZE * MAX_PIPELINED);
+      this.commands = new Command[MAX_PIPELINED];
+      for (int i = 0; i < MAX_PIPELINED; i++) {
+        commands[i] = new Command(this);
+      }
+      this.queued = new AtomicBoolean();
+      this.key = channel.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * Reads the requests sent by the client and gives them to their machines.
+     */
+    private void read() {
+      try {
+        if (channel.read(input) < 0) {
+          endOfInput = true;
+        }
+        dispatch();
+      } catch (IOException e) {
+        log.info("Connection lost: " + e.getMessage());
+        close();
+      }
+    }
+
+    /**
+     * Sends the responses ready, in the order of the requests, then handles the
+     * requests read while too many requests were waiting for their responses.
+     */
+    private void flush() {
+      if (!channel.isOpen()) {
+        return;
+      }
+      while (pending > 0 && output.remaining() >= RESPONSE_SIZE && commands[first].done) {
+        final Command command = commands[first];
+        output.put(command.status).putInt(command.amountInside);
+        first = (first + 1) % MAX_PIPELINED;
+        pending--;
+      }
+      try {
+        output.flip();
+        channel.write(output);
+        output.compact();
+        dispatch();
+      } catch (IOException e) {
+        log.info("Connection lost: " + e.getMessage());
+        close();
+      }
+    }
+
+    /**
+     * Gives the complete requests read to their machines, as long as the pipeline
+     * is not full, and updates the operations the connection waits for.
+     */
+    private void dispatch() {
+      input.flip();
+      while (input.remaining() >= REQUEST_SIZE && pending < MAX_PIPELINED) {
+        final Command command = commands[(first + pending) % MAX_PIPELINED];
+        pending++;
+        command.start(input.getInt(), input.get(), input.get() & 0xFF, input.getInt());
+      }
+      input.compact();
+      if (endOfInput && pending == 0 && output.position() == 0) {
+        close();
+        return;
+      }
+      int ops = 0;
+      if (!endOfInput && pending < MAX_PIPELINED && input.hasRemaining()) {
+        ops |= SelectionKey.OP_READ;
+      }
+      if (output.position() > 0) {
+        ops |= SelectionKey.OP_WRITE;
+      }
+      if (key.interestOps() != ops) {
+        key.interestOps(ops);
+      }
+    }
+
+    /**
+     * Called by any thread when a Command of the connection is done: wakes the
+     * server thread up to send its response.
+     */
+    private void completed() {
+      if (queued.compareAndSet(false, true)) {
+        ready.add(this);
+        if (!closed && wakingUp.compareAndSet(false, true)) {
+          selector.wakeup();
+        }
+      }
+    }
+
+    private void close() {
+      key.cancel();
+      closeQuietly(channel);
+    }
+
+  }
+
+  /**
+   * A request waiting for its response. It is run by the Executor of its machine,
+   * and published to the server thread by {@code done}.
+   */
+  private final class Command implements Runnable {
+
+    private final Connection connection;
+
+    /*
+     * The request, written by the server thread before the command is run.
+     */
+    private int machineId;
+    private byte command;
+    private int item;
+    private int value;
+    private Target target;
+
+    /*
+     * The response, written by the thread of the machine before {@code done}.
+     */
+    private byte status;
+    private int amountInside;
+    private volatile boolean done;
+
+    private Command(Connection connection) {
+      this.connection = connection;
+    }
+
+    /**
+     * Gives the request to its machine, or answers it at once if the machine is unknown.
+     */
+    private void start(int machineId, byte command, int item, int value) {
+      this.done = false;
+      this.machineId = machineId;
+      this.command = command;
+      this.item = item;
+      this.value = value;
+      this.target = machines.get(machineId);
+      if (target == null) {
+        finish(CommandProtocol.STATUS_UNKNOWN_MACHINE, -1);
+        return;
+      }
+      try {
+        target.executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        finish(CommandProtocol.STATUS_ERROR, -1);
+      }
+    }
+
+    @Override
+    public void run() {
+      final IMachine machine = target.machine;
+      byte result;
+      try {
+        result = execute(machine);
+      } catch (IllegalArgumentException e) {
+        result = CommandProtocol.STATUS_REFUSED;
+      } catch (RuntimeException e) {
+        log.error("The command " + command + " failed on machine " + machineId, e);
+        result = CommandProtocol.STATUS_ERROR;
+      }
+      finish(result, machine.getAmountInside());
+    }
+
+    private void finish(byte result, int amount) {
+      status = result;
+      amountInside = amount;
+      done = true;
+      connection.completed();
+    }
+
+    /**
+     * Runs the command on its machine.
+     *
+     * @param machine the machine of the request
+     * @return the status of the response
+     */
+    private byte execute(IMachine machine) {
+      final CoinSet coinSet = machine.getCoinSet();
+      final List<Drink> drinks = machine.getDrinks();
+      switch (command) {
+        case CommandProtocol.STATUS:
+          break;
+        case CommandProtocol.COIN:
+          if (item >= coinSet.size()) {
+            return CommandProtocol.STATUS_BAD_REQUEST;
+          }
+          machine.coinInserted(coinSet.get(item));
+          break;
+        case CommandProtocol.DRINK:
+          if (item >= drinks.size()) {
+            return CommandProtocol.STATUS_BAD_REQUEST;
+          }
+          machine.drinkButton(drinks.get(item));
+          break;
+        case CommandProtocol.LESS:
+          machine.less();
+          break;
+        case CommandProtocol.MORE:
+          machine.more();
+          break;
+        case CommandProtocol.CONFIRM:
+          machine.confirm();
+          break;
+        case CommandProtocol.CANCEL:
+          machine.cancel();
+          break;
+        case CommandProtocol.TAKE_CUP:
+          machine.takeCup();
+          break;
+        case CommandProtocol.TAKE_CHANGE:
+          machine.takeChange();
+          break;
+        case CommandProtocol.RESTOCK_COIN:
+          if (item >= coinSet.size()) {
+            return CommandProtocol.STATUS_BAD_REQUEST;
+          }
+          machine.restock(new Restock(Collections.singletonMap(coinSet.get(item), value),
+              Collections.<Drink, Integer>emptyMap(), 0, 0, 0));
+          break;
+        case CommandProtocol.RESTOCK_DRINK:
+          if (item >= drinks.size()) {
+            return CommandProtocol.STATUS_BAD_REQUEST;
+          }
+          machine.restock(new Restock(Collections.<Coin, Integer>emptyMap(),
+              Collections.singletonMap(drinks.get(item), value), 0, 0, 0));
+          break;
+        case CommandProtocol.RESTOCK_CUPS:
+          machine.restock(new Restock(Collections.<Coin, Integer>emptyMap(),
+              Collections.<Drink, Integer>emptyMap(), value, 0, 0));
+          break;
+        case CommandProtocol.RESTOCK_SUGAR:
+          machine.restock(new Restock(Collections.<Coin, Integer>emptyMap(),
+              Collections.<Drink, Integer>emptyMap(), 0, value, 0));
+          break;
+        case CommandProtocol.RESTOCK_SPOONS:
+          machine.restock(new Restock(Collections.<Coin, Integer>emptyMap(),
+              Collections.<Drink, Integer>emptyMap(), 0, 0, value));
+          break;
+        default:
+          return CommandProtocol.STATUS_BAD_REQUEST;
+      }
+      return CommandProtocol.STATUS_OK;
+    }
+
+  }
+
+}
@@ -0,0 +1,235 @@
+package vendingmachine.remote;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import vendingmachine.states.Asking;
+import vendingmachine.states.ColdWater;
+import vendingmachine.states.Idle;
+import vendingmachine.states.NoCup;
+import vendingmachine.states.NoSpoon;
+import vendingmachine.states.NoWater;
+import vendingmachine.states.Preparing;
+import vendingmachine.states.State;
+import vendingmachine.states.StuckCoin;
+
+/**
+ * The binary encoding of the deltas pushed by the StatusFeed, and a reader of them.
+ * The status of a machine is a set of numbered fields holding an int (its state, its
+ * problems, its temperature, its stocks). A delta carries the fields of one machine
+ * that changed since the previous delta sent to the same subscriber; the first delta
+ * of each machine carries all its fields.
+ *
+ * <p>A delta is made of the id of the machine (varint), its number of fields (varint)
+ * and, for each field, its number (unsigned byte) followed by its value (zigzag varint:
+ * the small values, negative or not, take a single byte). The deltas are sent back to
+ * back: a buffer holds as many of them as it has bytes.
+ *
+ * <p>A reader is reused from one delta to the next, so that reading the deltas
+ * allocates nothing. It must only be used by one thread at a time.
+ */
+public final class StatusDelta {
+
+  /** The State of the machine, as a code of {@code getStateName}. */
+  public static final int STATE = 0;
+  /** The Problem's of the machine: bit {@code i} is set for the state of code {@code i}. */
+  public static final int PROBLEMS = 1;
+  /** The temperature of the water (in tenths of degree). */
+  public static final int TEMPERATURE = 2;
+  /** The number of cups. */
+  public static final int CUPS = 3;
+  /** The number of sugar cubes. */
+  public static final int SUGAR_CUBES = 4;
+  /** The number of spoons. */
+  public static final int SPOONS = 5;
+  /** The stock of the Coin {@code i} of the CoinSet is field {@code FIRST_COIN + i}. */
+  public static final int FIRST_COIN = 16;
+  /** The stock of the Drink {@code i} of the machine is field {@code FIRST_DRINK + i}. */
+  public static final int FIRST_DRINK = 64;
+
+  /*
+   * The largest numbers of coins and drinks of a machine.
+   */
+  public static final int MAX_COINS = FIRST_DRINK - FIRST_COIN;
+  public static final int MAX_DRINKS = 256 - FIRST_DRINK;
+
+  /**
+   * The largest size of an encoded delta (in bytes).
+   */
+  static final int MAX_SIZE = 5 + 5 + 256 * 6;
+
+  /**
+   * The states, by code.
+   */
+  private static final State[] STATES = { Idle.getInstance(), Asking.getInstance(),
+    Preparing.getInstance(), NoSpoon.getInstance(), NoCup.getInstance(),
+    NoWater.getInstance(), ColdWater.getInstance(), StuckCoin.getInstance() };
+
+  private int machineId;
+  private int fieldsNbr;
+  private final int[] fields;
+  private final int[] values;
+
+  /**
+   * Creates a reader without any delta read.
+   */
+  public StatusDelta() {
+    fields = new int[256];
+    values = new int[256];
+  }
+
+  /**
+   * @param state a State of a machine
+   * @return the code of {@code state}, -1 if it is unknown
+   */
+  static int getStateCode(State state) {
+    for (int i = 0; i < STATES.length; i++) {
+      if (STATES[i] == state) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param code the code of a State, such as the value of the field {@code STATE}
+   * @return the name of the State, "Unknown" if the code is unknown
+   */
+  public static String getStateName(int code) {
+    return code >= 0 && code < STATES.length ? STATES[code].toString() : "Unknown";
+  }
+
+  /**
+   * Reads the next delta of a buffer.
+   * Throws an IllegalArgumentException if the buffer does not hold a whole delta.
+   *
+   * @param buffer the deltas pushed by the StatusFeed
+   * @return false if the buffer has no delta left
+   */
+  public boolean read(ByteBuffer buffer) {
+    if (!buffer.hasRemaining()) {
+      return false;
+    }
+    try {
+      machineId = readVarInt(buffer);
+      final int n = readVarInt(buffer);
+      if (n < 0 || n > fields.length) {
+        throw new IllegalArgumentException("A delta can't have " + n + " fields");
+      }
+      for (int i = 0; i < n; i++) {
+        fields[i] = buffer.get() & 0xFF;
+        final int zigzag = readVarInt(buffer);
+        values[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+      fieldsNbr = n;
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("The buffer ends in the middle of a delta", e);
+    }
+    return true;
+  }
+
+  /**
+   * @return the id of the machine of the last delta read
+   */
+  public int getMachineId() {
+    return machineId;
+  }
+
+  /**
+   * @return the number of fields of the last delta read
+   */
+  public int getFieldsNbr() {
+    return fieldsNbr;
+  }
+
+  /**
+   * @param index the index of a field of the last delta read
+   * @return the number of the field, such as {@code CUPS}
+   */
+  public int getField(int index) {
+    return fields[index];
+  }
+
+  /**
+   * @param index the index of a field of the last delta read
+   * @return the value of the field
+   */
+  public int getValue(int index) {
+    return values[index];
+  }
+
+  /**
+   * @param field the number of a field
+   * @return the value of the field in the last delta read
+   * @throws IllegalArgumentException if the field did not change
+   */
+  public int get(int field) {
+    for (int i = 0; i < fieldsNbr; i++) {
+      if (fields[i] == field) {
+        return values[i];
+      }
+    }
+    throw new IllegalArgumentException("The field " + field + " is not in the delta");
+  }
+
+  /**
+   * @param field the number of a field
+   * @return true if the field is in the last delta read
+   */
+  public boolean has(int field) {
+    for (int i = 0; i < fieldsNbr; i++) {
+      if (fields[i] == field) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes the delta between two statuses of a machine.
+   *
+   * @param buffer the buffer written, with at least {@code MAX_SIZE} bytes remaining
+   * @param machineId the id of the machine
+   * @param fieldNumbers the number of each field of the status
+   * @param known the values known by the subscriber (null if it knows nothing)
+   * @param current the current values (at least as many as {@code fieldNumbers})
+   */
+  static void write(ByteBuffer buffer, int machineId, int[] fieldNumbers, int[] known,
+      int[] current) {
+    int n = 0;
+    for (int i = 0; i < fieldNumbers.length; i++) {
+      if (known == null || known[i] != current[i]) {
+        n++;
+      }
+    }
+    writeVarInt(buffer, machineId);
+    writeVarInt(buffer, n);
+    for (int i = 0; i < fieldNumbers.length; i++) {
+      if (known == null || known[i] != current[i]) {
+        buffer.put((byte) fieldNumbers[i]);
+        writeVarInt(buffer, (current[i] << 1) ^ (current[i] >> 31));
+      }
+    }
+  }
+
+  private static void writeVarInt(ByteBuffer buffer, int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static int readVarInt(ByteBuffer buffer) {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      final byte b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint in a delta");
+  }
+
+}
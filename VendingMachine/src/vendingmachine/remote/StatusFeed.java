@@ -0,0 +1,659 @@
+package vendingmachine.remote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import vendingmachine.Coin;
+import vendingmachine.Drink;
+import vendingmachine.components.Context;
+import vendingmachine.components.Stock;
+import vendingmachine.states.Problem;
+
+/**
+ * Pushes the status of machines to subscribers as binary deltas (see StatusDelta):
+ * each delta only carries the fields of a machine that changed since the previous
+ * delta sent to the same subscriber. The subscribers are StatusListener's in the
+ * application, or clients of a local socket.
+ *
+ * <p>The status of the machines is sampled periodically into arrays of ints, on the
+ * thread of the machines: the machines sharing an Executor (the same instance) are
+ * sampled by a single task, which allocates nothing while the machines don't change.
+ * A sampled change only marks the machine for each subscriber; each subscription
+ * has its own thread, which encodes the marked machines against what its subscriber
+ * already knows. A subscriber falling behind thus gets the changes coalesced: one
+ * delta per machine with its latest values, whatever the number of changes meanwhile.
+ */
+public final class StatusFeed implements Closeable {
+
+  /**
+   * The default time between two samples of the machines (in milliseconds).
+   */
+  public static final long DEFAULT_PERIOD = 250;
+
+  /**
+   * The size of the buffer of the deltas of a subscription (in bytes).
+   */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final Logger log = LogManager.getLogger("StatusFeed");
+
+  /**
+   * The machines, by index.
+   */
+  private final List<Source> sources;
+
+  /**
+   * The machines of each Executor.
+   */
+  private final Map<Executor, Group> groups;
+
+  private final List<Subscription> subscriptions;
+
+  private ScheduledExecutorService sampler;
+  private ServerSocketChannel serverChannel;
+  private volatile boolean closed;
+
+  /**
+   * Creates a feed without any machine nor subscriber.
+   */
+  public StatusFeed() {
+    sources = new CopyOnWriteArrayList<Source>();
+    groups = new IdentityHashMap<Executor, Group>();
+    subscriptions = new CopyOnWriteArrayList<Subscription>();
+  }
+
+  /**
+   * Adds a machine to the feed. Its status is pushed to the subscribers from its
+   * next sample. Throws an IllegalArgumentException if it has more than
+   * {@code StatusDelta.MAX_COINS} coins or {@code StatusDelta.MAX_DRINKS} drinks.
+   *
+   * @param machine the machine to add
+   * @param executor runs a task on the thread of the machine (such as
+   *     {@code SwingUtilities::invokeLater})
+   */
+  public synchronized void addMachine(Context machine, Executor executor) {
+    Group group = groups.get(executor);
+    if (group == null) {
+      group = new Group(executor);
+      groups.put(executor, group);
+    }
+    final Source source = new Source(machine, sources.size());
+    sources.add(source);
+    group.sources.add(source);
+  }
+
+  /**
+   * Starts sampling the machines periodically.
+   * Throws an IllegalStateException if the feed is already started or closed.
+   *
+   * @param period the time between two samples (in milliseconds)
+   */
+  public synchronized void start(long period) {
+    if (sampler != null || closed) {
+      throw new IllegalStateException("The status feed can only be started once");
+    }
+    sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread thread = new Thread(r, "Status feed sampler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sampler.scheduleAtFixedRate(this::sample, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Samples all the machines now, on their threads, and marks the ones that changed
+   * for the subscribers. The machines whose previous sample is still waiting for
+   * their thread are skipped.
+   */
+  public void sample() {
+    final Group[] all;
+    synchronized (this) {
+      all = groups.values().toArray(new Group[groups.size()]);
+    }
+    for (Group group: all) {
+      if (group.running.compareAndSet(false, true)) {
+        try {
+          group.executor.execute(group);
+        } catch (RejectedExecutionException e) {
+          group.running.set(false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Subscribes a listener to the status of all the machines: it is first sent the
+   * whole status of each machine sampled, then their changes.
+   * Throws an IllegalStateException if the feed is closed.
+   *
+   * @param listener the listener to notify
+   * @return the subscription of the listener
+   */
+  public Subscription subscribe(StatusListener listener) {
+    if (closed) {
+      throw new IllegalStateException("The status feed is closed");
+    }
+    final Subscription subscription = new Subscription(listener);
+    subscriptions.add(subscription);
+    final int[] all = new int[sources.size()];
+    for (int i = 0; i < all.length; i++) {
+      all[i] = i;
+    }
+    subscription.mark(all, all.length);
+    subscription.thread.start();
+    return subscription;
+  }
+
+  /**
+   * Accepts subscribers on a socket, with a thread waiting for them. Each batch of
+   * deltas is sent to a client as its size (int, big-endian) followed by the deltas.
+   * Throws an IllegalStateException if the feed already listens or is closed.
+   *
+   * @param address the address to listen on (port 0 for any free port)
+   * @return the address the feed listens on
+   * @throws IOException if the address can't be listened on
+   */
+  public synchronized InetSocketAddress listen(InetSocketAddress address) throws IOException {
+    if (serverChannel != null || closed) {
+      throw new IllegalStateException("The status feed can only listen once");
+    }
+    serverChannel = ServerSocketChannel.open();
+    try {
+      serverChannel.bind(address);
+    } catch (IOException e) {
+      serverChannel.close();
+      serverChannel = null;
+      throw e;
+    }
+    final InetSocketAddress local = (InetSocketAddress) serverChannel.getLocalAddress();
+    final Thread thread = new Thread(this::accept, "Status feed server");
+    thread.setDaemon(true);
+    thread.start();
+    log.info("The status feed listens on " + local);
+    return local;
+  }
+
+  /**
+   * Subscribes the clients of the socket, until the feed is closed.
+   */
+  private void accept() {
+    try {
+      while (!closed) {
+        final SocketChannel channel = serverChannel.accept();
+        try {
+          subscribe(new SocketListener(channel));
+        } catch (IllegalStateException e) {
+          channel.close();
+        }
+      }
+    } catch (IOException e) {
+      if (!closed) {
+        log.error("The status feed stopped accepting subscribers", e);
+      }
+    }
+  }
+
+  /**
+   * Stops sampling the machines, ends all the subscriptions and stops listening.
+   */
+  @Override
+  public void close() {
+    final ServerSocketChannel channel;
+    synchronized (this) {
+      closed = true;
+      if (sampler != null) {
+        sampler.shutdownNow();
+      }
+      channel = serverChannel;
+    }
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        log.warn("Can't close the socket of the status feed", e);
+      }
+    }
+    for (Subscription subscription: subscriptions) {
+      subscription.close();
+    }
+  }
+
+  /**
+   * A machine and its last sampled status.
+   */
+  private static final class Source {
+
+    private final Context machine;
+    private final int index;
+    private final int id;
+    private final List<Coin> coins;
+    private final List<Drink> drinks;
+
+    /**
+     * The number of each field of the status.
+     */
+    private final int[] fieldNumbers;
+
+    /*
+     * The status being sampled and the previous one (only used by the thread of the
+     * machine), null before the first sample.
+     */
+    private final int[] sampling;
+    private int[] previous;
+
+    /**
+     * The last status sampled, shared with the subscriptions (guarded by itself),
+     * null before the first sample.
+     */
+    private volatile int[] latest;
+
+    private Source(Context machine, int index) {
+      this.machine = machine;
+      this.index = index;
+      this.id = machine.getId();
+      this.coins = machine.getCoinSet().getCoins();
+      this.drinks = machine.getDrinks();
+      if (coins.size() > StatusDelta.MAX_COINS || drinks.size() > StatusDelta.MAX_DRINKS) {
+        throw new IllegalArgumentException("The machine " + id + " has too many coins"
+            + " or drinks for the status feed");
+      }
+      final int base = StatusDelta.SPOONS + 1;
+      fieldNumbers = new int[base + coins.size() + drinks.size()];
+      for (int i = 0; i < base; i++) {
+        fieldNumbers[i] = i;
+      }
+      for (int i = 0; i < coins.size(); i++) {
+        fieldNumbers[base + i] = StatusDelta.FIRST_COIN + i;
+      }
+      for (int i = 0; i < drinks.size(); i++) {
+        fieldNumbers[base + coins.size() + i] = StatusDelta.FIRST_DRINK + i;
+      }
+      sampling = new int[fieldNumbers.length];
+    }
+
+    /**
+     * Samples the status of the machine, on its thread.
+     *
+     * @return true if it changed since the previous sample
+     */
+    private boolean sample() {
+      final Stock stock = machine.getStock();
+      sampling[StatusDelta.STATE] = StatusDelta.getStateCode(machine.getState());
+      int problems = 0;
+      if (machine.getProblemsNbr() > 0) {
+        for (Problem problem: machine.getProblems()) {
+          final int code = StatusDelta.getStateCode(problem);
+          if (code >= 0) {
+            problems |= 1 << code;
+          }
+        }
+      }
+      sampling[StatusDelta.PROBLEMS] = problems;
+      sampling[StatusDelta.TEMPERATURE] =
+          (int) Math.round(machine.getHeatingSystem().getTemperature() * 10);
+      sampling[StatusDelta.CUPS] = stock.getCupsNbr();
+      sampling[StatusDelta.SUGAR_CUBES] = stock.getSugarCubesNbr();
+      sampling[StatusDelta.SPOONS] = stock.getSpoonsNbr();
+      int field = StatusDelta.SPOONS + 1;
+      for (int i = 0; i < coins.size(); i++) {
+        sampling[field++] = machine.getChangeMachine().getCoinsStock(coins.get(i));
+      }
+      for (int i = 0; i < drinks.size(); i++) {
+        sampling[field++] = stock.getDrinkQty(drinks.get(i));
+      }
+      if (previous != null && Arrays.equals(previous, sampling)) {
+        return false;
+      }
+      if (previous == null) {
+        previous = sampling.clone();
+        latest = sampling.clone();
+      } else {
+        System.arraycopy(sampling, 0, previous, 0, sampling.length);
+        final int[] shared = latest;
+        synchronized (shared) {
+          System.arraycopy(sampling, 0, shared, 0, sampling.length);
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Copies the last status sampled.
+     *
+     * @param status the array receiving the status
+     * @return false if the machine has not been sampled yet
+     */
+    private boolean copyLatest(int[] status) {
+      final int[] shared = latest;
+      if (shared == null) {
+        return false;
+      }
+      synchronized (shared) {
+        System.arraycopy(shared, 0, status, 0, shared.length);
+      }
+      return true;
+    }
+
+  }
+
+  /**
+   * The task sampling the machines sharing an Executor.
+   */
+  private final class Group implements Runnable {
+
+    private final Executor executor;
+    private final List<Source> sources;
+
+    /**
+     * True from the submission of the task to its end.
+     */
+    private final AtomicBoolean running;
+
+    /**
+     * The indexes of the machines that changed during a sample.
+     */
+    private int[] changed;
+
+    private Group(Executor executor) {
+      this.executor = executor;
+      this.sources = new CopyOnWriteArrayList<Source>();
+      this.running = new AtomicBoolean();
+      this.changed = new int[16];
+    }
+
+    @Override
+    public void run() {
+      try {
+        int changedNbr = 0;
+        for (Source source: sources) {
+          if (source.sample()) {
+            if (changedNbr == changed.length) {
+              changed = Arrays.copyOf(changed, changedNbr * 2);
+            }
+            changed[changedNbr++] = source.index;
+          }
+        }
+        if (changedNbr > 0) {
+          for (Subscription subscription: subscriptions) {
+            subscription.mark(changed, changedNbr);
+          }
+        }
+      } finally {
+        running.set(false);
+      }
+    }
+
+  }
+
+  /**
+   * The subscription of a StatusListener, with the thread notifying it.
+   */
+  public final class Subscription implements Closeable {
+
+    private final StatusListener listener;
+    private final Thread thread;
+
+    /*
+     * The machines marked as changed and not sent yet (guarded by this).
+     */
+    private boolean[] marked;
+    private int[] markedList;
+    private int markedNbr;
+    private boolean ended;
+
+    /*
+     * Only used by the thread of the subscription.
+     */
+    private int[] sending;
+    private int[][] known;
+    private final int[] status;
+    private final ByteBuffer buffer;
+
+    private final AtomicLong deliveries;
+    private final AtomicLong coalescedChanges;
+
+    private Subscription(StatusListener listener) {
+      this.listener = listener;
+      this.marked = new boolean[16];
+      this.markedList = new int[16];
+      this.sending = new int[16];
+      this.known = new int[16][];
+      this.status = new int[StatusDelta.SPOONS + 1 + StatusDelta.MAX_COINS
+          + StatusDelta.MAX_DRINKS];
+      this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      this.deliveries = new AtomicLong();
+      this.coalescedChanges = new AtomicLong();
+      this.thread = new Thread(this::deliver, "Status feed subscription");
+      this.thread.setDaemon(true);
+    }
+
+    /**
+     * @return the number of calls of the listener so far
+     */
+    public long getDeliveries() {
+      return deliveries.get();
+    }
+
+    /**
+     * @return the number of changes of machines merged into a delta not sent yet,
+     *     because the listener was still handling the previous ones
+     */
+    public long getCoalescedChanges() {
+      return coalescedChanges.get();
+    }
+
+    /**
+     * Marks machines as changed, to be sent by the thread of the subscription.
+     *
+     * @param indexes the indexes of the machines
+     * @param n the number of indexes
+     */
+    private synchronized void mark(int[] indexes, int n) {
+      if (ended) {
+        return;
+      }
+      final int wasMarked = markedNbr;
+      for (int i = 0; i < n; i++) {
+        final int index = indexes[i];
+        if (index >= marked.length) {
+          marked = Arrays.copyOf(marked, Math.max(index + 1, marked.length * 2));
+        }
+        if (marked[index]) {
+          coalescedChanges.incrementAndGet();
+        } else {
+          marked[index] = true;
+          if (markedNbr == markedList.length) {
+            markedList = Arrays.copyOf(markedList, markedNbr * 2);
+          }
+          markedList[markedNbr++] = index;
+        }
+      }
+      if (wasMarked == 0 && markedNbr > 0) {
+        notifyAll();
+      }
+    }
+
+    /**
+     * The loop of the thread of the subscription: waits for marked machines and sends
+     * their deltas.
+     */
+    private void deliver() {
+      try {
+        while (true) {
+          final int n;
+          synchronized (this) {
+            while (markedNbr == 0 && !ended) {
+              wait();
+            }
+            if (ended) {
+              return;
+            }
+            n = markedNbr;
+            final int[] list = markedList;
+            markedList = sending.length >= list.length ? sending : new int[list.length];
+            sending = list;
+            for (int i = 0; i < n; i++) {
+              marked[sending[i]] = false;
+            }
+            markedNbr = 0;
+          }
+          for (int i = 0; i < n; i++) {
+            send(sources.get(sending[i]));
+          }
+          flush();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (RuntimeException e) {
+        if (!isEnded()) {
+          log.warn("A subscriber of the status feed failed, it is unsubscribed", e);
+        }
+      } finally {
+        close();
+        listener.unsubscribed();
+      }
+    }
+
+    /**
+     * Encodes the delta of a machine, flushing the buffer if it is full.
+     */
+    private void send(Source source) {
+      if (!source.copyLatest(status)) {
+        return;
+      }
+      if (source.index >= known.length) {
+        known = Arrays.copyOf(known, Math.max(source.index + 1, known.length * 2));
+      }
+      final int length = source.fieldNumbers.length;
+      final int[] previous = known[source.index];
+      if (previous != null && isKnown(previous, length)) {
+        return;
+      }
+      if (buffer.remaining() < StatusDelta.MAX_SIZE) {
+        flush();
+      }
+      StatusDelta.write(buffer, source.id, source.fieldNumbers, previous, status);
+      if (previous == null) {
+        known[source.index] = Arrays.copyOf(status, length);
+      } else {
+        System.arraycopy(status, 0, previous, 0, length);
+      }
+    }
+
+    /**
+     * @param previous the status of a machine known by the subscriber
+     * @param length the number of fields of the machine
+     * @return true if the status sampled is the same
+     */
+    private boolean isKnown(int[] previous, int length) {
+      for (int i = 0; i < length; i++) {
+        if (previous[i] != status[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Calls the listener with the deltas encoded, if any.
+     */
+    private void flush() {
+      if (buffer.position() > 0) {
+        buffer.flip();
+        listener.statusChanged(buffer);
+        buffer.clear();
+        deliveries.incrementAndGet();
+      }
+    }
+
+    /**
+     * @return true if the subscription is closed
+     */
+    private synchronized boolean isEnded() {
+      return ended;
+    }
+
+    /**
+     * Ends the subscription: the listener is not called anymore after the current call.
+     * The thread of the subscription is interrupted, so that a listener blocked in the
+     * current call (such as a socket client that stopped reading) doesn't keep it alive.
+     */
+    @Override
+    public void close() {
+      synchronized (this) {
+        if (ended) {
+          return;
+        }
+        ended = true;
+        notifyAll();
+      }
+      subscriptions.remove(this);
+      if (Thread.currentThread() != thread) {
+        thread.interrupt();
+      }
+    }
+
+  }
+
+  /**
+   * Sends the deltas to a client of the socket, blocking while the client reads them:
+   * the changes are coalesced meanwhile.
+   */
+  private static final class SocketListener implements StatusListener {
+
+    private final SocketChannel channel;
+    private final ByteBuffer[] message;
+
+    private SocketListener(SocketChannel channel) {
+      this.channel = channel;
+      this.message = new ByteBuffer[] { ByteBuffer.allocate(4), null };
+    }
+
+    @Override
+    public void statusChanged(ByteBuffer deltas) {
+      message[0].clear();
+      message[0].putInt(deltas.remaining()).flip();
+      message[1] = deltas;
+      try {
+        while (deltas.hasRemaining()) {
+          channel.write(message);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        message[1] = null;
+      }
+    }
+
+    @Override
+    public void unsubscribed() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        log.warn("Can't close a subscriber of the status feed", e);
+      }
+    }
+
+  }
+
+}
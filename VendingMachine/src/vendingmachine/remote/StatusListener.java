@@ -0,0 +1,26 @@
+package vendingmachine.remote;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A subscriber of the StatusFeed, notified on the thread of its subscription.
+ * While a listener handles a call, the changes of the machines are coalesced:
+ * the next call carries at most one delta per machine, with its latest values.
+ */
+public interface StatusListener {
+
+  /**
+   * Called with the deltas of the machines that changed since the previous call.
+   * The buffer is reused after the call: its content must be read or copied during it.
+   * A RuntimeException thrown by the listener ends its subscription.
+   *
+   * @param deltas the deltas, encoded as described by StatusDelta
+   */
+  void statusChanged(ByteBuffer deltas);
+
+  /**
+   * Called once when the subscription ends. Does nothing by default.
+   */
+  default void unsubscribed() {}
+
+}
@@ -0,0 +1,133 @@
+package vendingmachine.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import vendingmachine.Coin;
+import vendingmachine.CoinSet;
+
+/**
+ * Describes the clients of a simulated machine: when they arrive, which drink
+ * they choose and how they pay for it.
+ * The clients arrive as a Poisson process (exponential times between two clients),
+ * each Drink of the catalog is chosen with a given weight, and a client either pays
+ * the exact price (with the fewest coins) or pays with a bigger coin and waits for
+ * the change.
+ */
+public final class Demand {
+
+  /**
+   * The mean time between two clients (in milliseconds).
+   */
+  private final double meanInterArrival;
+
+  /**
+   * The cumulative weights of the drinks, in the order of the ids of the catalog.
+   */
+  private final double[] cumulativeWeights;
+
+  /**
+   * The probability for a client to pay the exact price.
+   */
+  private final double exactPaymentProb;
+
+  /**
+   * Creates a Demand whose clients arrive every {@code meanInterArrival} seconds on average.
+   * Throws an IllegalArgumentException if the mean time is not strictly positive,
+   * if a weight is negative or all are 0, or if the probability is not between 0 and 1.
+   *
+   * @param meanInterArrival the mean time between two clients (in seconds)
+   * @param drinkWeights the weight of each Drink, indexed by the ids of the catalog
+   * @param exactPaymentProb the probability (between 0 and 1) for a client to pay
+   *     the exact price
+   */
+  public Demand(double meanInterArrival, double[] drinkWeights, double exactPaymentProb) {
+    if (!(meanInterArrival > 0)) {
+      throw new IllegalArgumentException("The mean time between two clients must be positive");
+    }
+    if (!(exactPaymentProb >= 0 && exactPaymentProb <= 1)) {
+      throw new IllegalArgumentException("A probability must be between 0 and 1");
+    }
+    this.cumulativeWeights = new double[drinkWeights.length];
+    double total = 0;
+    for (int i = 0; i < drinkWeights.length; i++) {
+      if (!(drinkWeights[i] >= 0)) {
+        throw new IllegalArgumentException("The weight of a drink can't be negative");
+      }
+      total += drinkWeights[i];
+      cumulativeWeights[i] = total;
+    }
+    if (total == 0) {
+      throw new IllegalArgumentException("At least one drink must be chosen");
+    }
+    this.meanInterArrival = meanInterArrival * 1000;
+    this.exactPaymentProb = exactPaymentProb;
+  }
+
+  /**
+   * @return the number of drinks the weights are given for
+   */
+  public int getDrinksNbr() {
+    return cumulativeWeights.length;
+  }
+
+  /**
+   * @param random the source of randomness of the simulation
+   * @return the time until the next client arrives (in milliseconds)
+   */
+  public long nextInterArrival(SplittableRandom random) {
+    return (long) (-meanInterArrival * Math.log(1 - random.nextDouble()));
+  }
+
+  /**
+   * @param random the source of randomness of the simulation
+   * @return the id of the Drink chosen by the next client
+   */
+  public int nextDrink(SplittableRandom random) {
+    final double r = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+    int id = 0;
+    while (id < cumulativeWeights.length - 1 && cumulativeWeights[id] <= r) {
+      id++;
+    }
+    return id;
+  }
+
+  /**
+   * Returns the coins a client inserts to pay {@code price}. The exact price is paid
+   * with the fewest coins, otherwise the client inserts the smallest coin worth
+   * at least the price, or the biggest coins until the price is reached.
+   *
+   * @param price the price to pay (in cents)
+   * @param coinSet the coins accepted by the machine
+   * @param random the source of randomness of the simulation
+   * @return the List of the coins inserted, in order
+   */
+  public List<Coin> pay(int price, CoinSet coinSet, SplittableRandom random) {
+    final List<Coin> coins = new ArrayList<Coin>();
+    if (price == 0) {
+      return coins;
+    }
+    final int[] exact = random.nextDouble() < exactPaymentProb
+        ? coinSet.getFewestCoins(price) : null;
+    if (exact != null) {
+      for (int i = 0; i < exact.length; i++) {
+        for (int k = 0; k < exact[i]; k++) {
+          coins.add(coinSet.get(i));
+        }
+      }
+      return coins;
+    }
+    for (int i = coinSet.size() - 1; i >= 0; i--) {
+      if (coinSet.get(i).VALUE >= price) {
+        coins.add(coinSet.get(i));
+        return coins;
+      }
+    }
+    for (int paid = 0; paid < price; paid += coinSet.get(0).VALUE) {
+      coins.add(coinSet.get(0));
+    }
+    return coins;
+  }
+
+}
@@ -0,0 +1,266 @@
+package vendingmachine.simulation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import vendingmachine.CoinSet;
+import vendingmachine.Drink;
+import vendingmachine.DrinkCatalog;
+import vendingmachine.components.GreedyChangePolicy;
+
+/**
+ * Searches the smallest initial stock of coins (the float) that keeps the share of
+ * the clients refused because of the change below a target.
+ *
+ * <p>A float is evaluated by simulating many services of the machine
+ * ({@code MachineSimulation}), split between the threads of a ForkJoinPool.
+ * The i-th run of every evaluation uses the same seed, so that two floats are
+ * compared on the same clients. The search adds the coins saving the most refusals
+ * for their value until the target is met, then removes the coins that are not needed.
+ *
+ * <p>The machine logs are turned down to errors and the sounds are muted during
+ * the search, as the simulated machines would write millions of lines.
+ */
+public final class FloatOptimizer {
+
+  private static final Logger log = LogManager.getLogger("FloatOptimizer");
+
+  private final MachineSimulation simulation;
+
+  /**
+   * The number of services simulated to evaluate a float.
+   */
+  private final int runs;
+
+  /**
+   * The highest share of the clients that may be refused because of the change.
+   */
+  private final double target;
+
+  /**
+   * The seed of the first run (the i-th one uses {@code seed + i}).
+   */
+  private final long seed;
+
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates an optimizer running the simulations on the common ForkJoinPool,
+   * which uses all the cores of the machine.
+   *
+   * @param simulation the MachineSimulation of the machine
+   * @param runs the number of services simulated to evaluate a float
+   * @param target the highest share (between 0 and 1) of the clients that may
+   *     be refused because of the change
+   * @param seed the seed of the simulations
+   */
+  public FloatOptimizer(MachineSimulation simulation, int runs, double target, long seed) {
+    this(simulation, runs, target, seed, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates an optimizer running the simulations on the specified ForkJoinPool.
+   * Throws an IllegalArgumentException if {@code runs} is not strictly positive
+   * or if the target is not between 0 and 1.
+   *
+   * @param simulation the MachineSimulation of the machine
+   * @param runs the number of services simulated to evaluate a float
+   * @param target the highest share (between 0 and 1) of the clients that may
+   *     be refused because of the change
+   * @param seed the seed of the simulations
+   * @param pool the ForkJoinPool running the simulations
+   */
+  public FloatOptimizer(MachineSimulation simulation, int runs, double target, long seed,
+      ForkJoinPool pool) {
+    if (runs <= 0) {
+      throw new IllegalArgumentException("At least one run is needed");
+    }
+    if (!(target >= 0 && target <= 1)) {
+      throw new IllegalArgumentException("The target must be between 0 and 1");
+    }
+    this.simulation = simulation;
+    this.runs = runs;
+    this.target = target;
+    this.seed = seed;
+    this.pool = pool;
+  }
+
+  /**
+   * Simulates all the runs of the machine with the specified float, in parallel.
+   *
+   * @param coinsFloat the initial stock of each Coin, in the order of the CoinSet
+   * @return the sum of the SimulationResult's of the runs
+   */
+  public SimulationResult evaluate(int[] coinsFloat) {
+    MachineLogs.quiet();
+    try {
+      return pool.invoke(new RunsTask(coinsFloat.clone(), 0, runs));
+    } finally {
+      MachineLogs.restore();
+    }
+  }
+
+  /**
+   * @param coinsFloat the initial stock of each Coin
+   * @return true if the share of clients refused because of the change is at most the target
+   */
+  public boolean meetsTarget(int[] coinsFloat) {
+    return evaluate(coinsFloat).getChangeRefusalRate() <= target;
+  }
+
+  /**
+   * Searches the smallest float meeting the target, with at most {@code maxPerCoin}
+   * coins of each value.
+   * The float grows from no coin at all: at each step, the Coin whose addition saves
+   * the most refused clients per cent added to the float is added (half as many
+   * coins as there already are, at least one). Then the stock of each Coin is lowered
+   * to the lowest one still meeting the target, the others being fixed (assuming
+   * fewer coins never give fewer refusals), until no stock can be lowered anymore.
+   *
+   * @param maxPerCoin the highest stock of each Coin
+   * @return the stock of each Coin, in the order of the CoinSet, or null if even
+   *     the highest stocks do not meet the target
+   */
+  public int[] optimize(int maxPerCoin) {
+    final int[] values = simulation.getCoinSet().getValues();
+    int[] best = new int[values.length];
+    SimulationResult result = evaluate(best);
+    while (result.getChangeRefusalRate() > target) {
+      int[] chosen = null;
+      SimulationResult chosenResult = null;
+      double bestSaving = 0;
+      for (int i = 0; i < best.length; i++) {
+        final int added = Math.min(Math.max(1, best[i] / 2), maxPerCoin - best[i]);
+        if (added > 0) {
+          final int[] candidate = best.clone();
+          candidate[i] += added;
+          final SimulationResult candidateResult = evaluate(candidate);
+          final double saving = (result.getChangeRefusals() - candidateResult.getChangeRefusals())
+              / (double) (added * values[i]);
+          if (saving > bestSaving) {
+            chosen = candidate;
+            chosenResult = candidateResult;
+            bestSaving = saving;
+          }
+        }
+      }
+      if (chosen == null) { // no Coin helps on its own: one more of each
+        chosen = best.clone();
+        boolean added = false;
+        for (int i = 0; i < chosen.length; i++) {
+          if (chosen[i] < maxPerCoin) {
+            chosen[i]++;
+            added = true;
+          }
+        }
+        if (!added) {
+          log.warn("The target can't be met with " + maxPerCoin + " coins of each value.");
+          return null;
+        }
+        chosenResult = evaluate(chosen);
+      }
+      best = chosen;
+      result = chosenResult;
+    }
+
+    boolean lowered = true;
+    while (lowered) {
+      lowered = false;
+      for (int i = 0; i < best.length; i++) { // the biggest coins first
+        int low = 0;
+        int high = best[i]; // meets the target
+        while (low < high) {
+          final int[] candidate = best.clone();
+          candidate[i] = (low + high) / 2;
+          if (meetsTarget(candidate)) {
+            high = candidate[i];
+          } else {
+            low = candidate[i] + 1;
+          }
+        }
+        if (high < best[i]) {
+          best[i] = high;
+          lowered = true;
+        }
+      }
+    }
+    log.info("Smallest float found: " + Arrays.toString(best));
+    return best;
+  }
+
+  /**
+   * Simulates the runs from {@code from} (included) to {@code to} (excluded),
+   * splitting them in two halves as long as there are several.
+   */
+  private final class RunsTask extends RecursiveTask<SimulationResult> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] coinsFloat;
+    private final int from;
+    private final int to;
+
+    RunsTask(int[] coinsFloat, int from, int to) {
+      this.coinsFloat = coinsFloat;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected SimulationResult compute() {
+      if (to - from == 1) {
+        return simulation.run(coinsFloat, seed + from);
+      }
+      final int middle = (from + to) >>> 1;
+      final RunsTask left = new RunsTask(coinsFloat, from, middle);
+      left.fork();
+      final SimulationResult right = new RunsTask(coinsFloat, middle, to).compute();
+      return left.join().plus(right);
+    }
+
+  }
+
+  /**
+   * Searches the float of a Euro machine giving back the biggest coins first,
+   * whose clients choose each drink with the same probability and pay the exact
+   * price half of the time.
+   * Arguments: the mean time between two clients (in seconds), the duration of the
+   * service (in hours), the target share of refused clients (in %), then the price
+   * of each drink (in cents).
+   *
+   * @param args the description of the machine
+   */
+  public static void main(String[] args) {
+    if (args.length < 4) {
+      System.err.println("Usage: FloatOptimizer <seconds between clients> <hours> "
+          + "<target %> <price>...");
+      return;
+    }
+    final Drink[] drinks = new Drink[args.length - 3];
+    final double[] weights = new double[drinks.length];
+    for (int i = 0; i < drinks.length; i++) {
+      drinks[i] = new Drink("Drink " + (i + 1), false, Integer.parseInt(args[i + 3]));
+      weights[i] = 1;
+    }
+    final Demand demand = new Demand(Double.parseDouble(args[0]), weights, 0.5);
+    final MachineSimulation simulation = new MachineSimulation(
+        new DrinkCatalog(Arrays.asList(drinks)), CoinSet.EURO, GreedyChangePolicy.getInstance(),
+        demand, (long) (Double.parseDouble(args[1]) * 3600000), 1);
+    final FloatOptimizer optimizer =
+        new FloatOptimizer(simulation, 200, Double.parseDouble(args[2]) / 100, 0);
+    final int[] best = optimizer.optimize(50);
+    if (best == null) {
+      System.out.println("The target can't be met with 50 coins of each value.");
+      return;
+    }
+    for (int i = 0; i < best.length; i++) {
+      System.out.println(CoinSet.EURO.get(i).TEXT + ": " + best[i]);
+    }
+    System.out.println(optimizer.evaluate(best));
+  }
+
+}
@@ -0,0 +1,88 @@
+package vendingmachine.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Records durations (in milliseconds) and gives their percentiles.
+ * Not thread-safe: each simulated machine has its own recorders, which are added
+ * together at the end.
+ */
+public final class LatencyRecorder {
+
+  /**
+   * The durations recorded (the {@code size} first ones are used).
+   */
+  private long[] values;
+
+  private int size;
+
+  /**
+   * True if the durations recorded are sorted.
+   */
+  private boolean sorted;
+
+  /**
+   * Creates a recorder with no duration.
+   */
+  public LatencyRecorder() {
+    this.values = new long[64];
+    this.size = 0;
+    this.sorted = true;
+  }
+
+  /**
+   * @param millis the duration to record (in milliseconds)
+   */
+  public void record(long millis) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, 2 * size);
+    }
+    values[size++] = millis;
+    sorted = false;
+  }
+
+  /**
+   * Records all the durations of {@code other}.
+   *
+   * @param other another LatencyRecorder
+   */
+  public void addAll(LatencyRecorder other) {
+    if (size + other.size > values.length) {
+      values = Arrays.copyOf(values, Math.max(2 * values.length, size + other.size));
+    }
+    System.arraycopy(other.values, 0, values, size, other.size);
+    size += other.size;
+    sorted = false;
+  }
+
+  /**
+   * @return the number of durations recorded
+   */
+  public int getCount() {
+    return size;
+  }
+
+  /**
+   * Returns the smallest duration that is at least as long as {@code percent} %
+   * of the durations recorded (the nearest rank).
+   * Throws an IllegalArgumentException if {@code percent} is not between 0 and 100.
+   *
+   * @param percent the percentile wanted (between 0 and 100)
+   * @return the percentile (in milliseconds), 0 if nothing has been recorded
+   */
+  public long getPercentile(double percent) {
+    if (!(percent >= 0 && percent <= 100)) {
+      throw new IllegalArgumentException("A percentile must be between 0 and 100");
+    }
+    if (size == 0) {
+      return 0;
+    }
+    if (!sorted) {
+      Arrays.sort(values, 0, size);
+      sorted = true;
+    }
+    final int rank = (int) Math.ceil(percent / 100 * size);
+    return values[Math.max(rank, 1) - 1];
+  }
+
+}
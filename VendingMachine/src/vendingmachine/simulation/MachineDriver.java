@@ -0,0 +1,415 @@
+package vendingmachine.simulation;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.SplittableRandom;
+
+import vendingmachine.Coin;
+import vendingmachine.Drink;
+import vendingmachine.components.Context;
+import vendingmachine.components.Dispenser;
+import vendingmachine.components.VirtualClock;
+import vendingmachine.simulation.WorkloadReport.Stage;
+import vendingmachine.states.Asking;
+import vendingmachine.states.Idle;
+import vendingmachine.states.NoSpoon;
+import vendingmachine.states.Preparing;
+import vendingmachine.states.State;
+import vendingmachine.ui.IMachineGUI;
+import vendingmachine.ui.TemperatureListener;
+
+/**
+ * Drives one simulated machine with the customers of a Workload, as the user interface
+ * would: each action of a customer (a coin, a button, taking the cup) is a timer of the
+ * VirtualClock of the machine. The customers use the front of the machine one at a time,
+ * in their order of arrival; a customer leaves it as soon as his order is placed or
+ * cancelled, and comes back for his cup when it is ready.
+ * The driver is also the user interface of the machine, to know when the cups are ready.
+ */
+final class MachineDriver implements IMachineGUI, TemperatureListener {
+
+  /*
+   * The time taken by the actions of the customers (in milliseconds).
+   */
+  private static final long COIN_TIME = 1500;
+  private static final long BUTTON_TIME = 1000;
+  private static final long SUGAR_TIME = 400;
+  private static final long PICKUP_TIME = 2000;
+  private static final long RETRY_TIME = 5000;
+
+  private final Workload workload;
+  private final Context context;
+  private final VirtualClock clock;
+  private final SplittableRandom random;
+
+  /**
+   * The time after which no customer arrives anymore (in milliseconds).
+   */
+  private final long duration;
+
+  private final WorkloadReport report;
+
+  /**
+   * The customers waiting to use the front of the machine.
+   */
+  private final Queue<Session> waiting;
+
+  /**
+   * The customer using the front of the machine (null if there is none).
+   */
+  private Session current;
+
+  /**
+   * The customers whose order is placed and whose cup is not ready yet, in order.
+   */
+  private final Queue<Session> preparing;
+
+  /**
+   * The customers whose cup is ready and still in the machine, in order.
+   */
+  private final Queue<Session> cupsReady;
+
+  /**
+   * Creates the driver of the specified machine, which becomes its user interface.
+   *
+   * @param workload the description of the customers
+   * @param context the simulated machine
+   * @param clock the VirtualClock of the machine
+   * @param seed the seed of the randomness of the customers
+   * @param duration the time after which no customer arrives anymore (in milliseconds)
+   */
+  MachineDriver(Workload workload, Context context, VirtualClock clock, long seed,
+      long duration) {
+    this.workload = workload;
+    this.context = context;
+    this.clock = clock;
+    this.random = new SplittableRandom(seed);
+    this.duration = duration;
+    this.report = new WorkloadReport();
+    this.waiting = new ArrayDeque<Session>();
+    this.preparing = new ArrayDeque<Session>();
+    this.cupsReady = new ArrayDeque<Session>();
+    context.setUI(this);
+  }
+
+  /**
+   * @return the WorkloadReport of the customers so far
+   */
+  WorkloadReport getReport() {
+    return report;
+  }
+
+  /**
+   * Ends the simulation: records the time the machine spent with cold water.
+   */
+  void end() {
+    report.coldWater(context.getHeatingSystem().getColdSeconds());
+  }
+
+  /**
+   * Schedules the arrival of the first customer.
+   */
+  void start() {
+    scheduleArrival();
+  }
+
+  /**
+   * @param delay the time before the action (in milliseconds)
+   * @param action the action to do after {@code delay}
+   */
+  private void after(long delay, Runnable action) {
+    clock.createTimer("customer", (int) delay, false, action).restart();
+  }
+
+  private void scheduleArrival() {
+    final long delay = workload.getDemand().nextInterArrival(random);
+    if (clock.getTime() + delay < duration) {
+      after(delay, this::arrive);
+    }
+  }
+
+  /**
+   * A new customer arrives and waits for the front of the machine.
+   */
+  private void arrive() {
+    report.customerArrived();
+    final Demand demand = workload.getDemand();
+    final Drink drink = context.getDrinks().get(demand.nextDrink(random));
+    final Session session = new Session(clock.getTime(), drink,
+        demand.pay(drink.getPrice(), context.getCoinSet(), random),
+        drink.isSugar() ? workload.sugarOf(random.nextDouble()) : 0,
+        random.nextDouble() < workload.getImpatientProb(),
+        random.nextDouble() < workload.getChangeMindProb(),
+        random.nextDouble() < workload.getLeaveCupProb());
+    waiting.add(session);
+    if (current == null) {
+      nextCustomer();
+    }
+    scheduleArrival();
+  }
+
+  /**
+   * The next waiting customer (if any) comes to the front of the machine,
+   * removes the cups forgotten by the previous ones and begins to pay.
+   */
+  private void nextCustomer() {
+    current = waiting.poll();
+    if (current != null) {
+      current.start = clock.getTime();
+      report.record(Stage.QUEUEING, current.start - current.arrival);
+      while (!cupsReady.isEmpty() && cupsReady.peek().leavesCup) {
+        context.takeCup();
+        cupsReady.poll();
+      }
+      insertCoin(current, 0);
+    }
+  }
+
+  /**
+   * @param session the customer paying
+   * @param index the index of the next coin to insert
+   */
+  private void insertCoin(Session session, int index) {
+    if (index == session.coins.size()) {
+      session.paid = clock.getTime();
+      report.record(Stage.PAYMENT, session.paid - session.start);
+      after(BUTTON_TIME, () -> choose(session));
+    } else {
+      after(COIN_TIME, () -> {
+        context.coinInserted(session.coins.get(index));
+        insertCoin(session, index + 1);
+      });
+    }
+  }
+
+  /**
+   * The customer presses the button of his drink.
+   *
+   * @param session the customer choosing his drink
+   */
+  private void choose(Session session) {
+    if (session.firstTry < 0) {
+      session.firstTry = clock.getTime();
+    }
+    final int before = getOrdersInProgress();
+    final boolean orderable = context.getAmountInside() >= session.drink.getPrice()
+        && context.isDrinkAvailable(session.drink) && context.isCupAvailable();
+    final boolean busy = !isResting(context.getState()) || !context.canQueueOrder();
+    context.drinkButton(session.drink);
+    if (context.getState() == NoSpoon.getInstance()) {
+      context.confirm(); // a drink without spoon is better than nothing
+    }
+    if (context.getState() == Asking.getInstance()) {
+      chooseSugar(session, 0);
+    } else {
+      afterChoice(session, before, orderable, busy);
+    }
+  }
+
+  /**
+   * @param session the customer choosing the sugar
+   * @param added the number of sugar cubes chosen so far
+   */
+  private void chooseSugar(Session session, int added) {
+    if (session.changesMind) {
+      after(BUTTON_TIME, () -> cancel(session));
+    } else if (added < session.sugar) {
+      after(SUGAR_TIME, () -> {
+        context.more();
+        chooseSugar(session, added + 1);
+      });
+    } else {
+      after(BUTTON_TIME, () -> {
+        final int before = getOrdersInProgress();
+        context.confirm();
+        afterChoice(session, before, true, false);
+      });
+    }
+  }
+
+  /**
+   * Checks if the order of the customer has been placed. If not, a patient customer
+   * tries again later while the machine is busy, the others cancel.
+   *
+   * @param session the customer who made his choice
+   * @param before the number of orders in progress before the choice
+   * @param orderable true if the drink, a cup and the money were there
+   * @param busy true if the machine could not take another order
+   */
+  private void afterChoice(Session session, int before, boolean orderable, boolean busy) {
+    if (getOrdersInProgress() > before) {
+      report.orderPlaced();
+      session.placed = clock.getTime();
+      report.record(Stage.ORDERING, session.placed - session.paid);
+      preparing.add(session);
+      context.takeChange();
+      leave();
+    } else if (busy && !session.impatient
+        && clock.getTime() - session.firstTry + RETRY_TIME <= workload.getPatience()) {
+      after(RETRY_TIME, () -> choose(session));
+    } else if (busy) {
+      cancel(session);
+    } else {
+      if (orderable && isResting(context.getState())) {
+        report.orderRefusedForChange();
+      } else {
+        report.orderRefused();
+      }
+      context.cancel();
+      context.takeChange();
+      leave();
+    }
+  }
+
+  /**
+   * The customer cancels his order and takes back his money.
+   *
+   * @param session the customer who cancels
+   */
+  private void cancel(Session session) {
+    report.orderCancelled();
+    context.cancel();
+    context.takeChange();
+    leave();
+  }
+
+  /**
+   * The current customer leaves the front of the machine to the next one.
+   */
+  private void leave() {
+    current = null;
+    nextCustomer();
+  }
+
+  /**
+   * @return the number of orders waiting or in preparation
+   */
+  private int getOrdersInProgress() {
+    int orders = context.getPendingOrdersNbr();
+    for (Dispenser dispenser: context.getDispensers()) {
+      if (dispenser.isPreparing()) {
+        orders++;
+      }
+    }
+    return orders;
+  }
+
+  /**
+   * Called when the preparation of a drink is over: its customer comes to take it,
+   * unless he forgot it.
+   */
+  private void cupReady() {
+    final Session session = preparing.poll();
+    if (session != null) {
+      report.orderServed();
+      report.record(Stage.PREPARATION, clock.getTime() - session.placed);
+      cupsReady.add(session);
+      if (session.leavesCup) {
+        report.cupLeft();
+      } else {
+        after(PICKUP_TIME, () -> takeCup(session));
+      }
+    }
+  }
+
+  /**
+   * The customer takes his cup, and the ones forgotten before it.
+   *
+   * @param session the customer taking his cup
+   */
+  private void takeCup(Session session) {
+    while (cupsReady.contains(session)) {
+      context.takeCup();
+      cupsReady.poll();
+    }
+    report.record(Stage.TOTAL, clock.getTime() - session.arrival);
+  }
+
+  /**
+   * @param state a State of the machine
+   * @return true if a customer may begin an order in this State
+   */
+  private static boolean isResting(State state) {
+    return state == Idle.getInstance() || state == Preparing.getInstance();
+  }
+
+  @Override
+  public void setCupText(String msg) {
+    cupReady(); // called once at the end of each preparation
+  }
+
+  @Override
+  public void setChangeBool(boolean bool) {}
+
+  @Override
+  public void setCupBool(boolean cup, boolean spoon) {}
+
+  @Override
+  public void setTemporaryNorthText(String msg) {}
+
+  @Override
+  public void updateChangeOutInfo() {}
+
+  @Override
+  public void updateInfo() {}
+
+  @Override
+  public void updateNorthText() {}
+
+  @Override
+  public void updateSugarText() {}
+
+  @Override
+  public void updateUI() {}
+
+  @Override
+  public void updateServableDrinks() {}
+
+  @Override
+  public void updateAcceptedCoins() {}
+
+  @Override
+  public void updateDrinks() {}
+
+  @Override
+  public void enableRepair(boolean bool) {}
+
+  @Override
+  public void setTemperature(double temperature) {}
+
+  /**
+   * The visit of a customer.
+   */
+  private static final class Session {
+
+    private final long arrival;
+    private final Drink drink;
+    private final List<Coin> coins;
+    private final int sugar;
+    private final boolean impatient;
+    private final boolean changesMind;
+    private final boolean leavesCup;
+
+    /*
+     * The times of the stages of the visit (in milliseconds, -1 if not reached).
+     */
+    private long start = -1;
+    private long paid = -1;
+    private long firstTry = -1;
+    private long placed = -1;
+
+    Session(long arrival, Drink drink, List<Coin> coins, int sugar, boolean impatient,
+        boolean changesMind, boolean leavesCup) {
+      this.arrival = arrival;
+      this.drink = drink;
+      this.coins = coins;
+      this.sugar = sugar;
+      this.impatient = impatient;
+      this.changesMind = changesMind;
+      this.leavesCup = leavesCup;
+    }
+
+  }
+
+}
@@ -0,0 +1,75 @@
+package vendingmachine.simulation;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import vendingmachine.SoundLoader;
+
+/**
+ * Turns down the logs and the sounds of the machines while they are simulated,
+ * as they would write millions of lines.
+ * The simulations may overlap: only the first call to {@link #quiet()} saves what
+ * the logs and the sounds were before, and only the last call to {@link #restore()}
+ * gives it back.
+ */
+public final class MachineLogs {
+
+  /**
+   * The names of the loggers written by the machines.
+   */
+  private static final String[] MACHINE_LOGGERS = { "Context", "FlightData", "Change", "Utils" };
+
+  /**
+   * The previous level of each logger.
+   */
+  private static final Level[] levels = new Level[MACHINE_LOGGERS.length];
+
+  /**
+   * True if the sounds were muted before.
+   */
+  private static boolean muted;
+
+  /**
+   * The number of calls to {@link #quiet()} not restored yet.
+   */
+  private static int quietCount;
+
+  private MachineLogs() {}
+
+  /**
+   * Turns the loggers of the machines down to errors and mutes the sounds, until
+   * {@link #restore()} is called as many times as this method.
+   */
+  public static synchronized void quiet() {
+    if (quietCount++ > 0) {
+      return;
+    }
+    for (int i = 0; i < levels.length; i++) {
+      levels[i] = LogManager.getLogger(MACHINE_LOGGERS[i]).getLevel();
+      Configurator.setLevel(MACHINE_LOGGERS[i], Level.ERROR);
+    }
+    muted = SoundLoader.isMuted();
+    SoundLoader.setMuted(true);
+  }
+
+  /**
+   * Once every call to {@link #quiet()} is restored, gives back their previous levels
+   * to the loggers of the machines, and unmutes the sounds if they were not muted before.
+   *
+   * @throws IllegalStateException if there is no call to {@link #quiet()} to restore
+   */
+  public static synchronized void restore() {
+    if (quietCount == 0) {
+      throw new IllegalStateException("The machine logs are not quiet");
+    }
+    if (--quietCount > 0) {
+      return;
+    }
+    for (int i = 0; i < levels.length; i++) {
+      Configurator.setLevel(MACHINE_LOGGERS[i], levels[i]);
+    }
+    SoundLoader.setMuted(muted);
+  }
+
+}
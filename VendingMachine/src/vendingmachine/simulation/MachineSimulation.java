@@ -0,0 +1,213 @@
+package vendingmachine.simulation;
+
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import vendingmachine.Coin;
+import vendingmachine.CoinSet;
+import vendingmachine.Drink;
+import vendingmachine.DrinkCatalog;
+import vendingmachine.components.Change;
+import vendingmachine.components.ChangeMachine;
+import vendingmachine.components.ChangePolicy;
+import vendingmachine.components.Context;
+import vendingmachine.components.Stock;
+import vendingmachine.components.VirtualClock;
+import vendingmachine.states.Asking;
+import vendingmachine.states.Idle;
+import vendingmachine.states.NoSpoon;
+import vendingmachine.states.Preparing;
+import vendingmachine.states.State;
+
+/**
+ * Simulates the service of a machine without user interface, following a VirtualClock:
+ * the clients described by a Demand arrive one after the other, insert their coins,
+ * choose their drink and take their cup and their change.
+ * Only the coins are limited: the machine never runs out of drinks, cups, sugar or spoons.
+ * A MachineSimulation only holds the description of the machine: each call to
+ * {@code run} builds a new machine, so that several runs may go on at the same time
+ * on different threads.
+ */
+public final class MachineSimulation {
+
+  /**
+   * The longest time a client waits for the machine to be free (in milliseconds).
+   */
+  private static final long MAX_WAIT = 120000;
+
+  /**
+   * The time between two checks of a waiting client (in milliseconds).
+   */
+  private static final long WAIT_STEP = 1000;
+
+  /**
+   * The stock of each item other than the coins.
+   */
+  private static final int UNLIMITED_STOCK = 1000000;
+
+  private final DrinkCatalog catalog;
+  private final CoinSet coinSet;
+  private final ChangePolicy policy;
+  private final Demand demand;
+
+  /**
+   * The duration of the simulated service (in milliseconds).
+   */
+  private final long serviceTime;
+
+  private final int dispensersNbr;
+
+  /**
+   * Creates the simulation of a machine selling the drinks of {@code catalog} to the
+   * clients described by {@code demand} during {@code serviceTime} milliseconds.
+   * Throws an IllegalArgumentException if the Demand does not give a weight to each
+   * Drink of the catalog.
+   *
+   * @param catalog the DrinkCatalog of the machine
+   * @param coinSet the coins accepted and given back by the machine
+   * @param policy the ChangePolicy of the machine
+   * @param demand the Demand of the clients
+   * @param serviceTime the duration of the service (in milliseconds)
+   * @param dispensersNbr the number of Dispenser's of the machine
+   */
+  public MachineSimulation(DrinkCatalog catalog, CoinSet coinSet, ChangePolicy policy,
+      Demand demand, long serviceTime, int dispensersNbr) {
+    if (demand.getDrinksNbr() != catalog.size()) {
+      throw new IllegalArgumentException("The demand must give a weight to each drink");
+    }
+    this.catalog = catalog;
+    this.coinSet = coinSet;
+    this.policy = policy;
+    this.demand = demand;
+    this.serviceTime = serviceTime;
+    this.dispensersNbr = dispensersNbr;
+  }
+
+  /**
+   * @return the coins accepted and given back by the machine
+   */
+  public CoinSet getCoinSet() {
+    return coinSet;
+  }
+
+  /**
+   * Simulates the whole service of a machine whose initial stock of coins is
+   * {@code coinsFloat}. Two runs with the same float and seed give the same result.
+   *
+   * @param coinsFloat the initial stock of each Coin, in the order of the CoinSet
+   * @param seed the seed of the randomness of the clients
+   * @return the SimulationResult of the service
+   */
+  public SimulationResult run(int[] coinsFloat, long seed) {
+    final SplittableRandom random = new SplittableRandom(seed);
+    final VirtualClock clock = new VirtualClock();
+    final Context context = createMachine(coinsFloat, clock);
+
+    long clients = 0;
+    long served = 0;
+    long changeRefusals = 0;
+    long gaveUp = 0;
+    for (long arrival = demand.nextInterArrival(random); arrival < serviceTime;
+        arrival += demand.nextInterArrival(random)) {
+      clock.advance(Math.max(0, arrival - clock.getTime()));
+      clients++;
+      final Drink drink = catalog.get(demand.nextDrink(random));
+      final List<Coin> coins = demand.pay(drink.getPrice(), coinSet, random);
+      if (!waitForMachine(context, clock)) {
+        gaveUp++;
+        continue;
+      }
+
+      for (Coin coin: coins) {
+        context.coinInserted(coin);
+      }
+      final boolean orderable = context.getAmountInside() >= drink.getPrice()
+          && context.isDrinkAvailable(drink) && context.isCupAvailable();
+      context.drinkButton(drink);
+      for (int i = 0; i < 2 && isChoosingSugar(context.getState()); i++) {
+        context.confirm();
+      }
+
+      if (!orderable) {
+        gaveUp++;
+        context.cancel();
+      } else if (isResting(context.getState()) && context.getAmountInside() > 0) {
+        changeRefusals++; // the change on what was inserted could not be reserved
+        context.cancel();
+      } else {
+        served++;
+      }
+      context.takeChange();
+    }
+    return new SimulationResult(clients, served, changeRefusals, gaveUp);
+  }
+
+  /**
+   * @param coinsFloat the initial stock of each Coin
+   * @param clock the VirtualClock of the machine
+   * @return a new machine accepting all the coins of the CoinSet
+   */
+  private Context createMachine(int[] coinsFloat, VirtualClock clock) {
+    final Map<Coin, Integer> coinsStock = new Hashtable<Coin, Integer>();
+    final Map<Coin, Boolean> acceptedCoins = new Hashtable<Coin, Boolean>();
+    for (int i = 0; i < coinSet.size(); i++) {
+      coinsStock.put(coinSet.get(i), coinsFloat[i]);
+      acceptedCoins.put(coinSet.get(i), true);
+    }
+    final ChangeMachine changeMachine =
+        new ChangeMachine(new Change(coinSet, coinsStock, policy), acceptedCoins);
+
+    final int[] drinkQty = new int[catalog.size()];
+    for (int i = 0; i < drinkQty.length; i++) {
+      drinkQty[i] = UNLIMITED_STOCK;
+    }
+    final Stock stock =
+        new Stock(UNLIMITED_STOCK, UNLIMITED_STOCK, UNLIMITED_STOCK, catalog, drinkQty);
+
+    final Context context = new Context(changeMachine, stock, 0, dispensersNbr, clock);
+    context.setUI(new SimulationUI());
+    return context;
+  }
+
+  /**
+   * Lets a client wait until an order can be placed: the previous clients take their
+   * cups as soon as they are ready, and the machine must have no problem.
+   *
+   * @param context the simulated machine
+   * @param clock the VirtualClock of the machine
+   * @return true if an order can be placed, false if the client gave up waiting
+   */
+  private static boolean waitForMachine(Context context, VirtualClock clock) {
+    for (long waited = 0; ; waited += WAIT_STEP) {
+      while (context.isCupInside()) {
+        context.takeCup();
+      }
+      if (isResting(context.getState()) && context.canQueueOrder()) {
+        return true;
+      }
+      if (waited >= MAX_WAIT) {
+        return false;
+      }
+      clock.advance(WAIT_STEP);
+    }
+  }
+
+  /**
+   * @param state a State of the machine
+   * @return true if a client may begin an order in this State
+   */
+  private static boolean isResting(State state) {
+    return state == Idle.getInstance() || state == Preparing.getInstance();
+  }
+
+  /**
+   * @param state a State of the machine
+   * @return true if the client must confirm the order of a sugared drink
+   */
+  private static boolean isChoosingSugar(State state) {
+    return state == Asking.getInstance() || state == NoSpoon.getInstance();
+  }
+
+}
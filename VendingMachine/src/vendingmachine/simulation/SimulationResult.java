@@ -0,0 +1,85 @@
+package vendingmachine.simulation;
+
+/**
+ * The counts of what happened to the clients of one or several simulations.
+ * Immutable: the results of several simulations are added with {@code plus}.
+ */
+public final class SimulationResult {
+
+  /**
+   * The result of no simulation.
+   */
+  public static final SimulationResult EMPTY = new SimulationResult(0, 0, 0, 0);
+
+  private final long clients;
+  private final long served;
+  private final long changeRefusals;
+  private final long gaveUp;
+
+  /**
+   * Creates a result with the specified counts.
+   *
+   * @param clients the number of clients who arrived
+   * @param served the number of clients whose order has been placed
+   * @param changeRefusals the number of orders refused because the change was impossible
+   * @param gaveUp the number of clients who left before they could order
+   */
+  public SimulationResult(long clients, long served, long changeRefusals, long gaveUp) {
+    this.clients = clients;
+    this.served = served;
+    this.changeRefusals = changeRefusals;
+    this.gaveUp = gaveUp;
+  }
+
+  /**
+   * @param other the result of other simulations
+   * @return the sum of this result and {@code other}
+   */
+  public SimulationResult plus(SimulationResult other) {
+    return new SimulationResult(clients + other.clients, served + other.served,
+        changeRefusals + other.changeRefusals, gaveUp + other.gaveUp);
+  }
+
+  /**
+   * @return the number of clients who arrived
+   */
+  public long getClients() {
+    return clients;
+  }
+
+  /**
+   * @return the number of clients whose order has been placed
+   */
+  public long getServed() {
+    return served;
+  }
+
+  /**
+   * @return the number of orders refused because the change was impossible
+   */
+  public long getChangeRefusals() {
+    return changeRefusals;
+  }
+
+  /**
+   * @return the number of clients who left before they could order
+   */
+  public long getGaveUp() {
+    return gaveUp;
+  }
+
+  /**
+   * @return the share of the clients refused because the change was impossible
+   *     (0 if there was no client)
+   */
+  public double getChangeRefusalRate() {
+    return clients == 0 ? 0 : (double) changeRefusals / clients;
+  }
+
+  @Override
+  public String toString() {
+    return clients + " clients, " + served + " served, " + changeRefusals
+        + " refused for the change, " + gaveUp + " gave up";
+  }
+
+}
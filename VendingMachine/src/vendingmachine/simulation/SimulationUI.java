@@ -0,0 +1,53 @@
+package vendingmachine.simulation;
+
+import vendingmachine.ui.IMachineGUI;
+import vendingmachine.ui.TemperatureListener;
+
+/**
+ * The user interface of a simulated machine: nothing is displayed.
+ */
+final class SimulationUI implements IMachineGUI, TemperatureListener {
+
+  @Override
+  public void setChangeBool(boolean bool) {}
+
+  @Override
+  public void setCupBool(boolean cup, boolean spoon) {}
+
+  @Override
+  public void setTemporaryNorthText(String msg) {}
+
+  @Override
+  public void updateChangeOutInfo() {}
+
+  @Override
+  public void updateInfo() {}
+
+  @Override
+  public void updateNorthText() {}
+
+  @Override
+  public void updateSugarText() {}
+
+  @Override
+  public void updateUI() {}
+
+  @Override
+  public void updateServableDrinks() {}
+
+  @Override
+  public void updateAcceptedCoins() {}
+
+  @Override
+  public void updateDrinks() {}
+
+  @Override
+  public void enableRepair(boolean bool) {}
+
+  @Override
+  public void setCupText(String msg) {}
+
+  @Override
+  public void setTemperature(double temperature) {}
+
+}
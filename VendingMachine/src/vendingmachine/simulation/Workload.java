@@ -0,0 +1,133 @@
+package vendingmachine.simulation;
+
+/**
+ * Describes the behaviour of the customers of a load test, on top of the Demand
+ * (arrivals, drink mix and payments): how much sugar they want, how patient they
+ * are and whether they forget their cup.
+ * Impatient customers cancel their order as soon as the machine can't take it;
+ * the others try again until their patience runs out.
+ */
+public final class Workload {
+
+  private final Demand demand;
+
+  /**
+   * The cumulative weights of the quantities of sugar (from 0 sugar cube).
+   */
+  private final double[] cumulativeSugarWeights;
+
+  /**
+   * The probability for a customer to be impatient.
+   */
+  private final double impatientProb;
+
+  /**
+   * The longest time a patient customer keeps trying to order (in milliseconds).
+   */
+  private final long patience;
+
+  /**
+   * The probability for a customer to change his mind while choosing the sugar.
+   */
+  private final double changeMindProb;
+
+  /**
+   * The probability for a customer to leave without his cup.
+   */
+  private final double leaveCupProb;
+
+  /**
+   * Creates the description of the customers of a load test.
+   * Throws an IllegalArgumentException if a probability is not between 0 and 1,
+   * if a weight is negative or all are 0, or if the patience is negative.
+   *
+   * @param demand the arrivals, drink mix and payments of the customers
+   * @param sugarWeights the weight of each quantity of sugar, from 0 sugar cube
+   *     (only used for sugared drinks)
+   * @param impatientProb the probability for a customer to be impatient
+   * @param patience the longest time a patient customer keeps trying to order (in seconds)
+   * @param changeMindProb the probability for a customer to cancel while choosing the sugar
+   * @param leaveCupProb the probability for a customer to leave without his cup
+   */
+  public Workload(Demand demand, double[] sugarWeights, double impatientProb, double patience,
+      double changeMindProb, double leaveCupProb) {
+    checkProbability(impatientProb);
+    checkProbability(changeMindProb);
+    checkProbability(leaveCupProb);
+    if (!(patience >= 0)) {
+      throw new IllegalArgumentException("The patience can't be negative");
+    }
+    this.cumulativeSugarWeights = new double[sugarWeights.length];
+    double total = 0;
+    for (int i = 0; i < sugarWeights.length; i++) {
+      if (!(sugarWeights[i] >= 0)) {
+        throw new IllegalArgumentException("The weight of a quantity of sugar can't be negative");
+      }
+      total += sugarWeights[i];
+      cumulativeSugarWeights[i] = total;
+    }
+    if (total == 0) {
+      throw new IllegalArgumentException("At least one quantity of sugar must be chosen");
+    }
+    this.demand = demand;
+    this.impatientProb = impatientProb;
+    this.patience = (long) (patience * 1000);
+    this.changeMindProb = changeMindProb;
+    this.leaveCupProb = leaveCupProb;
+  }
+
+  private static void checkProbability(double p) {
+    if (!(p >= 0 && p <= 1)) {
+      throw new IllegalArgumentException("A probability must be between 0 and 1");
+    }
+  }
+
+  /**
+   * @return the arrivals, drink mix and payments of the customers
+   */
+  public Demand getDemand() {
+    return demand;
+  }
+
+  /**
+   * @param r a random number between 0 (included) and 1 (excluded)
+   * @return the number of sugar cubes chosen
+   */
+  int sugarOf(double r) {
+    final double weight = r * cumulativeSugarWeights[cumulativeSugarWeights.length - 1];
+    int sugar = 0;
+    while (sugar < cumulativeSugarWeights.length - 1 && cumulativeSugarWeights[sugar] <= weight) {
+      sugar++;
+    }
+    return sugar;
+  }
+
+  /**
+   * @return the probability for a customer to be impatient
+   */
+  public double getImpatientProb() {
+    return impatientProb;
+  }
+
+  /**
+   * @return the longest time a patient customer keeps trying to order (in milliseconds)
+   */
+  public long getPatience() {
+    return patience;
+  }
+
+  /**
+   * @return the probability for a customer to cancel while choosing the sugar
+   */
+  public double getChangeMindProb() {
+    return changeMindProb;
+  }
+
+  /**
+   * @return the probability for a customer to leave without his cup
+   */
+  public double getLeaveCupProb() {
+    return leaveCupProb;
+  }
+
+}
@@ -0,0 +1,99 @@
+package vendingmachine.simulation;
+
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import vendingmachine.components.Context;
+import vendingmachine.components.IClock;
+import vendingmachine.components.VirtualClock;
+
+/**
+ * Load-tests a machine configuration: simulated customers, described by a Workload,
+ * arrive, pay, choose their drink and sugar, sometimes cancel or forget their cup.
+ * Each machine follows its own VirtualClock, so a whole service is simulated in a few
+ * milliseconds without user interface; a fleet of machines is simulated in parallel
+ * on the common ForkJoinPool.
+ * The customers who arrived before the end of the service are followed until they leave.
+ *
+ * @see WorkloadReport
+ */
+public final class WorkloadGenerator {
+
+  /**
+   * The time given to the last customers to finish their visit (in milliseconds).
+   */
+  private static final long DRAIN_TIME = 600000;
+
+  private final Workload workload;
+
+  /**
+   * Creates a new machine following the IClock it is given.
+   */
+  private final Function<IClock, Context> machineFactory;
+
+  /**
+   * The duration of the service (in milliseconds).
+   */
+  private final long duration;
+
+  /**
+   * Creates a generator sending the customers of {@code workload} to the machines
+   * created by {@code machineFactory} during {@code duration} milliseconds.
+   * The factory must create a new machine following the IClock it is given each time
+   * it is called (possibly from several threads at the same time).
+   *
+   * @param workload the description of the customers
+   * @param machineFactory creates a machine following the IClock it is given
+   * @param duration the duration of the service (in milliseconds)
+   */
+  public WorkloadGenerator(Workload workload, Function<IClock, Context> machineFactory,
+      long duration) {
+    this.workload = workload;
+    this.machineFactory = machineFactory;
+    this.duration = duration;
+  }
+
+  /**
+   * Simulates the service of one machine. Two runs with the same seed give the same report.
+   *
+   * @param seed the seed of the randomness of the customers
+   * @return the WorkloadReport of the service
+   */
+  public WorkloadReport run(long seed) {
+    return runFleet(1, seed);
+  }
+
+  /**
+   * Simulates the service of {@code machinesNbr} machines in parallel, the i-th one
+   * using the seed {@code seed + i}.
+   *
+   * @param machinesNbr the number of machines of the fleet
+   * @param seed the seed of the first machine
+   * @return the WorkloadReport of all the machines together
+   */
+  public WorkloadReport runFleet(int machinesNbr, long seed) {
+    MachineLogs.quiet();
+    try {
+      return IntStream.range(0, machinesNbr).parallel()
+          .mapToObj(i -> simulate(seed + i))
+          .collect(WorkloadReport::new, WorkloadReport::add, WorkloadReport::add);
+    } finally {
+      MachineLogs.restore();
+    }
+  }
+
+  /**
+   * @param seed the seed of the randomness of the customers
+   * @return the WorkloadReport of the service of a new machine
+   */
+  private WorkloadReport simulate(long seed) {
+    final VirtualClock clock = new VirtualClock();
+    final MachineDriver driver =
+        new MachineDriver(workload, machineFactory.apply(clock), clock, seed, duration);
+    driver.start();
+    clock.advance(duration + DRAIN_TIME);
+    driver.end();
+    return driver.getReport();
+  }
+
+}
@@ -0,0 +1,206 @@
+package vendingmachine.simulation;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * What happened to the customers of a load test: how many orders have been placed,
+ * served or refused, and how long each stage of their visit lasted.
+ * The reports of several machines are added with {@code add} to get the one of a fleet.
+ */
+public final class WorkloadReport {
+
+  /**
+   * The stages of the visit of a customer whose durations are recorded.
+   */
+  public enum Stage {
+    /** From the arrival to the moment the machine is free for the customer. */
+    QUEUEING("Queueing"),
+    /** From the first coin to the last one. */
+    PAYMENT("Payment"),
+    /** From the last coin to the order being placed (choice, sugar, retries). */
+    ORDERING("Ordering"),
+    /** From the order being placed to the cup being ready. */
+    PREPARATION("Preparation"),
+    /** From the arrival to the cup being taken. */
+    TOTAL("Total");
+
+    private final String text;
+
+    private Stage(String text) {
+      this.text = text;
+    }
+
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+
+  private long arrived;
+  private long placed;
+  private long served;
+  private long refusedChange;
+  private long refusedOther;
+  private long cancelled;
+  private long cupsLeft;
+  private long coldSeconds;
+
+  /**
+   * The durations of each Stage.
+   */
+  private final Map<Stage, LatencyRecorder> latencies;
+
+  /**
+   * Creates an empty report.
+   */
+  public WorkloadReport() {
+    latencies = new EnumMap<Stage, LatencyRecorder>(Stage.class);
+    for (Stage stage: Stage.values()) {
+      latencies.put(stage, new LatencyRecorder());
+    }
+  }
+
+  void customerArrived() {
+    arrived++;
+  }
+
+  void orderPlaced() {
+    placed++;
+  }
+
+  void orderServed() {
+    served++;
+  }
+
+  void orderRefusedForChange() {
+    refusedChange++;
+  }
+
+  void orderRefused() {
+    refusedOther++;
+  }
+
+  void orderCancelled() {
+    cancelled++;
+  }
+
+  void cupLeft() {
+    cupsLeft++;
+  }
+
+  void coldWater(long seconds) {
+    coldSeconds += seconds;
+  }
+
+  void record(Stage stage, long millis) {
+    latencies.get(stage).record(millis);
+  }
+
+  /**
+   * Adds the counts and the durations of another report to this one.
+   *
+   * @param other the WorkloadReport of another machine
+   * @return this report
+   */
+  public WorkloadReport add(WorkloadReport other) {
+    arrived += other.arrived;
+    placed += other.placed;
+    served += other.served;
+    refusedChange += other.refusedChange;
+    refusedOther += other.refusedOther;
+    cancelled += other.cancelled;
+    cupsLeft += other.cupsLeft;
+    coldSeconds += other.coldSeconds;
+    for (Stage stage: Stage.values()) {
+      latencies.get(stage).addAll(other.latencies.get(stage));
+    }
+    return this;
+  }
+
+  /**
+   * @return the number of customers who arrived
+   */
+  public long getArrived() {
+    return arrived;
+  }
+
+  /**
+   * @return the number of orders placed
+   */
+  public long getPlaced() {
+    return placed;
+  }
+
+  /**
+   * @return the number of orders whose drink is ready (taken or left in the machine)
+   */
+  public long getServed() {
+    return served;
+  }
+
+  /**
+   * @return the number of orders refused because the change could not be given
+   */
+  public long getRefusedForChange() {
+    return refusedChange;
+  }
+
+  /**
+   * @return the number of orders refused for another reason (price, stock, ...)
+   */
+  public long getRefusedOther() {
+    return refusedOther;
+  }
+
+  /**
+   * @return the number of orders cancelled by the customers
+   */
+  public long getCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * @return the number of cups left in the machine by the customers
+   */
+  public long getCupsLeft() {
+    return cupsLeft;
+  }
+
+  /**
+   * @return the number of seconds spent with water too cold to serve
+   */
+  public long getColdSeconds() {
+    return coldSeconds;
+  }
+
+  /**
+   * @param stage a Stage of the visits
+   * @return the durations recorded for {@code stage}
+   */
+  public LatencyRecorder getLatencies(Stage stage) {
+    return latencies.get(stage);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder(400);
+    sb.append("Customers: ").append(arrived).append(System.lineSeparator())
+      .append("Placed: ").append(placed).append(System.lineSeparator())
+      .append("Served: ").append(served).append(System.lineSeparator())
+      .append("Refused (change): ").append(refusedChange).append(System.lineSeparator())
+      .append("Refused (other): ").append(refusedOther).append(System.lineSeparator())
+      .append("Cancelled: ").append(cancelled).append(System.lineSeparator())
+      .append("Cups left: ").append(cupsLeft).append(System.lineSeparator())
+      .append(String.format("Cold water: %.1f min%n", coldSeconds / 60.0))
+      .append(String.format("%-12s %8s %8s %8s %8s%n", "Stage (s)", "count", "p50", "p90", "p99"));
+    for (Stage stage: Stage.values()) {
+      final LatencyRecorder recorder = latencies.get(stage);
+      sb.append(String.format("%-12s %8d %8.1f %8.1f %8.1f%n", stage, recorder.getCount(),
+          recorder.getPercentile(50) / 1000.0, recorder.getPercentile(90) / 1000.0,
+          recorder.getPercentile(99) / 1000.0));
+    }
+    return sb.toString();
+  }
+
+}
@@ -1,5 +1,8 @@
 package vendingmachine.states;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import vendingmachine.components.Context;
 
 /**
@@ -13,7 +16,35 @@ public final class Asking extends State {
   /**
    * The maximal quantity of sugar in a drink.
    */
-  private static final byte MAX_SUGAR = 5;
+  static final byte MAX_SUGAR = 5;
+
+  /**
+   * The sugar text for each quantity of sugar, from 0 to MAX_SUGAR.
+   */
+  private static final String[] SUGAR_TEXTS = new String[MAX_SUGAR + 1];
+
+  static {
+    for (int i = 0; i <= MAX_SUGAR; i++) {
+      SUGAR_TEXTS[i] = "Sugar: " + i + "/" + MAX_SUGAR;
+    }
+  }
+
+  /**
+   * The number of default texts kept, the least recently displayed are forgotten.
+   */
+  private static final int MAX_DEFAULT_TEXTS = 64;
+
+  /**
+   * The default text by name of Drink, shared by all the machines and guarded by itself.
+   */
+  @SuppressWarnings("serial")
+  private final Map<String, String> defaultTexts =
+      new LinkedHashMap<String, String>(MAX_DEFAULT_TEXTS * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+          return size() > MAX_DEFAULT_TEXTS;
+        }
+      };
 
   public static Asking getInstance() {
     return INSTANCE;
@@ -30,21 +61,23 @@ public final class Asking extends State {
   }
 
   /**
-   * Cancels the order. Gives back change and changes the state of the machine to Idle.
+   * Cancels the order. Releases what was reserved for it, gives back change and changes the state of the machine to Idle
+   * (or to Preparing if a previous order is not over).
    */
   @Override
   public void cancel(Context c) {
+    c.cancelChoice();
     super.cancel(c);
-    c.changeState(Idle.getInstance());
+    c.changeState(c.getRestingState());
   }
 
   /**
-   * Gives the change and changes the state of the Context to preparing.
+   * Places the order: gives the change and adds the order to the queue of the Context.
    * The change is possible and the drink is in stock (checked in Idle state).
    */
   @Override
   public void confirm(Context c) {
-    c.changeState(Preparing.getInstance());
+    c.placeOrder();
   }
 
   /**
@@ -64,7 +97,7 @@ public final class Asking extends State {
    */
   @Override
   public void more(Context c) {
-    if (c.getChosenSugar() < MAX_SUGAR && c.getStock().isSugarInStock(c.getChosenSugar() + 1)) {
+    if (c.getChosenSugar() < MAX_SUGAR && c.isSugarAvailable(c.getChosenSugar() + 1)) {
       c.setChosenSugar(c.getChosenSugar() + 1);
     } else if (c.getChosenSugar() == MAX_SUGAR) {
       c.setTemporaryNorthText("Maximum quantity of sugar : " + MAX_SUGAR);
@@ -75,12 +108,19 @@ public final class Asking extends State {
 
   @Override
   public String getDefaultText(Context c) {
-    return "Choose sugar quantity for " + c.getChosenDrink().getName();
+    synchronized (defaultTexts) {
+      return defaultTexts.computeIfAbsent(c.getChosenDrink().getName(),
+          name -> "Choose sugar quantity for " + name);
+    }
   }
 
   @Override
   public String getSugarText(Context c) {
-    return "Sugar: " + c.getChosenSugar() + "/" + MAX_SUGAR;
+    final int sugar = c.getChosenSugar();
+    if (sugar < 0 || sugar > MAX_SUGAR) {
+      return "Sugar: " + sugar + "/" + MAX_SUGAR;
+    }
+    return SUGAR_TEXTS[sugar];
   }
 
 }
\ No newline at end of file
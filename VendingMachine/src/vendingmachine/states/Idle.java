@@ -1,10 +1,13 @@
 package vendingmachine.states;
 
+import java.util.List;
+
 import vendingmachine.Coin;
 import vendingmachine.Drink;
+import vendingmachine.MoneyFormat;
 import vendingmachine.SoundLoader;
-import vendingmachine.Utils;
 import vendingmachine.components.Context;
+import vendingmachine.components.Order;
 
 /**
  * The default state of the vending machine.
@@ -15,6 +18,12 @@ public final class Idle extends State {
 
   private static final Idle INSTANCE = new Idle();
 
+  private static final MoneyFormat PRICE = new MoneyFormat("Price: ", "");
+
+  private static final MoneyFormat OUT_OF_STOCK = new MoneyFormat("Drink out of stock (otherwise ", ")");
+
+  private static final MoneyFormat ENTERED = new MoneyFormat("Please make your choice (", " entered)");
+
   public static Idle getInstance() {
     return INSTANCE;
   }
@@ -25,7 +34,8 @@ public final class Idle extends State {
    * Simulates the insertion of a coin.
    * The coin may get stuck (based on the probability defined in the Context).
    * Then if the coin is accepted, it is added to the stock.
-   * If not, it is immediately given back.
+   * If not, it is immediately given back, telling if it is only refused because
+   * the change on it can't be given.
    */
   @Override
   public void coinInserted(Coin coin, Context c) {
@@ -35,50 +45,93 @@ public final class Idle extends State {
         SoundLoader.play(SoundLoader.getInstance().FOP);
       } else {
         c.addChangeOutCoin(coin);
-        c.setTemporaryNorthText("Coin not recognized by the machine");
+        if (c.isCoinRefusedForChange(coin)) {
+          c.setTemporaryNorthText("Can't give change for this coin");
+        } else {
+          c.setTemporaryNorthText("Coin not recognized by the machine");
+        }
       }
     }
   }
 
   /**
    * Checks all the stocks necessary to order a drink.
-   * There must be at least a the drink specified, a cup, enough money inserted, giving
-   * back change must be possible. If one condition is not met, displays an error message.
-   * If the drink is sugared, checks if there is a spoon and changes the specified
-   * Context to the state NoSpoon or Asking. If not, the state becomes immediately Preparing.
+   * There must be at least a the drink specified and a cup that are not already
+   * promised to a waiting order, room in the queue of orders, enough money inserted,
+   * giving back change must be possible. If one condition is not met, displays an error
+   * message. Otherwise the drink, a cup, a spoon and the change are reserved.
+   * If the drink is sugared, checks if a spoon has been reserved and changes the specified
+   * Context to the state NoSpoon or Asking. If not, the order is immediately placed.
    */
   @Override
   public void drinkButton(Drink d, Context c) {
-    if (!c.getStock().isDrinkInStock(d)) {
-      c.setTemporaryNorthText("Drink out of stock (otherwise "
-          + d.getPrice() / 100.0 + " " + Utils.EURO + ")");
-    } else if (c.isCupInside()) {
-      c.setTemporaryNorthText("Please remove the cup before ordering");
+    if (!c.isDrinkAvailable(d)) {
+      c.setTemporaryNorthText(OUT_OF_STOCK.format(d.getPrice()));
+    } else if (!c.canQueueOrder()) {
+      c.setTemporaryNorthText("Please wait, orders are already waiting");
+    } else if (!c.isCupAvailable()) {
+      c.setTemporaryNorthText("No cup left for another order");
     } else if (d.getPrice() > c.getAmountInside()) {
-      c.setTemporaryNorthText("Price: " + d.getPrice() / 100.0 + " " + Utils.EURO);
-    } else if (c.isChangePossible(c.getAmountInside() - d.getPrice())) {
-      c.setChosenDrink(d);
+      c.setTemporaryNorthText(PRICE.format(d.getPrice()));
+    } else if (c.reserveChoice(d)) {
       if (d.isSugar()) {
-        if (c.getStock().isSpoonInStock()) {
+        if (c.isSpoonReserved()) {
           c.changeState(Asking.getInstance());
         } else {
           c.changeState(NoSpoon.getInstance());
         }
       } else {
-        c.changeState(Preparing.getInstance());
+        c.placeOrder();
       }
     } else {
       c.setTemporaryNorthText("Unable to give the exact change");
     }
   }
 
+  /**
+   * Checks the stocks and the money inserted for a whole batch of drinks at once.
+   * The batch must hold between 1 and {@code Context.MAX_BATCH_SIZE} drinks with
+   * at most {@code MAX_SUGAR} sugar cubes each, no other order may be waiting,
+   * the stocks must be sufficient for all the drinks, enough money must be inserted
+   * and giving back change on the total price must be possible.
+   * If one condition is not met, displays an error message. Otherwise the batch is
+   * reserved and placed.
+   */
+  @Override
+  public void orderBatch(List<Order> orders, Context c) {
+    final int price = Context.getBatchPrice(orders);
+    if (orders.isEmpty() || orders.size() > Context.MAX_BATCH_SIZE) {
+      c.setTemporaryNorthText("A batch holds 1 to " + Context.MAX_BATCH_SIZE + " drinks");
+    } else if (c.getPendingOrdersNbr() > 0) {
+      c.setTemporaryNorthText("Please wait, orders are already waiting");
+    } else if (!isSugarValid(orders) || !c.isBatchAvailable(orders)) {
+      c.setTemporaryNorthText("Not enough stock for this batch");
+    } else if (price > c.getAmountInside()) {
+      c.setTemporaryNorthText(PRICE.format(price));
+    } else if (!c.placeBatch(orders)) {
+      c.setTemporaryNorthText("Unable to give the exact change");
+    }
+  }
+
+  /**
+   * @param orders a List of Order's
+   * @return true if no Order has more than {@code Asking.MAX_SUGAR} sugar cubes
+   */
+  private static boolean isSugarValid(List<Order> orders) {
+    for (Order order: orders) {
+      if (order.getSugar() > Asking.MAX_SUGAR) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public String getDefaultText(Context c) {
     String msg = "Please insert coins";
 
     if (c.getAmountInside() > 0) {
-      msg = "Please make your choice" + " ("
-          + c.getAmountInside() / 100.0 + " " + Utils.EURO + " entered)";
+      msg = ENTERED.format(c.getAmountInside());
     } else if (c.areDrinksFree()) {
       msg = "Please make your choice, everything is FREE";
     }
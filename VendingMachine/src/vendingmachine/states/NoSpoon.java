@@ -17,12 +17,13 @@ public final class NoSpoon extends State {
   private NoSpoon() {}
 
   /**
-   * Gives back change and cancel the order.
+   * Releases what was reserved for the order, gives back change and cancel the order.
    */
   @Override
   public void cancel(Context c) {
+    c.cancelChoice();
     super.cancel(c);
-    c.changeState(Idle.getInstance());
+    c.changeState(c.getRestingState());
   }
 
   /**
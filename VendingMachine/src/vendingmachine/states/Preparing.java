@@ -1,12 +1,17 @@
 package vendingmachine.states;
 
+import java.util.List;
+
 import vendingmachine.Coin;
-import vendingmachine.SoundLoader;
+import vendingmachine.Drink;
 import vendingmachine.components.Context;
+import vendingmachine.components.Order;
 
 /**
- * State reached when everything is okay and a drink is ordered.
- * The user has to wait for the end of the preparation before inserting more coins.
+ * State reached when a drink is ordered and is being prepared, or when paid orders
+ * are waiting for the cup of the previous one to be taken.
+ * Meanwhile, the next client may already insert coins and choose his drink:
+ * his order is then added to the queue of the Context.
  */
 public final class Preparing extends State {
 
@@ -19,36 +24,51 @@ public final class Preparing extends State {
   private Preparing() {}
 
   /**
-   * Restarts the timer indicating the end of the preparation of a drink.
-   * Plays the sound of a cup filling with water.
+   * Accepts the coin as in the Idle state, so that the next client can pay
+   * during the preparation.
    */
   @Override
-  public void entry(Context c) {
-    super.entry(c);
-    c.restartPreparingTimer();
-    SoundLoader.play(SoundLoader.getInstance().FILLING);
+  public void coinInserted(Coin coin, Context c) {
+    Idle.getInstance().coinInserted(coin, c);
   }
 
   /**
-   * Refuses the coin and displays to wait for the end of the preparation.
+   * Lets the next client choose his drink as in the Idle state.
+   * If the order is possible, it will be prepared after the current ones.
    */
   @Override
-  public void coinInserted(Coin coin, Context c) {
-    super.coinInserted(coin, c);
-    c.setTemporaryNorthText("Wait for the end of the preparation...");
+  public void drinkButton(Drink drink, Context c) {
+    Idle.getInstance().drinkButton(drink, c);
+  }
+
+  /**
+   * Lets the next client order a batch of drinks as in the Idle state.
+   */
+  @Override
+  public void orderBatch(List<Order> orders, Context c) {
+    Idle.getInstance().orderBatch(orders, c);
   }
 
   /**
-   * Warns the user it is too late to cancel the order.
-   * Does not give back change.
+   * Gives back change to the next client if he inserted coins.
+   * Otherwise, warns the user it is too late to cancel the order.
    */
   @Override
   public void cancel(Context c) {
-    c.setTemporaryNorthText("Too late to cancel the order!");
+    if (c.getAmountInside() > 0) {
+      super.cancel(c);
+    } else {
+      c.setTemporaryNorthText("Too late to cancel the order!");
+    }
   }
 
   @Override
   public String getDefaultText(Context c) {
+    if (c.getAmountInside() > 0) {
+      return Idle.getInstance().getDefaultText(c);
+    } else if (c.isCupInside()) {
+      return "Please take your cup, the next drink is waiting";
+    }
     return "Your drink is in preparation...";
   }
 
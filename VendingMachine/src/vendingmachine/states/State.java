@@ -1,8 +1,11 @@
 package vendingmachine.states;
 
+import java.util.List;
+
 import vendingmachine.Coin;
 import vendingmachine.Drink;
 import vendingmachine.components.Context;
+import vendingmachine.components.Order;
 
 /**
  * This abstract class defines default methods for the state of a Context object.
@@ -60,6 +63,14 @@ public abstract class State {
    */
   public void drinkButton(Drink drink, Context c) {}
 
+  /**
+   * Called when a batch of drinks is ordered at once. Does nothing.
+   *
+   * @param orders the List of the Order's (Drink and sugar) of the batch
+   * @param c the Context associated with the State
+   */
+  public void orderBatch(List<Order> orders, Context c) {}
+
   /**
    * Called when the button "-" is pressed. Does nothing.
    * 
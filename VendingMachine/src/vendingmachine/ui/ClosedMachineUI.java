@@ -0,0 +1,51 @@
+package vendingmachine.ui;
+
+/**
+ * The UI of a machine of the fleet whose window is not open: nothing is displayed.
+ * The machine keeps running and its state is shown by the FleetDashboard.
+ */
+final class ClosedMachineUI implements IMachineGUI, TemperatureListener {
+
+  @Override
+  public void setChangeBool(boolean bool) {}
+
+  @Override
+  public void setCupBool(boolean cup, boolean spoon) {}
+
+  @Override
+  public void updateChangeOutInfo() {}
+
+  @Override
+  public void setCupText(String msg) {}
+
+  @Override
+  public void updateInfo() {}
+
+  @Override
+  public void updateNorthText() {}
+
+  @Override
+  public void setTemporaryNorthText(String msg) {}
+
+  @Override
+  public void updateSugarText() {}
+
+  @Override
+  public void updateUI() {}
+
+  @Override
+  public void updateServableDrinks() {}
+
+  @Override
+  public void updateDrinks() {}
+
+  @Override
+  public void updateAcceptedCoins() {}
+
+  @Override
+  public void enableRepair(boolean bool) {}
+
+  @Override
+  public void setTemperature(double temperature) {}
+
+}
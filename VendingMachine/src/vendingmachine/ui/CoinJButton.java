@@ -31,6 +31,17 @@ public class CoinJButton extends JButton {
    */
   public CoinJButton(Coin coin, boolean accepted) {
     super();
+    this.coin = coin;
+    this.setAccepted(accepted);
+  }
+
+  /**
+   * Changes the image of the button according to whether the Coin is accepted or not.
+   * If the image is null, simply sets the Coin.TEXT on the button.
+   *
+   * @param accepted boolean specifying if the coin is accepted or not by the machine
+   */
+  public void setAccepted(boolean accepted) {
     final PictureLoader icons = PictureLoader.getInstance();
     if (accepted) {
       this.setIcon(icons.COINS_ICONS.get(coin));
@@ -43,7 +54,6 @@ public class CoinJButton extends JButton {
       this.setBorder(BorderFactory.createEmptyBorder());
       this.setContentAreaFilled(false);
     }
-    this.coin = coin;
   }
 
   /**
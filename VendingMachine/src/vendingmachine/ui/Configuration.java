@@ -4,9 +4,13 @@ import java.awt.Color;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.Hashtable;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -23,13 +27,23 @@ import javax.swing.border.EmptyBorder;
 import javax.swing.text.AbstractDocument;
 
 import vendingmachine.Coin;
+import vendingmachine.CoinSet;
 import vendingmachine.Drink;
 import vendingmachine.MyDocumentFilter;
 import vendingmachine.Utils;
+import vendingmachine.components.BalancedFloatChangePolicy;
 import vendingmachine.components.Change;
 import vendingmachine.components.ChangeMachine;
+import vendingmachine.components.ChangePolicy;
 import vendingmachine.components.Context;
+import vendingmachine.components.GreedyChangePolicy;
+import vendingmachine.components.MinCoinsChangePolicy;
+import vendingmachine.components.PreserveSmallCoinsChangePolicy;
 import vendingmachine.components.Stock;
+import vendingmachine.monitoring.EdtWatchdog;
+import vendingmachine.monitoring.MachineMonitor;
+import vendingmachine.remote.CommandServer;
+import vendingmachine.remote.StatusFeed;
 
 /**
  * This class display a configuration menu to let the user choose the
@@ -53,6 +67,8 @@ public class Configuration extends JFrame {
     "  Contains sugar?  ", "  Price (in cents):  ", "  Initial stock:  " };
   private static final String[] COINS_TITLES = { "   Coins:  ",
     "  Initial stock:  ", "  Accepted?  " };
+  private static final String[] CHANGE_POLICIES = { "Biggest coins first", "Fewest coins",
+    "Keep small coins", "Keep the initial float" };
   private static final String[] DEFAULT_DRINKS = { "Black Coffee", "Cappuccino", "Hot Chocolate",
     "Hot Milk", "Green Tea", "Earl Grey", "Tomato Soup", "Mushroom Soup", "Hot Water", "Oolong Tea" };
 
@@ -88,6 +104,29 @@ public class Configuration extends JFrame {
   private final JTextField cupsNbrValue;
   private final JTextField spoonsNbrValue;
   private final JTextField coinStuckProbValue;
+  private final JTextField dispensersNbrValue;
+  private final JTextField machinesNbrValue;
+
+  /**
+   * Allows to drive the machines through a CommandServer on this port (none if empty).
+   */
+  private final JTextField commandPortValue;
+
+  /**
+   * Allows to push the status of the machines through a StatusFeed on this port
+   * (none if empty).
+   */
+  private final JTextField statusPortValue;
+
+  /**
+   * Allows to choose how the coins to give back are chosen.
+   */
+  private final JComboBox<String> changePolicyComboBox;
+
+  /**
+   * Allows to refuse the coins whose change can't be given back.
+   */
+  private final JCheckBox adaptiveAcceptanceBox;
 
   /**
    * Button that triggers the parsing of the values and the creation of the machine.
@@ -136,7 +175,7 @@ public class Configuration extends JFrame {
     // Initializes the fields for the coins info
     coinsStockValues = new Hashtable<Coin, JTextField>();
     acceptedCoinsBoxes = new Hashtable<Coin, JCheckBox>();
-    for (Coin coin: Coin.COINS) {
+    for (Coin coin: CoinSet.EURO.getCoins()) {
       coinsStockValues.put(coin, new JTextField("5", 3));
       ((AbstractDocument)coinsStockValues.get(coin).getDocument()).setDocumentFilter(DOCUMENT_FILTER);
       acceptedCoinsBoxes.put(coin, new JCheckBox());
@@ -151,6 +190,16 @@ public class Configuration extends JFrame {
     ((AbstractDocument)spoonsNbrValue.getDocument()).setDocumentFilter(DOCUMENT_FILTER);
     coinStuckProbValue = new JTextField("1", 3);
     ((AbstractDocument)coinStuckProbValue.getDocument()).setDocumentFilter(DOCUMENT_FILTER);
+    dispensersNbrValue = new JTextField("1", 3);
+    ((AbstractDocument)dispensersNbrValue.getDocument()).setDocumentFilter(DOCUMENT_FILTER);
+    machinesNbrValue = new JTextField("1", 3);
+    ((AbstractDocument)machinesNbrValue.getDocument()).setDocumentFilter(DOCUMENT_FILTER);
+    commandPortValue = new JTextField("", 5);
+    ((AbstractDocument)commandPortValue.getDocument()).setDocumentFilter(DOCUMENT_FILTER);
+    statusPortValue = new JTextField("", 5);
+    ((AbstractDocument)statusPortValue.getDocument()).setDocumentFilter(DOCUMENT_FILTER);
+    changePolicyComboBox = new JComboBox<String>(CHANGE_POLICIES);
+    adaptiveAcceptanceBox = new JCheckBox();
 
     createButton = new JButton("Click here to begin the simulation!");
     createButton.addActionListener(e -> check());
@@ -193,7 +242,7 @@ public class Configuration extends JFrame {
       cCoin.gridx += 1;
     }
 
-    for (Coin coin: Coin.COINS) {
+    for (Coin coin: CoinSet.EURO.getCoins()) {
       cCoin.gridy += 1; cCoin.gridx = 0;
       coinPanel.add(new JLabel(coin.TEXT), cCoin);
       cCoin.gridx = 1;
@@ -216,6 +265,12 @@ public class Configuration extends JFrame {
     final JLabel cupsNbrLabel = new JLabel("Number of cups available: ");
     final JLabel spoonsNbrLabel = new JLabel("Number of spoons availables: ");
     final JLabel coinStuckProbLabel = new JLabel("Probability of a coin to get stuck in %: ");
+    final JLabel dispensersNbrLabel = new JLabel("Number of dispensers: ");
+    final JLabel machinesNbrLabel = new JLabel("Number of identical machines: ");
+    final JLabel commandPortLabel = new JLabel("Remote command port (empty for none): ");
+    final JLabel statusPortLabel = new JLabel("Status feed port (empty for none): ");
+    final JLabel changePolicyLabel = new JLabel("Change given back: ");
+    final JLabel adaptiveAcceptanceLabel = new JLabel("Refuse coins when change is low: ");
 
     cStock.gridy = 0; cStock.gridx = 0;
     stockPanel.add(sugarCubesNbrLabel, cStock);
@@ -237,6 +292,36 @@ public class Configuration extends JFrame {
     cStock.gridx = 1;
     stockPanel.add(coinStuckProbValue, cStock);
 
+    cStock.gridy += 1;  cStock.gridx = 0;
+    stockPanel.add(dispensersNbrLabel, cStock);
+    cStock.gridx = 1;
+    stockPanel.add(dispensersNbrValue, cStock);
+
+    cStock.gridy += 1;  cStock.gridx = 0;
+    stockPanel.add(machinesNbrLabel, cStock);
+    cStock.gridx = 1;
+    stockPanel.add(machinesNbrValue, cStock);
+
+    cStock.gridy += 1;  cStock.gridx = 0;
+    stockPanel.add(commandPortLabel, cStock);
+    cStock.gridx = 1;
+    stockPanel.add(commandPortValue, cStock);
+
+    cStock.gridy += 1;  cStock.gridx = 0;
+    stockPanel.add(statusPortLabel, cStock);
+    cStock.gridx = 1;
+    stockPanel.add(statusPortValue, cStock);
+
+    cStock.gridy += 1;  cStock.gridx = 0;
+    stockPanel.add(changePolicyLabel, cStock);
+    cStock.gridx = 1;
+    stockPanel.add(changePolicyComboBox, cStock);
+
+    cStock.gridy += 1;  cStock.gridx = 0;
+    stockPanel.add(adaptiveAcceptanceLabel, cStock);
+    cStock.gridx = 1;
+    stockPanel.add(adaptiveAcceptanceBox, cStock);
+
     cMain.gridx = 1;
     mainPanel.add(stockPanel, cMain);
 
@@ -305,7 +390,9 @@ public class Configuration extends JFrame {
         Utils.checkPositiveIntFormat(price);
         Utils.checkPositiveIntFormat(stock);
         final Drink d = new Drink(name, drinksSugar[i].isSelected(), price);
-        drinkQty.put(d, stock);
+        if (drinkQty.put(d, stock) != null) {
+          throw new IllegalArgumentException("Drink listed twice");
+        }
       }
     } catch (IllegalArgumentException e) {
       problemLabel.setText(getProblemText("drink"));
@@ -317,7 +404,7 @@ public class Configuration extends JFrame {
     final Map<Coin, Integer> coinsStock = new Hashtable<Coin, Integer>();
     final Map<Coin, Boolean> coinsAccepted = new Hashtable<Coin, Boolean>();
     try {
-      for (Coin coin: Coin.COINS) {
+      for (Coin coin: CoinSet.EURO.getCoins()) {
         final int stock = Integer.parseInt(coinsStockValues.get(coin).getText());
         Utils.checkPositiveIntFormat(stock);
         coinsStock.put(coin, stock);
@@ -328,8 +415,6 @@ public class Configuration extends JFrame {
       this.pack();
       return;
     }
-    final ChangeMachine changeMachine = new ChangeMachine(new Change(coinsStock), coinsAccepted);
-
     // Fetches the values for the stock
     int sugarCubesNbr;
     int cupsNbr;
@@ -346,8 +431,6 @@ public class Configuration extends JFrame {
       this.pack();
       return;
     }
-    final Stock stock = new Stock(sugarCubesNbr, cupsNbr, spoonsNbr, drinkQty);
-
     int coinStuckProb;
     try {
       coinStuckProb = Integer.parseInt(coinStuckProbValue.getText());
@@ -359,19 +442,142 @@ public class Configuration extends JFrame {
       return;
     }
 
-    final Context context = new Context(changeMachine, stock, coinStuckProb / 100.0);
-    final VendingMachineGUI gui = new VendingMachineGUI(context);
-    this.dispose(); // closes the configuration frame
+    int dispensersNbr;
+    try {
+      dispensersNbr = Integer.parseInt(dispensersNbrValue.getText());
+      if (dispensersNbr <= 0) {
+        throw new NumberFormatException();
+      }
+    } catch (NumberFormatException e) {
+      problemLabel.setText("Error while parsing number of dispensers, should be at least 1.");
+      this.pack();
+      return;
+    }
+
+    int machinesNbr;
+    try {
+      machinesNbr = Integer.parseInt(machinesNbrValue.getText());
+      if (machinesNbr <= 0) {
+        throw new NumberFormatException();
+      }
+    } catch (NumberFormatException e) {
+      problemLabel.setText("Error while parsing number of machines, should be at least 1.");
+      this.pack();
+      return;
+    }
 
-    SwingUtilities.invokeLater(new Runnable() {
-      /**
-       * If everything went well, creates the MachineGUI on the EDT.
-       */
-      @Override
-      public void run() {
-        gui.init();
+    int commandPort;
+    int statusPort;
+    try {
+      commandPort = parsePort(commandPortValue);
+      statusPort = parsePort(statusPortValue);
+    } catch (NumberFormatException e) {
+      problemLabel.setText("Error while parsing ports, should be between 1 and 65535.");
+      this.pack();
+      return;
+    }
+    CommandServer commandServer = null;
+    if (commandPort != 0) {
+      commandServer = new CommandServer();
+      try {
+        commandServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), commandPort));
+      } catch (IOException e) {
+        problemLabel.setText("Can't listen for remote commands on port " + commandPort + ".");
+        this.pack();
+        return;
+      }
+    }
+    StatusFeed statusFeed = null;
+    if (statusPort != 0) {
+      statusFeed = new StatusFeed();
+      try {
+        statusFeed.listen(new InetSocketAddress(InetAddress.getLoopbackAddress(), statusPort));
+      } catch (IOException e) {
+        if (commandServer != null) {
+          commandServer.close();
+        }
+        problemLabel.setText("Can't push the status feed on port " + statusPort + ".");
+        this.pack();
+        return;
+      }
+    }
+    // The machines sharing this Executor are sampled by a single task
+    final Executor statusExecutor =
+        task -> SwingUtilities.invokeLater(EdtWatchdog.timed("sampleStatus", task));
+
+    // Each machine has its own coins and stock, the first one is opened
+    EdtWatchdog.getInstance().install();
+    final FleetDashboard dashboard = FleetDashboard.getInstance();
+    int firstRow = -1;
+    for (int i = 0; i < machinesNbr; i++) {
+      final Map<Coin, Integer> machineCoins = new Hashtable<Coin, Integer>(coinsStock);
+      final ChangeMachine changeMachine = new ChangeMachine(
+          new Change(machineCoins, getChangePolicy(machineCoins)),
+          new Hashtable<Coin, Boolean>(coinsAccepted));
+      final Stock stock = new Stock(sugarCubesNbr, cupsNbr, spoonsNbr, drinkQty);
+      final Context context =
+          new Context(changeMachine, stock, coinStuckProb / 100.0, dispensersNbr);
+      context.setAdaptiveAcceptance(adaptiveAcceptanceBox.isSelected());
+      MachineMonitor.register(context, SwingUtilities::invokeLater);
+      if (commandServer != null) {
+        commandServer.addMachine(context,
+            command -> SwingUtilities.invokeLater(EdtWatchdog.timed("remoteCommand", command)));
+      }
+      if (statusFeed != null) {
+        statusFeed.addMachine(context, statusExecutor);
+      }
+      final int row = dashboard.addMachine(context);
+      if (firstRow < 0) {
+        firstRow = row;
       }
-    });
+    }
+    if (statusFeed != null) {
+      statusFeed.start(StatusFeed.DEFAULT_PERIOD);
+    }
+    this.dispose(); // closes the configuration frame
+
+    dashboard.show();
+    dashboard.open(firstRow);
+  }
+
+  /**
+   * Returns the ChangePolicy selected by the user. The float to keep is the
+   * initial stock of coins.
+   *
+   * @param coinsStock the initial stock of each Coin
+   * @return the ChangePolicy the machine must use
+   */
+  private ChangePolicy getChangePolicy(Map<Coin, Integer> coinsStock) {
+    switch (changePolicyComboBox.getSelectedIndex()) {
+      case 1:
+        return MinCoinsChangePolicy.getInstance();
+      case 2:
+        return PreserveSmallCoinsChangePolicy.getInstance();
+      case 3:
+        final int[] target = new int[CoinSet.EURO.size()];
+        for (int i = 0; i < target.length; i++) {
+          target[i] = coinsStock.get(CoinSet.EURO.get(i));
+        }
+        return new BalancedFloatChangePolicy(target);
+      default:
+        return GreedyChangePolicy.getInstance();
+    }
+  }
+
+  /**
+   * @param portValue a text field holding a port number, or nothing
+   * @return the port number, 0 if the field is empty
+   * @throws NumberFormatException if the port is not between 1 and 65535
+   */
+  private static int parsePort(JTextField portValue) {
+    if (portValue.getText().isEmpty()) {
+      return 0;
+    }
+    final int port = Integer.parseInt(portValue.getText());
+    if (port <= 0 || port > 65535) {
+      throw new NumberFormatException();
+    }
+    return port;
   }
 
   private static String getProblemText(String part) {
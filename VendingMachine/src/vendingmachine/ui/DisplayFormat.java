@@ -0,0 +1,89 @@
+package vendingmachine.ui;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Renders the texts of the displays of a VendingMachineGUI: the messages in upper case
+ * and the temperature. Each text is built the first time it is needed and then reused,
+ * so that refreshing the displays does not build any String.
+ * Like the GUI, a DisplayFormat must only be used from the event dispatch thread.
+ */
+final class DisplayFormat {
+
+  /**
+   * The number of upper case messages kept, the least recently displayed are forgotten.
+   */
+  private static final int MAX_MESSAGES = 256;
+
+  /**
+   * The highest temperature whose text is kept (in tenths of degree).
+   */
+  private static final int MAX_TENTHS = 2000;
+
+  /**
+   * The message in upper case, by message.
+   */
+  private final Map<String, String> upperCaseTexts;
+
+  /**
+   * The text of each temperature from 0 to MAX_TENTHS tenths of degree, null until rendered.
+   */
+  private final String[] temperatureTexts;
+
+  @SuppressWarnings("serial")
+  DisplayFormat() {
+    upperCaseTexts = new LinkedHashMap<String, String>(MAX_MESSAGES * 2, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > MAX_MESSAGES;
+      }
+    };
+    temperatureTexts = new String[MAX_TENTHS + 1];
+  }
+
+  /**
+   * @param text a message
+   * @return the message in upper case
+   */
+  String upperCase(String text) {
+    String upper = upperCaseTexts.get(text);
+    if (upper == null) {
+      upper = text.toUpperCase(Locale.ENGLISH);
+      upperCaseTexts.put(text, upper);
+    }
+    return upper;
+  }
+
+  /**
+   * @param temperature a temperature (in degrees Celsius), negative if there is no water
+   * @return the temperature rounded to a tenth of degree and its unit, or "NO WATER"
+   */
+  String temperature(double temperature) {
+    if (temperature < 0) {
+      return "NO WATER";
+    }
+    final long tenths = Math.round(temperature * 10);
+    if (tenths > MAX_TENTHS) {
+      return build(tenths);
+    }
+    String text = temperatureTexts[(int) tenths];
+    if (text == null) {
+      text = build(tenths);
+      temperatureTexts[(int) tenths] = text;
+    }
+    return text;
+  }
+
+  /**
+   * Builds the text of a temperature the way {@code new DecimalFormat("#.#")} would,
+   * the degree symbol being added.
+   */
+  private static String build(long tenths) {
+    final String degrees = tenths % 10 == 0 ? Long.toString(tenths / 10)
+        : tenths / 10 + "." + tenths % 10;
+    return degrees + " \u00B0C"; // degree symbol
+  }
+
+}
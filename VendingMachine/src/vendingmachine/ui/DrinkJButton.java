@@ -11,7 +11,8 @@ import vendingmachine.PictureLoader;
 import vendingmachine.Utils;
 
 /**
- * The DrinkJButton class extends JButton and only adds a Drink attribute.
+ * The DrinkJButton class extends JButton and only adds a Drink attribute,
+ * which is replaced when the price of the Drink changes.
  */
 public class DrinkJButton extends JButton {
 
@@ -20,7 +21,7 @@ public class DrinkJButton extends JButton {
   /**
    * The drink associated with the JButton.
    */
-  private final Drink drink;
+  private Drink drink;
 
   /**
    * Associates a JButton with the Drink specified.
@@ -30,9 +31,7 @@ public class DrinkJButton extends JButton {
    */
   public DrinkJButton(Drink drink) {
     super();
-    this.drink = drink;
-    this.setText("<html>" + drink.getName() + "<br><center>"
-        + drink.getPrice() / 100.0 + " " + Utils.EURO);
+    setDrink(drink);
     this.setForeground(Color.WHITE);
     PictureLoader pictures = PictureLoader.getInstance();
     if (pictures.DRINK_BUTTON != null) {
@@ -43,6 +42,18 @@ public class DrinkJButton extends JButton {
     }
   }
 
+  /**
+   * Associates the JButton with the Drink specified (usually the same Drink with
+   * a new price) and displays its name and price, keeping the same JButton.
+   *
+   * @param drink the Drink to associate with the JButton
+   */
+  public void setDrink(Drink drink) {
+    this.drink = drink;
+    this.setText("<html>" + drink.getName() + "<br><center>"
+        + drink.getPrice() / 100.0 + " " + Utils.EURO);
+  }
+
   /**
    * @return the Drink associated with the DrinkJButton
    */
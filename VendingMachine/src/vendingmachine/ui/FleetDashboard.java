@@ -0,0 +1,218 @@
+package vendingmachine.ui;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.AbstractAction;
+import javax.swing.BorderFactory;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.KeyStroke;
+import javax.swing.ListSelectionModel;
+import javax.swing.Timer;
+import javax.swing.table.DefaultTableCellRenderer;
+
+import vendingmachine.components.Context;
+import vendingmachine.monitoring.EdtWatchdog;
+import vendingmachine.monitoring.FleetStatistics;
+
+/**
+ * The overview of all the machines created, one row per machine. A JTable only
+ * paints its visible rows, and only the visible rows are refreshed (every second),
+ * so that the dashboard stays smooth with tens of thousands of machines.
+ * The window of a machine is only created when it is opened from the dashboard
+ * (double-click or Enter on its row); the other machines run without any window.
+ * Like the machines, the dashboard must only be used from the event dispatch thread.
+ */
+public final class FleetDashboard {
+
+  private static final FleetDashboard INSTANCE = new FleetDashboard();
+
+  /**
+   * The time between two refreshes of the visible rows (in milliseconds).
+   */
+  private static final int REFRESH_PERIOD = 1000;
+
+  private static final Color PROBLEM_COLOR = new Color(255, 210, 200);
+
+  /**
+   * @return the unique instance of the class
+   */
+  public static FleetDashboard getInstance() {
+    return INSTANCE;
+  }
+
+  private final FleetTableModel model;
+  private final JTable table;
+  private final JLabel summaryLabel;
+
+  /**
+   * Timer refreshing the visible rows while the dashboard is displayed.
+   */
+  private final Timer refreshTimer;
+
+  /**
+   * The GUI of each machine whose window has been opened.
+   */
+  private final Map<Context, VendingMachineGUI> views;
+
+  /**
+   * The JFrame displaying the dashboard, null until {@code show()} is called.
+   */
+  private JFrame frame;
+
+  private FleetDashboard() {
+    model = new FleetTableModel();
+    table = new JTable(model);
+    table.setRowHeight(20); // a fixed height lets the table find the visible rows at once
+    table.setFillsViewportHeight(true);
+    table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    final DefaultTableCellRenderer renderer = new ProblemRenderer();
+    table.setDefaultRenderer(String.class, renderer);
+    table.setDefaultRenderer(Integer.class, renderer);
+
+    summaryLabel = new JLabel();
+    summaryLabel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+    views = new HashMap<Context, VendingMachineGUI>();
+
+    table.addMouseListener(new MouseAdapter() {
+      @Override
+      public void mouseClicked(MouseEvent e) {
+        if (e.getClickCount() == 2) {
+          final int row = table.rowAtPoint(e.getPoint());
+          if (row >= 0) {
+            open(row);
+          }
+        }
+      }
+    });
+    table.getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT)
+        .put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "openMachine");
+    table.getActionMap().put("openMachine", new AbstractAction() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        if (table.getSelectedRow() >= 0) {
+          open(table.getSelectedRow());
+        }
+      }
+    });
+
+    refreshTimer = new Timer(REFRESH_PERIOD,
+        EdtWatchdog.timed("refreshFleet", e -> refreshVisibleRows()));
+  }
+
+  /**
+   * Adds a machine to the dashboard, without any window: it runs in the background
+   * until it is opened.
+   *
+   * @param machine the machine to add
+   * @return the row of the machine
+   */
+  public int addMachine(Context machine) {
+    machine.setUI(new ClosedMachineUI());
+    model.addMachine(machine);
+    return model.getRowCount() - 1;
+  }
+
+  /**
+   * Opens the window of the machine of the specified row,
+   * or brings it to the front if it is already open.
+   *
+   * @param row the row of the machine
+   */
+  public void open(int row) {
+    final Context machine = model.getMachine(row);
+    final VendingMachineGUI view = views.get(machine);
+    if (view != null && view.isDisplayed()) {
+      view.toFront();
+    } else {
+      final VendingMachineGUI gui = new VendingMachineGUI(machine);
+      views.put(machine, gui);
+      gui.init();
+    }
+  }
+
+  /**
+   * Displays the dashboard, creating its frame the first time, and starts refreshing it.
+   */
+  public void show() {
+    if (frame == null) {
+      frame = new JFrame("Vending Machine Fleet");
+      frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+      final JPanel panel = new JPanel(new BorderLayout());
+      panel.add(summaryLabel, BorderLayout.PAGE_START);
+      panel.add(new JScrollPane(table), BorderLayout.CENTER);
+      frame.getContentPane().add(panel);
+      frame.setPreferredSize(new Dimension(800, 500));
+      frame.pack();
+      frame.setLocationByPlatform(true);
+    }
+    refreshVisibleRows();
+    refreshTimer.start();
+    frame.setVisible(true);
+  }
+
+  /**
+   * @return the rows of the dashboard
+   */
+  public FleetTableModel getModel() {
+    return model;
+  }
+
+  /**
+   * Takes a new snapshot of the machines of the visible rows and updates the summary.
+   */
+  private void refreshVisibleRows() {
+    final Rectangle visible = table.getVisibleRect();
+    if (model.getRowCount() > 0 && !visible.isEmpty()) {
+      final int first = Math.max(0, table.rowAtPoint(visible.getLocation()));
+      int last = table.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+      if (last < 0) {
+        last = model.getRowCount() - 1;
+      }
+      model.refresh(first, last);
+    }
+    final String summary = model.getRowCount() + " machine(s), "
+        + FleetStatistics.getInstance().getActiveProblems() + " problem(s) now, "
+        + FleetStatistics.getInstance().getServedDrinks() + " drink(s) served";
+    if (!summary.equals(summaryLabel.getText())) {
+      summaryLabel.setText(summary);
+    }
+  }
+
+  /**
+   * Renders the cells of the machines facing a problem with a colored background.
+   */
+  private final class ProblemRenderer extends DefaultTableCellRenderer {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value,
+        boolean isSelected, boolean hasFocus, int row, int column) {
+      super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+      if (!isSelected) {
+        setBackground(model.hasProblems(row) ? PROBLEM_COLOR : table.getBackground());
+      }
+      return this;
+    }
+
+  }
+
+}
@@ -0,0 +1,152 @@
+package vendingmachine.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+import vendingmachine.components.Context;
+
+/**
+ * The rows of the FleetDashboard: one machine per row, with its state, problems,
+ * temperature and stocks. The cells show a MachineSnapshot of the machine, which is
+ * only taken again for the rows that are refreshed (the visible ones), so that
+ * the cost of the dashboard does not depend on the number of machines.
+ * Like the machines, the model must only be used from the event dispatch thread.
+ */
+public class FleetTableModel extends AbstractTableModel {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final String[] COLUMNS = { "Machine", "State", "Problems", "Temperature",
+    "Cups", "Sugar cubes", "Spoons", "Lowest drink stock" };
+
+  private static final Class<?>[] COLUMN_CLASSES = { Integer.class, String.class,
+    String.class, String.class, Integer.class, Integer.class, Integer.class, Integer.class };
+
+  private final List<Context> machines;
+
+  /**
+   * The snapshot of each machine, in the same order.
+   */
+  private final List<MachineSnapshot> snapshots;
+
+  private final DisplayFormat format;
+
+  /**
+   * Creates a model without any machine.
+   */
+  public FleetTableModel() {
+    machines = new ArrayList<Context>();
+    snapshots = new ArrayList<MachineSnapshot>();
+    format = new DisplayFormat();
+  }
+
+  /**
+   * Adds a machine in a new last row.
+   *
+   * @param machine the machine to add
+   */
+  public void addMachine(Context machine) {
+    machines.add(machine);
+    snapshots.add(new MachineSnapshot());
+    fireTableRowsInserted(machines.size() - 1, machines.size() - 1);
+  }
+
+  /**
+   * @param row the index of a row
+   * @return the machine of the row
+   */
+  public Context getMachine(int row) {
+    return machines.get(row);
+  }
+
+  /**
+   * Takes a new snapshot of the machines of the specified rows and notifies
+   * the table of the rows that changed. The rows out of the model are ignored.
+   *
+   * @param first the first row to refresh
+   * @param last the last row to refresh (included)
+   */
+  public void refresh(int first, int last) {
+    int firstChanged = -1;
+    int lastChanged = -1;
+    for (int row = Math.max(first, 0); row <= Math.min(last, machines.size() - 1); row++) {
+      if (snapshots.get(row).take(machines.get(row), format)) {
+        if (firstChanged < 0) {
+          firstChanged = row;
+        }
+        lastChanged = row;
+      }
+    }
+    if (firstChanged >= 0) {
+      fireTableRowsUpdated(firstChanged, lastChanged);
+    }
+  }
+
+  /**
+   * @param row the index of a row
+   * @return true if the machine of the row had a problem at its last snapshot
+   */
+  public boolean hasProblems(int row) {
+    return getSnapshot(row).hasProblems();
+  }
+
+  /**
+   * @param row the index of a row
+   * @return the snapshot of the row, taken now if it has never been
+   */
+  private MachineSnapshot getSnapshot(int row) {
+    final MachineSnapshot snapshot = snapshots.get(row);
+    if (!snapshot.isTaken()) {
+      snapshot.take(machines.get(row), format);
+    }
+    return snapshot;
+  }
+
+  @Override
+  public int getRowCount() {
+    return machines.size();
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMNS.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMNS[column];
+  }
+
+  @Override
+  public Class<?> getColumnClass(int column) {
+    return COLUMN_CLASSES[column];
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    final MachineSnapshot snapshot = getSnapshot(row);
+    switch (column) {
+      case 0:
+        return machines.get(row).getId();
+      case 1:
+        return snapshot.getStateText();
+      case 2:
+        return snapshot.getProblemsText();
+      case 3:
+        return snapshot.getTemperature();
+      case 4:
+        return snapshot.getCups();
+      case 5:
+        return snapshot.getSugarCubes();
+      case 6:
+        return snapshot.getSpoons();
+      case 7:
+        return snapshot.getLowestDrinkStock();
+      default:
+        throw new IllegalArgumentException("No column " + column);
+    }
+  }
+
+}
@@ -63,6 +63,23 @@ public interface IMachineGUI {
    */
   void updateUI();
 
+  /**
+   * Updates the drink buttons according to the drinks the IMachine can serve now.
+   * Only called when at least one of them became servable or not.
+   */
+  void updateServableDrinks();
+
+  /**
+   * Updates the drink buttons with the drinks of the IMachine, whose prices changed.
+   */
+  void updateDrinks();
+
+  /**
+   * Updates the coin buttons according to the coins the IMachine accepts now.
+   * Only called when at least one of them became accepted or refused.
+   */
+  void updateAcceptedCoins();
+
   /**
    * Makes the JMenuItem to repair stuck coins clickable or not.
    * 
@@ -0,0 +1,135 @@
+package vendingmachine.ui;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import vendingmachine.Drink;
+import vendingmachine.components.Context;
+import vendingmachine.components.Stock;
+import vendingmachine.states.Problem;
+import vendingmachine.states.State;
+
+/**
+ * What a row of the FleetDashboard shows of a machine, taken when the row is visible.
+ * A snapshot is taken again in place, so that refreshing the dashboard allocates
+ * nothing while the machines don't change. The texts are only built again when
+ * the state or the problems of the machine change.
+ * Like the machines, a snapshot must only be used from the event dispatch thread.
+ */
+final class MachineSnapshot {
+
+  private boolean taken;
+
+  private State state;
+  private String stateText;
+  private int problemsNbr;
+  private String problemsText;
+  private String temperature;
+  private int cups;
+  private int sugarCubes;
+  private int spoons;
+  private int lowestDrinkStock;
+
+  /**
+   * @return true if a snapshot has already been taken
+   */
+  boolean isTaken() {
+    return taken;
+  }
+
+  /**
+   * Takes a new snapshot of the specified machine.
+   *
+   * @param machine the machine of the row
+   * @param format formats the temperature
+   * @return true if the snapshot changed
+   */
+  boolean take(Context machine, DisplayFormat format) {
+    boolean changed = !taken;
+    taken = true;
+
+    final State newState = machine.getState();
+    final int newProblemsNbr = machine.getProblemsNbr();
+    if (newState != state || newProblemsNbr != problemsNbr || problemsText == null) {
+      state = newState;
+      stateText = newState.toString();
+      problemsNbr = newProblemsNbr;
+      problemsText = getProblemsText(machine.getProblems());
+      changed = true;
+    }
+
+    final String newTemperature = format.temperature(machine.getHeatingSystem().getTemperature());
+    if (!newTemperature.equals(temperature)) {
+      temperature = newTemperature;
+      changed = true;
+    }
+
+    final Stock stock = machine.getStock();
+    final List<Drink> drinks = machine.getDrinks();
+    int lowest = Integer.MAX_VALUE;
+    for (int i = 0; i < drinks.size(); i++) {
+      lowest = Math.min(lowest, stock.getDrinkQty(drinks.get(i)));
+    }
+    if (lowest == Integer.MAX_VALUE) {
+      lowest = 0;
+    }
+    if (stock.getCupsNbr() != cups || stock.getSugarCubesNbr() != sugarCubes
+        || stock.getSpoonsNbr() != spoons || lowest != lowestDrinkStock) {
+      cups = stock.getCupsNbr();
+      sugarCubes = stock.getSugarCubesNbr();
+      spoons = stock.getSpoonsNbr();
+      lowestDrinkStock = lowest;
+      changed = true;
+    }
+    return changed;
+  }
+
+  /**
+   * @param problems the Problem's of a machine
+   * @return their names sorted and separated by commas, "-" if there is none
+   */
+  private static String getProblemsText(Set<Problem> problems) {
+    if (problems.isEmpty()) {
+      return "-";
+    }
+    final Set<String> names = new TreeSet<String>();
+    for (Problem problem: problems) {
+      names.add(problem.toString());
+    }
+    return String.join(", ", names);
+  }
+
+  String getStateText() {
+    return stateText;
+  }
+
+  String getProblemsText() {
+    return problemsText;
+  }
+
+  boolean hasProblems() {
+    return problemsNbr > 0;
+  }
+
+  String getTemperature() {
+    return temperature;
+  }
+
+  int getCups() {
+    return cups;
+  }
+
+  int getSugarCubes() {
+    return sugarCubes;
+  }
+
+  int getSpoons() {
+    return spoons;
+  }
+
+  int getLowestDrinkStock() {
+    return lowestDrinkStock;
+  }
+
+}
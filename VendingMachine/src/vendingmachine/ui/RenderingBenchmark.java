@@ -0,0 +1,245 @@
+package vendingmachine.ui;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import vendingmachine.Coin;
+import vendingmachine.Drink;
+import vendingmachine.SoundLoader;
+import vendingmachine.components.Change;
+import vendingmachine.components.ChangeMachine;
+import vendingmachine.components.Context;
+import vendingmachine.components.IMachine;
+import vendingmachine.components.Stock;
+import vendingmachine.monitoring.LatencyHistogram;
+
+/**
+ * Measures what painting the window of a machine costs: lays out the whole content of
+ * a VendingMachineGUI (backgrounds, door, drink and coin buttons, info area) with the
+ * real pictures and paints it repeatedly into an offscreen BufferedImage, without any
+ * screen. It reports the time and the memory allocated per frame, for each size.
+ * The frames are painted on the event dispatch thread, as they are on screen.
+ */
+public final class RenderingBenchmark {
+
+  /**
+   * The sizes painted when none is given: a small kiosk, a laptop and a full HD screen.
+   */
+  private static final int[][] DEFAULT_SIZES = { { 800, 600 }, { 1280, 800 }, { 1920, 1080 } };
+
+  private static final int DEFAULT_FRAMES = 200;
+
+  private final com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  /**
+   * The content of the window of the machine.
+   */
+  private final JComponent content;
+
+  /**
+   * Lays out the content of the GUI of the specified machine, without any frame.
+   * Must be called on the event dispatch thread.
+   *
+   * @param machine the machine to paint
+   */
+  public RenderingBenchmark(IMachine machine) {
+    this.content = new VendingMachineGUI(machine).createContent();
+  }
+
+  /**
+   * Paints {@code warmupFrames} frames, then measures the painting of {@code frames}
+   * frames of the specified size. Must be called on the event dispatch thread.
+   * Throws an IllegalArgumentException if a size or a number of frames is not positive.
+   *
+   * @param width the width of the frames (in pixels)
+   * @param height the height of the frames (in pixels)
+   * @param warmupFrames the number of frames painted before measuring
+   * @param frames the number of frames measured
+   * @return the time and allocation of the frames measured
+   */
+  public Result paint(int width, int height, int warmupFrames, int frames) {
+    if (width <= 0 || height <= 0 || warmupFrames < 0 || frames <= 0) {
+      throw new IllegalArgumentException("The size and the number of frames must be positive");
+    }
+    final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D g = image.createGraphics();
+    try {
+      content.setSize(width, height);
+      layOut(content);
+      for (int i = 0; i < warmupFrames; i++) {
+        content.paint(g);
+      }
+
+      final LatencyHistogram frameTimes = new LatencyHistogram();
+      final long threadId = Thread.currentThread().getId();
+      final long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+      final long start = System.nanoTime();
+      long frameStart = start;
+      for (int i = 0; i < frames; i++) {
+        content.paint(g);
+        final long frameEnd = System.nanoTime();
+        frameTimes.record((frameEnd - frameStart) / 1000);
+        frameStart = frameEnd;
+      }
+      final long total = frameStart - start;
+      final long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+      return new Result(width, height, frames, total / 1000 / frames,
+          frameTimes.getPercentile(50), frameTimes.getPercentile(99), allocated / frames);
+    } finally {
+      g.dispose();
+    }
+  }
+
+  /**
+   * Lays out a component and all its descendants, which {@code validate()} does not do
+   * for a component that is not displayed.
+   *
+   * @param component the component to lay out
+   */
+  private static void layOut(Component component) {
+    if (component instanceof Container) {
+      final Container container = (Container) component;
+      container.doLayout();
+      for (Component child: container.getComponents()) {
+        layOut(child);
+      }
+    }
+  }
+
+  /**
+   * The time and memory allocated per frame painted at one size.
+   */
+  public static final class Result {
+
+    private final int width;
+    private final int height;
+    private final int frames;
+    private final long meanMicros;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long bytesPerFrame;
+
+    private Result(int width, int height, int frames, long meanMicros, long p50Micros,
+        long p99Micros, long bytesPerFrame) {
+      this.width = width;
+      this.height = height;
+      this.frames = frames;
+      this.meanMicros = meanMicros;
+      this.p50Micros = p50Micros;
+      this.p99Micros = p99Micros;
+      this.bytesPerFrame = bytesPerFrame;
+    }
+
+    /**
+     * @return the number of frames measured
+     */
+    public int getFrames() {
+      return frames;
+    }
+
+    /**
+     * @return the mean time to paint a frame (in microseconds)
+     */
+    public long getMeanMicros() {
+      return meanMicros;
+    }
+
+    /**
+     * @return the median time to paint a frame (in microseconds)
+     */
+    public long getP50Micros() {
+      return p50Micros;
+    }
+
+    /**
+     * @return the 99th percentile of the time to paint a frame (in microseconds)
+     */
+    public long getP99Micros() {
+      return p99Micros;
+    }
+
+    /**
+     * @return the mean number of bytes allocated to paint a frame
+     */
+    public long getBytesPerFrame() {
+      return bytesPerFrame;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%4dx%-4d %5d frames  mean %8.3f ms  p50 %8.3f ms  p99 %8.3f ms"
+          + "  %9d B/frame", width, height, frames, meanMicros / 1000.0, p50Micros / 1000.0,
+          p99Micros / 1000.0, bytesPerFrame);
+    }
+
+  }
+
+  /**
+   * Creates a machine with six drinks and plenty of coins, as a kiosk would have.
+   *
+   * @return the machine created
+   */
+  private static Context createMachine() {
+    final Map<Coin, Integer> coinsStock = new Hashtable<Coin, Integer>();
+    final Map<Coin, Boolean> acceptedCoins = new Hashtable<Coin, Boolean>();
+    for (Coin coin: Coin.COINS) {
+      coinsStock.put(coin, 20);
+      acceptedCoins.put(coin, true);
+    }
+    final Map<Drink, Integer> drinkQty = new LinkedHashMap<Drink, Integer>();
+    drinkQty.put(new Drink("Coffee", true, 40), 50);
+    drinkQty.put(new Drink("Espresso", true, 50), 50);
+    drinkQty.put(new Drink("Cappuccino", true, 65), 50);
+    drinkQty.put(new Drink("Tea", true, 35), 50);
+    drinkQty.put(new Drink("Hot Chocolate", false, 60), 50);
+    drinkQty.put(new Drink("Soup", false, 80), 50);
+    return new Context(new ChangeMachine(new Change(coinsStock), acceptedCoins),
+        new Stock(100, 100, 100, drinkQty), 0);
+  }
+
+  /**
+   * Paints the window of a machine at each size given and prints the time and
+   * allocation per frame. Run it with {@code -Djava.awt.headless=true} on a machine
+   * without screen.
+   * Arguments: the number of frames measured per size, then the sizes
+   * ({@code <width>x<height>}). By default, 200 frames of 800x600, 1280x800 and 1920x1080.
+   *
+   * @param args the number of frames and the sizes
+   * @throws InterruptedException if the benchmark is interrupted
+   * @throws InvocationTargetException if painting fails
+   */
+  public static void main(String[] args) throws InterruptedException, InvocationTargetException {
+    final int frames = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_FRAMES;
+    final int[][] sizes;
+    if (args.length > 1) {
+      sizes = new int[args.length - 1][];
+      for (int i = 1; i < args.length; i++) {
+        final String[] size = args[i].split("x");
+        sizes[i - 1] = new int[] { Integer.parseInt(size[0]), Integer.parseInt(size[1]) };
+      }
+    } else {
+      sizes = DEFAULT_SIZES;
+    }
+
+    SoundLoader.setMuted(true);
+    SwingUtilities.invokeAndWait(() -> {
+      final RenderingBenchmark benchmark = new RenderingBenchmark(createMachine());
+      for (int[] size: sizes) {
+        System.out.println(benchmark.paint(size[0], size[1], frames, frames));
+      }
+    });
+    System.exit(0); // stops the timers of the machine
+  }
+
+}
@@ -2,19 +2,19 @@ package vendingmachine.ui;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
-import java.text.DecimalFormat;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -36,19 +36,20 @@ import vendingmachine.Main;
 import vendingmachine.PictureLoader;
 import vendingmachine.SoundLoader;
 import vendingmachine.components.IMachine;
+import vendingmachine.monitoring.EdtWatchdog;
 
 /**
  * This class creates a GUI of a vending machine using a IMachine object.
- * It is a subclass of JFrame.
+ * The machine is displayed in a JFrame, with a menu bar for the maintenance.
+ * Its content may also be laid out without the frame (see {@code createContent()}),
+ * for instance to paint it offscreen.
  */
-public class VendingMachineGUI extends JFrame implements IMachineGUI, TemperatureListener {
-
-  private static final long serialVersionUID = 1L;
+public class VendingMachineGUI implements IMachineGUI, TemperatureListener {
 
   /**
-   * Used to format the display of the temperature.
+   * Used to format the messages and the temperature displayed.
    */
-  private static final DecimalFormat FORMAT = new DecimalFormat("#.#");
+  private final DisplayFormat format = new DisplayFormat();
 
   /**
    * The DoorJPanel allowing the animation of the door.
@@ -70,6 +71,11 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
   private final JLabel temperatureLabel;
   private final JTextArea infoArea;
 
+  /**
+   * The text of the info area, to leave it untouched when it does not change.
+   */
+  private String info;
+
   /*
    * The buttons of the GUI.
    */
@@ -94,6 +100,11 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
    */
   private final Timer textTimer;
 
+  /**
+   * The JFrame displaying the machine, null until {@code init()} is called.
+   */
+  private JFrame frame;
+
   /**
    * Initializes the fields according to the IMachine specified.
    * Associates the IMachine specified and the VendingMachineGUI itself together.
@@ -102,11 +113,9 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
    * @param machine the IMachine to link with the GUI
    */
   public VendingMachineGUI(IMachine machine) {
-    super();
     final PictureLoader pictures = PictureLoader.getInstance();
 
     this.machine = machine;
-    this.machine.setUI(this);
 
     leftPanel = new DoorJPanel(); // Makes possible the animation of the door
     leftPanel.setLayout(new BorderLayout());
@@ -140,7 +149,7 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
     }
 
     coinButtonsList = new ArrayList<CoinJButton>();
-    for (Coin coin: Coin.COINS) {
+    for (Coin coin: machine.getCoinSet().getCoins()) {
       coinButtonsList.add(new CoinJButton(coin, machine.isCoinAccepted(coin)));
     }
 
@@ -163,17 +172,61 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
     menuBar = new JMenuBar();
     unstickCoins = new JMenuItem("Unstick Stuck Coins");
 
-    textTimer = new Timer(2500, e -> updateNorthText());
+    textTimer = new Timer(2500, EdtWatchdog.timed("updateNorthText", e -> updateNorthText()));
     textTimer.setRepeats(false); // stops after one iteration
+
+    this.machine.setUI(this);
   }
 
   /**
-   * Places all the components on the frame and makes it visible.
+   * Places all the components on a new frame and makes it visible.
+   * Closing the frame does not stop the machine: it goes on running without any
+   * window, in the FleetDashboard.
    */
   public void init() {
-    this.setTitle("Vending Machine");
-    this.setDefaultCloseOperation(EXIT_ON_CLOSE);
-    final Container myContainer = getContentPane();
+    frame = new JFrame("Vending Machine " + machine.getId());
+    frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+    frame.addWindowListener(new WindowAdapter() {
+      @Override
+      public void windowClosed(WindowEvent e) {
+        textTimer.stop();
+        machine.setUI(new ClosedMachineUI());
+      }
+    });
+    frame.getContentPane().add(createContent());
+
+    // JMenuBar
+    this.createMenuBar();
+    frame.setJMenuBar(menuBar);
+
+    frame.setMinimumSize(new Dimension(400, 400));
+    frame.pack();
+    frame.setLocationRelativeTo(null);
+    frame.setVisible(true);
+  }
+
+  /**
+   * @return true if the frame of the machine is open
+   */
+  public boolean isDisplayed() {
+    return frame != null && frame.isDisplayable();
+  }
+
+  /**
+   * Brings the frame of the machine to the front.
+   */
+  public void toFront() {
+    frame.toFront();
+  }
+
+  /**
+   * Places all the components of the machine (without the menu bar) in a new
+   * component, sets their listeners and displays the state of the machine.
+   * Must be called only once, on the event dispatch thread.
+   *
+   * @return the component holding the whole machine
+   */
+  JComponent createContent() {
     final PictureLoader pictures = PictureLoader.getInstance();
 
     // Main machine panel
@@ -231,7 +284,7 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
     southPanel.setPreferredSize(new Dimension(600, 100));
 
     // Coins buttons panel
-    final JPanel coinsPanel = new JPanel(new GridLayout((Coin.COINS.size() + 1) / 2, 2, 5, 5));
+    final JPanel coinsPanel = new JPanel(new GridLayout((machine.getCoinSet().size() + 1) / 2, 2, 5, 5));
     coinsPanel.setBackground(Color.WHITE);
 
     for (CoinJButton myButton: coinButtonsList) {
@@ -239,9 +292,6 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
     }
     coinsPanel.setMinimumSize(new Dimension(100, 100));
 
-    // JMenuBar
-    this.createMenuBar();
-
     // Information area (on the right)
     final JPanel infoPanel = new JPanel();
     final JScrollPane scrInfoPanel = new JScrollPane(infoPanel);
@@ -255,56 +305,53 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
     final JSplitPane rightPane = new JSplitPane();
     rightPane.setLeftComponent(leftPane);
     rightPane.setRightComponent(scrInfoPanel);
-    myContainer.add(rightPane);
 
     // Ending operations
-    this.setJMenuBar(menuBar);
     this.addListeners();
     this.updateUI();
-
-    this.setMinimumSize(new Dimension(400, 400));
-    this.pack();
-    this.setLocationRelativeTo(null);
-    this.setVisible(true);
+    this.updateServableDrinks();
+    return rightPane;
   }
 
   /**
    * Add the action listeners to all the buttons of the GUI
-   * (the cup, the change, +, -, Confirm, Cancel, coins and drinks buttons).
+   * (the cup, the change, +, -, Confirm, Cancel, coins and drinks buttons),
+   * named after the action of the machine for the EdtWatchdog.
    */
   private void addListeners() {
-    cupButton.addActionListener(e -> {
+    cupButton.addActionListener(EdtWatchdog.timed("takeCup", e -> {
       if (!leftPanel.isAnimationRunning()) {
         machine.takeCup();
       }
-    });
-    changeButton.addActionListener(e -> machine.takeChange());
-    lessSugar.addActionListener(e -> {
+    }));
+    changeButton.addActionListener(EdtWatchdog.timed("takeChange", e -> machine.takeChange()));
+    lessSugar.addActionListener(EdtWatchdog.timed("less", e -> {
       machine.less();
       SoundLoader.play(SoundLoader.getInstance().CLICK);
-    });
-    moreSugar.addActionListener(e -> {
+    }));
+    moreSugar.addActionListener(EdtWatchdog.timed("more", e -> {
       machine.more();
       SoundLoader.play(SoundLoader.getInstance().CLICK);
-    });
-    okButton.addActionListener(e -> {
+    }));
+    okButton.addActionListener(EdtWatchdog.timed("confirm", e -> {
       machine.confirm();
       SoundLoader.play(SoundLoader.getInstance().CLICK);
-    });
-    cancelButton.addActionListener(e -> {
+    }));
+    cancelButton.addActionListener(EdtWatchdog.timed("cancel", e -> {
       machine.cancel();
       SoundLoader.play(SoundLoader.getInstance().CLICK);
-    });
+    }));
 
     for (DrinkJButton drinkButton: drinkButtonsList) {
-      drinkButton.addActionListener(e -> {
+      drinkButton.addActionListener(EdtWatchdog.timed("drinkButton", e -> {
         machine.drinkButton(drinkButton.getDrink());
         SoundLoader.play(SoundLoader.getInstance().CLICK);
-      });
+      }));
     }
 
     for (CoinJButton coinButton: coinButtonsList) {
-      coinButton.addActionListener(e -> machine.coinInserted(coinButton.getCoin()));
+      coinButton.addActionListener(EdtWatchdog.timed("coinInserted",
+          e -> machine.coinInserted(coinButton.getCoin())));
     }
   }
 
@@ -341,12 +388,11 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
     });
     unstickCoins.setEnabled(false);
     newMachine.addActionListener(e -> {
-      dispose();
       Main.run();
     });
     quit.addActionListener(e -> System.exit(0));
 
-    for (Coin coin: Coin.COINS) {
+    for (Coin coin: machine.getCoinSet().getCoins()) {
       final JMenuItem item = new JMenuItem(coin.TEXT);
       item.addActionListener(e -> coinStockDialog(coin));
       coinsMenu.add(item);
@@ -404,12 +450,12 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
 
   @Override
   public void updateSugarText() {
-    sugarLabel.setText(machine.getSugarText().toUpperCase(Locale.ENGLISH));
+    setText(sugarLabel, format.upperCase(machine.getSugarText()));
   }
 
   @Override
   public void updateNorthText() {
-    northLabel.setText(machine.getNorthText().toUpperCase(Locale.ENGLISH));
+    setText(northLabel, format.upperCase(machine.getNorthText()));
   }
 
   @Override
@@ -424,7 +470,11 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
 
   @Override
   public void updateInfo() {
-    infoArea.setText(machine.getInfo());
+    final String newInfo = machine.getInfo();
+    if (!newInfo.equals(info)) {
+      info = newInfo;
+      infoArea.setText(newInfo);
+    }
   }
 
   @Override
@@ -435,9 +485,31 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
     updateChangeOutInfo();
   }
 
+  @Override
+  public void updateServableDrinks() {
+    for (DrinkJButton drinkButton: drinkButtonsList) {
+      drinkButton.setEnabled(machine.isServable(drinkButton.getDrink()));
+    }
+  }
+
+  @Override
+  public void updateDrinks() {
+    final List<Drink> drinks = machine.getDrinks();
+    for (int i = 0; i < drinkButtonsList.size(); i++) {
+      drinkButtonsList.get(i).setDrink(drinks.get(i));
+    }
+  }
+
+  @Override
+  public void updateAcceptedCoins() {
+    for (CoinJButton coinButton: coinButtonsList) {
+      coinButton.setAccepted(machine.isCoinAccepted(coinButton.getCoin()));
+    }
+  }
+
   @Override
   public void setTemporaryNorthText(String msg) {
-    northLabel.setText(msg.toUpperCase(Locale.ENGLISH));
+    setText(northLabel, format.upperCase(msg));
     textTimer.restart();
   }
 
@@ -448,10 +520,19 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
 
   @Override
   public void setTemperature(double temperature) {
-    if (temperature < 0) {
-      temperatureLabel.setText("NO WATER");
-    } else {
-      temperatureLabel.setText(FORMAT.format(temperature) + " \u00B0C"); // degree symbol
+    setText(temperatureLabel, format.temperature(temperature));
+  }
+
+  /**
+   * Sets the text of a JLabel, unless it already displays it: the label is then
+   * neither revalidated nor repainted.
+   *
+   * @param label the JLabel to update
+   * @param text the text to display
+   */
+  private static void setText(JLabel label, String text) {
+    if (!text.equals(label.getText())) {
+      label.setText(text);
     }
   }
 
@@ -466,7 +547,7 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
     int value = -1;
     if (machine.isAvailableForMaintenance()) {
       final String inputValue = JOptionPane.showInputDialog(
-          this, "Enter the new value for the " + element + " stock: ");
+          frame, "Enter the new value for the " + element + " stock: ");
       try {
         value = Integer.parseInt(inputValue);
         if (value < 0) {
@@ -474,16 +555,30 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
         }
       } catch (NumberFormatException exc) {
         JOptionPane.showMessageDialog(
-            this, "The value is not valid. Nothing has been changed.");
+            frame, "The value is not valid. Nothing has been changed.");
       }
     } else {
       JOptionPane.showMessageDialog(
-          this, "Now is not the time to use that!"
+          frame, "Now is not the time to use that!"
               + "\nPlease end or wait for the end of the current operation.");
     }
     return value;
   }
 
+  /**
+   * Performs the specified change of stock. If the new value is refused by the
+   * machine (lower than what is reserved by the orders), displays why.
+   *
+   * @param change the change of stock to perform
+   */
+  private void changeStock(Runnable change) {
+    try {
+      change.run();
+    } catch (IllegalArgumentException exc) {
+      JOptionPane.showMessageDialog(frame, exc.getMessage() + "\nNothing has been changed.");
+    }
+  }
+
   /**
    * Creates a JOptionPane to change the stock of the Coin specified.
    * 
@@ -492,7 +587,7 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
   private void coinStockDialog(Coin coin) {
     final int value = stockDialog(coin.TEXT + " coin");
     if (value >= 0) {
-      machine.setCoinStock(coin, value);
+      changeStock(() -> machine.setCoinStock(coin, value));
     }
   }
 
@@ -504,7 +599,7 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
   private void drinkStockDialog(Drink drink) {
     final int value = stockDialog(drink.getName());
     if (value >= 0) {
-      machine.setDrinkStock(drink, value);
+      changeStock(() -> machine.setDrinkStock(drink, value));
     }
   }
 
@@ -514,7 +609,7 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
   private void cupStockDialog() {
     final int value = stockDialog("cups");
     if (value >= 0) {
-      machine.setCupStock(value);
+      changeStock(() -> machine.setCupStock(value));
     }
   }
 
@@ -524,7 +619,7 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
   private void sugarStockDialog() {
     final int value = stockDialog("sugar");
     if (value >= 0) {
-      machine.setSugarStock(value);
+      changeStock(() -> machine.setSugarStock(value));
     }
   }
 
@@ -534,7 +629,7 @@ public class VendingMachineGUI extends JFrame implements IMachineGUI, Temperatur
   private void spoonsStockDialog() {
     final int value = stockDialog("spoon");
     if (value >= 0) {
-      machine.setSpoonsStock(value);
+      changeStock(() -> machine.setSpoonsStock(value));
     }
   }
 